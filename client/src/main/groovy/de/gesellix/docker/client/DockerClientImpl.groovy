@@ -3,12 +3,22 @@ package de.gesellix.docker.client
 import de.gesellix.docker.authentication.AuthConfigReader
 import de.gesellix.docker.client.authentication.ManageAuthentication
 import de.gesellix.docker.client.authentication.ManageAuthenticationClient
+import de.gesellix.docker.client.batch.BatchExecutor
 import de.gesellix.docker.client.config.ManageConfig
 import de.gesellix.docker.client.config.ManageConfigClient
+import de.gesellix.docker.client.container.ContainerInventory
+import de.gesellix.docker.client.container.LogFollowOptions
 import de.gesellix.docker.client.container.ManageContainer
+import de.gesellix.docker.client.container.ManageContainerAsync
+import de.gesellix.docker.client.container.ManageContainerAsyncClient
 import de.gesellix.docker.client.container.ManageContainerClient
+import de.gesellix.docker.client.container.MultiContainerLogFollower
 import de.gesellix.docker.client.distribution.ManageDistribution
 import de.gesellix.docker.client.distribution.ManageDistributionService
+import de.gesellix.docker.client.image.BuildCache
+import de.gesellix.docker.client.image.ContentAddressedCache
+import de.gesellix.docker.client.image.ImageIdIndex
+import de.gesellix.docker.client.image.ImagePullRegistry
 import de.gesellix.docker.client.image.ManageImage
 import de.gesellix.docker.client.image.ManageImageClient
 import de.gesellix.docker.client.network.ManageNetwork
@@ -36,9 +46,15 @@ import de.gesellix.docker.engine.DockerEnv
 import de.gesellix.docker.remote.api.EngineApiClient
 import de.gesellix.docker.remote.api.EngineApiClientImpl
 import de.gesellix.docker.remote.api.Node
+import de.gesellix.util.ThreadPools
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+
 import static java.net.Proxy.NO_PROXY
 
 class DockerClientImpl implements DockerClient {
@@ -81,6 +97,19 @@ class DockerClientImpl implements DockerClient {
   @Delegate
   ManageDistribution manageDistribution
 
+  /**
+   * Non-blocking container operations, running on the {@link #getAsyncExecutor() asyncExecutor}.
+   */
+  ManageContainerAsync manageContainerAsync
+
+  private ExecutorService asyncExecutor
+  // only the executor which the client has created itself is shut down when it's replaced
+  private boolean ownsAsyncExecutor = false
+
+  private BatchExecutor batchExecutor
+
+  private ImagePullRegistry imagePullRegistry
+
   DockerClientImpl() {
     this(new DockerClientConfig())
   }
@@ -98,6 +127,12 @@ class DockerClientImpl implements DockerClient {
   }
 
   void apply(DockerClientConfig dockerClientConfig, Proxy proxy = NO_PROXY) {
+    if (manageContainer instanceof ManageContainerClient) {
+      disableContainerInventory()
+    }
+    if (manageImage instanceof ManageImageClient) {
+      disableImageIdIndex()
+    }
     this.dockerClientConfig = dockerClientConfig
     this.env = dockerClientConfig.env
     this.proxy = proxy
@@ -110,9 +145,11 @@ class DockerClientImpl implements DockerClient {
 
     this.manageSystem = new ManageSystemClient(engineApiClient)
     this.manageAuthentication = new ManageAuthenticationClient(engineApiClient, authConfigReader, env.dockerConfigReader)
-    this.manageImage = new ManageImageClient(engineApiClient, manageAuthentication)
+    this.batchExecutor = new BatchExecutor(getAsyncExecutor(), BatchExecutor.DEFAULT_MAX_CONCURRENCY)
+    this.imagePullRegistry = new ImagePullRegistry(repositoryTagParser)
+    this.manageImage = new ManageImageClient(engineApiClient, manageAuthentication, batchExecutor, imagePullRegistry)
     this.manageDistribution = new ManageDistributionService(engineApiClient)
-    this.manageContainer = new ManageContainerClient(engineApiClient)
+    this.manageContainer = new ManageContainerClient(engineApiClient, batchExecutor, imagePullRegistry)
     this.manageVolume = new ManageVolumeClient(engineApiClient)
     this.manageNetwork = new ManageNetworkClient(engineApiClient)
     this.manageSwarm = new ManageSwarmClient(engineApiClient)
@@ -130,7 +167,156 @@ class DockerClientImpl implements DockerClient {
         manageSecret,
         manageConfig,
         manageSystem,
-        manageAuthentication)
+        manageAuthentication,
+        batchExecutor)
+    this.manageContainerAsync = new ManageContainerAsyncClient(manageContainer, getAsyncExecutor())
+  }
+
+  /**
+   * Defaults to virtual threads when the runtime supports them.
+   */
+  ExecutorService getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      asyncExecutor = ThreadPools.newVirtualThreadPerTaskExecutor("docker-client-async")
+      ownsAsyncExecutor = true
+    }
+    return asyncExecutor
+  }
+
+  /**
+   * Limits the concurrency of batch operations like {@link ManageContainer#stopAll} for this daemon.
+   */
+  BatchExecutor getBatchExecutor() {
+    return batchExecutor
+  }
+
+  /**
+   * Lets {@link ManageContainer#ps} and {@link ManageContainer#inspectContainer} read from a local container inventory,
+   * which is kept current by following the container events.
+   *
+   * @param resyncInterval the interval of full resyncs, which guard against missed events
+   */
+  ContainerInventory enableContainerInventory(Duration resyncInterval = Duration.ofMinutes(1)) {
+    ManageContainerClient containerClient = (ManageContainerClient) manageContainer
+    if (containerClient.inventory == null) {
+      ContainerInventory inventory = new ContainerInventory(engineApiClient, manageSystem, getAsyncExecutor(), resyncInterval)
+      inventory.start()
+      containerClient.inventory = inventory
+    }
+    return containerClient.inventory
+  }
+
+  void disableContainerInventory() {
+    ManageContainerClient containerClient = (ManageContainerClient) manageContainer
+    containerClient.inventory?.stop()
+    containerClient.inventory = null
+  }
+
+  /**
+   * Lets {@link ManageImage#findImageId} resolve image names and digests via a local index,
+   * which is kept current by following the image events.
+   *
+   * @param resyncInterval the interval of full resyncs, which guard against missed events
+   */
+  ImageIdIndex enableImageIdIndex(Duration resyncInterval = Duration.ofMinutes(1)) {
+    ManageImageClient imageClient = (ManageImageClient) manageImage
+    if (imageClient.imageIdIndex == null) {
+      ImageIdIndex index = new ImageIdIndex(engineApiClient, manageSystem, getAsyncExecutor(), resyncInterval)
+      index.start()
+      imageClient.imageIdIndex = index
+    }
+    return imageClient.imageIdIndex
+  }
+
+  void disableImageIdIndex() {
+    ManageImageClient imageClient = (ManageImageClient) manageImage
+    imageClient.imageIdIndex?.stop()
+    imageClient.imageIdIndex = null
+  }
+
+  /**
+   * Lets builds from a context directory return existing images instead of building unchanged contexts again.
+   *
+   * @param indexFile the local index of context hashes to image ids
+   */
+  BuildCache enableBuildCache(Path indexFile = Paths.get(System.getProperty("user.home"), ".docker-client", "build-cache.properties")) {
+    ManageImageClient imageClient = (ManageImageClient) manageImage
+    imageClient.buildCache = new BuildCache(indexFile)
+    return imageClient.buildCache
+  }
+
+  void disableBuildCache() {
+    ((ManageImageClient) manageImage).buildCache = null
+  }
+
+  /**
+   * Lets {@link ManageImage#inspectImage}, {@link ManageImage#history} and {@link ManageDistribution#descriptor}
+   * answer lookups by image id or digest from a bounded in-memory cache. Lookups by tag are not cached.
+   * Cached inspections and histories are dropped when this client changes tags, e.g. by tag, rmi, pull or push,
+   * but tags changed by other clients aren't noticed.
+   */
+  ContentAddressedCache enableContentAddressedCache(int maxEntries = ContentAddressedCache.DEFAULT_MAX_ENTRIES,
+                                                    long maxSize = ContentAddressedCache.DEFAULT_MAX_SIZE) {
+    ContentAddressedCache cache = new ContentAddressedCache(maxEntries, maxSize)
+    ((ManageImageClient) manageImage).contentAddressedCache = cache
+    ((ManageDistributionService) manageDistribution).contentAddressedCache = cache
+    return cache
+  }
+
+  void disableContentAddressedCache() {
+    ((ManageImageClient) manageImage).contentAddressedCache = null
+    ((ManageDistributionService) manageDistribution).contentAddressedCache = null
+  }
+
+  /**
+   * Follows the logs of many containers, merged into a single stream.
+   * The returned follower has already been started and needs to be closed when done.
+   */
+  MultiContainerLogFollower followLogs(LogFollowOptions options) {
+    MultiContainerLogFollower follower = new MultiContainerLogFollower(manageContainer, manageSystem, getAsyncExecutor(), options)
+    follower.start()
+    return follower
+  }
+
+  /**
+   * Coalesces concurrent pulls of the same image, e.g. when many containers are created from a missing image.
+   */
+  ImagePullRegistry getImagePullRegistry() {
+    return imagePullRegistry
+  }
+
+  /**
+   * Replaces the executor of asynchronous and batch operations.
+   * Only what runs on the executor is moved to the new one: the batch executor, the default async container client,
+   * and the enabled inventory and index, which are restarted with a full resync.
+   * Other managers, the pull registry and the caches are kept.
+   * The previous executor is shut down when it has been created by the client.
+   */
+  void setAsyncExecutor(ExecutorService asyncExecutor) {
+    ExecutorService previous = this.asyncExecutor
+    boolean ownedPrevious = ownsAsyncExecutor
+
+    this.asyncExecutor = asyncExecutor
+    this.ownsAsyncExecutor = false
+
+    batchExecutor?.executor = asyncExecutor
+    if (manageContainerAsync instanceof ManageContainerAsyncClient) {
+      this.manageContainerAsync = new ManageContainerAsyncClient(manageContainer, asyncExecutor)
+    }
+    if (manageContainer instanceof ManageContainerClient && ((ManageContainerClient) manageContainer).inventory != null) {
+      Duration resyncInterval = ((ManageContainerClient) manageContainer).inventory.resyncInterval
+      disableContainerInventory()
+      enableContainerInventory(resyncInterval)
+    }
+    if (manageImage instanceof ManageImageClient && ((ManageImageClient) manageImage).imageIdIndex != null) {
+      Duration resyncInterval = ((ManageImageClient) manageImage).imageIdIndex.resyncInterval
+      disableImageIdIndex()
+      enableImageIdIndex(resyncInterval)
+    }
+
+    if (ownedPrevious && previous != null && !previous.is(asyncExecutor)) {
+      previous.shutdown()
+    }
   }
 
   void setDockerClientConfig(DockerClientConfig dockerClientConfig) {
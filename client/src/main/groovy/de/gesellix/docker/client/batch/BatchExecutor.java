@@ -0,0 +1,235 @@
+package de.gesellix.docker.client.batch;
+
+import de.gesellix.util.ThreadPools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Fans out an action over many keys, e.g. container ids.
+ * <p>
+ * A single instance is meant to be shared by all clients talking to the same daemon,
+ * so that the number of concurrent batch requests is limited per daemon,
+ * no matter how many batch operations are running at the same time.
+ * Failures of single items don't abort the batch, they are collected in the {@link BatchReport}.
+ */
+public class BatchExecutor {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchExecutor.class);
+
+  public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+  private volatile ExecutorService executor;
+  private final AdjustableSemaphore daemonPermits;
+  private int maxConcurrency;
+
+  public BatchExecutor() {
+    this(ThreadPools.newVirtualThreadPerTaskExecutor("docker-batch"), DEFAULT_MAX_CONCURRENCY);
+  }
+
+  public BatchExecutor(ExecutorService executor, int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive, but was " + maxConcurrency);
+    }
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.daemonPermits = new AdjustableSemaphore(maxConcurrency);
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Replaces the executor of subsequent batches. Running batches finish on the previous executor,
+   * and the per-daemon limit keeps counting their requests.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  public synchronized int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Changes the per-daemon limit. Running requests are not affected.
+   */
+  public synchronized void setMaxConcurrency(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive, but was " + maxConcurrency);
+    }
+    int delta = maxConcurrency - this.maxConcurrency;
+    if (delta > 0) {
+      daemonPermits.release(delta);
+    } else if (delta < 0) {
+      daemonPermits.reducePermits(-delta);
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * @see #execute(Collection, int, BatchAction)
+   */
+  public <T> BatchReport<T> execute(Collection<String> keys, BatchAction<T> action) {
+    return execute(keys, Integer.MAX_VALUE, action);
+  }
+
+  /**
+   * Applies the action to every distinct key and blocks until all of them have finished.
+   *
+   * @param maxParallel limits this batch in addition to the per-daemon limit
+   */
+  public <T> BatchReport<T> execute(Collection<String> keys, int maxParallel, BatchAction<T> action) {
+    return execute(keys, maxParallel, key -> null, action);
+  }
+
+  /**
+   * Like {@link #execute(Collection, int, BatchAction)}, but every item acquires a permit of its group first,
+   * e.g. of its registry, so that items waiting for their group don't hold permits of the batch or the daemon.
+   *
+   * @param groupPermits returns the semaphore limiting the key's group, or <code>null</code>
+   */
+  public <T> BatchReport<T> execute(Collection<String> keys, int maxParallel, Function<String, Semaphore> groupPermits, BatchAction<T> action) {
+    Set<String> distinctKeys = new LinkedHashSet<>(keys);
+    Semaphore batchPermits = new Semaphore(Math.max(1, Math.min(maxParallel, distinctKeys.size())));
+
+    List<String> submittedKeys = new ArrayList<>(distinctKeys.size());
+    List<Future<BatchItemResult<T>>> futures = new ArrayList<>(distinctKeys.size());
+    for (String key : distinctKeys) {
+      submittedKeys.add(key);
+      futures.add(executor.submit(() -> executeItem(key, groupPermits.apply(key), batchPermits, action)));
+    }
+
+    List<BatchItemResult<T>> results = new ArrayList<>(futures.size());
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      String key = submittedKeys.get(i);
+      Future<BatchItemResult<T>> future = futures.get(i);
+      if (interrupted) {
+        future.cancel(true);
+        results.add(BatchItemResult.failure(key, new InterruptedException("batch has been interrupted"), Duration.ZERO));
+        continue;
+      }
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        interrupted = true;
+        future.cancel(true);
+        results.add(BatchItemResult.failure(key, e, Duration.ZERO));
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        results.add(BatchItemResult.failure(key, cause instanceof Exception ? (Exception) cause : e, Duration.ZERO));
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    return report(results);
+  }
+
+  private static <T> BatchReport<T> report(List<BatchItemResult<T>> results) {
+    BatchReport<T> report = new BatchReport<>(results);
+    if (!report.isSuccessful()) {
+      log.warn("{} of {} batch items failed", report.getFailed().size(), results.size());
+    }
+    return report;
+  }
+
+  /**
+   * Non-blocking variant of {@link #execute(Collection, int, BatchAction)}.
+   */
+  public <T> CompletableFuture<BatchReport<T>> submit(Collection<String> keys, int maxParallel, BatchAction<T> action) {
+    Set<String> distinctKeys = new LinkedHashSet<>(keys);
+    Semaphore batchPermits = new Semaphore(Math.max(1, Math.min(maxParallel, distinctKeys.size())));
+
+    // the items are composed without a coordinating task, which would occupy a thread of a bounded executor
+    List<CompletableFuture<BatchItemResult<T>>> futures = new ArrayList<>(distinctKeys.size());
+    for (String key : distinctKeys) {
+      CompletableFuture<BatchItemResult<T>> item;
+      try {
+        item = CompletableFuture.supplyAsync(() -> {
+          try {
+            return executeItem(key, null, batchPermits, action);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return BatchItemResult.failure(key, e, Duration.ZERO);
+          }
+        }, executor);
+      } catch (RejectedExecutionException e) {
+        item = CompletableFuture.completedFuture(BatchItemResult.failure(key, e, Duration.ZERO));
+      }
+      futures.add(item.exceptionally(e -> {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return BatchItemResult.failure(key, cause instanceof Exception ? (Exception) cause : new CompletionException(cause), Duration.ZERO);
+      }));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+      List<BatchItemResult<T>> results = new ArrayList<>(futures.size());
+      for (CompletableFuture<BatchItemResult<T>> future : futures) {
+        results.add(future.join());
+      }
+      return report(results);
+    });
+  }
+
+  private <T> BatchItemResult<T> executeItem(String key, Semaphore groupPermits, Semaphore batchPermits, BatchAction<T> action) throws InterruptedException {
+    if (groupPermits != null) {
+      groupPermits.acquire();
+    }
+    try {
+      return executeItem(key, batchPermits, action);
+    } finally {
+      if (groupPermits != null) {
+        groupPermits.release();
+      }
+    }
+  }
+
+  private <T> BatchItemResult<T> executeItem(String key, Semaphore batchPermits, BatchAction<T> action) throws InterruptedException {
+    batchPermits.acquire();
+    try {
+      daemonPermits.acquire();
+      long start = System.nanoTime();
+      try {
+        T result = action.apply(key);
+        return BatchItemResult.success(key, result, Duration.ofNanos(System.nanoTime() - start));
+      } catch (Exception e) {
+        log.debug("batch item '{}' failed", key, e);
+        return BatchItemResult.failure(key, e, Duration.ofNanos(System.nanoTime() - start));
+      } finally {
+        daemonPermits.release();
+      }
+    } finally {
+      batchPermits.release();
+    }
+  }
+
+  static class AdjustableSemaphore extends Semaphore {
+
+    AdjustableSemaphore(int permits) {
+      super(permits, true);
+    }
+
+    @Override
+    protected void reducePermits(int reduction) {
+      super.reducePermits(reduction);
+    }
+  }
+}
@@ -1,8 +1,8 @@
 package de.gesellix.docker.client.container;
 
 import okio.BufferedSink;
-import okio.BufferedSource;
 import okio.Okio;
+import okio.Source;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.slf4j.Logger;
@@ -10,8 +10,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.concurrent.Callable;
 
 public class ArchiveUtil {
@@ -31,10 +41,104 @@ public class ArchiveUtil {
 
   /**
    * Closes the tarContent InputStream and the target OutputStream when done.
+   *
+   * @return the number of bytes written to the target
    */
   public long copySingleTarEntry(InputStream tarContent, String filename, OutputStream target) {
     TarArchiveInputStream stream = new TarArchiveInputStream(new BufferedInputStream(tarContent));
+    TarArchiveEntry entry = nextSingleEntry(stream, filename);
 
+    try (BufferedSink sink = Okio.buffer(Okio.sink(target));
+         Source source = Okio.source(stream)) {
+      long written = sink.writeAll(source);
+      sink.flush();
+      return written;
+    } catch (Exception e) {
+      throw new RuntimeException("failed to write TarArchiveEntry to target OutputStream", e);
+    }
+  }
+
+  /**
+   * Transfers the entry content directly into the target file, without buffering it in memory.
+   * An existing target file will be overwritten.
+   * Closes the tarContent InputStream when done.
+   *
+   * @return the number of bytes written to the target
+   */
+  public long copySingleTarEntry(InputStream tarContent, String filename, Path target) {
+    try (TarArchiveInputStream stream = new TarArchiveInputStream(new BufferedInputStream(tarContent))) {
+      TarArchiveEntry entry = nextSingleEntry(stream, filename);
+      return transferEntry(stream, entry, target);
+    } catch (IOException e) {
+      throw new RuntimeException("failed to write TarArchiveEntry to target file " + target, e);
+    }
+  }
+
+  /**
+   * Extracts all entries of the tar archive below the target directory.
+   * Regular files are transferred directly into their target files, so that no entry is buffered in memory.
+   * Entries pointing outside the target directory are rejected.
+   * Closes the tarContent InputStream when done.
+   *
+   * @return the number of bytes written to regular files
+   */
+  public long extractTarEntries(InputStream tarContent, Path targetDirectory) {
+    Path root = targetDirectory.toAbsolutePath().normalize();
+    long bytesWritten = 0;
+    int entryCount = 0;
+    try (TarArchiveInputStream stream = new TarArchiveInputStream(new BufferedInputStream(tarContent))) {
+      Files.createDirectories(root);
+      Path realRoot = root.toRealPath();
+      TarArchiveEntry entry;
+      while ((entry = stream.getNextEntry()) != null) {
+        Path target = resolveEntry(root, entry.getName());
+        if (entry.isDirectory()) {
+          ensureInside(realRoot, target, entry.getName());
+          Files.createDirectories(target);
+        } else if (entry.isSymbolicLink()) {
+          createParentDirectories(realRoot, target, entry.getName());
+          // relative links are resolved like the filesystem does, from the real path of their parent
+          Path link = Paths.get(entry.getLinkName());
+          Path linkTarget = link.isAbsolute() ? link.normalize() : target.getParent().toRealPath().resolve(link).normalize();
+          if (!linkTarget.startsWith(realRoot) && !(link.isAbsolute() && linkTarget.startsWith(root))) {
+            throw new IllegalArgumentException("tar entry '" + entry.getName() + "' links outside of " + root + ": '" + entry.getLinkName() + "'");
+          }
+          Files.deleteIfExists(target);
+          Files.createSymbolicLink(target, link);
+        } else if (entry.isLink()) {
+          Path source = resolveEntry(root, entry.getLinkName());
+          ensureInside(realRoot, source, entry.getLinkName());
+          createParentDirectories(realRoot, target, entry.getName());
+          Files.deleteIfExists(target);
+          Files.createLink(target, source);
+        } else if (entry.isFile()) {
+          createParentDirectories(realRoot, target, entry.getName());
+          if (Files.isSymbolicLink(target)) {
+            // replace the link instead of writing through it
+            Files.delete(target);
+          }
+          bytesWritten += transferEntry(stream, entry, target);
+        } else {
+          log.debug("skipping entry '{}' of unsupported type", entry.getName());
+          continue;
+        }
+        entryCount++;
+        if (!entry.isSymbolicLink()) {
+          final FileTime modTime = FileTime.fromMillis(entry.getModTime().getTime());
+          silently(() -> {
+            Files.setLastModifiedTime(target, modTime);
+            return null;
+          });
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("failed to extract tar entries to " + targetDirectory, e);
+    }
+    log.debug("extracted {} entries ({} bytes) to {}", entryCount, bytesWritten, root);
+    return bytesWritten;
+  }
+
+  private TarArchiveEntry nextSingleEntry(TarArchiveInputStream stream, String filename) {
     final TarArchiveEntry entry;
     try {
       entry = stream.getNextEntry();
@@ -49,20 +153,53 @@ public class ArchiveUtil {
     } else {
       log.debug("entry name: '{}'", entryName);
     }
+    return entry;
+  }
 
-    final byte[] content = new byte[(int) entry.getSize()];
-    log.debug("going to read {} bytes", content.length);
-
-    try {
-      try (BufferedSink sink = Okio.buffer(Okio.sink(target));
-           BufferedSource source = Okio.buffer(Okio.source(stream))) {
-        long read = source.readAll(sink);
-        sink.flush();
-//        return read;
+  private long transferEntry(TarArchiveInputStream stream, TarArchiveEntry entry, Path target) throws IOException {
+    // the channel must not be closed, because it would close the tar stream, too
+    ReadableByteChannel source = Channels.newChannel(stream);
+    try (FileChannel channel = FileChannel.open(target,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, LinkOption.NOFOLLOW_LINKS)) {
+      long size = entry.getSize();
+      long position = 0;
+      while (position < size) {
+        long transferred = channel.transferFrom(source, position, size - position);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
       }
-      return entry.getSize();
-    } catch (Exception e) {
-      throw new RuntimeException("failed to write TarArchiveEntry to target OutputStream", e);
+      if (position < size) {
+        throw new IOException("unexpected end of tar entry '" + entry.getName() + "' after " + position + " of " + size + " bytes");
+      }
+      return position;
+    }
+  }
+
+  private Path resolveEntry(Path root, String entryName) {
+    Path resolved = root.resolve(entryName).normalize();
+    if (!resolved.startsWith(root)) {
+      throw new IllegalArgumentException("tar entry '" + entryName + "' points outside of " + root);
+    }
+    return resolved;
+  }
+
+  private void createParentDirectories(Path realRoot, Path target, String entryName) throws IOException {
+    ensureInside(realRoot, target.getParent(), entryName);
+    Files.createDirectories(target.getParent());
+  }
+
+  /**
+   * Rejects paths whose existing part resolves outside of the root, e.g. via symbolic links extracted by previous entries.
+   */
+  private void ensureInside(Path realRoot, Path path, String entryName) throws IOException {
+    Path existing = path;
+    while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+      existing = existing.getParent();
+    }
+    if (existing == null || !existing.toRealPath().startsWith(realRoot)) {
+      throw new IllegalArgumentException("tar entry '" + entryName + "' points outside of " + realRoot);
     }
   }
 
@@ -0,0 +1,305 @@
+package de.gesellix.docker.client.container
+
+import com.squareup.moshi.Moshi
+import de.gesellix.docker.client.system.EventFollower
+import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.remote.api.ContainerInspectResponse
+import de.gesellix.docker.remote.api.ContainerSummary
+import de.gesellix.docker.remote.api.EngineApiClient
+import de.gesellix.docker.remote.api.EventMessage
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An opt-in, in-memory inventory of all containers of a daemon.
+ * <p>
+ * The inventory is seeded with a single container list and kept current by following the container events,
+ * and the network events which connect or disconnect a container.
+ * Every event only refreshes the affected container, and cached inspect results are dropped when their container changes.
+ * A full resync runs whenever the events stream ends, which happens at least once per resync interval.
+ * It guards against missed events, e.g. during reconnects.
+ * Following the events is delegated to an {@link EventFollower}, so that refreshes in flight don't refill a stopped inventory.
+ * <p>
+ * Cached summaries keep their human-readable <code>Status</code> (like <code>Up 5 minutes</code>)
+ * until the next event or resync of the container.
+ */
+class ContainerInventory {
+
+  private final Logger log = LoggerFactory.getLogger(ContainerInventory)
+
+  // events which don't change a container's summary or inspect result
+  static final Set<String> IGNORED_ACTIONS = ["attach", "detach", "archive-path", "extract-to-dir", "export", "resize", "top", "copy"] as Set
+  // network events which change a container's network settings
+  static final Set<String> NETWORK_ACTIONS = ["connect", "disconnect"] as Set
+
+  private final EngineApiClient client
+  private final ExecutorService executor
+  private final EventFollower<List<ContainerSummary>> follower
+  private final Moshi moshi = new Moshi.Builder().build()
+
+  private final Map<String, ContainerSummary> summaries = new ConcurrentHashMap<>()
+  private final Map<String, ContainerInspectResponse> inspections = new ConcurrentHashMap<>()
+  private final Map<String, Long> versions = new ConcurrentHashMap<>()
+  private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet()
+
+  private volatile Instant lastUpdate = null
+
+  private final AtomicLong hits = new AtomicLong()
+  private final AtomicLong misses = new AtomicLong()
+  private final AtomicLong events = new AtomicLong()
+  private final AtomicLong resyncs = new AtomicLong()
+  private final AtomicLong staleEntries = new AtomicLong()
+
+  ContainerInventory(EngineApiClient client, ManageSystem manageSystem, ExecutorService executor, Duration resyncInterval = Duration.ofMinutes(1)) {
+    this.client = client
+    this.executor = executor
+    this.follower = new EventFollower<List<ContainerSummary>>("container inventory", manageSystem, executor, resyncInterval, ["container", "network"],
+        new EventFollower.View<List<ContainerSummary>>() {
+
+          @Override
+          List<ContainerSummary> load() {
+            return listContainers()
+          }
+
+          @Override
+          void replace(List<ContainerSummary> containers, boolean wasSynced) {
+            replaceContainers(containers, wasSynced)
+          }
+
+          @Override
+          void apply(EventMessage event) {
+            onEvent(event)
+          }
+
+          @Override
+          void clear() {
+            clearContainers()
+          }
+        })
+  }
+
+  /**
+   * Seeds the inventory and starts following the container events in the background.
+   * When seeding fails, the inventory isn't started and the failure is rethrown.
+   */
+  void start() {
+    follower.start()
+  }
+
+  void stop() {
+    follower.stop()
+  }
+
+  boolean isRunning() {
+    return follower.running
+  }
+
+  Duration getResyncInterval() {
+    return follower.resyncInterval
+  }
+
+  /**
+   * @param all <code>false</code> to only return running containers, like <code>docker ps</code>
+   * @return the cached summaries, ordered by creation time (newest first),
+   * or <code>null</code> when the inventory isn't synced
+   */
+  List<ContainerSummary> list(boolean all) {
+    if (!follower.synced) {
+      misses.incrementAndGet()
+      return null
+    }
+    hits.incrementAndGet()
+    List<ContainerSummary> result = new ArrayList<>(summaries.values())
+    if (!all) {
+      result.removeIf { it.state != "running" }
+    }
+    result.sort { a, b -> (b.created ?: 0L) <=> (a.created ?: 0L) }
+    return result
+  }
+
+  /**
+   * Returns a cached inspect result, or inspects the container and caches the result until the container changes.
+   *
+   * @param container the container's id, name, or a unique id prefix
+   */
+  ContainerInspectResponse inspect(String container) {
+    String id = follower.synced ? resolve(container) : null
+    if (id != null) {
+      ContainerInspectResponse cached = inspections.get(id)
+      if (cached != null) {
+        hits.incrementAndGet()
+        return cached
+      }
+    }
+    misses.incrementAndGet()
+    long version = id == null ? 0 : versions.getOrDefault(id, 0L)
+    ContainerInspectResponse response = client.containerApi.containerInspect(container, null)
+    if (id != null && response != null) {
+      versions.compute(id) { String key, Long current ->
+        // don't cache a result which has been invalidated while we were inspecting the container
+        if ((current ?: 0L) == version && summaries.containsKey(id)) {
+          inspections.put(id, response)
+        }
+        return current
+      }
+    }
+    return response
+  }
+
+  long getHits() {
+    return hits.get()
+  }
+
+  long getMisses() {
+    return misses.get()
+  }
+
+  /**
+   * @return the number of container events applied to the inventory
+   */
+  long getEvents() {
+    return events.get()
+  }
+
+  long getResyncs() {
+    return resyncs.get()
+  }
+
+  /**
+   * @return the number of entries which were found outdated by a full resync, i.e. the effect of missed events
+   */
+  long getStaleEntries() {
+    return staleEntries.get()
+  }
+
+  /**
+   * @return the time since the last applied event or resync
+   */
+  Duration getStaleness() {
+    Instant last = lastUpdate
+    return last == null ? null : Duration.between(last, Instant.now())
+  }
+
+  int size() {
+    return summaries.size()
+  }
+
+  void resync() {
+    follower.resync()
+  }
+
+  void onEvent(EventMessage event) {
+    String action = event.action ?: ""
+    String id
+    if (event.type == EventMessage.Type.Network) {
+      // network events are emitted for the network, the affected container is one of their attributes
+      id = NETWORK_ACTIONS.contains(action) ? event.actor?.attributes?.get("container") : null
+    } else {
+      id = event.actor?.ID
+    }
+    if (!id || action.startsWith("exec_") || IGNORED_ACTIONS.contains(action)) {
+      return
+    }
+    events.incrementAndGet()
+    lastUpdate = Instant.now()
+    invalidate(id)
+    if (action == "destroy") {
+      remove(id)
+    } else if (pendingRefreshes.add(id)) {
+      long generation = follower.generation
+      // refresh asynchronously, so that the events stream isn't blocked by engine requests
+      executor.execute {
+        pendingRefreshes.remove(id)
+        refresh(id, generation)
+      }
+    }
+  }
+
+  void refresh(String id) {
+    refresh(id, follower.generation)
+  }
+
+  private void refresh(String id, long generation) {
+    try {
+      String filters = moshi.adapter(Map).toJson([id: [id]])
+      List<ContainerSummary> containers = client.containerApi.containerList(true, null, false, filters)
+      ContainerSummary container = containers?.find { it.id == id }
+      follower.publish(generation) {
+        if (container == null) {
+          remove(id)
+        } else {
+          summaries.put(id, container)
+        }
+      }
+    } catch (Exception e) {
+      log.warn("failed to refresh container ${id}, waiting for the next resync", e)
+    }
+  }
+
+  private List<ContainerSummary> listContainers() {
+    return client.containerApi.containerList(true, null, false, null)
+  }
+
+  private void replaceContainers(List<ContainerSummary> containers, boolean synced) {
+    Set<String> seen = new HashSet<>()
+    long stale = 0
+    containers.each { ContainerSummary container ->
+      seen.add(container.id)
+      ContainerSummary previous = summaries.put(container.id, container)
+      if (synced && (previous == null || previous.state != container.state || previous.imageID != container.imageID || previous.names != container.names
+          || previous.networkSettings != container.networkSettings)) {
+        stale++
+        invalidate(container.id)
+      }
+    }
+    new HashSet<>(summaries.keySet()).each { String id ->
+      if (!seen.contains(id)) {
+        if (synced) {
+          stale++
+        }
+        remove(id)
+      }
+    }
+    if (stale > 0) {
+      log.info("container inventory resync found ${stale} outdated entries")
+      staleEntries.addAndGet(stale)
+    }
+    lastUpdate = Instant.now()
+    resyncs.incrementAndGet()
+  }
+
+  private void clearContainers() {
+    summaries.clear()
+    inspections.clear()
+  }
+
+  private String resolve(String container) {
+    if (summaries.containsKey(container)) {
+      return container
+    }
+    String name = container.startsWith("/") ? container : "/${container}"
+    ContainerSummary byName = summaries.values().find { it.names?.contains(name) }
+    if (byName) {
+      return byName.id
+    }
+    List<String> byPrefix = summaries.keySet().findAll { it.startsWith(container) }
+    return byPrefix.size() == 1 ? byPrefix.first() : null
+  }
+
+  private void invalidate(String id) {
+    versions.merge(id, 1L) { Long a, Long b -> a + b }
+    inspections.remove(id)
+  }
+
+  private void remove(String id) {
+    summaries.remove(id)
+    inspections.remove(id)
+    versions.remove(id)
+  }
+}
@@ -0,0 +1,154 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.remote.api.core.StreamCallback;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Aggregates stats samples of many containers over a rolling window.
+ * <p>
+ * Every container gets a fixed-size ring buffer of primitive values per {@link ContainerStatsMetric},
+ * so that no sample objects are retained. The engine streams one sample per second and container,
+ * i.e. the window size equals the window duration in seconds.
+ * <p>
+ * Rates are derived from the counter deltas of consecutive samples,
+ * which is why the first sample of every container only serves as baseline.
+ */
+public class ContainerStatsAggregator {
+
+  private static final ContainerStatsMetric[] METRICS = ContainerStatsMetric.values();
+
+  private final int windowSize;
+  private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+  public ContainerStatsAggregator(int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("windowSize must be positive, but was " + windowSize);
+    }
+    this.windowSize = windowSize;
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public Set<String> getContainers() {
+    return windows.keySet();
+  }
+
+  /**
+   * Records the sample's values. The sample isn't retained, so it may be reused by the caller.
+   */
+  public void accept(String container, ContainerStatsSample sample) {
+    windows.computeIfAbsent(container, c -> new Window(windowSize)).accept(sample);
+  }
+
+  /**
+   * @return a callback to be passed to {@link ManageContainer#stats(String, StreamCallback, java.time.Duration)}
+   */
+  public StreamCallback<ContainerStatsSample> callback(String container) {
+    return new StreamCallback<ContainerStatsSample>() {
+      @Override
+      public void onNext(ContainerStatsSample element) {
+        accept(container, element);
+      }
+    };
+  }
+
+  /**
+   * @return the current summary, or <code>null</code> when no samples of the container have been recorded
+   */
+  public ContainerStatsSummary getSummary(String container) {
+    Window window = windows.get(container);
+    return window == null ? null : window.summarize(container);
+  }
+
+  public void remove(String container) {
+    windows.remove(container);
+  }
+
+  static class Window {
+
+    private final int capacity;
+    // one ring per metric, laid out consecutively
+    private final double[] values;
+    private int head = 0;
+    private int count = 0;
+
+    private boolean hasBaseline = false;
+    private long lastReadMillis;
+    private long lastNetworkRxBytes;
+    private long lastNetworkTxBytes;
+    private long lastBlockReadBytes;
+    private long lastBlockWriteBytes;
+
+    Window(int capacity) {
+      this.capacity = capacity;
+      this.values = new double[capacity * METRICS.length];
+    }
+
+    synchronized void accept(ContainerStatsSample sample) {
+      if (hasBaseline) {
+        double seconds = (sample.getReadMillis() - lastReadMillis) / 1000.0;
+        if (seconds > 0) {
+          set(ContainerStatsMetric.CPU_PERCENT, sample.getCpuPercent());
+          set(ContainerStatsMetric.MEMORY_USAGE, sample.getMemoryUsageWithoutCache());
+          set(ContainerStatsMetric.MEMORY_PERCENT, sample.getMemoryPercent());
+          set(ContainerStatsMetric.NETWORK_RX_RATE, rate(lastNetworkRxBytes, sample.getNetworkRxBytes(), seconds));
+          set(ContainerStatsMetric.NETWORK_TX_RATE, rate(lastNetworkTxBytes, sample.getNetworkTxBytes(), seconds));
+          set(ContainerStatsMetric.BLOCK_READ_RATE, rate(lastBlockReadBytes, sample.getBlockReadBytes(), seconds));
+          set(ContainerStatsMetric.BLOCK_WRITE_RATE, rate(lastBlockWriteBytes, sample.getBlockWriteBytes(), seconds));
+          head = (head + 1) % capacity;
+          count = Math.min(count + 1, capacity);
+        }
+      }
+      hasBaseline = true;
+      lastReadMillis = sample.getReadMillis();
+      lastNetworkRxBytes = sample.getNetworkRxBytes();
+      lastNetworkTxBytes = sample.getNetworkTxBytes();
+      lastBlockReadBytes = sample.getBlockReadBytes();
+      lastBlockWriteBytes = sample.getBlockWriteBytes();
+    }
+
+    synchronized ContainerStatsSummary summarize(String container) {
+      double[] current = new double[METRICS.length];
+      double[] p50 = new double[METRICS.length];
+      double[] p95 = new double[METRICS.length];
+      double[] max = new double[METRICS.length];
+      if (count > 0) {
+        double[] sorted = new double[count];
+        int latest = (head - 1 + capacity) % capacity;
+        for (ContainerStatsMetric metric : METRICS) {
+          int offset = metric.ordinal() * capacity;
+          // the ring is filled from index 0, so the first `count` slots are the recorded ones
+          System.arraycopy(values, offset, sorted, 0, count);
+          Arrays.sort(sorted);
+          int m = metric.ordinal();
+          current[m] = values[offset + latest];
+          p50[m] = percentile(sorted, 0.50);
+          p95[m] = percentile(sorted, 0.95);
+          max[m] = sorted[count - 1];
+        }
+      }
+      return new ContainerStatsSummary(container, count, lastReadMillis, current, p50, p95, max);
+    }
+
+    private void set(ContainerStatsMetric metric, double value) {
+      values[metric.ordinal() * capacity + head] = value;
+    }
+
+    private static double rate(long previous, long current, double seconds) {
+      // counters are reset when a container restarts
+      return current < previous ? 0.0 : (current - previous) / seconds;
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+      // nearest rank
+      int rank = (int) Math.ceil(percentile * sorted.length);
+      return sorted[Math.max(0, rank - 1)];
+    }
+  }
+}
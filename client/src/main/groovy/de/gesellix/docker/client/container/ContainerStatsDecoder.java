@@ -0,0 +1,150 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.remote.api.core.Cancellable;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the relevant values of a decoded <code>docker stats</code> sample into a {@link ContainerStatsSample}.
+ * <p>
+ * The engine API client decodes every element of the stats stream into generic maps before the callback receives it,
+ * so this decoder doesn't reduce the decoding cost, it only avoids keeping the maps.
+ * <p>
+ * Both cgroup v1 and v2 memory stats are supported. Network and block IO counters
+ * are summed up over all interfaces and devices.
+ */
+public class ContainerStatsDecoder {
+
+  private static final Logger log = LoggerFactory.getLogger(ContainerStatsDecoder.class);
+
+  /**
+   * Overwrites all values of the target sample.
+   *
+   * @return <code>false</code> when the element isn't a stats object
+   */
+  public boolean decode(Object element, ContainerStatsSample target) {
+    if (!(element instanceof Map)) {
+      return false;
+    }
+    Map<?, ?> stats = (Map<?, ?>) element;
+    target.reset();
+
+    target.readMillis = parseMillis(stats.get("read"));
+
+    Map<?, ?> cpuStats = map(stats.get("cpu_stats"));
+    target.cpuTotalUsage = longValue(map(cpuStats.get("cpu_usage")).get("total_usage"));
+    target.systemCpuUsage = longValue(cpuStats.get("system_cpu_usage"));
+    target.onlineCpus = (int) longValue(cpuStats.get("online_cpus"));
+    if (target.onlineCpus == 0) {
+      Object perCpuUsage = map(cpuStats.get("cpu_usage")).get("percpu_usage");
+      target.onlineCpus = perCpuUsage instanceof List ? ((List<?>) perCpuUsage).size() : 0;
+    }
+    Map<?, ?> preCpuStats = map(stats.get("precpu_stats"));
+    target.preCpuTotalUsage = longValue(map(preCpuStats.get("cpu_usage")).get("total_usage"));
+    target.preSystemCpuUsage = longValue(preCpuStats.get("system_cpu_usage"));
+
+    Map<?, ?> memoryStats = map(stats.get("memory_stats"));
+    target.memoryUsage = longValue(memoryStats.get("usage"));
+    target.memoryLimit = longValue(memoryStats.get("limit"));
+    Map<?, ?> memoryDetails = map(memoryStats.get("stats"));
+    if (memoryDetails.containsKey("inactive_file")) {
+      // cgroup v2
+      target.memoryCache = longValue(memoryDetails.get("inactive_file"));
+    } else {
+      // cgroup v1
+      target.memoryCache = longValue(memoryDetails.get("total_inactive_file"));
+    }
+
+    for (Object network : map(stats.get("networks")).values()) {
+      Map<?, ?> networkStats = map(network);
+      target.networkRxBytes += longValue(networkStats.get("rx_bytes"));
+      target.networkTxBytes += longValue(networkStats.get("tx_bytes"));
+    }
+
+    Object serviceBytes = map(stats.get("blkio_stats")).get("io_service_bytes_recursive");
+    if (serviceBytes instanceof List) {
+      for (Object entry : (List<?>) serviceBytes) {
+        Map<?, ?> device = map(entry);
+        Object op = device.get("op");
+        if ("read".equalsIgnoreCase(String.valueOf(op))) {
+          target.blockReadBytes += longValue(device.get("value"));
+        } else if ("write".equalsIgnoreCase(String.valueOf(op))) {
+          target.blockWriteBytes += longValue(device.get("value"));
+        }
+      }
+    }
+
+    target.pids = longValue(map(stats.get("pids_stats")).get("current"));
+    return true;
+  }
+
+  /**
+   * Wraps the callback, so that it can be passed to the untyped stats stream.
+   * The returned callback decodes every element into one and the same {@link ContainerStatsSample}.
+   */
+  public StreamCallback<Object> decoding(StreamCallback<ContainerStatsSample> callback) {
+    return new DecodingStreamCallback(this, callback);
+  }
+
+  private static long parseMillis(Object value) {
+    if (value instanceof String && !((String) value).isEmpty()) {
+      try {
+        return Instant.parse((String) value).toEpochMilli();
+      } catch (DateTimeParseException e) {
+        log.debug("cannot parse stats timestamp '{}'", value);
+      }
+    }
+    return System.currentTimeMillis();
+  }
+
+  private static Map<?, ?> map(Object value) {
+    return value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+  }
+
+  private static long longValue(Object value) {
+    return value instanceof Number ? ((Number) value).longValue() : 0L;
+  }
+
+  static class DecodingStreamCallback implements StreamCallback<Object> {
+
+    private final ContainerStatsDecoder decoder;
+    private final StreamCallback<ContainerStatsSample> delegate;
+    private final ContainerStatsSample sample = new ContainerStatsSample();
+
+    DecodingStreamCallback(ContainerStatsDecoder decoder, StreamCallback<ContainerStatsSample> delegate) {
+      this.decoder = decoder;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void onStarting(Cancellable cancellable) {
+      delegate.onStarting(cancellable);
+    }
+
+    @Override
+    public void onNext(Object element) {
+      if (decoder.decode(element, sample)) {
+        delegate.onNext(sample);
+      } else {
+        log.debug("ignoring unexpected stats element {}", element);
+      }
+    }
+
+    @Override
+    public void onFailed(Exception e) {
+      delegate.onFailed(e);
+    }
+
+    @Override
+    public void onFinished() {
+      delegate.onFinished();
+    }
+  }
+}
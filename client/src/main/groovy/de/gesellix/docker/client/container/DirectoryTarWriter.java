@@ -0,0 +1,193 @@
+package de.gesellix.docker.client.container;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the contents of a directory as tar archive, one file at a time,
+ * so that the memory usage doesn't depend on the size of the directory tree.
+ * File modes and modification times are preserved, symbolic links are archived as links.
+ */
+public class DirectoryTarWriter {
+
+  private static final Logger log = LoggerFactory.getLogger(DirectoryTarWriter.class);
+
+  /**
+   * Decides which files and directories are archived.
+   */
+  public interface EntryFilter {
+
+    /**
+     * @param relativeDirectory the directory, relative to the archived directory
+     * @return <code>false</code> to skip the directory and all of its contents
+     */
+    boolean descend(Path relativeDirectory);
+
+    /**
+     * @param relativePath the file or directory, relative to the archived directory
+     * @param directory whether the path denotes a directory, which has already been descended into
+     * @return whether an entry should be archived
+     */
+    boolean include(Path relativePath, boolean directory);
+  }
+
+  /**
+   * Closes the target when done. On failure, the target is left open,
+   * so that the caller can abort the consumer instead of passing on a truncated archive.
+   *
+   * @return the number of archived files
+   */
+  public long write(Path directory, OutputStream target, PutDirectoryOptions options) throws IOException {
+    FileSystem fileSystem = directory.getFileSystem();
+    List<PathMatcher> includes = matchers(fileSystem, options.getIncludes());
+    List<PathMatcher> excludes = matchers(fileSystem, options.getExcludes());
+    EntryFilter filter = new EntryFilter() {
+      @Override
+      public boolean descend(Path relativeDirectory) {
+        return !matchesAny(excludes, relativeDirectory);
+      }
+
+      @Override
+      public boolean include(Path relativePath, boolean directory) {
+        if (directory) {
+          // with includes, parent directories are created implicitly by the engine
+          return includes.isEmpty();
+        }
+        return !matchesAny(excludes, relativePath) && (includes.isEmpty() || matchesAny(includes, relativePath));
+      }
+    };
+    OutputStream output = options.isGzip() ? new GZIPOutputStream(target, 64 * 1024) : target;
+    return write(directory, output, filter);
+  }
+
+  /**
+   * Writes the tar archive to the target, which may already be a compressing stream.
+   * Closes the target when done, and leaves it open on failure.
+   *
+   * @return the number of archived files
+   */
+  public long write(Path directory, OutputStream target, EntryFilter filter) throws IOException {
+    Path root = directory.toAbsolutePath().normalize();
+    if (!Files.isDirectory(root)) {
+      throw new IllegalArgumentException("not a directory: " + directory);
+    }
+
+    TarArchiveOutputStream tar = new TarArchiveOutputStream(target);
+    tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+    tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+    long[] fileCount = {0};
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (dir.equals(root)) {
+          return FileVisitResult.CONTINUE;
+        }
+        Path relative = root.relativize(dir);
+        if (!filter.descend(relative)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        if (filter.include(relative, true)) {
+          TarArchiveEntry entry = new TarArchiveEntry(entryName(relative) + "/");
+          applyAttributes(entry, dir, attrs, TarArchiveEntry.DEFAULT_DIR_MODE);
+          tar.putArchiveEntry(entry);
+          tar.closeArchiveEntry();
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path relative = root.relativize(file);
+        if (!filter.include(relative, false)) {
+          return FileVisitResult.CONTINUE;
+        }
+        if (attrs.isSymbolicLink()) {
+          TarArchiveEntry entry = new TarArchiveEntry(entryName(relative), TarConstants.LF_SYMLINK);
+          entry.setLinkName(Files.readSymbolicLink(file).toString());
+          applyAttributes(entry, file, attrs, 0777);
+          tar.putArchiveEntry(entry);
+          tar.closeArchiveEntry();
+        } else if (attrs.isRegularFile()) {
+          TarArchiveEntry entry = new TarArchiveEntry(entryName(relative));
+          entry.setSize(attrs.size());
+          applyAttributes(entry, file, attrs, TarArchiveEntry.DEFAULT_FILE_MODE);
+          tar.putArchiveEntry(entry);
+          Files.copy(file, tar);
+          tar.closeArchiveEntry();
+        } else {
+          log.debug("skipping '{}', which is neither a regular file nor a symbolic link", file);
+          return FileVisitResult.CONTINUE;
+        }
+        fileCount[0]++;
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    tar.finish();
+    tar.close();
+    return fileCount[0];
+  }
+
+  private static List<PathMatcher> matchers(FileSystem fileSystem, List<String> globs) {
+    List<PathMatcher> matchers = new ArrayList<>();
+    if (globs != null) {
+      for (String glob : globs) {
+        matchers.add(fileSystem.getPathMatcher("glob:" + glob));
+      }
+    }
+    return matchers;
+  }
+
+  private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(relative)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String entryName(Path relative) {
+    return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+  }
+
+  private static void applyAttributes(TarArchiveEntry entry, Path path, BasicFileAttributes attrs, int defaultMode) {
+    entry.setModTime(attrs.lastModifiedTime());
+    int mode = defaultMode;
+    try {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+      mode = toMode(permissions);
+    } catch (UnsupportedOperationException | IOException e) {
+      // e.g. on Windows
+    }
+    // keep the file type bits of the entry
+    entry.setMode((entry.getMode() & ~07777) | mode);
+  }
+
+  static int toMode(Set<PosixFilePermission> permissions) {
+    int mode = 0;
+    for (PosixFilePermission permission : permissions) {
+      // OWNER_READ is the first constant and maps to the most significant bit
+      mode |= 1 << (8 - permission.ordinal());
+    }
+    return mode;
+  }
+}
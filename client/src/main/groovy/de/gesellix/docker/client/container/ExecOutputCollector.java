@@ -0,0 +1,75 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.remote.api.core.Frame;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import de.gesellix.util.ByteArrayPool;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Collects the stdout and stderr frames of an exec into size-capped buffers of a shared pool.
+ * Output beyond the cap is only counted. Call {@link #release()} when done, to return the buffers to the pool.
+ */
+public class ExecOutputCollector implements StreamCallback<Frame> {
+
+  private final ByteArrayPool pool;
+  private final CappedBuffer stdout = new CappedBuffer();
+  private final CappedBuffer stderr = new CappedBuffer();
+
+  public ExecOutputCollector(ByteArrayPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public synchronized void onNext(Frame frame) {
+    byte[] payload = frame.getPayload();
+    if (payload == null || payload.length == 0) {
+      return;
+    }
+    // RAW frames are sent for TTY execs, they combine stdout and stderr
+    CappedBuffer target = frame.getStreamType() == Frame.StreamType.STDERR ? stderr : stdout;
+    target.append(payload);
+  }
+
+  public synchronized ExecOutput toExecOutput(String container, String execId, Integer exitCode, Duration duration) {
+    return new ExecOutput(container, execId, exitCode,
+        stdout.toByteArray(), stdout.dropped,
+        stderr.toByteArray(), stderr.dropped,
+        duration);
+  }
+
+  public synchronized void release() {
+    stdout.release();
+    stderr.release();
+  }
+
+  class CappedBuffer {
+
+    private byte[] buffer;
+    private int size = 0;
+    private long dropped = 0;
+
+    void append(byte[] payload) {
+      if (buffer == null) {
+        // most execs don't write to stderr, so buffers are only taken from the pool on demand
+        buffer = pool.acquire();
+      }
+      int accepted = Math.min(payload.length, buffer.length - size);
+      System.arraycopy(payload, 0, buffer, size, accepted);
+      size += accepted;
+      dropped += payload.length - accepted;
+    }
+
+    byte[] toByteArray() {
+      return buffer == null ? new byte[0] : Arrays.copyOf(buffer, size);
+    }
+
+    void release() {
+      if (buffer != null) {
+        pool.release(buffer);
+        buffer = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.remote.api.core.Cancellable;
+import de.gesellix.docker.remote.api.core.Frame;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Waits for log messages of many containers without dedicating a platform thread to each of them.
+ * <p>
+ * Every watch follows a single log stream, which is shared by all predicates of that watch.
+ * The stream runs on the shared executor (virtual threads by default) and is closed
+ * as soon as all predicates have matched, the timeout has been reached, or all futures have been cancelled.
+ */
+public class LogWatcher {
+
+  private static final Logger log = LoggerFactory.getLogger(LogWatcher.class);
+
+  private final ManageContainer manageContainer;
+  private final ExecutorService executor;
+  private final AtomicInteger activeStreams = new AtomicInteger();
+
+  public LogWatcher(ManageContainer manageContainer, ExecutorService executor) {
+    this.manageContainer = manageContainer;
+    this.executor = executor;
+  }
+
+  /**
+   * @return the number of log streams which are currently open
+   */
+  public int getActiveStreams() {
+    return activeStreams.get();
+  }
+
+  public CompletableFuture<Frame> watch(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout) {
+    return watch(container, query, Collections.singletonList(matcher), timeout).get(0);
+  }
+
+  /**
+   * Follows the container's logs and completes one future per matcher with the first matching frame.
+   * A future completes exceptionally with a {@link java.util.concurrent.TimeoutException} when the timeout has been reached,
+   * or with an {@link IllegalStateException} when the log stream ended without a matching frame.
+   *
+   * @param query the logs query, with <code>follow=true</code> and <code>tail=all</code> as default
+   */
+  public List<CompletableFuture<Frame>> watch(String container, Map<String, Object> query, List<Predicate<Frame>> matchers, Duration timeout) {
+    Map<String, Object> actualQuery = new HashMap<>();
+    actualQuery.put("follow", true);
+    actualQuery.put("tail", "all");
+    if (query != null) {
+      actualQuery.putAll(query);
+    }
+
+    LogStream stream = new LogStream(container, matchers);
+    List<CompletableFuture<Frame>> futures = new ArrayList<>(matchers.size());
+    for (PendingMatch pending : stream.pending) {
+      pending.future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      pending.future.whenComplete((frame, failure) -> stream.closeIfDone());
+      futures.add(pending.future);
+    }
+
+    try {
+      executor.execute(() -> {
+        activeStreams.incrementAndGet();
+        try {
+          if (!stream.isDone()) {
+            manageContainer.logs(container, actualQuery, stream, timeout);
+          }
+        } catch (Exception e) {
+          stream.onFailed(e);
+        } finally {
+          activeStreams.decrementAndGet();
+          stream.onFinished();
+        }
+      });
+    } catch (Exception e) {
+      stream.onFailed(e);
+    }
+    return futures;
+  }
+
+  static class PendingMatch {
+
+    final Predicate<Frame> matcher;
+    final CompletableFuture<Frame> future = new CompletableFuture<>();
+
+    PendingMatch(Predicate<Frame> matcher) {
+      this.matcher = matcher;
+    }
+  }
+
+  static class LogStream implements StreamCallback<Frame> {
+
+    private final String container;
+    private final List<PendingMatch> pending;
+    private volatile Cancellable cancellable;
+    private volatile boolean closed = false;
+
+    LogStream(String container, List<Predicate<Frame>> matchers) {
+      this.container = container;
+      this.pending = new ArrayList<>(matchers.size());
+      for (Predicate<Frame> matcher : matchers) {
+        this.pending.add(new PendingMatch(matcher));
+      }
+    }
+
+    boolean isDone() {
+      for (PendingMatch match : pending) {
+        if (!match.future.isDone()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void closeIfDone() {
+      if (!closed && isDone()) {
+        closed = true;
+        Cancellable current = cancellable;
+        if (current != null) {
+          log.debug("closing log stream of {}", container);
+          current.cancel();
+        }
+      }
+    }
+
+    @Override
+    public void onStarting(Cancellable cancellable) {
+      this.cancellable = cancellable;
+      if (closed) {
+        cancellable.cancel();
+      }
+    }
+
+    @Override
+    public void onNext(Frame element) {
+      for (PendingMatch match : pending) {
+        if (!match.future.isDone() && match.matcher.test(element)) {
+          match.future.complete(element);
+        }
+      }
+    }
+
+    @Override
+    public void onFailed(Exception e) {
+      if (!closed) {
+        log.error("Logs failed", e);
+      }
+      for (PendingMatch match : pending) {
+        match.future.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public void onFinished() {
+      for (PendingMatch match : pending) {
+        match.future.completeExceptionally(new IllegalStateException("log stream of " + container + " ended without a matching frame"));
+      }
+    }
+  }
+}
@@ -0,0 +1,462 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.client.EngineResponseContent;
+import de.gesellix.docker.remote.api.ContainerCreateRequest;
+import de.gesellix.docker.remote.api.ContainerCreateResponse;
+import de.gesellix.docker.remote.api.ContainerInspectResponse;
+import de.gesellix.docker.remote.api.ContainerPruneResponse;
+import de.gesellix.docker.remote.api.ContainerSummary;
+import de.gesellix.docker.remote.api.ContainerTopResponse;
+import de.gesellix.docker.remote.api.ContainerUpdateRequest;
+import de.gesellix.docker.remote.api.ContainerUpdateResponse;
+import de.gesellix.docker.remote.api.ContainerWaitResponse;
+import de.gesellix.docker.remote.api.ExecConfig;
+import de.gesellix.docker.remote.api.ExecInspectResponse;
+import de.gesellix.docker.remote.api.ExecStartConfig;
+import de.gesellix.docker.remote.api.FilesystemChange;
+import de.gesellix.docker.remote.api.IdResponse;
+import de.gesellix.docker.remote.api.client.ContainerApi;
+import de.gesellix.docker.remote.api.core.Cancellable;
+import de.gesellix.docker.remote.api.core.Frame;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import de.gesellix.util.ThreadPools;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.Sink;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class ManageContainerAsyncClient implements ManageContainerAsync {
+
+  private final ManageContainer manageContainer;
+  private final ExecutorService executor;
+
+  public ManageContainerAsyncClient(ManageContainer manageContainer) {
+    this(manageContainer, ThreadPools.newVirtualThreadPerTaskExecutor("docker-container-async"));
+  }
+
+  public ManageContainerAsyncClient(ManageContainer manageContainer, ExecutorService executor) {
+    this.manageContainer = manageContainer;
+    this.executor = executor;
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public CompletableFuture<Void> attach(String containerId, String detachKeys,
+                                        Boolean logs, Boolean stream,
+                                        Boolean stdin, Boolean stdout, Boolean stderr,
+                                        StreamCallback<Frame> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<Frame> c) -> {
+      manageContainer.attach(containerId, detachKeys, logs, stream, stdin, stdout, stderr, c, timeout);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> resizeTTY(String container, Integer height, Integer width) {
+    return execute(() -> manageContainer.resizeTTY(container, height, width));
+  }
+
+  @Override
+  public CompletableFuture<WebSocket> attachWebsocket(String containerId, String detachKeys,
+                                                      Boolean logs, Boolean stream, Boolean stdin, Boolean stdout, Boolean stderr,
+                                                      WebSocketListener listener) {
+    return supply(() -> manageContainer.attachWebsocket(containerId, detachKeys, logs, stream, stdin, stdout, stderr, listener));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<IdResponse>> commit(String container, Map query) {
+    return supply(() -> manageContainer.commit(container, query));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<IdResponse>> commit(String container, Map query, Map config) {
+    return supply(() -> manageContainer.commit(container, query, config));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<Map<String, Object>>> getArchiveStats(String container, String path) {
+    return supply(() -> manageContainer.getArchiveStats(container, path));
+  }
+
+  @Override
+  public CompletableFuture<byte[]> extractFile(String container, String filename) {
+    return supply(() -> manageContainer.extractFile(container, filename));
+  }
+
+  @Override
+  public CompletableFuture<Long> extractFile(String container, String filename, OutputStream target) {
+    return supply(() -> manageContainer.extractFile(container, filename, target));
+  }
+
+  @Override
+  public CompletableFuture<Long> extractFile(String container, String filename, Path target) {
+    return supply(() -> manageContainer.extractFile(container, filename, target));
+  }
+
+  @Override
+  public CompletableFuture<Long> extractArchive(String container, String path, Path targetDirectory) {
+    return supply(() -> manageContainer.extractArchive(container, path, targetDirectory));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<InputStream>> getArchive(String container, String path) {
+    return supply(() -> manageContainer.getArchive(container, path));
+  }
+
+  @Override
+  public CompletableFuture<Void> putArchive(String container, String path, InputStream archive) {
+    return execute(() -> manageContainer.putArchive(container, path, archive));
+  }
+
+  @Override
+  public CompletableFuture<Void> putDirectory(String container, String path, Path directory, PutDirectoryOptions options) {
+    return execute(() -> manageContainer.putDirectory(container, path, directory, options));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest) {
+    return supply(() -> manageContainer.createContainer(containerCreateRequest));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest, String name) {
+    return supply(() -> manageContainer.createContainer(containerCreateRequest, name));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest, String name, String authBase64Encoded) {
+    return supply(() -> manageContainer.createContainer(containerCreateRequest, name, authBase64Encoded));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<FilesystemChange>>> diff(String container) {
+    return supply(() -> manageContainer.diff(container));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<IdResponse>> createExec(String container, ExecConfig execConfig) {
+    return supply(() -> manageContainer.createExec(container, execConfig));
+  }
+
+  @Override
+  public CompletableFuture<Void> startExec(String execId, ExecStartConfig execStartConfig, StreamCallback<Frame> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<Frame> c) -> {
+      manageContainer.startExec(execId, execStartConfig, c, timeout);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ExecInspectResponse>> inspectExec(String execId) {
+    return supply(() -> manageContainer.inspectExec(execId));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<IdResponse>> exec(String container, List<String> command, StreamCallback<Frame> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<Frame> c) -> manageContainer.exec(container, command, c, timeout));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<IdResponse>> exec(String container, List<String> command, StreamCallback<Frame> callback, Duration timeout, Map<String, Object> execConfig) {
+    return streaming(callback, (StreamCallback<Frame> c) -> manageContainer.exec(container, command, c, timeout, execConfig));
+  }
+
+  @Override
+  public CompletableFuture<Void> resizeExec(String exec, Integer height, Integer width) {
+    return execute(() -> manageContainer.resizeExec(exec, height, width));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<InputStream>> export(String container) {
+    return supply(() -> manageContainer.export(container));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerInspectResponse>> inspectContainer(String container) {
+    return supply(() -> manageContainer.inspectContainer(container));
+  }
+
+  @Override
+  public CompletableFuture<Void> kill(String container) {
+    return execute(() -> manageContainer.kill(container));
+  }
+
+  @Override
+  public CompletableFuture<Void> logs(String container, Map<String, Object> query, StreamCallback<Frame> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<Frame> c) -> {
+      manageContainer.logs(container, query, c, timeout);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> waitForLogEvent(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout) {
+    return execute(() -> manageContainer.waitForLogEvent(container, query, matcher, timeout));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Map<String, Object> query) {
+    return supply(() -> manageContainer.ps(query));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps() {
+    return supply(() -> manageContainer.ps());
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all) {
+    return supply(() -> manageContainer.ps(all));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit) {
+    return supply(() -> manageContainer.ps(all, limit));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit, Boolean size) {
+    return supply(() -> manageContainer.ps(all, limit, size));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit, Boolean size, String filters) {
+    return supply(() -> manageContainer.ps(all, limit, size, filters));
+  }
+
+  @Override
+  public CompletableFuture<Void> pause(String container) {
+    return execute(() -> manageContainer.pause(container));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerPruneResponse>> pruneContainers() {
+    return supply(() -> manageContainer.pruneContainers());
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerPruneResponse>> pruneContainers(String filters) {
+    return supply(() -> manageContainer.pruneContainers(filters));
+  }
+
+  @Override
+  public CompletableFuture<Void> rename(String container, String newName) {
+    return execute(() -> manageContainer.rename(container, newName));
+  }
+
+  @Override
+  public CompletableFuture<Void> restart(String containerIdOrName) {
+    return execute(() -> manageContainer.restart(containerIdOrName));
+  }
+
+  @Override
+  public CompletableFuture<Void> rm(String containerIdOrName) {
+    return execute(() -> manageContainer.rm(containerIdOrName));
+  }
+
+  @Override
+  public CompletableFuture<Void> rm(String containerIdOrName, Map<String, Object> query) {
+    return execute(() -> manageContainer.rm(containerIdOrName, query));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest) {
+    return supply(() -> manageContainer.run(containerCreateRequest));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest, String name) {
+    return supply(() -> manageContainer.run(containerCreateRequest, name));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest, String name, String authBase64Encoded) {
+    return supply(() -> manageContainer.run(containerCreateRequest, name, authBase64Encoded));
+  }
+
+  @Override
+  public CompletableFuture<Void> startContainer(String container) {
+    return execute(() -> manageContainer.startContainer(container));
+  }
+
+  @Override
+  public CompletableFuture<Void> stats(String container, Boolean stream, StreamCallback<Object> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<Object> c) -> {
+      manageContainer.stats(container, stream, c, timeout);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> stats(String container, StreamCallback<ContainerStatsSample> callback, Duration timeout) {
+    return streaming(callback, (StreamCallback<ContainerStatsSample> c) -> {
+      manageContainer.stats(container, c, timeout);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> stop(String containerIdOrName) {
+    return execute(() -> manageContainer.stop(containerIdOrName));
+  }
+
+  @Override
+  public CompletableFuture<Void> stop(String containerIdOrName, Integer timeoutSeconds) {
+    return execute(() -> manageContainer.stop(containerIdOrName, timeoutSeconds));
+  }
+
+  @Override
+  public CompletableFuture<Void> stop(String containerIdOrName, Duration timeout) {
+    return execute(() -> manageContainer.stop(containerIdOrName, timeout));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerTopResponse>> top(String containerIdOrName) {
+    return supply(() -> manageContainer.top(containerIdOrName));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerTopResponse>> top(String containerIdOrName, String psArgs) {
+    return supply(() -> manageContainer.top(containerIdOrName, psArgs));
+  }
+
+  @Override
+  public CompletableFuture<Void> unpause(String container) {
+    return execute(() -> manageContainer.unpause(container));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerUpdateResponse>> updateContainer(String container, ContainerUpdateRequest containerUpdateRequest) {
+    return supply(() -> manageContainer.updateContainer(container, containerUpdateRequest));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerWaitResponse>> wait(String containerIdOrName) {
+    return supply(() -> manageContainer.wait(containerIdOrName));
+  }
+
+  @Override
+  public CompletableFuture<EngineResponseContent<ContainerWaitResponse>> wait(String containerIdOrName, ContainerApi.ConditionContainerWait condition) {
+    return supply(() -> manageContainer.wait(containerIdOrName, condition));
+  }
+
+  private CompletableFuture<Void> execute(Runnable action) {
+    return supply(() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Submits the action to the executor.
+   * Cancelling the returned future interrupts the worker thread.
+   */
+  private <T> CompletableFuture<T> supply(Callable<T> action) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      Future<?> task = executor.submit(() -> {
+        try {
+          result.complete(action.call());
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+      });
+      result.whenComplete((value, failure) -> {
+        if (result.isCancelled()) {
+          task.cancel(true);
+        }
+      });
+    } catch (Exception e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link #supply(Callable)}, but additionally cancels the streaming request
+   * as soon as the engine has started it and the returned future gets cancelled.
+   */
+  private <T, R> CompletableFuture<R> streaming(StreamCallback<T> callback, Function<StreamCallback<T>, R> action) {
+    CancellableStreamCallback<T> cancellableCallback = new CancellableStreamCallback<>(callback);
+    CompletableFuture<R> result = supply(() -> action.apply(cancellableCallback));
+    result.whenComplete((value, failure) -> {
+      if (result.isCancelled()) {
+        cancellableCallback.cancel();
+      }
+    });
+    return result;
+  }
+
+  static class CancellableStreamCallback<T> implements StreamCallback<T> {
+
+    private final StreamCallback<T> delegate;
+    private volatile Cancellable cancellable;
+    private volatile boolean cancelled = false;
+
+    CancellableStreamCallback(StreamCallback<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    void cancel() {
+      cancelled = true;
+      Cancellable current = cancellable;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+
+    @Override
+    public void onStarting(Cancellable cancellable) {
+      this.cancellable = cancellable;
+      if (delegate != null) {
+        delegate.onStarting(cancellable);
+      }
+      if (cancelled) {
+        cancellable.cancel();
+      }
+    }
+
+    @Override
+    public void attachInput(Sink sink) {
+      if (delegate != null) {
+        delegate.attachInput(sink);
+      }
+    }
+
+    @Override
+    public void onNext(T element) {
+      if (delegate != null) {
+        delegate.onNext(element);
+      }
+    }
+
+    @Override
+    public void onFailed(Exception e) {
+      if (delegate != null) {
+        delegate.onFailed(e);
+      }
+    }
+
+    @Override
+    public void onFinished() {
+      if (delegate != null) {
+        delegate.onFinished();
+      }
+    }
+  }
+}
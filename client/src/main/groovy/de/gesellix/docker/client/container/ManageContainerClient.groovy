@@ -1,6 +1,9 @@
 package de.gesellix.docker.client.container
 
 import de.gesellix.docker.client.EngineResponseContent
+import de.gesellix.docker.client.batch.BatchExecutor
+import de.gesellix.docker.client.batch.BatchReport
+import de.gesellix.docker.client.image.ImagePullRegistry
 import de.gesellix.docker.client.repository.RepositoryAndTag
 import de.gesellix.docker.client.repository.RepositoryTagParser
 import de.gesellix.docker.remote.api.ContainerConfig
@@ -24,32 +27,66 @@ import de.gesellix.docker.remote.api.client.ContainerApi
 import de.gesellix.docker.remote.api.core.ClientException
 import de.gesellix.docker.remote.api.core.Frame
 import de.gesellix.docker.remote.api.core.StreamCallback
+import de.gesellix.util.ByteArrayPool
 import de.gesellix.util.QueryParameterEncoder
 import okhttp3.WebSocket
 import okhttp3.WebSocketListener
+import okio.Okio
+import okio.Pipe
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.nio.file.Path
 import java.time.Duration
 import java.time.temporal.ChronoUnit
-import java.util.concurrent.CountDownLatch
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeoutException
 import java.util.function.Predicate
+import java.util.function.Supplier
 
 class ManageContainerClient implements ManageContainer {
 
   private final Logger log = LoggerFactory.getLogger(ManageContainerClient)
 
+  static final long PUT_DIRECTORY_PIPE_SIZE = 1024 * 1024
+
   private EngineApiClient client
   private QueryParameterEncoder queryParameterEncoder
   private ArchiveUtil archiveUtil
+  private ContainerStatsDecoder statsDecoder
+  private DirectoryTarWriter directoryTarWriter
   private RepositoryTagParser repositoryTagParser
-
-  ManageContainerClient(EngineApiClient client) {
+  private BatchExecutor batchExecutor
+  private ImagePullRegistry imagePullRegistry
+  private LogWatcher logWatcher
+  private ContainerInventory inventory
+
+  ManageContainerClient(EngineApiClient client,
+                        BatchExecutor batchExecutor = new BatchExecutor(),
+                        ImagePullRegistry imagePullRegistry = new ImagePullRegistry()) {
     this.client = client
+    this.batchExecutor = batchExecutor
+    this.imagePullRegistry = imagePullRegistry
+    this.logWatcher = new LogWatcher(this, batchExecutor.executor)
     this.repositoryTagParser = new RepositoryTagParser()
     this.queryParameterEncoder = new QueryParameterEncoder()
     this.archiveUtil = new ArchiveUtil()
+    this.statsDecoder = new ContainerStatsDecoder()
+    this.directoryTarWriter = new DirectoryTarWriter()
+  }
+
+  /**
+   * Lets {@link #ps} and {@link #inspectContainer} read from the inventory, when their parameters allow to.
+   * Pass <code>null</code> to always ask the engine.
+   */
+  void setInventory(ContainerInventory inventory) {
+    this.inventory = inventory
+  }
+
+  ContainerInventory getInventory() {
+    return inventory
   }
 
   @Override
@@ -125,15 +162,39 @@ class ManageContainerClient implements ManageContainer {
 
   @Override
   byte[] extractFile(String container, String filename) {
+    def output = new ByteArrayOutputStream()
+    extractFile(container, filename, output)
+    return output.toByteArray()
+  }
+
+  @Override
+  long extractFile(String container, String filename, OutputStream target) {
     log.info("extract '${filename}' from '${container}'")
 
     EngineResponseContent<InputStream> response = getArchive(container, filename)
+    long bytesRead = archiveUtil.copySingleTarEntry(response.content, filename, target)
+    log.info("read ${bytesRead} bytes")
+    return bytesRead
+  }
 
-    // TODO make this one a parameter so that the caller has a chance to reduce memory overhead
-    def output = new ByteArrayOutputStream()
-    def bytesRead = archiveUtil.copySingleTarEntry(response.content, filename, output)
+  @Override
+  long extractFile(String container, String filename, Path target) {
+    log.info("extract '${filename}' from '${container}' to '${target}'")
+
+    EngineResponseContent<InputStream> response = getArchive(container, filename)
+    long bytesRead = archiveUtil.copySingleTarEntry(response.content, filename, target)
     log.info("read ${bytesRead} bytes")
-    return output.toByteArray()
+    return bytesRead
+  }
+
+  @Override
+  long extractArchive(String container, String path, Path targetDirectory) {
+    log.info("extract '${path}' from '${container}' to '${targetDirectory}'")
+
+    EngineResponseContent<InputStream> response = getArchive(container, path)
+    long bytesRead = archiveUtil.extractTarEntries(response.content, targetDirectory)
+    log.info("read ${bytesRead} bytes")
+    return bytesRead
   }
 
   @Override
@@ -150,6 +211,45 @@ class ManageContainerClient implements ManageContainer {
     client.containerApi.putContainerArchive(container, path, archive, null, null)
   }
 
+  @Override
+  void putDirectory(String container, String path, Path directory, PutDirectoryOptions options = new PutDirectoryOptions()) {
+    log.info("docker upload ${directory} to ${container}|${path}")
+
+    Pipe pipe = new Pipe(PUT_DIRECTORY_PIPE_SIZE)
+    CompletableFuture<Long> writer = CompletableFuture.supplyAsync({
+      try {
+        return directoryTarWriter.write(directory, Okio.buffer(pipe.sink()).outputStream(), options)
+      } catch (Exception e) {
+        // let the upload fail instead of sending a truncated archive
+        pipe.cancel()
+        throw e
+      }
+    } as Supplier<Long>, batchExecutor.executor)
+
+    InputStream archive = Okio.buffer(pipe.source()).inputStream()
+    try {
+      client.containerApi.putContainerArchive(container, path, archive, null, null)
+    } catch (Exception e) {
+      writer.cancel(true)
+      pipe.cancel()
+      throwWriterFailure(writer)
+      throw e
+    } finally {
+      archive.close()
+    }
+    throwWriterFailure(writer)
+    log.info("uploaded ${writer.join()} files")
+  }
+
+  private void throwWriterFailure(CompletableFuture<Long> writer) {
+    try {
+      writer.get()
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("failed to archive the directory", e.cause)
+    } catch (CancellationException ignored) {
+    }
+  }
+
   @Override
   EngineResponseContent<ContainerCreateResponse> createContainer(ContainerCreateRequest containerCreateRequest, String name = "", String authBase64Encoded = "") {
     log.info("docker create")
@@ -164,7 +264,11 @@ class ManageContainerClient implements ManageContainer {
       if (exception.statusCode == 404) {
         RepositoryAndTag repoAndTag = repositoryTagParser.parseRepositoryTag(containerCreateRequest.image)
         log.info("'${repoAndTag.repo}:${repoAndTag.tag}' not found locally.")
-        client.imageApi.imageCreate(repoAndTag.repo, null, null, repoAndTag.tag, null, authBase64Encoded, null, null, null)
+        // concurrent creates of the same missing image share a single pull
+        imagePullRegistry.pull(containerCreateRequest.image) {
+          client.imageApi.imageCreate(repoAndTag.repo, null, null, repoAndTag.tag, null, authBase64Encoded, null, null, null)
+          return null
+        }
         ContainerCreateResponse containerCreateWithPulledImage = client.containerApi.containerCreate(containerCreateRequest, name)
         return new EngineResponseContent<ContainerCreateResponse>(containerCreateWithPulledImage)
       }
@@ -250,7 +354,9 @@ class ManageContainerClient implements ManageContainer {
   @Override
   EngineResponseContent<ContainerInspectResponse> inspectContainer(String containerId) {
     log.info("docker inspect container")
-    ContainerInspectResponse containerInspect = client.containerApi.containerInspect(containerId, null)
+    ContainerInspectResponse containerInspect = inventory?.running
+        ? inventory.inspect(containerId)
+        : client.containerApi.containerInspect(containerId, null)
     return new EngineResponseContent(containerInspect)
   }
 
@@ -287,36 +393,33 @@ class ManageContainerClient implements ManageContainer {
 
   @Override
   void waitForLogEvent(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout) {
-    CountDownLatch latch = new CountDownLatch(1)
-    def frameHandler = new StreamCallback<Frame>() {
-
-      @Override
-      void onNext(Frame element) {
-        if (matcher.test(element)) {
-          latch.countDown()
-        }
-      }
-
-      @Override
-      void onFailed(Exception e) {
-        log.error("Logs failed", e)
-        latch.countDown()
-      }
-
-      @Override
-      void onFinished() {
-        latch.countDown()
+    Map<String, Object> actualQuery = new HashMap<String, Object>()
+    if (query) {
+      actualQuery.putAll(query)
+    }
+    actualQuery.tail = 1 // "all"
+    try {
+      watchLogs(container, actualQuery, matcher, timeout).get()
+    }
+    catch (ExecutionException e) {
+      if (e.cause instanceof TimeoutException) {
+        log.warn("Timeout reached after {} while waiting for the expected log message", timeout)
+      } else {
+        log.error("Logs failed", e.cause)
       }
     }
+  }
 
-    new Thread({
-      query.tail = 1 // "all"
-      logs(container, query, frameHandler, timeout)
-    }).start()
-    def success = latch.await(timeout.toMillis(), TimeUnit.MILLISECONDS)
-    if (!success) {
-      log.warn("Timeout reached after {} while waiting for the expected log message", timeout)
-    }
+  @Override
+  CompletableFuture<Frame> watchLogs(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout) {
+    log.info("docker logs (watch)")
+    return logWatcher.watch(container, query, matcher, timeout)
+  }
+
+  @Override
+  List<CompletableFuture<Frame>> watchLogs(String container, Map<String, Object> query, List<Predicate<Frame>> matchers, Duration timeout) {
+    log.info("docker logs (watch)")
+    return logWatcher.watch(container, query, matchers, timeout)
   }
 
   @Override
@@ -326,6 +429,12 @@ class ManageContainerClient implements ManageContainer {
     if (query) {
       actualQuery.putAll(query)
     }
+    if (inventory?.running && (actualQuery.keySet() - ["all"]).isEmpty()) {
+      List<ContainerSummary> cached = inventory.list(actualQuery.getOrDefault("all", true) as Boolean)
+      if (cached != null) {
+        return new EngineResponseContent<List<ContainerSummary>>(cached)
+      }
+    }
     queryParameterEncoder.jsonEncodeQueryParameter(actualQuery, "filters")
     List<ContainerSummary> containerList = client.containerApi.containerList(
         actualQuery.getOrDefault("all", true) as Boolean,
@@ -338,6 +447,12 @@ class ManageContainerClient implements ManageContainer {
   @Override
   EngineResponseContent<List<ContainerSummary>> ps(Boolean all = true, Integer limit = null, Boolean size = false, String filters = null) {
     log.info("docker ps")
+    if (inventory?.running && limit == null && !size && !filters) {
+      List<ContainerSummary> cached = inventory.list(all == null ? true : all)
+      if (cached != null) {
+        return new EngineResponseContent<List<ContainerSummary>>(cached)
+      }
+    }
     List<ContainerSummary> containerList = client.containerApi.containerList(
         all == null ? true : all,
         limit,
@@ -413,6 +528,12 @@ class ManageContainerClient implements ManageContainer {
     client.containerApi.containerStats(container, stream, null, callback, timeout.toMillis())
   }
 
+  @Override
+  void stats(String container, StreamCallback<ContainerStatsSample> callback, Duration timeout) {
+    log.info("docker stats")
+    client.containerApi.containerStats(container, true, null, statsDecoder.decoding(callback), timeout.toMillis())
+  }
+
   @Override
   void stop(String containerIdOrName, Integer timeoutSeconds) {
     stop(containerIdOrName, timeoutSeconds != null ? Duration.of(timeoutSeconds, ChronoUnit.SECONDS) : null)
@@ -471,4 +592,85 @@ class ManageContainerClient implements ManageContainer {
         (ContainerApi.ConditionContainerWait) condition)
     return new EngineResponseContent<ContainerWaitResponse>(containerWait)
   }
+
+  @Override
+  BatchReport<Void> startAll(Collection<String> containers) {
+    log.info("docker start (${containers.size()} containers)")
+    return batchExecutor.execute(containers) { String container ->
+      startContainer(container)
+      return null
+    }
+  }
+
+  @Override
+  BatchReport<Void> stopAll(Collection<String> containers, Duration timeout) {
+    log.info("docker stop (${containers.size()} containers)")
+    return batchExecutor.execute(containers) { String container ->
+      stop(container, timeout)
+      return null
+    }
+  }
+
+  @Override
+  BatchReport<Void> killAll(Collection<String> containers) {
+    log.info("docker kill (${containers.size()} containers)")
+    return batchExecutor.execute(containers) { String container ->
+      kill(container)
+      return null
+    }
+  }
+
+  @Override
+  BatchReport<Void> pauseAll(Collection<String> containers) {
+    log.info("docker pause (${containers.size()} containers)")
+    return batchExecutor.execute(containers) { String container ->
+      pause(container)
+      return null
+    }
+  }
+
+  @Override
+  BatchReport<Void> rmAll(Collection<String> containers, Map<String, Object> query = [:]) {
+    log.info("docker rm (${containers.size()} containers)")
+    return batchExecutor.execute(containers) { String container ->
+      rm(container, query)
+      return null
+    }
+  }
+
+  @Override
+  BatchReport<ExecOutput> execAll(Collection<String> containers, List<String> command, ExecAllOptions options = new ExecAllOptions()) {
+    log.info("docker exec (${containers.size()} containers) '${command}'")
+    // buffers are only in use by running execs, so there's no need to retain more of them
+    int maxRetained = 2 * Math.min(Math.min(options.maxParallel, batchExecutor.maxConcurrency), Math.max(1, containers.size()))
+    ByteArrayPool buffers = new ByteArrayPool(options.maxOutputBytes, maxRetained)
+    ExecConfig execConfig = new ExecConfig(
+        false,
+        true,
+        true,
+        null,
+        null,
+        false,
+        options.env,
+        command,
+        null,
+        options.user,
+        options.workingDir)
+    ExecStartConfig execStartConfig = new ExecStartConfig(false, false, null)
+
+    return batchExecutor.execute(containers, options.maxParallel) { String container ->
+      long start = System.nanoTime()
+      String execId = client.execApi.containerExec(container, execConfig).id
+      ExecOutputCollector collector = new ExecOutputCollector(buffers)
+      try {
+        client.execApi.execStart(execId, execStartConfig, collector, options.timeout.toMillis())
+        // the stream has ended, so a single inspect is enough to get the exit code
+        ExecInspectResponse execInspect = client.execApi.execInspect(execId)
+        Integer exitCode = execInspect?.running ? null : execInspect?.exitCode
+        return collector.toExecOutput(container, execId, exitCode, Duration.ofNanos(System.nanoTime() - start))
+      } finally {
+        collector.release()
+      }
+    }
+  }
 }
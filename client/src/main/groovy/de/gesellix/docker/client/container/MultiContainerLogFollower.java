@@ -0,0 +1,499 @@
+package de.gesellix.docker.client.container;
+
+import com.squareup.moshi.Moshi;
+import de.gesellix.docker.client.system.ManageSystem;
+import de.gesellix.docker.client.system.SystemEventsRequest;
+import de.gesellix.docker.remote.api.ContainerSummary;
+import de.gesellix.docker.remote.api.EventMessage;
+import de.gesellix.docker.remote.api.core.Cancellable;
+import de.gesellix.docker.remote.api.core.Frame;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Follows the logs of many containers and merges them into a single stream, ordered by the engine's timestamps.
+ * <p>
+ * Every container gets a bounded buffer, which is handled according to the {@link OverflowPolicy}
+ * when the consumer doesn't keep up. Entries are consumed via {@link #poll(Duration)}.
+ * An entry is released when every other followed container has a buffered entry to compare with,
+ * or at the latest after the {@link LogFollowOptions#getReorderWindow() reorder window}.
+ * <p>
+ * Raw streams of containers with a TTY aren't split into messages, so their frames are split into lines,
+ * and only the start of a line is expected to carry the engine's timestamp.
+ * A container which is followed again after its log stream has ended, e.g. after a restart,
+ * continues from the line after its last received timestamp.
+ * When following by labels, a container is forgotten after it has been destroyed, its log stream has ended
+ * and its buffered entries have been consumed, so that its stats are no longer reported.
+ * <p>
+ * The engine only offers blocking log streams, so every followed container occupies one thread of the executor.
+ */
+public class MultiContainerLogFollower implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(MultiContainerLogFollower.class);
+
+  // RFC3339Nano, e.g. 2024-05-01T12:00:00.123456789Z
+  private static final int MAX_TIMESTAMP_LENGTH = 40;
+  // unterminated raw lines are released when they exceed the engine's maximum log message size
+  private static final int MAX_PARTIAL_LINE_LENGTH = 16 * 1024;
+
+  private final ManageContainer manageContainer;
+  private final ManageSystem manageSystem;
+  private final ExecutorService executor;
+  private final LogFollowOptions options;
+
+  private final Map<String, Source> sources = new ConcurrentHashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private volatile boolean started = false;
+  private volatile boolean closed = false;
+  private volatile Cancellable eventsStream;
+
+  public MultiContainerLogFollower(ManageContainer manageContainer, ManageSystem manageSystem, ExecutorService executor, LogFollowOptions options) {
+    this.manageContainer = manageContainer;
+    this.manageSystem = manageSystem;
+    this.executor = executor;
+    this.options = options;
+  }
+
+  /**
+   * Starts following the configured containers and, if enabled, subscribes to container start events.
+   */
+  public synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    long startedAt = Instant.now().getEpochSecond();
+    for (String container : options.getContainers()) {
+      follow(container, options.getTail());
+    }
+    if (!options.getLabels().isEmpty()) {
+      Map<String, Object> query = new HashMap<>();
+      query.put("all", false);
+      query.put("filters", Collections.singletonMap("label", labelFilters()));
+      for (ContainerSummary container : manageContainer.ps(query).getContent()) {
+        follow(container.getId(), options.getTail());
+      }
+      if (options.isFollowNewContainers()) {
+        executor.execute(() -> followStartEvents(startedAt));
+      }
+    }
+  }
+
+  /**
+   * Follows another container. If the container is already followed, it is followed again once its current log stream has ended.
+   */
+  public void follow(String container, String tail) {
+    if (closed) {
+      throw new IllegalStateException("the log follower has been closed");
+    }
+    Map<String, Object> query = new HashMap<>();
+    query.put("follow", true);
+    query.put("timestamps", true);
+    Source source;
+    lock.lock();
+    try {
+      Source existing = sources.get(container);
+      if (existing != null && !existing.finished) {
+        existing.followAgain = true;
+        return;
+      }
+      source = new Source(container, existing);
+      sources.put(container, source);
+      if (source.lastTimestamp != null) {
+        Instant since = source.lastTimestamp.plusNanos(1);
+        query.put("since", since.getEpochSecond() + "." + String.format("%09d", since.getNano()));
+        query.put("tail", "all");
+      } else {
+        query.put("tail", tail);
+      }
+    } finally {
+      lock.unlock();
+    }
+    log.debug("following logs of {}", container);
+    executor.execute(() -> {
+      try {
+        manageContainer.logs(container, query, source, options.getTimeout());
+      } catch (Exception e) {
+        source.onFailed(e);
+      } finally {
+        source.onFinished();
+      }
+    });
+  }
+
+  public Set<String> getContainers() {
+    return Collections.unmodifiableSet(sources.keySet());
+  }
+
+  /**
+   * Waits for the next entry of the merged stream.
+   *
+   * @return the next entry, or <code>null</code> when the timeout has been reached
+   * or all log streams have ended and every entry has been consumed
+   */
+  public LogEntry poll(Duration timeout) throws InterruptedException {
+    long reorderWindowNanos = options.getReorderWindow().toNanos();
+    long deadline = System.nanoTime() + timeout.toNanos();
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        Source oldest = null;
+        boolean waitForOthers = false;
+        boolean active = false;
+        for (Source source : sources.values()) {
+          active |= !source.finished;
+          Pending head = source.buffer.peekFirst();
+          if (head == null) {
+            waitForOthers |= !source.finished;
+          } else if (oldest == null || head.entry.getTimestamp().isBefore(oldest.buffer.peekFirst().entry.getTimestamp())) {
+            oldest = source;
+          }
+        }
+
+        long now = System.nanoTime();
+        long waitNanos = deadline - now;
+        if (oldest != null) {
+          Pending head = oldest.buffer.peekFirst();
+          long heldBackNanos = now - head.receivedAtNanos;
+          if (!waitForOthers || heldBackNanos >= reorderWindowNanos) {
+            oldest.buffer.removeFirst();
+            oldest.delivered++;
+            evictIfGone(oldest);
+            changed.signalAll();
+            return head.entry;
+          }
+          waitNanos = Math.min(waitNanos, reorderWindowNanos - heldBackNanos);
+        } else if (!active && (closed || !options.isFollowNewContainers() || options.getLabels().isEmpty())) {
+          return null;
+        }
+        if (deadline - now <= 0) {
+          return null;
+        }
+        changed.awaitNanos(waitNanos);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public List<LogSourceStats> getStats() {
+    List<LogSourceStats> stats = new ArrayList<>(sources.size());
+    lock.lock();
+    try {
+      for (Source source : sources.values()) {
+        stats.add(new LogSourceStats(source.container, source.received, source.receivedBytes, source.delivered, source.dropped, source.buffer.size(), source.finished));
+      }
+    } finally {
+      lock.unlock();
+    }
+    return stats;
+  }
+
+  /**
+   * Closes all log streams. Entries which have already been buffered can still be polled.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    Cancellable events = eventsStream;
+    if (events != null) {
+      events.cancel();
+    }
+    for (Source source : sources.values()) {
+      source.close();
+    }
+    lock.lock();
+    try {
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Forgets the source of a destroyed container once nothing of it is left to be delivered. Needs the follower's lock.
+   */
+  private void evictIfGone(Source source) {
+    if (source.destroyed && source.finished && !source.followAgain && source.buffer.isEmpty()) {
+      if (sources.remove(source.container, source)) {
+        log.debug("forgetting destroyed container {}", source.container);
+      }
+    }
+  }
+
+  private void onDestroyed(String container) {
+    lock.lock();
+    try {
+      Source source = sources.get(container);
+      if (source != null) {
+        source.destroyed = true;
+        evictIfGone(source);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private List<String> labelFilters() {
+    List<String> filters = new ArrayList<>(options.getLabels().size());
+    options.getLabels().forEach((key, value) -> filters.add(value == null || value.isEmpty() ? key : key + "=" + value));
+    return filters;
+  }
+
+  private void followStartEvents(long since) {
+    Map<String, Object> filters = new HashMap<>();
+    filters.put("type", Collections.singletonList("container"));
+    filters.put("event", Arrays.asList("start", "destroy"));
+    filters.put("label", labelFilters());
+    String encodedFilters = new Moshi.Builder().build().adapter(Map.class).toJson(filters);
+    long[] lastEvent = {since};
+    StreamCallback<EventMessage> callback = new StreamCallback<EventMessage>() {
+      @Override
+      public void onStarting(Cancellable cancellable) {
+        eventsStream = cancellable;
+        if (closed) {
+          cancellable.cancel();
+        }
+      }
+
+      @Override
+      public void onNext(EventMessage event) {
+        if (event.getTime() != null) {
+          lastEvent[0] = Math.max(lastEvent[0], event.getTime());
+        }
+        if (event.getActor() == null || event.getActor().getID() == null || closed) {
+          return;
+        }
+        if ("destroy".equals(event.getAction())) {
+          onDestroyed(event.getActor().getID());
+        } else {
+          // new containers are followed from their first line
+          follow(event.getActor().getID(), "all");
+        }
+      }
+    };
+    while (!closed) {
+      try {
+        manageSystem.events(new SystemEventsRequest(String.valueOf(lastEvent[0]), null, encodedFilters), callback, options.getTimeout());
+      } catch (Exception e) {
+        if (closed) {
+          break;
+        }
+        log.warn("container events failed, resubscribing", e);
+        try {
+          TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  static LogEntry parse(String container, Frame frame) {
+    return parse(container, frame.getStreamType(), frame.getPayload() == null ? new byte[0] : frame.getPayload());
+  }
+
+  static LogEntry parse(String container, Frame.StreamType streamType, byte[] payload) {
+    Instant timestamp = null;
+    int separator = -1;
+    for (int i = 0; i < Math.min(payload.length, MAX_TIMESTAMP_LENGTH); i++) {
+      if (payload[i] == ' ') {
+        separator = i;
+        break;
+      }
+    }
+    if (separator > 0) {
+      try {
+        timestamp = Instant.parse(new String(payload, 0, separator, StandardCharsets.US_ASCII));
+        payload = Arrays.copyOfRange(payload, separator + 1, payload.length);
+      } catch (DateTimeParseException e) {
+        log.debug("log line of {} doesn't start with a timestamp", container);
+      }
+    }
+    return new LogEntry(container, timestamp != null ? timestamp : Instant.now(), streamType, payload);
+  }
+
+  static class Pending {
+
+    final LogEntry entry;
+    final long receivedAtNanos;
+
+    Pending(LogEntry entry, long receivedAtNanos) {
+      this.entry = entry;
+      this.receivedAtNanos = receivedAtNanos;
+    }
+  }
+
+  class Source implements StreamCallback<Frame> {
+
+    final String container;
+    // guarded by the follower's lock
+    final ArrayDeque<Pending> buffer;
+    long received = 0;
+    long receivedBytes = 0;
+    long delivered = 0;
+    long dropped = 0;
+    long overflows = 0;
+    Instant lastTimestamp;
+    boolean followAgain = false;
+    boolean destroyed = false;
+    volatile boolean finished = false;
+    private volatile Cancellable cancellable;
+    // the unterminated rest of the raw frames, only used by the stream's thread
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+    /**
+     * @param previous the container's source whose stream has ended, to continue its buffer and stats
+     */
+    Source(String container, Source previous) {
+      this.container = container;
+      this.buffer = new ArrayDeque<>(Math.min(options.getBufferSize(), 64));
+      if (previous != null) {
+        buffer.addAll(previous.buffer);
+        received = previous.received;
+        receivedBytes = previous.receivedBytes;
+        delivered = previous.delivered;
+        dropped = previous.dropped;
+        lastTimestamp = previous.lastTimestamp;
+      }
+    }
+
+    @Override
+    public void onStarting(Cancellable cancellable) {
+      this.cancellable = cancellable;
+      if (closed) {
+        cancellable.cancel();
+      }
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+      if (frame.getStreamType() != Frame.StreamType.RAW) {
+        add(parse(container, frame));
+        return;
+      }
+      // TTY streams might split a line across frames, or contain many lines in a frame
+      byte[] payload = frame.getPayload() == null ? new byte[0] : frame.getPayload();
+      int start = 0;
+      for (int i = 0; i < payload.length; i++) {
+        if (payload[i] == '\n') {
+          partialLine.write(payload, start, i + 1 - start);
+          addPartialLine();
+          start = i + 1;
+        }
+      }
+      partialLine.write(payload, start, payload.length - start);
+      if (partialLine.size() >= MAX_PARTIAL_LINE_LENGTH) {
+        addPartialLine();
+      }
+    }
+
+    private void addPartialLine() {
+      byte[] line = partialLine.toByteArray();
+      partialLine.reset();
+      add(parse(container, Frame.StreamType.RAW, line));
+    }
+
+    private void add(LogEntry entry) {
+      lock.lock();
+      try {
+        received++;
+        receivedBytes += entry.getPayload().length;
+        lastTimestamp = entry.getTimestamp();
+        if (buffer.size() >= options.getBufferSize()) {
+          switch (options.getOverflowPolicy()) {
+            case BLOCK:
+              while (buffer.size() >= options.getBufferSize() && !closed) {
+                changed.await();
+              }
+              if (closed) {
+                dropped++;
+                return;
+              }
+              break;
+            case DROP_OLDEST:
+              buffer.removeFirst();
+              dropped++;
+              break;
+            case SAMPLE:
+              overflows++;
+              dropped++;
+              if (overflows % Math.max(1, options.getSampleRate()) != 0) {
+                return;
+              }
+              buffer.removeFirst();
+              break;
+          }
+        } else {
+          overflows = 0;
+        }
+        buffer.addLast(new Pending(entry, System.nanoTime()));
+        changed.signalAll();
+      } catch (InterruptedException e) {
+        dropped++;
+        Thread.currentThread().interrupt();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void onFailed(Exception e) {
+      if (!closed) {
+        log.warn("following logs of {} failed", container, e);
+      }
+    }
+
+    @Override
+    public void onFinished() {
+      if (partialLine.size() > 0) {
+        addPartialLine();
+      }
+      boolean restart;
+      lock.lock();
+      try {
+        finished = true;
+        restart = followAgain && !closed && sources.get(container) == this;
+        if (!restart) {
+          evictIfGone(this);
+        }
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      if (restart) {
+        follow(container, "all");
+      }
+    }
+
+    void close() {
+      Cancellable current = cancellable;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package de.gesellix.docker.client.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * A persistent index of build context hashes to the ids of the images built from them.
+ * <p>
+ * The index is a small properties file, which is read once and rewritten atomically on every change.
+ * Built images also carry their context hash as {@link #CONTEXT_HASH_LABEL label},
+ * so that the index can be rebuilt from the engine, and entries are verified against the engine before being used.
+ */
+public class BuildCache {
+
+  private static final Logger log = LoggerFactory.getLogger(BuildCache.class);
+
+  public static final String CONTEXT_HASH_LABEL = "de.gesellix.docker-client.context-hash";
+
+  private final Path indexFile;
+  private Properties index;
+
+  public BuildCache(Path indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  public Path getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * @return the id of the image built from the context hash, or <code>null</code>
+   */
+  public synchronized String get(String contextHash) {
+    return load().getProperty(contextHash);
+  }
+
+  public synchronized void put(String contextHash, String imageId) {
+    if (imageId.equals(load().setProperty(contextHash, imageId))) {
+      return;
+    }
+    save();
+  }
+
+  public synchronized void remove(String contextHash) {
+    if (load().remove(contextHash) != null) {
+      save();
+    }
+  }
+
+  public synchronized int size() {
+    return load().size();
+  }
+
+  private Properties load() {
+    if (index == null) {
+      index = new Properties();
+      if (Files.isRegularFile(indexFile)) {
+        try (InputStream input = Files.newInputStream(indexFile)) {
+          index.load(input);
+        } catch (IOException e) {
+          log.warn("ignoring unreadable build cache index {}", indexFile, e);
+          index.clear();
+        }
+      }
+    }
+    return index;
+  }
+
+  private void save() {
+    try {
+      Path directory = indexFile.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+      try (OutputStream output = Files.newOutputStream(temp)) {
+        index.store(output, "build context hash to image id");
+      }
+      try {
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      // the cache is an optimization, builds must not fail because of it
+      log.warn("failed to write the build cache index {}", indexFile, e);
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package de.gesellix.docker.client.image;
+
+import de.gesellix.docker.client.container.DirectoryTarWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes a Merkle-style sha256 hash of a build context and the build options which affect the resulting image.
+ * <p>
+ * Every file contributes its path, type, permissions and content, every directory the hashes of its children.
+ * Like in the archived context, directories which aren't included themselves only contribute their included children.
+ * Modification times and owners are ignored, so that fresh checkouts of the same sources get the same hash.
+ * File contents are hashed in parallel, with at most one task per processor.
+ */
+public class BuildContextHasher {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ExecutorService executor;
+  private final int parallelism;
+
+  public BuildContextHasher(ExecutorService executor) {
+    this(executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  public BuildContextHasher(ExecutorService executor, int parallelism) {
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * @return the hex encoded hash of the files which would be sent as build context, and of the build options
+   */
+  public String hash(Path contextDirectory, DirectoryTarWriter.EntryFilter filter, BuildOptions options) throws IOException {
+    Path root = contextDirectory.toAbsolutePath().normalize();
+    List<Node> files = new ArrayList<>();
+    Map<String, Map<String, Node>> children = new HashMap<>();
+    children.put("", new TreeMap<>());
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (dir.equals(root)) {
+          return FileVisitResult.CONTINUE;
+        }
+        Path relative = root.relativize(dir);
+        if (!filter.descend(relative)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        String path = slashes(relative);
+        children.put(path, new TreeMap<>());
+        if (filter.include(relative, true)) {
+          add(children, path, new Node("dir", permissions(dir), null, null));
+        } else {
+          // only a parent of included entries, which the engine creates implicitly
+          add(children, path, new Node("parent", "", null, null));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path relative = root.relativize(file);
+        if (!filter.include(relative, false)) {
+          return FileVisitResult.CONTINUE;
+        }
+        if (attrs.isSymbolicLink()) {
+          add(children, slashes(relative), new Node("link", permissions(file), Files.readSymbolicLink(file).toString(), null));
+        } else if (attrs.isRegularFile()) {
+          Node node = new Node("file", permissions(file), null, file);
+          files.add(node);
+          add(children, slashes(relative), node);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+
+    hashContents(files);
+
+    MessageDigest digest = sha256();
+    update(digest, "context", hashDirectory("", children));
+    update(digest, "dockerfile", options.getDockerfile());
+    update(digest, "target", options.getTarget());
+    update(digest, "platform", options.getPlatform());
+    for (Map.Entry<String, String> buildArg : new TreeMap<>(options.getBuildArgs()).entrySet()) {
+      update(digest, "arg", buildArg.getKey() + "=" + buildArg.getValue());
+    }
+    for (Map.Entry<String, String> label : new TreeMap<>(options.getLabels()).entrySet()) {
+      update(digest, "label", label.getKey() + "=" + label.getValue());
+    }
+    return hex(digest.digest());
+  }
+
+  private void hashContents(List<Node> files) throws IOException {
+    AtomicInteger next = new AtomicInteger();
+    List<CompletableFuture<Void>> workers = new ArrayList<>(parallelism);
+    for (int i = 0; i < Math.min(parallelism, files.size()); i++) {
+      workers.add(CompletableFuture.runAsync(() -> {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int index;
+        while ((index = next.getAndIncrement()) < files.size()) {
+          Node node = files.get(index);
+          node.contentHash = hashContent(node.file, buffer);
+        }
+      }, executor));
+    }
+    try {
+      CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static String hashContent(Path file, byte[] buffer) {
+    MessageDigest digest = sha256();
+    try (InputStream input = Files.newInputStream(file)) {
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return hex(digest.digest());
+  }
+
+  /**
+   * @return the directory's hash, or <code>null</code> when the directory contributes no entries
+   */
+  private static String hashDirectory(String path, Map<String, Map<String, Node>> children) {
+    MessageDigest digest = sha256();
+    boolean empty = true;
+    for (Map.Entry<String, Node> child : children.get(path).entrySet()) {
+      Node node = child.getValue();
+      String childPath = path.isEmpty() ? child.getKey() : path + "/" + child.getKey();
+      String hash;
+      if (node.type.equals("dir") || node.type.equals("parent")) {
+        hash = hashDirectory(childPath, children);
+        if (hash == null && node.type.equals("parent")) {
+          continue;
+        }
+      } else {
+        hash = node.linkTarget != null ? node.linkTarget : node.contentHash;
+      }
+      update(digest, child.getKey(), node.type + " " + node.permissions + " " + hash);
+      empty = false;
+    }
+    return empty ? null : hex(digest.digest());
+  }
+
+  private static void add(Map<String, Map<String, Node>> children, String path, Node node) {
+    int separator = path.lastIndexOf('/');
+    String parent = separator < 0 ? "" : path.substring(0, separator);
+    children.get(parent).put(path.substring(separator + 1), node);
+  }
+
+  private static String permissions(Path path) {
+    try {
+      return PosixFilePermissions.toString(Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS));
+    } catch (UnsupportedOperationException | IOException e) {
+      // e.g. on Windows
+      return "";
+    }
+  }
+
+  private static String slashes(Path relative) {
+    return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+  }
+
+  private static void update(MessageDigest digest, String key, String value) {
+    digest.update(key.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    if (value != null) {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update((byte) 0);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  static class Node {
+
+    final String type;
+    final String permissions;
+    final String linkTarget;
+    final Path file;
+    volatile String contentHash;
+
+    Node(String type, String permissions, String linkTarget, Path file) {
+      this.type = type;
+      this.permissions = permissions;
+      this.linkTarget = linkTarget;
+      this.file = file;
+    }
+  }
+}
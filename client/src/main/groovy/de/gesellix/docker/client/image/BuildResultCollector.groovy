@@ -0,0 +1,120 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.BuildInfo
+import de.gesellix.docker.remote.api.core.Cancellable
+import de.gesellix.docker.remote.api.core.StreamCallback
+
+import java.time.Duration
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+/**
+ * Collects the {@link BuildResult} from a build's progress stream while passing the stream on to another callback.
+ * <p>
+ * The image id is taken from the engine's <code>aux</code> message, or from the
+ * <code>Successfully built</code> message of engines which don't send it.
+ */
+class BuildResultCollector implements StreamCallback<BuildInfo> {
+
+  private static final Pattern STEP = Pattern.compile("^Step (\\d+)/\\d+ : (.*)")
+  private static final Pattern SUCCESSFULLY_BUILT = Pattern.compile("^Successfully built ([a-f0-9]+)")
+  private static final Pattern WARNING = Pattern.compile("^\\[?warning\\]?:?\\s*(.*)", Pattern.CASE_INSENSITIVE)
+
+  private final StreamCallback<BuildInfo> delegate
+  private final long started = System.nanoTime()
+
+  private String imageId
+  private String error
+  private final List<String> warnings = []
+  private final List<BuildResult.Step> steps = []
+  private Integer stepNumber
+  private String stepInstruction
+  private long stepStarted
+  private boolean stepCached
+  private Duration duration
+
+  BuildResultCollector(StreamCallback<BuildInfo> delegate = null) {
+    this.delegate = delegate
+  }
+
+  @Override
+  void onStarting(Cancellable cancellable) {
+    delegate?.onStarting(cancellable)
+  }
+
+  @Override
+  synchronized void onNext(BuildInfo info) {
+    if (info.aux?.id) {
+      imageId = info.aux.id
+    }
+    if (info.error || info.errorDetail?.message) {
+      error = info.errorDetail?.message ?: info.error
+    }
+    info.stream?.readLines()?.each { String line -> onLine(line.trim()) }
+    delegate?.onNext(info)
+  }
+
+  private void onLine(String line) {
+    Matcher step = STEP.matcher(line)
+    if (step.matches()) {
+      finishStep()
+      stepNumber = step.group(1) as Integer
+      stepInstruction = step.group(2)
+      stepStarted = System.nanoTime()
+      stepCached = false
+      return
+    }
+    if (line == "---> Using cache") {
+      stepCached = true
+      return
+    }
+    Matcher built = SUCCESSFULLY_BUILT.matcher(line)
+    if (built.find()) {
+      // the aux message carries the full id
+      imageId = imageId ?: built.group(1)
+      return
+    }
+    Matcher warning = WARNING.matcher(line)
+    if (warning.matches()) {
+      warnings << warning.group(1)
+    }
+  }
+
+  private void finishStep() {
+    if (stepNumber != null) {
+      steps << new BuildResult.Step(stepNumber, stepInstruction, Duration.ofNanos(System.nanoTime() - stepStarted), stepCached)
+      stepNumber = null
+    }
+  }
+
+  @Override
+  synchronized void onFailed(Exception e) {
+    error = error ?: (e.message ?: e.class.simpleName)
+    delegate?.onFailed(e)
+  }
+
+  @Override
+  void onFinished() {
+    synchronized (this) {
+      finishStep()
+      duration = Duration.ofNanos(System.nanoTime() - started)
+    }
+    delegate?.onFinished()
+  }
+
+  /**
+   * @return the result so far, including the current step when the stream hasn't finished yet
+   */
+  synchronized BuildResult getResult() {
+    List<BuildResult.Step> result = new ArrayList<>(steps)
+    if (stepNumber != null) {
+      result << new BuildResult.Step(stepNumber, stepInstruction, Duration.ofNanos(System.nanoTime() - stepStarted), stepCached)
+    }
+    return new BuildResult(
+        error ? null : imageId,
+        new ArrayList<>(warnings),
+        result,
+        duration ?: Duration.ofNanos(System.nanoTime() - started),
+        error)
+  }
+}
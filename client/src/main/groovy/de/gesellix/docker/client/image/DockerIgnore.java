@@ -0,0 +1,212 @@
+package de.gesellix.docker.client.image;
+
+import de.gesellix.docker.client.container.DirectoryTarWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches paths of a build context against the rules of a <code>.dockerignore</code> file,
+ * following the semantics of the Docker CLI:
+ * <ul>
+ * <li>patterns are relative to the context directory and also exclude everything below a matching directory,</li>
+ * <li><code>*</code> and <code>?</code> don't match a <code>/</code>, <code>**</code> matches any number of directories,</li>
+ * <li>patterns starting with <code>!</code> re-include paths, and the last matching pattern wins.</li>
+ * </ul>
+ * The <code>.dockerignore</code> file and the Dockerfile are always sent to the engine.
+ */
+public class DockerIgnore implements DirectoryTarWriter.EntryFilter {
+
+  public static final String FILE_NAME = ".dockerignore";
+
+  private final List<Rule> rules;
+  private final boolean hasExclusions;
+
+  public DockerIgnore(List<String> patterns) {
+    List<Rule> parsed = new ArrayList<>(patterns.size());
+    boolean exclusions = false;
+    for (String line : patterns) {
+      Rule rule = Rule.parse(line);
+      if (rule != null) {
+        parsed.add(rule);
+        exclusions |= rule.exclusion;
+      }
+    }
+    this.rules = Collections.unmodifiableList(parsed);
+    this.hasExclusions = exclusions;
+  }
+
+  /**
+   * Reads the <code>.dockerignore</code> of the context directory, if present.
+   *
+   * @param dockerfile the Dockerfile's path relative to the context directory, which is never ignored
+   */
+  public static DockerIgnore read(Path contextDirectory, String dockerfile) throws IOException {
+    List<String> patterns = new ArrayList<>();
+    Path file = contextDirectory.resolve(FILE_NAME);
+    if (Files.isRegularFile(file)) {
+      patterns.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+    if (!patterns.isEmpty()) {
+      patterns.add("!" + FILE_NAME);
+      if (dockerfile != null && !dockerfile.isEmpty()) {
+        patterns.add("!" + dockerfile);
+      }
+    }
+    return new DockerIgnore(patterns);
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * @param relativePath a <code>/</code> separated path, relative to the context directory
+   * @return whether the path is excluded from the build context
+   */
+  public boolean isIgnored(String relativePath) {
+    String path = clean(relativePath);
+    List<String> parents = parents(path);
+    boolean matched = false;
+    for (Rule rule : rules) {
+      // exclusions can only change the result for matched paths, and vice versa
+      if (rule.exclusion != matched) {
+        continue;
+      }
+      boolean match = rule.matches(path);
+      for (int i = 0; !match && i < parents.size(); i++) {
+        match = rule.matches(parents.get(i));
+      }
+      if (match) {
+        matched = !rule.exclusion;
+      }
+    }
+    return matched;
+  }
+
+  @Override
+  public boolean descend(Path relativeDirectory) {
+    String path = toSlashes(relativeDirectory);
+    if (!isIgnored(path)) {
+      return true;
+    }
+    if (!hasExclusions) {
+      return false;
+    }
+    // an ignored directory still needs to be walked when an exclusion might re-include something below it
+    String prefix = path + "/";
+    for (Rule rule : rules) {
+      if (rule.exclusion && (rule.pattern + "/").startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean include(Path relativePath, boolean directory) {
+    return !isIgnored(toSlashes(relativePath));
+  }
+
+  private static String toSlashes(Path relative) {
+    return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+  }
+
+  private static List<String> parents(String path) {
+    List<String> parents = new ArrayList<>();
+    int index = path.indexOf('/');
+    while (index > 0) {
+      parents.add(path.substring(0, index));
+      index = path.indexOf('/', index + 1);
+    }
+    return parents;
+  }
+
+  /**
+   * Like Go's <code>filepath.Clean</code>, without a leading <code>/</code>.
+   */
+  static String clean(String path) {
+    Deque<String> segments = new ArrayDeque<>();
+    for (String segment : path.split("/")) {
+      if (segment.isEmpty() || segment.equals(".")) {
+        continue;
+      }
+      if (segment.equals("..")) {
+        segments.pollLast();
+      } else {
+        segments.addLast(segment);
+      }
+    }
+    return segments.isEmpty() ? "." : String.join("/", segments);
+  }
+
+  static class Rule {
+
+    final String pattern;
+    final boolean exclusion;
+    private final Pattern regex;
+
+    Rule(String pattern, boolean exclusion) {
+      this.pattern = pattern;
+      this.exclusion = exclusion;
+      this.regex = Pattern.compile(toRegex(pattern));
+    }
+
+    static Rule parse(String line) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        return null;
+      }
+      boolean exclusion = pattern.startsWith("!");
+      if (exclusion) {
+        pattern = pattern.substring(1).trim();
+        if (pattern.isEmpty()) {
+          throw new IllegalArgumentException("illegal exclusion pattern: \"!\"");
+        }
+      }
+      return new Rule(clean(pattern), exclusion);
+    }
+
+    boolean matches(String path) {
+      return regex.matcher(path).matches();
+    }
+
+    static String toRegex(String pattern) {
+      StringBuilder regex = new StringBuilder();
+      int length = pattern.length();
+      for (int i = 0; i < length; i++) {
+        char c = pattern.charAt(i);
+        if (c == '*') {
+          if (i + 1 < length && pattern.charAt(i + 1) == '*') {
+            i++;
+            // treat "**/" like "**"
+            if (i + 1 < length && pattern.charAt(i + 1) == '/') {
+              i++;
+            }
+            regex.append(i + 1 < length ? "(.*/)?" : ".*");
+          } else {
+            regex.append("[^/]*");
+          }
+        } else if (c == '?') {
+          regex.append("[^/]");
+        } else if (c == '\\' && i + 1 < length) {
+          i++;
+          regex.append(Pattern.quote(String.valueOf(pattern.charAt(i))));
+        } else if (".+()|{}$".indexOf(c) >= 0) {
+          regex.append('\\').append(c);
+        } else {
+          regex.append(c);
+        }
+      }
+      return regex.toString();
+    }
+  }
+}
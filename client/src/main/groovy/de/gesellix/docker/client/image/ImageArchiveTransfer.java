@@ -0,0 +1,268 @@
+package de.gesellix.docker.client.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * Copies image tarballs between the engine and files via NIO channels and direct buffers.
+ * <p>
+ * Every written tarball gets a checksum manifest next to it, named like the tarball with a <code>.sha256</code> suffix
+ * and compatible with <code>sha256sum -c</code>. The manifest lets a tarball which has been copied to another host
+ * be verified before it is loaded, and a failed load be retried from the same file.
+ */
+public class ImageArchiveTransfer {
+
+  private static final Logger log = LoggerFactory.getLogger(ImageArchiveTransfer.class);
+
+  public static final String MANIFEST_SUFFIX = ".sha256";
+
+  // larger regions don't make reading faster, but need more address space
+  static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+  /**
+   * Opens a new stream for every attempt.
+   */
+  @FunctionalInterface
+  public interface Source {
+
+    InputStream open() throws IOException;
+  }
+
+  /**
+   * Consumes the tarball once per attempt.
+   */
+  @FunctionalInterface
+  public interface Sink {
+
+    void accept(InputStream tarball) throws Exception;
+  }
+
+  /**
+   * Writes the source to a temporary file next to the target, and moves it to the target when complete.
+   * Failed attempts don't leave a partial target behind.
+   */
+  public ImageTransferStats write(Source source, Path target, ImageTransferOptions options) throws IOException {
+    Path part = target.resolveSibling(target.getFileName() + ".part");
+    IOException failure = null;
+    for (int attempt = 1; attempt <= Math.max(1, options.getMaxAttempts()); attempt++) {
+      long start = System.nanoTime();
+      MessageDigest digest = sha256();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(options.getBufferSize());
+      long bytes = 0;
+      try (InputStream stream = source.open();
+           ReadableByteChannel input = Channels.newChannel(stream);
+           FileChannel output = FileChannel.open(part, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (input.read(buffer) != -1) {
+          buffer.flip();
+          digest.update(buffer.duplicate());
+          while (buffer.hasRemaining()) {
+            bytes += output.write(buffer);
+          }
+          buffer.clear();
+        }
+        output.force(true);
+      } catch (IOException | UncheckedIOException e) {
+        failure = e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+        log.warn("writing {} failed (attempt {}/{})", target, attempt, options.getMaxAttempts(), e);
+        Files.deleteIfExists(part);
+        continue;
+      }
+      move(part, target);
+      String sha256 = hex(digest.digest());
+      writeManifest(target, sha256);
+      return new ImageTransferStats(target, bytes, Duration.ofNanos(System.nanoTime() - start), sha256, attempt);
+    }
+    throw failure;
+  }
+
+  /**
+   * Verifies the tarball against its manifest, if present and enabled, and passes it to the sink.
+   * Failed attempts are retried when they failed with an {@link IOException}.
+   */
+  public ImageTransferStats read(Path tarball, Sink sink, ImageTransferOptions options) throws Exception {
+    long size = Files.size(tarball);
+    String sha256 = null;
+    if (options.isVerifyChecksum()) {
+      String expected = readManifest(tarball);
+      if (expected != null) {
+        sha256 = checksum(tarball, options);
+        if (!expected.equalsIgnoreCase(sha256)) {
+          throw new IllegalStateException("checksum mismatch for " + tarball + ": expected " + expected + ", but got " + sha256);
+        }
+      }
+    }
+
+    Exception failure = null;
+    for (int attempt = 1; attempt <= Math.max(1, options.getMaxAttempts()); attempt++) {
+      long start = System.nanoTime();
+      try (FileChannel channel = FileChannel.open(tarball, StandardOpenOption.READ);
+           InputStream input = options.isMemoryMapped() ? new MappedFileInputStream(channel, size) : Channels.newInputStream(channel)) {
+        sink.accept(input);
+        return new ImageTransferStats(tarball, size, Duration.ofNanos(System.nanoTime() - start), sha256, attempt);
+      } catch (IOException | UncheckedIOException e) {
+        failure = e;
+        log.warn("reading {} failed (attempt {}/{})", tarball, attempt, options.getMaxAttempts(), e);
+      }
+    }
+    throw failure;
+  }
+
+  /**
+   * @return the hex encoded sha256 checksum of the file
+   */
+  public String checksum(Path file, ImageTransferOptions options) throws IOException {
+    MessageDigest digest = sha256();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (options.isMemoryMapped()) {
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+          digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position)));
+        }
+      } else {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(options.getBufferSize());
+        while (channel.read(buffer) != -1) {
+          buffer.flip();
+          digest.update(buffer);
+          buffer.clear();
+        }
+      }
+    }
+    return hex(digest.digest());
+  }
+
+  public static Path manifestOf(Path tarball) {
+    return tarball.resolveSibling(tarball.getFileName() + MANIFEST_SUFFIX);
+  }
+
+  /**
+   * @return the checksum of the tarball's manifest, or <code>null</code> if there is no manifest
+   */
+  static String readManifest(Path tarball) throws IOException {
+    Path manifest = manifestOf(tarball);
+    if (!Files.isRegularFile(manifest)) {
+      return null;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty()) {
+          return line.split("\\s+", 2)[0];
+        }
+      }
+    }
+    return null;
+  }
+
+  static void writeManifest(Path tarball, String sha256) throws IOException {
+    // the format of sha256sum
+    String line = sha256 + "  " + tarball.getFileName() + "\n";
+    Path part = manifestOf(tarball).resolveSibling(tarball.getFileName() + MANIFEST_SUFFIX + ".part");
+    Files.write(part, line.getBytes(StandardCharsets.UTF_8));
+    move(part, manifestOf(tarball));
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Reads a file via consecutive read-only mappings of {@link #MAPPED_REGION_SIZE} bytes.
+   */
+  static class MappedFileInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long size;
+    private long position = 0;
+    private MappedByteBuffer region;
+
+    MappedFileInputStream(FileChannel channel, long size) {
+      this.channel = channel;
+      this.size = size;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextRegion()) {
+        return -1;
+      }
+      return region.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextRegion()) {
+        return -1;
+      }
+      int count = Math.min(len, region.remaining());
+      region.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return region == null ? 0 : region.remaining();
+    }
+
+    private boolean nextRegion() throws IOException {
+      if (region != null && region.hasRemaining()) {
+        return true;
+      }
+      if (position >= size) {
+        return false;
+      }
+      long length = Math.min(MAPPED_REGION_SIZE, size - position);
+      region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      position += length;
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      region = null;
+      channel.close();
+    }
+  }
+}
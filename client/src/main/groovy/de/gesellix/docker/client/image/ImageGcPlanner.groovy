@@ -0,0 +1,93 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.client.repository.RepositoryTagParser
+import de.gesellix.docker.remote.api.ContainerSummary
+import de.gesellix.docker.remote.api.ImageSummary
+import de.gesellix.docker.remote.api.SystemDataUsageResponse
+
+import java.time.Instant
+
+/**
+ * Decides which images an image garbage collection removes, based on the engine's disk usage report,
+ * which contains all images with their shared sizes and all containers.
+ * <p>
+ * Images are retained when a container uses them, when they are the parent of another image,
+ * when they belong to the newest images of their repository, or when they have been used recently.
+ * The other images are ranked by the size of their unique layers, and the least recently used first on a tie.
+ */
+class ImageGcPlanner {
+
+  private final RepositoryTagParser repositoryTagParser = new RepositoryTagParser()
+
+  ImageGcPlan plan(SystemDataUsageResponse usage, ImageGcOptions options, Instant now) {
+    List<ImageSummary> images = usage.images ?: []
+    List<ContainerSummary> containers = usage.containers ?: []
+
+    Map<String, Long> lastContainerCreated = new HashMap<>()
+    containers.each { ContainerSummary container ->
+      if (container.imageID) {
+        lastContainerCreated.merge(container.imageID, (container.created ?: 0L) as long) { Long a, Long b -> Math.max(a, b) }
+      }
+    }
+    Set<String> parentIds = images.findResults { it.parentId ?: null } as Set
+    Set<String> newest = newestPerRepository(images, options.keepNewestPerRepository)
+    Instant unusedSince = now.minus(options.minUnusedFor)
+
+    List<ImageGcPlan.Candidate> candidates = []
+    Map<String, String> retained = new LinkedHashMap<>()
+    images.each { ImageSummary image ->
+      Instant created = Instant.ofEpochSecond((image.created ?: 0L) as long)
+      Long containerCreated = lastContainerCreated.get(image.id)
+      Instant lastUsed = containerCreated != null && containerCreated > created.epochSecond ? Instant.ofEpochSecond(containerCreated) : created
+      if (containerCreated != null || (image.containers ?: 0) > 0) {
+        retained.put(image.id, "in use by a container")
+      } else if (parentIds.contains(image.id)) {
+        retained.put(image.id, "parent of another image")
+      } else if (newest.contains(image.id)) {
+        retained.put(image.id, "one of the ${options.keepNewestPerRepository} newest images of its repository".toString())
+      } else if (lastUsed.isAfter(unusedSince)) {
+        retained.put(image.id, "used recently")
+      } else {
+        candidates << new ImageGcPlan.Candidate(image.id, tagsOf(image), created, lastUsed, (image.size ?: 0L) as long, (image.sharedSize ?: -1L) as long)
+      }
+    }
+
+    candidates.sort { ImageGcPlan.Candidate a, ImageGcPlan.Candidate b ->
+      b.uniqueSize <=> a.uniqueSize ?: a.lastUsed <=> b.lastUsed
+    }
+    List<ImageGcPlan.Candidate> removals = []
+    long planned = 0
+    candidates.each { ImageGcPlan.Candidate candidate ->
+      if (options.targetBytes > 0 && planned >= options.targetBytes) {
+        retained.put(candidate.id, "target has been reached")
+      } else {
+        removals << candidate
+        planned += candidate.uniqueSize
+      }
+    }
+    return new ImageGcPlan(removals, retained, (usage.layersSize ?: -1L) as long)
+  }
+
+  private Set<String> newestPerRepository(List<ImageSummary> images, int keep) {
+    if (keep <= 0) {
+      return Collections.emptySet()
+    }
+    Map<String, List<ImageSummary>> imagesByRepository = new HashMap<>()
+    images.each { ImageSummary image ->
+      tagsOf(image).collect { repositoryTagParser.parseRepositoryTag(it).repo }.unique().each { String repository ->
+        imagesByRepository.computeIfAbsent(repository) { [] } << image
+      }
+    }
+    Set<String> newest = new HashSet<>()
+    imagesByRepository.values().each { List<ImageSummary> repositoryImages ->
+      repositoryImages.sort { ImageSummary a, ImageSummary b -> (b.created ?: 0L) <=> (a.created ?: 0L) }
+          .take(keep)
+          .each { newest << it.id }
+    }
+    return newest
+  }
+
+  private static List<String> tagsOf(ImageSummary image) {
+    return (image.repoTags ?: []).findAll { it && it != "<none>:<none>" }
+  }
+}
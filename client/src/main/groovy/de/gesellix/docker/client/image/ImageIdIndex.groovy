@@ -0,0 +1,239 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.client.system.EventFollower
+import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.remote.api.EngineApiClient
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.ImageInspect
+import de.gesellix.docker.remote.api.ImageSummary
+import de.gesellix.docker.remote.api.core.ClientException
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An opt-in index of image names (<code>repo:tag</code>) and digests (<code>repo@sha256:...</code>) to image ids.
+ * <p>
+ * The index is seeded with a single image list and kept current by following the image events.
+ * Every event only re-inspects the affected image. Lookups of unknown references inspect the reference once,
+ * a full listing is only performed by the periodic resync, which guards against missed events.
+ * Following the events is delegated to an {@link EventFollower}.
+ */
+class ImageIdIndex {
+
+  private final Logger log = LoggerFactory.getLogger(ImageIdIndex)
+
+  private final EngineApiClient client
+  private final ExecutorService executor
+  private final EventFollower<List<ImageSummary>> follower
+
+  private final Map<String, String> idsByName = new ConcurrentHashMap<>()
+  private final Map<String, String> idsByDigest = new ConcurrentHashMap<>()
+  private final Map<String, Set<String>> referencesById = new ConcurrentHashMap<>()
+
+  private final AtomicLong hits = new AtomicLong()
+  private final AtomicLong misses = new AtomicLong()
+  private final AtomicLong events = new AtomicLong()
+  private final AtomicLong resyncs = new AtomicLong()
+
+  ImageIdIndex(EngineApiClient client, ManageSystem manageSystem, ExecutorService executor, Duration resyncInterval = Duration.ofMinutes(1)) {
+    this.client = client
+    this.executor = executor
+    this.follower = new EventFollower<List<ImageSummary>>("image index", manageSystem, executor, resyncInterval, ["image"],
+        new EventFollower.View<List<ImageSummary>>() {
+
+          @Override
+          List<ImageSummary> load() {
+            return listImages()
+          }
+
+          @Override
+          void replace(List<ImageSummary> images, boolean wasSynced) {
+            replaceImages(images)
+          }
+
+          @Override
+          void apply(EventMessage event) {
+            onEvent(event)
+          }
+
+          @Override
+          void clear() {
+            clearImages()
+          }
+        })
+  }
+
+  /**
+   * Seeds the index and starts following the image events in the background.
+   * When seeding fails, the index isn't started and the failure is rethrown.
+   */
+  void start() {
+    follower.start()
+  }
+
+  void stop() {
+    follower.stop()
+  }
+
+  boolean isRunning() {
+    return follower.running
+  }
+
+  Duration getResyncInterval() {
+    return follower.resyncInterval
+  }
+
+  /**
+   * @param reference a complete image name like <code>repo:tag</code>, or a digest like <code>repo@sha256:...</code>
+   * @return the image id, or <code>null</code> when the engine doesn't know the image
+   */
+  String lookup(String reference) {
+    String id = follower.synced ? (reference.contains("@") ? idsByDigest.get(reference) : idsByName.get(reference)) : null
+    if (id != null) {
+      hits.incrementAndGet()
+      return id
+    }
+    misses.incrementAndGet()
+    long generation = follower.generation
+    ImageInspect image = inspect(reference)
+    if (image == null) {
+      return null
+    }
+    follower.publish(generation) {
+      if (follower.synced) {
+        apply(image.id, image.repoTags, image.repoDigests)
+      }
+    }
+    return image.id
+  }
+
+  long getHits() {
+    return hits.get()
+  }
+
+  long getMisses() {
+    return misses.get()
+  }
+
+  long getEvents() {
+    return events.get()
+  }
+
+  long getResyncs() {
+    return resyncs.get()
+  }
+
+  int size() {
+    return referencesById.size()
+  }
+
+  void resync() {
+    follower.resync()
+  }
+
+  void onEvent(EventMessage event) {
+    // the actor is the image id for tag, untag and delete, but the image name for pull and push
+    String reference = event.actor?.ID
+    if (!reference) {
+      return
+    }
+    events.incrementAndGet()
+    if (event.action == "delete") {
+      remove(reference)
+      return
+    }
+    long generation = follower.generation
+    // refresh asynchronously, so that the events stream isn't blocked by engine requests
+    executor.execute { refresh(reference, generation) }
+  }
+
+  void refresh(String reference) {
+    refresh(reference, follower.generation)
+  }
+
+  private void refresh(String reference, long generation) {
+    try {
+      ImageInspect image = inspect(reference)
+      follower.publish(generation) {
+        if (image == null) {
+          remove(reference)
+        } else {
+          apply(image.id, image.repoTags, image.repoDigests)
+        }
+      }
+    } catch (Exception e) {
+      log.warn("failed to refresh image ${reference}, waiting for the next resync", e)
+    }
+  }
+
+  private ImageInspect inspect(String reference) {
+    try {
+      return client.imageApi.imageInspect(reference)
+    } catch (ClientException e) {
+      if (e.statusCode == 404) {
+        return null
+      }
+      throw e
+    }
+  }
+
+  private synchronized void apply(String id, List<String> repoTags, List<String> repoDigests) {
+    Set<String> references = new HashSet<>()
+    repoTags?.each { String name ->
+      if (name != "<none>:<none>") {
+        references.add(name)
+        idsByName.put(name, id)
+      }
+    }
+    repoDigests?.each { String digest ->
+      if (digest != "<none>@<none>") {
+        references.add(digest)
+        idsByDigest.put(digest, id)
+      }
+    }
+    Set<String> previous = referencesById.put(id, references)
+    previous?.each { String reference ->
+      if (!references.contains(reference)) {
+        idsByName.remove(reference, id)
+        idsByDigest.remove(reference, id)
+      }
+    }
+  }
+
+  private synchronized void remove(String id) {
+    Set<String> references = referencesById.remove(id)
+    references?.each { String reference ->
+      idsByName.remove(reference, id)
+      idsByDigest.remove(reference, id)
+    }
+  }
+
+  private List<ImageSummary> listImages() {
+    return client.imageApi.imageList(false, null, true)
+  }
+
+  private void replaceImages(List<ImageSummary> images) {
+    Set<String> seen = new HashSet<>()
+    images.each { ImageSummary image ->
+      seen.add(image.id)
+      apply(image.id, image.repoTags, image.repoDigests)
+    }
+    new HashSet<>(referencesById.keySet()).each { String id ->
+      if (!seen.contains(id)) {
+        remove(id)
+      }
+    }
+    resyncs.incrementAndGet()
+  }
+
+  private void clearImages() {
+    idsByName.clear()
+    idsByDigest.clear()
+    referencesById.clear()
+  }
+}
@@ -0,0 +1,79 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.BuildInfo
+import de.gesellix.docker.remote.api.CreateImageInfo
+import de.gesellix.docker.remote.api.PushImageInfo
+
+/**
+ * The fields of a pull, push or build event which are needed to follow the progress of its layers.
+ * <p>
+ * The generated models of the three streams don't share a common type, so every stream gets its own factory.
+ * This is the single parser used by {@link PullProgressTracker}, {@link PushResultTracker} and {@link ProgressCallbacks}.
+ */
+class ImageProgressEvent {
+
+  // statuses which mean that a layer has been transferred completely
+  static final List<String> TRANSFERRED = ["Download complete", "Verifying Checksum", "Extracting", "Pull complete", "Already exists", "Pushed", "Layer already exists", "Mounted from"]
+
+  /**
+   * The layer id, or <code>null</code> for events which don't refer to a layer.
+   */
+  final String id
+  final String status
+  /**
+   * The output of a build step, only sent by builds.
+   */
+  final String stream
+  /**
+   * Byte counts of the layer, or <code>-1</code> when the event doesn't carry them.
+   */
+  final long current
+  final long total
+  final String error
+
+  ImageProgressEvent(String id, String status, String stream, long current, long total, String error) {
+    this.id = id
+    this.status = status
+    this.stream = stream
+    this.current = current
+    this.total = total
+    this.error = error
+  }
+
+  static ImageProgressEvent of(CreateImageInfo info) {
+    return new ImageProgressEvent(info.id, info.status, null,
+        bytes(info.progressDetail?.current), bytes(info.progressDetail?.total),
+        info.errorDetail?.message ?: info.error)
+  }
+
+  static ImageProgressEvent of(PushImageInfo info) {
+    return new ImageProgressEvent(info.id, info.status, null,
+        bytes(info.progressDetail?.current), bytes(info.progressDetail?.total),
+        info.error)
+  }
+
+  static ImageProgressEvent of(BuildInfo info) {
+    return new ImageProgressEvent(info.id, info.status, info.stream,
+        bytes(info.progressDetail?.current), bytes(info.progressDetail?.total),
+        info.errorDetail?.message ?: info.error)
+  }
+
+  /**
+   * @return <code>true</code> when the status means that the layer has been transferred completely
+   */
+  static boolean isTransferred(String status) {
+    if (status == null) {
+      return false
+    }
+    for (int i = 0; i < TRANSFERRED.size(); i++) {
+      if (status.startsWith(TRANSFERRED.get(i))) {
+        return true
+      }
+    }
+    return false
+  }
+
+  private static long bytes(Object value) {
+    return value == null ? -1L : value as long
+  }
+}
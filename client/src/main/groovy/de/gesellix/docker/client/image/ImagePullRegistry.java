@@ -0,0 +1,114 @@
+package de.gesellix.docker.client.image;
+
+import de.gesellix.docker.client.repository.RepositoryAndTag;
+import de.gesellix.docker.client.repository.RepositoryTagParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent pulls of the same image, so that only one of them is sent to the engine.
+ * <p>
+ * Images are identified by their normalized <code>repo:tag</code>, e.g. <code>nginx</code>,
+ * <code>library/nginx:latest</code> and <code>docker.io/library/nginx</code> share a single pull.
+ * Callers joining an in-flight pull get its result or failure, regardless of the credentials they would have used.
+ * A single instance is meant to be shared by all clients of a daemon.
+ */
+public class ImagePullRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(ImagePullRegistry.class);
+
+  private final RepositoryTagParser repositoryTagParser;
+  private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong pulls = new AtomicLong();
+  private final AtomicLong coalescedPulls = new AtomicLong();
+
+  public ImagePullRegistry() {
+    this(new RepositoryTagParser());
+  }
+
+  public ImagePullRegistry(RepositoryTagParser repositoryTagParser) {
+    this.repositoryTagParser = repositoryTagParser;
+  }
+
+  /**
+   * Runs the pull, unless a pull of the same image is already in progress.
+   * In that case, waits for the in-flight pull and returns its result.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T pull(String image, Callable<T> pull) throws Exception {
+    String key = normalize(image);
+    CompletableFuture<Object> pending = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, pending);
+    if (existing != null) {
+      coalescedPulls.incrementAndGet();
+      log.info("waiting for the in-flight pull of '{}'", key);
+      try {
+        return (T) existing.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw cause instanceof Exception ? (Exception) cause : e;
+      }
+    }
+
+    pulls.incrementAndGet();
+    try {
+      T result = pull.call();
+      pending.complete(result);
+      return result;
+    } catch (Throwable t) {
+      // errors must complete the pending pull, too, or callers waiting for it would block forever
+      pending.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, pending);
+    }
+  }
+
+  /**
+   * @return the image reference as <code>repo:tag</code>, with the default registry and tag made explicit
+   */
+  public String normalize(String image) {
+    RepositoryAndTag repositoryAndTag = repositoryTagParser.parseRepositoryTag(image);
+    String repo = repositoryAndTag.repo;
+    for (String defaultRegistry : new String[]{"docker.io/", "index.docker.io/", "registry-1.docker.io/"}) {
+      if (repo.startsWith(defaultRegistry)) {
+        repo = repo.substring(defaultRegistry.length());
+        break;
+      }
+    }
+    if (!repo.contains("/")) {
+      repo = "library/" + repo;
+    }
+    String tag = repositoryAndTag.tag == null || repositoryAndTag.tag.isEmpty() ? "latest" : repositoryAndTag.tag;
+    return repo + ":" + tag;
+  }
+
+  /**
+   * @return the number of pulls which have actually been sent to the engine
+   */
+  public long getPulls() {
+    return pulls.get();
+  }
+
+  /**
+   * @return the number of pulls which have been served by an in-flight pull of the same image
+   */
+  public long getCoalescedPulls() {
+    return coalescedPulls.get();
+  }
+
+  public Set<String> getInFlight() {
+    return inFlight.keySet();
+  }
+}
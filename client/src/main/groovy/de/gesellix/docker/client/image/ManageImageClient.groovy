@@ -1,7 +1,12 @@
 package de.gesellix.docker.client.image
 
+import com.squareup.moshi.Moshi
 import de.gesellix.docker.client.EngineResponseContent
 import de.gesellix.docker.client.authentication.ManageAuthentication
+import de.gesellix.docker.client.batch.BatchExecutor
+import de.gesellix.docker.client.batch.BatchItemResult
+import de.gesellix.docker.client.batch.BatchReport
+import de.gesellix.docker.client.container.DirectoryTarWriter
 import de.gesellix.docker.client.repository.RepositoryAndTag
 import de.gesellix.docker.client.repository.RepositoryTagParser
 import de.gesellix.docker.remote.api.BuildInfo
@@ -14,28 +19,97 @@ import de.gesellix.docker.remote.api.ImagePruneResponse
 import de.gesellix.docker.remote.api.ImageSearchResponseItem
 import de.gesellix.docker.remote.api.ImageSummary
 import de.gesellix.docker.remote.api.PushImageInfo
+import de.gesellix.docker.remote.api.SystemDataUsageResponse
 import de.gesellix.docker.remote.api.client.ImageApi
+import de.gesellix.docker.remote.api.core.ClientException
 import de.gesellix.docker.remote.api.core.StreamCallback
+import de.gesellix.util.ParallelGzipOutputStream
 import de.gesellix.util.QueryParameterEncoder
+import okio.Okio
+import okio.Pipe
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.nio.file.Path
 import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Semaphore
+import java.util.function.Supplier
 
 class ManageImageClient implements ManageImage {
 
   private final Logger log = LoggerFactory.getLogger(ManageImageClient)
 
+  // bounds the part of the build context which has been read from disk, but not been sent yet
+  static final long BUILD_CONTEXT_PIPE_SIZE = 1024 * 1024
+
   private EngineApiClient client
   private RepositoryTagParser repositoryTagParser
   private QueryParameterEncoder queryParameterEncoder
   private ManageAuthentication manageAuthentication
-
-  ManageImageClient(EngineApiClient client, ManageAuthentication manageAuthentication) {
+  private BatchExecutor batchExecutor
+  private ImagePullRegistry imagePullRegistry
+  private DirectoryTarWriter directoryTarWriter
+  private ImageArchiveTransfer imageArchiveTransfer
+  private Moshi moshi = new Moshi.Builder().build()
+  private BuildContextHasher buildContextHasher
+  private ImageGcPlanner imageGcPlanner = new ImageGcPlanner()
+  private volatile ImageIdIndex imageIdIndex
+  private volatile BuildCache buildCache
+  private volatile ContentAddressedCache contentAddressedCache
+
+  ManageImageClient(EngineApiClient client,
+                    ManageAuthentication manageAuthentication,
+                    BatchExecutor batchExecutor = new BatchExecutor(),
+                    ImagePullRegistry imagePullRegistry = new ImagePullRegistry()) {
     this.client = client
     this.manageAuthentication = manageAuthentication
+    this.batchExecutor = batchExecutor
+    this.imagePullRegistry = imagePullRegistry
     this.repositoryTagParser = new RepositoryTagParser()
     this.queryParameterEncoder = new QueryParameterEncoder()
+    this.directoryTarWriter = new DirectoryTarWriter()
+    this.imageArchiveTransfer = new ImageArchiveTransfer()
+    this.buildContextHasher = new BuildContextHasher(batchExecutor.executor)
+  }
+
+  /**
+   * Lets {@link #inspectImage} and {@link #history} answer lookups by image id from the cache.
+   */
+  void setContentAddressedCache(ContentAddressedCache contentAddressedCache) {
+    this.contentAddressedCache = contentAddressedCache
+  }
+
+  ContentAddressedCache getContentAddressedCache() {
+    return contentAddressedCache
+  }
+
+  /**
+   * Lets {@link #findImageId} resolve names and digests via the index, as long as the index is running.
+   */
+  void setImageIdIndex(ImageIdIndex imageIdIndex) {
+    this.imageIdIndex = imageIdIndex
+  }
+
+  ImageIdIndex getImageIdIndex() {
+    return imageIdIndex
+  }
+
+  /**
+   * Lets builds from a context directory skip the upload and the build,
+   * when an image has already been built from the same context and build options.
+   * Pass <code>null</code> to always build.
+   */
+  void setBuildCache(BuildCache buildCache) {
+    this.buildCache = buildCache
+  }
+
+  BuildCache getBuildCache() {
+    return buildCache
   }
 
   @Override
@@ -109,19 +183,159 @@ class ManageImageClient implements ManageImage {
         null,
         buildContext,
         callback, timeout ? timeout.toMillis() : null)
+    invalidateImages()
+  }
+
+  @Override
+  BuildResult build(Path contextDirectory, BuildOptions options, StreamCallback<BuildInfo> callback) {
+    return build(contextDirectory, options, callback, null)
+  }
+
+  @Override
+  BuildResult build(Path contextDirectory, BuildOptions options, StreamCallback<BuildInfo> callback, Duration timeout) {
+    log.info("docker build ${contextDirectory}")
+    long started = System.nanoTime()
+    BuildOptions buildOptions = options ?: new BuildOptions()
+    DockerIgnore dockerIgnore = DockerIgnore.read(contextDirectory, buildOptions.dockerfile)
+    Map<String, String> labels = new LinkedHashMap<>(buildOptions.labels ?: [:])
+
+    BuildCache cache = buildCache
+    String contextHash = null
+    if (cache != null) {
+      contextHash = buildContextHasher.hash(contextDirectory, dockerIgnore, buildOptions)
+      // pulling might update the base images, which isn't reflected by the context hash
+      String cachedImageId = buildOptions.noCache || buildOptions.pull ? null : findCachedImage(cache, contextHash)
+      if (cachedImageId) {
+        log.info("skipping the build, image ${cachedImageId} has been built from the same context")
+        if (buildOptions.tag) {
+          tag(cachedImageId, buildOptions.tag)
+        }
+        callback?.onNext(new BuildInfo(stream: "Using image ${cachedImageId}, built from the same context\n".toString()))
+        callback?.onFinished()
+        return new BuildResult(cachedImageId, [], [], Duration.ofNanos(System.nanoTime() - started), null)
+      }
+      labels.put(BuildCache.CONTEXT_HASH_LABEL, contextHash)
+    }
+
+    BuildResultCollector collector = new BuildResultCollector(callback)
+    streamBuildContext(contextDirectory, dockerIgnore, buildOptions, labels, collector, timeout)
+    BuildResult result = collector.result
+
+    if (contextHash && result.successful) {
+      // engines without aux messages only report the short id
+      String imageId = result.imageId.startsWith("sha256:") ? result.imageId : findImageByContextHash(contextHash)
+      if (imageId) {
+        cache.put(contextHash, imageId)
+      }
+    }
+    return result
+  }
+
+  private void streamBuildContext(Path contextDirectory, DockerIgnore dockerIgnore, BuildOptions buildOptions, Map<String, String> labels,
+                                  StreamCallback<BuildInfo> callback, Duration timeout) {
+    String encodedRegistryConfig = manageAuthentication.encodeAuthConfigs(manageAuthentication.getAllAuthConfigs())
+
+    Pipe pipe = new Pipe(BUILD_CONTEXT_PIPE_SIZE)
+    CompletableFuture<Long> writer = CompletableFuture.supplyAsync({
+      try {
+        OutputStream target = Okio.buffer(pipe.sink()).outputStream()
+        if (buildOptions.gzip) {
+          target = new ParallelGzipOutputStream(target, batchExecutor.executor, buildOptions.compressionBlockSize, Runtime.runtime.availableProcessors())
+        }
+        return directoryTarWriter.write(contextDirectory, target, dockerIgnore)
+      } catch (Exception e) {
+        // let the build fail instead of sending a truncated context
+        pipe.cancel()
+        throw e
+      }
+    } as Supplier<Long>, batchExecutor.executor)
+
+    InputStream buildContext = Okio.buffer(pipe.source()).inputStream()
+    try {
+      client.imageApi.imageBuild(buildOptions.dockerfile,
+          buildOptions.tag, null, null, buildOptions.quiet, buildOptions.noCache, null, buildOptions.pull ? "1" : null,
+          buildOptions.rm, null,
+          null, null, null, null, null, null,
+          buildOptions.buildArgs ? moshi.adapter(Map).toJson(buildOptions.buildArgs) : null,
+          null,
+          null,
+          labels ? moshi.adapter(Map).toJson(labels) : null,
+          null,
+          ImageApi.ContentTypeImageBuild.ApplicationSlashXMinusTar,
+          encodedRegistryConfig,
+          buildOptions.platform, buildOptions.target,
+          null,
+          buildContext,
+          callback, timeout ? timeout.toMillis() : null)
+    } catch (Exception e) {
+      writer.cancel(true)
+      pipe.cancel()
+      throwWriterFailure(writer)
+      throw e
+    } finally {
+      invalidateImages()
+      buildContext.close()
+    }
+    throwWriterFailure(writer)
+    log.info("sent ${writer.join()} files as build context")
+  }
+
+  /**
+   * @return the id of an existing image with the context hash, or <code>null</code>
+   */
+  private String findCachedImage(BuildCache cache, String contextHash) {
+    String imageId = cache.get(contextHash)
+    if (imageId) {
+      // image ids are content digests, so an existing image is still the one built from the context
+      try {
+        return client.imageApi.imageInspect(imageId).id
+      } catch (ClientException e) {
+        if (e.statusCode != 404) {
+          throw e
+        }
+      }
+      cache.remove(contextHash)
+    }
+    // the label outlives a lost or foreign index
+    imageId = findImageByContextHash(contextHash)
+    if (imageId) {
+      cache.put(contextHash, imageId)
+    }
+    return imageId
+  }
+
+  private String findImageByContextHash(String contextHash) {
+    String filters = moshi.adapter(Map).toJson([label: ["${BuildCache.CONTEXT_HASH_LABEL}=${contextHash}".toString()]])
+    List<ImageSummary> images = client.imageApi.imageList(false, filters, false)
+    return images?.max { it.created ?: 0L }?.id
+  }
+
+  private void throwWriterFailure(CompletableFuture<Long> writer) {
+    try {
+      writer.get()
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("failed to archive the build context", e.cause)
+    } catch (CancellationException ignored) {
+    }
   }
 
   @Override
   EngineResponseContent<List<HistoryResponseItem>> history(String imageId) {
     log.info("docker history")
-    List<HistoryResponseItem> imageHistory = client.imageApi.imageHistory(imageId)
+    ContentAddressedCache cache = contentAddressedCache
+    List<HistoryResponseItem> imageHistory = cache
+        ? cache.get(ContentAddressedCache.HISTORY, imageId) { client.imageApi.imageHistory(imageId) }
+        : client.imageApi.imageHistory(imageId)
     return new EngineResponseContent<List<HistoryResponseItem>>(imageHistory)
   }
 
   @Override
   EngineResponseContent<ImageInspect> inspectImage(String imageId) {
     log.info("docker inspect image")
-    ImageInspect imageInspect = client.imageApi.imageInspect(imageId)
+    ContentAddressedCache cache = contentAddressedCache
+    ImageInspect imageInspect = cache
+        ? cache.get(ContentAddressedCache.INSPECT, imageId) { client.imageApi.imageInspect(imageId) }
+        : client.imageApi.imageInspect(imageId)
     return new EngineResponseContent<ImageInspect>(imageInspect)
   }
 
@@ -129,6 +343,18 @@ class ManageImageClient implements ManageImage {
   void load(InputStream imagesTarball) {
     log.info("docker load")
     client.imageApi.imageLoad(null, imagesTarball)
+    invalidateImages()
+  }
+
+  @Override
+  ImageTransferStats loadFrom(Path tarball, ImageTransferOptions options = new ImageTransferOptions()) {
+    log.info("docker load ${tarball}")
+    ImageTransferStats stats = imageArchiveTransfer.read(tarball, { InputStream stream ->
+      client.imageApi.imageLoad(null, stream)
+    } as ImageArchiveTransfer.Sink, options)
+    invalidateImages()
+    log.info("loaded ${stats}")
+    return stats
   }
 
   /**
@@ -175,9 +401,46 @@ class ManageImageClient implements ManageImage {
   EngineResponseContent<ImagePruneResponse> pruneImages(String filters = null) {
     log.info("docker image prune")
     ImagePruneResponse imagePrune = client.imageApi.imagePrune(filters)
+    invalidateImages()
     return new EngineResponseContent<ImagePruneResponse>(imagePrune)
   }
 
+  @Override
+  ImageGcPlan planImageGc(ImageGcOptions options = new ImageGcOptions()) {
+    log.info("docker image gc (plan)")
+    // the disk usage report contains all images with their shared sizes and all containers in a single response
+    SystemDataUsageResponse usage = client.systemApi.systemDataUsage()
+    return imageGcPlanner.plan(usage, options, Instant.now())
+  }
+
+  @Override
+  ImageGcResult executeImageGc(ImageGcPlan plan, ImageGcOptions options = new ImageGcOptions()) {
+    log.info("docker image gc (${plan.removals.size()} images)")
+    Map<String, ImageGcPlan.Candidate> candidates = plan.removals.collectEntries { [(it.id): it] }
+    BatchReport<List<ImageDeleteResponseItem>> removals = batchExecutor.execute(candidates.keySet(), options.maxParallel) { String id ->
+      List<String> repoTags = candidates.get(id).repoTags.findAll { it != "<none>:<none>" }
+      List<ImageDeleteResponseItem> deleted = []
+      if (repoTags.size() > 1) {
+        // the engine only removes an image with several tags by id when forced, which would also remove it
+        // from under containers created since the plan. the image is removed with its last tag instead,
+        // unless a container uses it by then.
+        repoTags.each { String repoTag ->
+          deleted.addAll(client.imageApi.imageDelete(repoTag, false, null) ?: [])
+        }
+      } else {
+        deleted.addAll(client.imageApi.imageDelete(id, false, null) ?: [])
+      }
+      invalidateImages()
+      return deleted
+    }
+    long reclaimed = 0
+    if (!removals.succeeded.isEmpty()) {
+      Long layersSize = client.systemApi.systemDataUsage().layersSize
+      reclaimed = plan.layersSize < 0 || layersSize == null ? -1 : Math.max(0, plan.layersSize - layersSize)
+    }
+    return new ImageGcResult(plan, removals, reclaimed)
+  }
+
   @Override
   void pull(StreamCallback<CreateImageInfo> callback, Duration timeout,
             String imageName, String tag = "", String authBase64Encoded = ".") {
@@ -196,9 +459,90 @@ class ManageImageClient implements ManageImage {
         callback,
         timeout ? timeout.toMillis() : null
     )
+    invalidateImages()
 //    return findImageId(actualImageName, tag)
   }
 
+  @Override
+  BatchReport<PullProgress> pullAll(Collection<String> images, PullOptions options = new PullOptions()) {
+    log.info("docker pull (${images.size()} images)")
+    // keep the first reference of every image, so that the report can be read with the caller's references
+    Map<String, String> imagesByName = new LinkedHashMap<>()
+    images.each { String image -> imagesByName.putIfAbsent(imagePullRegistry.normalize(image), image) }
+    Map<String, List<String>> imagesByRegistry = imagesByName.values().groupBy { String image -> registryOf(image) }
+
+    Map<String, Semaphore> registryPermits = new HashMap<>()
+    imagesByRegistry.keySet().each { String registry -> registryPermits.put(registry, new Semaphore(Math.max(1, options.maxParallelPerRegistry), true)) }
+    Map<String, String> encodedAuthByRegistry = new ConcurrentHashMap<>()
+
+    // the registry's permit is acquired before the batch and daemon permits, so that waiting pulls don't block other registries
+    return batchExecutor.execute(interleave(imagesByRegistry.values()), options.maxParallel, { String image -> registryPermits.get(registryOf(image)) }) { String image ->
+      String registry = registryOf(image)
+      String encodedAuth = encodedAuthByRegistry.computeIfAbsent(registry) { manageAuthentication.retrieveEncodedAuthTokenForImage(image) }
+      // joins pulls of the same image, e.g. by a concurrent container create
+      Object result = imagePullRegistry.pull(image) { pullWithProgress(image, encodedAuth, options) }
+      return result instanceof PullProgress
+          ? (PullProgress) result
+          : new PullProgress(image, PullProgress.Phase.COMPLETE, 0, 0, 0, 0, 0, null, null)
+    }
+  }
+
+  private PullProgress pullWithProgress(String image, String encodedAuth, PullOptions options) {
+    PullProgressTracker tracker = new PullProgressTracker(image, options.progressListener)
+    String fromImage = image
+    String tag = ""
+    if (!image.contains("@")) {
+      RepositoryAndTag repoAndTag = repositoryTagParser.parseRepositoryTag(image)
+      fromImage = repoAndTag.repo
+      tag = repoAndTag.tag ?: "latest"
+    }
+    client.imageApi.imageCreate(
+        fromImage,
+        null,
+        null,
+        tag,
+        null,
+        encodedAuth,
+        null,
+        options.platform,
+        null,
+        tracker,
+        options.timeout ? options.timeout.toMillis() : null
+    )
+    invalidateImages()
+    if (tracker.error) {
+      throw new IllegalStateException("failed to pull '${image}': ${tracker.error}")
+    }
+    // completes the progress in case the stream didn't, the tracker ignores repeated calls
+    tracker.onFinished()
+    return tracker.progress
+  }
+
+  /**
+   * @return the registry's hostname, following the rules of the Docker CLI
+   */
+  static String registryOf(String image) {
+    int slash = image.indexOf('/')
+    String first = slash < 0 ? "" : image.substring(0, slash)
+    return (first.contains(".") || first.contains(":") || first == "localhost") ? first : "docker.io"
+  }
+
+  /**
+   * Orders the images round-robin by registry, so that every registry gets its share of the batch slots early on.
+   */
+  private static List<String> interleave(Collection<List<String>> imagesByRegistry) {
+    List<String> ordered = new ArrayList<>()
+    List<Iterator<String>> iterators = imagesByRegistry.collect { it.iterator() }
+    while (iterators.any { it.hasNext() }) {
+      iterators.each { Iterator<String> iterator ->
+        if (iterator.hasNext()) {
+          ordered.add(iterator.next())
+        }
+      }
+    }
+    return ordered
+  }
+
   @Override
   void importUrl(StreamCallback<CreateImageInfo> callback, Duration timeout,
                  String url, String repository = "", String tag = "") {
@@ -217,6 +561,7 @@ class ManageImageClient implements ManageImage {
         callback,
         timeout ? timeout.toMillis() : null
     )
+    invalidateImages()
   }
 
   @Override
@@ -237,6 +582,7 @@ class ManageImageClient implements ManageImage {
         callback,
         timeout ? timeout.toMillis() : null
     )
+    invalidateImages()
   }
 
   @Override
@@ -260,15 +606,87 @@ class ManageImageClient implements ManageImage {
         repoAndTag.tag as String,
         callback,
         timeout ? timeout.toMillis() : null)
+    // a push adds the repository digest to the image
+    invalidateImages()
+  }
+
+  @Override
+  BatchReport<PushResult> pushAll(String image, List<String> registries, PushOptions options = new PushOptions()) {
+    return pushAll([image], registries, options)
+  }
+
+  @Override
+  BatchReport<PushResult> pushAll(Collection<String> images, List<String> registries, PushOptions options = new PushOptions()) {
+    log.info("docker push (${images.size()} images to ${registries.size()} registries)")
+    Map<String, String> imagesByTarget = new LinkedHashMap<>()
+    images.each { String image ->
+      registries.each { String registry ->
+        imagesByTarget.putIfAbsent(registry ? "${registry}/${image}".toString() : image, image)
+      }
+    }
+
+    // tag everything before the first push starts
+    Map<String, BatchItemResult<PushResult>> tagFailures = new HashMap<>()
+    imagesByTarget.each { String target, String image ->
+      if (target != image) {
+        long start = System.nanoTime()
+        try {
+          tag(image, target)
+        } catch (Exception e) {
+          tagFailures.put(target, BatchItemResult.failure(target, e, Duration.ofNanos(System.nanoTime() - start)))
+        }
+      }
+    }
+
+    Map<String, List<String>> targetsByRegistry = imagesByTarget.keySet()
+        .findAll { !tagFailures.containsKey(it) }
+        .groupBy { String target -> registryOf(target) }
+    Map<String, Semaphore> registryPermits = new HashMap<>()
+    targetsByRegistry.keySet().each { String registry -> registryPermits.put(registry, new Semaphore(Math.max(1, options.maxParallelPerRegistry), true)) }
+    Map<String, String> encodedAuthByRegistry = new ConcurrentHashMap<>()
+
+    BatchReport<PushResult> pushes = batchExecutor.execute(interleave(targetsByRegistry.values()), options.maxParallel, { String target -> registryPermits.get(registryOf(target)) }) { String target ->
+      String registry = registryOf(target)
+      String encodedAuth = encodedAuthByRegistry.computeIfAbsent(registry) { manageAuthentication.retrieveEncodedAuthTokenForImage(target) }
+      return pushWithResult(imagesByTarget.get(target), target, encodedAuth, options)
+    }
+    if (tagFailures.isEmpty()) {
+      return pushes
+    }
+    // report all targets in the order of the arguments
+    return new BatchReport<PushResult>(imagesByTarget.keySet().collect { String target -> tagFailures.get(target) ?: pushes.getItem(target) })
+  }
+
+  private PushResult pushWithResult(String image, String target, String encodedAuth, PushOptions options) {
+    PushResultTracker tracker = new PushResultTracker(image, target)
+    RepositoryAndTag repoAndTag = repositoryTagParser.parseRepositoryTag(target)
+    client.imageApi.imagePush(repoAndTag.repo as String,
+        encodedAuth ?: ".",
+        repoAndTag.tag as String,
+        tracker,
+        options.timeout ? options.timeout.toMillis() : null)
+    invalidateImages()
+    if (tracker.error) {
+      throw new IllegalStateException("failed to push '${target}': ${tracker.error}")
+    }
+    return tracker.result
   }
 
   @Override
   EngineResponseContent<List<ImageDeleteResponseItem>> rmi(String imageId) {
     log.info("docker rmi")
     List<ImageDeleteResponseItem> imageDelete = client.imageApi.imageDelete(imageId, null, null)
+    invalidateImages()
     return new EngineResponseContent<List<ImageDeleteResponseItem>>(imageDelete)
   }
 
+  /**
+   * Inspections and histories contain the tags of an image, which may have been added, moved or removed.
+   */
+  private void invalidateImages() {
+    contentAddressedCache?.invalidateImages()
+  }
+
   @Override
   EngineResponseContent<InputStream> save(List<String> images) {
     log.info("docker save")
@@ -276,46 +694,42 @@ class ManageImageClient implements ManageImage {
     return new EngineResponseContent<InputStream>(savedImages)
   }
 
+  @Override
+  ImageTransferStats saveTo(List<String> images, Path target, ImageTransferOptions options = new ImageTransferOptions()) {
+    log.info("docker save ${images} to ${target}")
+    ImageTransferStats stats = imageArchiveTransfer.write({
+      client.imageApi.imageGetAll(images)
+    } as ImageArchiveTransfer.Source, target, options)
+    log.info("saved ${stats}")
+    return stats
+  }
+
   @Override
   void tag(String imageId, String repository) {
     log.info("docker tag")
     RepositoryAndTag repoAndTag = repositoryTagParser.parseRepositoryTag(repository)
     client.imageApi.imageTag(imageId, repoAndTag.repo, repoAndTag.tag)
+    invalidateImages()
   }
 
   @Override
   String findImageId(String imageName, String tag = "") {
     boolean isDigest = imageName.contains '@'
-    List<ImageSummary> images = images((isDigest) ? [digests: '1'] : [:]).content
-//        println new JsonBuilder(images).toString()
-    def imageIdsByRepoDigest = images.collectEntries { image ->
-      image.repoDigests?.collectEntries { String repoDigest ->
-        Map<String, Object> idByDigest = new HashMap<String, Object>()
-        idByDigest[repoDigest] = (String) image.id
-        idByDigest
-      } ?: [:]
-    }
-    def imageIdsByName = images.collectEntries { image ->
-      image.repoTags?.collectEntries { String repoTag ->
-        Map<String, Object> idByName = new HashMap<String, Object>()
-        idByName[repoTag] = (String) image.id
-        idByName
-      } ?: [:]
+    String reference = isDigest ? imageName.toString() : "$imageName:${tag ?: 'latest'}".toString()
+    ImageIdIndex index = imageIdIndex
+    String imageId = (index?.running) ? index.lookup(reference) : findImageIdInList(reference, isDigest)
+    if (imageId) {
+      return imageId
     }
+    log.warn("couldn't find imageId for `${reference}` via `docker images`")
+    return reference
+  }
 
-    if (isDigest) {
-      if (imageIdsByRepoDigest[imageName.toString()]) {
-        return imageIdsByRepoDigest[imageName.toString()]
-      }
-      log.warn("couldn't find imageId for `${imageName}` via `docker images`")
-      return imageName
-    } else {
-      String canonicalImageName = "$imageName:${tag ?: 'latest'}"
-      if (imageIdsByName[canonicalImageName]) {
-        return imageIdsByName[canonicalImageName]
-      }
-      log.warn("couldn't find imageId for `${canonicalImageName}` via `docker images`")
-      return canonicalImageName
+  private String findImageIdInList(String reference, boolean isDigest) {
+    List<ImageSummary> images = images((isDigest) ? [digests: '1'] : [:]).content
+    ImageSummary match = images.find { ImageSummary image ->
+      (isDigest ? image.repoDigests : image.repoTags)?.contains(reference)
     }
+    return match?.id
   }
 }
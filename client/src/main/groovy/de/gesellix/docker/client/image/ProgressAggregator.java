@@ -0,0 +1,154 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates the progress events of a pull, push or build into a fixed-size layer table,
+ * and notifies the listener at most once per interval.
+ * <p>
+ * The table and the snapshot are allocated once, so the memory usage doesn't grow with the number of events.
+ * When more layers than the table's size are reported, the additional layers are only tracked by their byte counts,
+ * so that the totals stay correct.
+ * Errors and the end of the stream are always published immediately.
+ *
+ * @see ProgressCallbacks
+ */
+public class ProgressAggregator {
+
+  public static final int DEFAULT_MAX_LAYERS = 128;
+
+  private final ProgressListener listener;
+  private final long intervalNanos;
+  private final ProgressSnapshot snapshot;
+  // byte counts (current, total) of the layers which don't fit into the table, only allocated when needed
+  private Map<String, long[]> overflow;
+  private long lastPublished;
+  private boolean dirty = false;
+
+  public ProgressAggregator(ProgressListener listener, Duration interval) {
+    this(listener, interval, DEFAULT_MAX_LAYERS);
+  }
+
+  public ProgressAggregator(ProgressListener listener, Duration interval, int maxLayers) {
+    if (maxLayers < 1) {
+      throw new IllegalArgumentException("maxLayers must be positive, but was " + maxLayers);
+    }
+    this.listener = listener;
+    this.intervalNanos = interval.toNanos();
+    this.snapshot = new ProgressSnapshot(maxLayers);
+    this.lastPublished = System.nanoTime() - intervalNanos;
+  }
+
+  /**
+   * Records a layer's status. Byte counts below zero are ignored.
+   *
+   * @param id the layer id, or <code>null</code> for events which don't refer to a layer
+   */
+  public synchronized void update(String id, String status, long current, long total) {
+    snapshot.events++;
+    if (status != null) {
+      snapshot.phase = status;
+    }
+    if (id != null) {
+      int layer = layer(id);
+      if (layer < 0) {
+        updateOverflow(id, current, total);
+      } else {
+        updateLayer(layer, status, current, total);
+      }
+    }
+    dirty = true;
+    publish(false);
+  }
+
+  /**
+   * Marks the layer as transferred, e.g. on <code>Download complete</code>, when the engine doesn't send a final byte count.
+   */
+  public synchronized void complete(String id, String status) {
+    int layer = layer(id);
+    long total = layer >= 0 ? snapshot.layerTotal[layer] : overflow != null && overflow.containsKey(id) ? overflow.get(id)[1] : 0;
+    update(id, status, total, -1);
+  }
+
+  public synchronized void error(String message) {
+    snapshot.events++;
+    snapshot.error = message;
+    dirty = true;
+    publish(true);
+  }
+
+  public synchronized void finish() {
+    snapshot.finished = true;
+    dirty = true;
+    publish(true);
+  }
+
+  /**
+   * @return the current snapshot, which is only consistent while no events are being processed
+   */
+  public synchronized ProgressSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  private void updateLayer(int layer, String status, long current, long total) {
+    if (status != null) {
+      snapshot.layerStatus[layer] = status;
+    }
+    if (total > 0) {
+      snapshot.totalBytes += total - snapshot.layerTotal[layer];
+      snapshot.layerTotal[layer] = total;
+    }
+    if (current >= 0) {
+      snapshot.currentBytes += current - snapshot.layerCurrent[layer];
+      snapshot.layerCurrent[layer] = current;
+    }
+  }
+
+  private void updateOverflow(String id, long current, long total) {
+    if (overflow == null) {
+      overflow = new HashMap<>();
+    }
+    long[] bytes = overflow.get(id);
+    if (bytes == null) {
+      bytes = new long[2];
+      overflow.put(id, bytes);
+      snapshot.overflowLayerCount++;
+    }
+    if (total > 0) {
+      snapshot.totalBytes += total - bytes[1];
+      bytes[1] = total;
+    }
+    if (current >= 0) {
+      snapshot.currentBytes += current - bytes[0];
+      bytes[0] = current;
+    }
+  }
+
+  private int layer(String id) {
+    int count = snapshot.layerCount;
+    for (int i = 0; i < count; i++) {
+      if (id.equals(snapshot.layerIds[i])) {
+        return i;
+      }
+    }
+    if (count < snapshot.layerIds.length) {
+      snapshot.layerIds[count] = id;
+      snapshot.layerCount++;
+      return count;
+    }
+    // tracked separately by updateOverflow
+    return -1;
+  }
+
+  private void publish(boolean force) {
+    long now = System.nanoTime();
+    if (!dirty || (!force && now - lastPublished < intervalNanos)) {
+      return;
+    }
+    lastPublished = now;
+    dirty = false;
+    listener.onProgress(snapshot);
+  }
+}
@@ -0,0 +1,80 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.BuildInfo
+import de.gesellix.docker.remote.api.CreateImageInfo
+import de.gesellix.docker.remote.api.PushImageInfo
+import de.gesellix.docker.remote.api.core.StreamCallback
+
+import java.time.Duration
+import java.util.function.Function
+
+/**
+ * Callbacks for {@link ManageImage#pull}, {@link ManageImage#push} and {@link ManageImage#build},
+ * which report coalesced progress snapshots instead of every single event.
+ * <p>
+ * Example:
+ * <pre>
+ * dockerClient.pull(ProgressCallbacks.pull({ println it } as ProgressListener, Duration.ofMillis(500)), null, "nginx")
+ * </pre>
+ */
+class ProgressCallbacks {
+
+  static StreamCallback<CreateImageInfo> pull(ProgressListener listener, Duration interval) {
+    return new AggregatingCallback<CreateImageInfo>(new ProgressAggregator(listener, interval), { CreateImageInfo info -> ImageProgressEvent.of(info) })
+  }
+
+  static StreamCallback<PushImageInfo> push(ProgressListener listener, Duration interval) {
+    return new AggregatingCallback<PushImageInfo>(new ProgressAggregator(listener, interval), { PushImageInfo info -> ImageProgressEvent.of(info) })
+  }
+
+  static StreamCallback<BuildInfo> build(ProgressListener listener, Duration interval) {
+    return new AggregatingCallback<BuildInfo>(new ProgressAggregator(listener, interval), { BuildInfo info -> ImageProgressEvent.of(info) })
+  }
+
+  static class AggregatingCallback<T> implements StreamCallback<T> {
+
+    final ProgressAggregator aggregator
+    private final Function<T, ImageProgressEvent> parser
+
+    AggregatingCallback(ProgressAggregator aggregator, Function<T, ImageProgressEvent> parser) {
+      this.aggregator = aggregator
+      this.parser = parser
+    }
+
+    @Override
+    void onNext(T element) {
+      ImageProgressEvent event = parser.apply(element)
+      if (event.error) {
+        aggregator.error(event.error)
+        return
+      }
+      String id = event.id
+      String status = event.status
+      if (status == null) {
+        // build output, e.g. "Step 2/5 : RUN make"
+        String line = event.stream?.trim()
+        status = line ? line : null
+        id = null
+      }
+      if (status?.startsWith("Pulling from ")) {
+        // refers to the tag, not to a layer
+        id = null
+      }
+      if (id && ImageProgressEvent.isTransferred(status)) {
+        aggregator.complete(id, status)
+      } else {
+        aggregator.update(id, status, event.current, event.total)
+      }
+    }
+
+    @Override
+    void onFailed(Exception e) {
+      aggregator.error(e.message ?: e.class.simpleName)
+    }
+
+    @Override
+    void onFinished() {
+      aggregator.finish()
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.CreateImageInfo
+import de.gesellix.docker.remote.api.core.StreamCallback
+
+/**
+ * Folds the per-layer events of a pull into a single {@link PullProgress}.
+ * <p>
+ * The listener is only notified when the image's phase or a layer's state changes,
+ * or when the overall download progress advances by at least one percent.
+ */
+class PullProgressTracker implements StreamCallback<CreateImageInfo> {
+
+  enum LayerState {
+    WAITING, DOWNLOADING, DOWNLOADED, EXTRACTING, COMPLETE
+  }
+
+  static class Layer {
+
+    LayerState state = LayerState.WAITING
+    long current = 0
+    long total = 0
+  }
+
+  private final String image
+  private final PullProgressListener listener
+
+  private final Map<String, Layer> layers = new LinkedHashMap<>()
+  private PullProgress.Phase phase = PullProgress.Phase.WAITING
+  private String digest
+  private String error
+  private boolean finished = false
+  private PullProgress progress
+
+  PullProgressTracker(String image, PullProgressListener listener = null) {
+    this.image = image
+    this.listener = listener
+    this.progress = snapshot()
+  }
+
+  synchronized PullProgress getProgress() {
+    return progress
+  }
+
+  synchronized String getError() {
+    return error
+  }
+
+  @Override
+  synchronized void onNext(CreateImageInfo info) {
+    ImageProgressEvent event = ImageProgressEvent.of(info)
+    if (event.error) {
+      error = event.error
+      phase = PullProgress.Phase.FAILED
+      publish()
+      return
+    }
+    String status = event.status
+    if (!status) {
+      return
+    }
+    if (status.startsWith("Digest: ")) {
+      digest = status.substring("Digest: ".length())
+      return
+    }
+    if (status.startsWith("Pulling from ")) {
+      phase = PullProgress.Phase.RESOLVING
+      publish()
+      return
+    }
+    if (!event.id || status.startsWith("Status: ")) {
+      return
+    }
+
+    Layer layer = layers.computeIfAbsent(event.id) { new Layer() }
+    switch (status) {
+      case "Pulling fs layer":
+      case "Waiting":
+        layer.state = LayerState.WAITING
+        break
+      case "Downloading":
+        layer.state = LayerState.DOWNLOADING
+        layer.current = Math.max(0L, event.current)
+        layer.total = event.total > 0 ? event.total : layer.total
+        break
+      case "Verifying Checksum":
+      case "Download complete":
+        layer.state = LayerState.DOWNLOADED
+        layer.current = layer.total
+        break
+      case "Extracting":
+        layer.state = LayerState.EXTRACTING
+        layer.current = layer.total
+        break
+      case "Pull complete":
+      case "Already exists":
+        layer.state = LayerState.COMPLETE
+        layer.current = layer.total
+        break
+      default:
+        return
+    }
+    phase = layers.values().any { it.state == LayerState.EXTRACTING || it.state == LayerState.COMPLETE }
+        ? PullProgress.Phase.EXTRACTING
+        : PullProgress.Phase.DOWNLOADING
+    publish()
+  }
+
+  @Override
+  synchronized void onFailed(Exception e) {
+    error = e.message ?: e.class.simpleName
+    phase = PullProgress.Phase.FAILED
+    publish()
+  }
+
+  @Override
+  synchronized void onFinished() {
+    if (finished) {
+      return
+    }
+    finished = true
+    if (phase != PullProgress.Phase.FAILED) {
+      phase = PullProgress.Phase.COMPLETE
+      layers.values().each { it.state = LayerState.COMPLETE }
+    }
+    publish()
+  }
+
+  private void publish() {
+    PullProgress previous = progress
+    PullProgress current = snapshot()
+    progress = current
+    if (listener != null && (previous.phase != current.phase
+        || previous.layers != current.layers
+        || previous.layersDownloaded != current.layersDownloaded
+        || previous.layersComplete != current.layersComplete
+        || previous.percent != current.percent)) {
+      listener.onProgress(current)
+    }
+  }
+
+  private PullProgress snapshot() {
+    int downloaded = 0
+    int complete = 0
+    long downloadedBytes = 0
+    long totalBytes = 0
+    layers.values().each { Layer layer ->
+      if (layer.state != LayerState.WAITING && layer.state != LayerState.DOWNLOADING) {
+        downloaded++
+      }
+      if (layer.state == LayerState.COMPLETE) {
+        complete++
+      }
+      downloadedBytes += layer.current
+      totalBytes += layer.total
+    }
+    return new PullProgress(image, phase, layers.size(), downloaded, complete, downloadedBytes, totalBytes, digest, error)
+  }
+}
@@ -0,0 +1,82 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.PushImageInfo
+import de.gesellix.docker.remote.api.core.StreamCallback
+
+import java.time.Duration
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+/**
+ * Folds the per-layer events of a push into a single {@link PushResult}.
+ * <p>
+ * The pushed bytes are the sizes of the pushed layers, as reported by their last progress event.
+ * Progress events are only attributed by their layer id, so the bytes remain zero for events without ids.
+ */
+class PushResultTracker implements StreamCallback<PushImageInfo> {
+
+  // e.g. "latest: digest: sha256:4711... size: 1234"
+  private static final Pattern DIGEST = Pattern.compile("digest: (sha256:[a-f0-9]{64})")
+
+  private final String image
+  private final String target
+  private final long started = System.nanoTime()
+
+  private final Map<String, Long> sizeByLayer = new HashMap<>()
+  private long bytesPushed = 0
+  private int layersPushed = 0
+  private int layersExisting = 0
+  private String digest
+  private String error
+
+  PushResultTracker(String image, String target) {
+    this.image = image
+    this.target = target
+  }
+
+  synchronized String getError() {
+    return error
+  }
+
+  @Override
+  void onNext(PushImageInfo info) {
+    onEvent(ImageProgressEvent.of(info))
+  }
+
+  synchronized void onEvent(ImageProgressEvent event) {
+    if (event.error) {
+      error = event.error
+      return
+    }
+    String status = event.status
+    if (!status) {
+      return
+    }
+    Matcher matcher = DIGEST.matcher(status)
+    if (matcher.find()) {
+      digest = matcher.group(1)
+      return
+    }
+    // every layer is reported once as pushed or existing
+    if (status == "Pushed") {
+      layersPushed++
+      Long size = event.id ? sizeByLayer.remove(event.id) : null
+      if (size != null) {
+        bytesPushed += size
+      }
+    } else if (status == "Layer already exists" || status.startsWith("Mounted from")) {
+      layersExisting++
+    } else if (status == "Pushing" && event.id && event.total > 0) {
+      sizeByLayer.put(event.id, event.total)
+    }
+  }
+
+  @Override
+  synchronized void onFailed(Exception e) {
+    error = e.message ?: e.class.simpleName
+  }
+
+  synchronized PushResult getResult() {
+    return new PushResult(image, target, digest, bytesPushed, layersPushed, layersExisting, Duration.ofNanos(System.nanoTime() - started))
+  }
+}
@@ -1,7 +1,11 @@
 package de.gesellix.docker.client.stack
 
+import com.squareup.moshi.Moshi
 import de.gesellix.docker.client.EngineResponseContent
 import de.gesellix.docker.client.authentication.ManageAuthentication
+import de.gesellix.docker.client.batch.BatchExecutor
+import de.gesellix.docker.client.batch.BatchItemResult
+import de.gesellix.docker.client.batch.BatchReport
 import de.gesellix.docker.client.config.ManageConfig
 import de.gesellix.docker.client.network.ManageNetwork
 import de.gesellix.docker.client.node.ManageNode
@@ -10,13 +14,13 @@ import de.gesellix.docker.client.service.ManageService
 import de.gesellix.docker.client.stack.types.StackConfig
 import de.gesellix.docker.client.stack.types.StackSecret
 import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.client.system.SystemEventsRequest
 import de.gesellix.docker.client.tasks.ManageTask
 import de.gesellix.docker.remote.api.Config
 import de.gesellix.docker.remote.api.ConfigSpec
+import de.gesellix.docker.remote.api.EventMessage
 import de.gesellix.docker.remote.api.Network
 import de.gesellix.docker.remote.api.NetworkCreateRequest
-import de.gesellix.docker.remote.api.Node
-import de.gesellix.docker.remote.api.NodeState
 import de.gesellix.docker.remote.api.Secret
 import de.gesellix.docker.remote.api.SecretSpec
 import de.gesellix.docker.remote.api.Service
@@ -26,12 +30,26 @@ import de.gesellix.docker.remote.api.ServiceSpec
 import de.gesellix.docker.remote.api.ServiceUpdateRequest
 import de.gesellix.docker.remote.api.ServiceUpdateResponse
 import de.gesellix.docker.remote.api.Task
+import de.gesellix.docker.remote.api.TaskSpecContainerSpec
 import de.gesellix.docker.remote.api.TaskSpecContainerSpecConfigsInner
 import de.gesellix.docker.remote.api.TaskSpecContainerSpecSecretsInner
 import de.gesellix.docker.remote.api.TaskState
+import de.gesellix.docker.remote.api.core.Cancellable
+import de.gesellix.docker.remote.api.core.StreamCallback
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicBoolean
+
 class ManageStackClient implements ManageStack {
 
   private final Logger log = LoggerFactory.getLogger(ManageStackClient)
@@ -44,6 +62,11 @@ class ManageStackClient implements ManageStack {
   private ManageConfig manageConfig
   private ManageSystem manageSystem
   private ManageAuthentication manageAuthentication
+  private BatchExecutor batchExecutor
+  private SpecHasher specHasher = new SpecHasher()
+
+  // how often the tasks of a converging stack are listed, which covers the tasks on nodes other than the client's node
+  Duration convergencePollInterval = Duration.ofSeconds(5)
 
   ManageStackClient(
       ManageService manageService,
@@ -53,7 +76,8 @@ class ManageStackClient implements ManageStack {
       ManageSecret manageSecret,
       ManageConfig manageConfig,
       ManageSystem manageSystem,
-      ManageAuthentication manageAuthentication) {
+      ManageAuthentication manageAuthentication,
+      BatchExecutor batchExecutor = new BatchExecutor()) {
     this.manageService = manageService
     this.manageTask = manageTask
     this.manageNode = manageNode
@@ -62,6 +86,7 @@ class ManageStackClient implements ManageStack {
     this.manageConfig = manageConfig
     this.manageSystem = manageSystem
     this.manageAuthentication = manageAuthentication
+    this.batchExecutor = batchExecutor
   }
 
   @Override
@@ -97,130 +122,471 @@ class ManageStackClient implements ManageStack {
     Map<String, String> changedSecrets = createSecrets(namespace, config.secrets)
     Map<String, String> changedConfigs = createConfigs(namespace, config.configs)
 
-    config.services.each { Map.Entry<String, ServiceSpec> service ->
-      List<TaskSpecContainerSpecSecretsInner> containerSpecSecrets = service.value.taskTemplate?.containerSpec?.secrets
-      if (containerSpecSecrets) {
-        changedSecrets.each { String name, String secretId ->
-          int index = containerSpecSecrets.findIndexOf { TaskSpecContainerSpecSecretsInner spec -> spec.secretName == name }
-          if (index >= 0) {
-            containerSpecSecrets.set(index, new TaskSpecContainerSpecSecretsInner(
-                containerSpecSecrets.get(index).file,
-                secretId,
-                name
-            ))
-          }
+    useSecretAndConfigIds(config.services, changedSecrets, changedConfigs)
+
+    Instant deployStarted = Instant.now()
+    Set<String> updatedServiceIds = createOrUpdateServices(namespace, config.services, options.sendRegistryAuth)
+
+    if (options.waitForConvergence) {
+      StackConvergence convergence
+      try {
+        convergence = awaitConvergence(namespace, options.convergenceTimeout, new StackConvergenceTracker(namespace, deployStarted, updatedServiceIds)).get()
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("stack ${namespace} did not converge: ${e.cause?.message}", e.cause)
+      }
+      if (!convergence.converged) {
+        throw new IllegalStateException("stack ${namespace} failed to converge: ${convergence.failures}")
+      }
+    }
+  }
+
+  @Override
+  CompletableFuture<StackConvergence> awaitConvergence(String namespace, Duration timeout) {
+    return awaitConvergence(namespace, timeout, new StackConvergenceTracker(namespace))
+  }
+
+  private CompletableFuture<StackConvergence> awaitConvergence(String namespace, Duration timeout, StackConvergenceTracker tracker) {
+    log.info("docker stack wait")
+
+    // events since the listing are replayed, so that no change between the listing and the subscription gets lost
+    long since = Instant.now().epochSecond
+    tracker.seed(stackServices(namespace).content ?: [], stackPs(namespace).content ?: [])
+    if (!tracker.future.done) {
+      Instant deadline = Instant.now().plus(timeout)
+      batchExecutor.executor.execute { pollConvergence(namespace, tracker, deadline) }
+      batchExecutor.executor.execute { followConvergence(namespace, tracker, since, timeout) }
+    }
+    return tracker.future
+  }
+
+  /**
+   * Lists the stack's tasks once per poll interval, until the stack has converged.
+   */
+  private void pollConvergence(String namespace, StackConvergenceTracker tracker, Instant deadline) {
+    while (Instant.now().isBefore(deadline)) {
+      try {
+        Duration remaining = Duration.between(Instant.now(), deadline)
+        tracker.future.get(Math.max(1L, Math.min(convergencePollInterval.toMillis(), remaining.toMillis())), TimeUnit.MILLISECONDS)
+        return
+      } catch (TimeoutException ignored) {
+        // the stack hasn't converged yet
+      } catch (ExecutionException | CancellationException ignored) {
+        return
+      }
+      try {
+        tracker.onTasks(stackPs(namespace).content ?: [])
+      } catch (Exception e) {
+        log.warn("failed to list the tasks of stack ${namespace}", e)
+      }
+    }
+  }
+
+  /**
+   * Lists the tasks of a changed service, because the container events of its tasks on other nodes don't reach the client.
+   */
+  private void refreshServiceTasks(String namespace, StackConvergenceTracker tracker, String serviceId, Set<String> pendingRefreshes) {
+    if (!pendingRefreshes.add(serviceId)) {
+      return
+    }
+    // refresh asynchronously, so that the events stream isn't blocked by engine requests
+    batchExecutor.executor.execute {
+      pendingRefreshes.remove(serviceId)
+      if (tracker.future.done) {
+        return
+      }
+      try {
+        tracker.onTasks(serviceId, stackPs(namespace, [service: [(serviceId): true]]).content ?: [])
+      } catch (Exception e) {
+        log.warn("failed to list the tasks of service ${serviceId}", e)
+      }
+    }
+  }
+
+  private void followConvergence(String namespace, StackConvergenceTracker tracker, long since, Duration timeout) {
+    String filters = new Moshi.Builder().build().adapter(Map).toJson([type: ["service", "container"]])
+    Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet()
+    Cancellable[] eventsStream = new Cancellable[1]
+    tracker.future.whenComplete { result, error -> eventsStream[0]?.cancel() }
+    StreamCallback<EventMessage> callback = new StreamCallback<EventMessage>() {
+
+      @Override
+      void onStarting(Cancellable cancellable) {
+        eventsStream[0] = cancellable
+        if (tracker.future.done) {
+          cancellable.cancel()
         }
       }
 
-      List<TaskSpecContainerSpecConfigsInner> containerSpecConfigs = service.value.taskTemplate?.containerSpec?.configs
-      if (containerSpecConfigs) {
-        changedConfigs.each { String name, String configId ->
-          int index = containerSpecConfigs.findIndexOf { TaskSpecContainerSpecConfigsInner spec -> spec.configName == name }
-          if (index >= 0) {
-            containerSpecConfigs.set(index, new TaskSpecContainerSpecConfigsInner(
-                containerSpecConfigs.get(index).file,
-                containerSpecConfigs.get(index).runtime,
-                configId,
-                name
-            ))
-          }
+      @Override
+      void onNext(EventMessage element) {
+        tracker.onEvent(element)
+        String serviceId = tracker.changedServiceId(element)
+        if (serviceId != null) {
+          refreshServiceTasks(namespace, tracker, serviceId, pendingRefreshes)
+        }
+      }
+    }
+    Instant deadline = Instant.now().plus(timeout)
+    while (!tracker.future.done && Instant.now().isBefore(deadline)) {
+      try {
+        manageSystem.events(new SystemEventsRequest(String.valueOf(since), null, filters), callback, Duration.between(Instant.now(), deadline))
+      } catch (Exception e) {
+        if (tracker.future.done) {
+          break
+        }
+        log.warn("events of stack ${namespace} failed, resubscribing", e)
+        Thread.sleep(1000)
+      }
+    }
+    tracker.future.completeExceptionally(new TimeoutException("stack ${namespace} did not converge within ${timeout}: ${tracker.snapshot()}"))
+  }
+
+  /**
+   * The deploy config isn't changed, the spec hashes are computed from copies of its specs.
+   */
+  @Override
+  StackDeployPlan planStackDeploy(String namespace, DeployStackConfig config, DeployStackOptions options) {
+    log.info("docker stack deploy (plan)")
+
+    List<StackDeployPlan.Change> changes = []
+
+    Map<String, Network> existingNetworks = existingNetworksByName(namespace)
+    config.networks.values().each { NetworkCreateRequest network ->
+      String specHash = networkSpecHash(namespace, network)
+      Network existing = existingNetworks.get(network.name)
+      StackDeployPlan.Action action = !existing
+          ? StackDeployPlan.Action.CREATE
+          : networkConflicts(existing, specHash) ? StackDeployPlan.Action.CONFLICT : StackDeployPlan.Action.UNCHANGED
+      changes << new StackDeployPlan.Change(StackDeployPlan.ResourceType.NETWORK, network.name, action)
+    }
+
+    Map<String, String> secretIds = [:]
+    Set<String> createdSecrets = []
+    if (config.secrets) {
+      Map<String, List<Secret>> knownSecrets = knownSecretsByName(config.secrets.values()*.name)
+      config.secrets.values().each { StackSecret secret ->
+        List<Secret> known = knownSecrets.get(secret.name) ?: []
+        if (known.empty) {
+          createdSecrets << secret.name
+        } else {
+          secretIds.put(secret.name, known.first().ID)
         }
+        // secrets don't have a spec hash, so existing secrets are always updated
+        changes << new StackDeployPlan.Change(StackDeployPlan.ResourceType.SECRET, secret.name,
+            known.empty ? StackDeployPlan.Action.CREATE : StackDeployPlan.Action.UPDATE)
       }
     }
 
-    createOrUpdateServices(namespace, config.services, options.sendRegistryAuth)
+    Map<String, String> configIds = [:]
+    Set<String> createdConfigs = []
+    if (config.configs) {
+      Map<String, List<Config>> knownConfigs = knownConfigsByName(config.configs.values()*.name)
+      config.configs.values().each { StackConfig stackConfig ->
+        String specHash = configSpecHash(namespace, stackConfig)
+        List<Config> known = knownConfigs.get(stackConfig.name) ?: []
+        if (known.empty) {
+          createdConfigs << stackConfig.name
+        } else {
+          configIds.put(stackConfig.name, known.first().ID)
+        }
+        changes << new StackDeployPlan.Change(StackDeployPlan.ResourceType.CONFIG, stackConfig.name,
+            plannedAction(!known.empty, known ? known.first().spec?.labels : null, specHash))
+      }
+    }
+
+    Map<String, Service> existingServices = existingServicesByName(namespace)
+    if (options?.pruneServices) {
+      Set<String> names = config.services.keySet().collect { "${namespace}_${it}".toString() } as Set
+      existingServices.keySet().findAll { !names.contains(it) }.each { String name ->
+        changes << new StackDeployPlan.Change(StackDeployPlan.ResourceType.SERVICE, name, StackDeployPlan.Action.REMOVE)
+      }
+    }
+    config.services.each { String internalName, ServiceSpec serviceSpec ->
+      String name = "${namespace}_${internalName}"
+      Service existing = existingServices.get(name)
+      // new secrets and configs get new ids, which change the spec of the services using them
+      boolean usesCreatedItems = serviceSpec.taskTemplate?.containerSpec?.secrets?.any { createdSecrets.contains(it.secretName) } ||
+          serviceSpec.taskTemplate?.containerSpec?.configs?.any { createdConfigs.contains(it.configName) }
+      String specHash = plannedServiceSpecHash(namespace, name, serviceSpec, secretIds, configIds)
+      StackDeployPlan.Action action = plannedAction(existing != null, existing?.spec?.labels, specHash)
+      changes << new StackDeployPlan.Change(StackDeployPlan.ResourceType.SERVICE, name,
+          action == StackDeployPlan.Action.UNCHANGED && usesCreatedItems ? StackDeployPlan.Action.UPDATE : action)
+    }
+    return new StackDeployPlan(changes)
   }
 
-  void createNetworks(String namespace, Map<String, NetworkCreateRequest> networks) {
-    EngineResponseContent<List<Network>> existingNetworks = manageNetwork.networks([
-        filters: [
-            label: [("${LabelNamespace}=${namespace}" as String): true]]])
-    List<String> existingNetworkNames = []
-    existingNetworks.content.each { Network network ->
-      existingNetworkNames << network.name
+  /**
+   * Computes the spec hash {@link #prepareService} would add to the service after {@link #useSecretAndConfigIds},
+   * from a copy of the service's spec.
+   */
+  private String plannedServiceSpecHash(String namespace, String name, ServiceSpec serviceSpec, Map<String, String> secretIds, Map<String, String> configIds) {
+    Map<String, Object> planned = specHasher.copy(serviceSpec) as Map<String, Object>
+    planned.name = serviceSpec.name ?: name
+    planned.labels = stackLabels(namespace, serviceSpec.labels)
+    Map<String, Object> containerSpec = (planned.taskTemplate as Map)?.containerSpec as Map<String, Object>
+    if (containerSpec?.secrets) {
+      containerSpec.secrets = specHasher.copy(withSecretIds(serviceSpec.taskTemplate.containerSpec.secrets, secretIds))
+    }
+    if (containerSpec?.configs) {
+      containerSpec.configs = specHasher.copy(withConfigIds(serviceSpec.taskTemplate.containerSpec.configs, configIds))
+    }
+    return specHasher.hash(planned)
+  }
+
+  /**
+   * Lets the services refer to the secrets and configs by their current ids.
+   */
+  private static void useSecretAndConfigIds(Map<String, ServiceSpec> services, Map<String, String> secretIds, Map<String, String> configIds) {
+    services.each { Map.Entry<String, ServiceSpec> service ->
+      TaskSpecContainerSpec containerSpec = service.value.taskTemplate?.containerSpec
+      if (containerSpec?.secrets) {
+        containerSpec.secrets = withSecretIds(containerSpec.secrets, secretIds)
+      }
+      if (containerSpec?.configs) {
+        containerSpec.configs = withConfigIds(containerSpec.configs, configIds)
+      }
+    }
+  }
+
+  /**
+   * @return a copy of the secret references, which refer to the secrets by the given ids
+   */
+  private static List<TaskSpecContainerSpecSecretsInner> withSecretIds(List<TaskSpecContainerSpecSecretsInner> secrets, Map<String, String> secretIds) {
+    return secrets.collect { TaskSpecContainerSpecSecretsInner secret ->
+      String secretId = secretIds.get(secret.secretName)
+      return secretId == null ? secret : new TaskSpecContainerSpecSecretsInner(
+          secret.file,
+          secretId,
+          secret.secretName
+      )
+    }
+  }
+
+  /**
+   * @return a copy of the config references, which refer to the configs by the given ids
+   */
+  private static List<TaskSpecContainerSpecConfigsInner> withConfigIds(List<TaskSpecContainerSpecConfigsInner> configs, Map<String, String> configIds) {
+    return configs.collect { TaskSpecContainerSpecConfigsInner config ->
+      String configId = configIds.get(config.configName)
+      return configId == null ? config : new TaskSpecContainerSpecConfigsInner(
+          config.file,
+          config.runtime,
+          configId,
+          config.configName
+      )
     }
+  }
+
+  void createNetworks(String namespace, Map<String, NetworkCreateRequest> networks) {
+    Map<String, Network> existingNetworks = existingNetworksByName(namespace)
     networks.each { String name, NetworkCreateRequest network ->
       name = network.name
-      if (!existingNetworkNames.contains(name)) {
+      String specHash = prepareNetwork(namespace, network)
+      Network existing = existingNetworks.get(name)
+      if (!existing) {
         log.info("create network $name: $network")
-        if (!network.labels) {
-          network.labels = [:]
-        }
-        network.labels[(LabelNamespace)] = namespace
         manageNetwork.createNetwork(network)
       }
+      else if (networkConflicts(existing, specHash)) {
+        log.warn("network $name differs from the stack's network, but networks can't be updated")
+      }
     }
   }
 
+  private Map<String, Network> existingNetworksByName(String namespace) {
+    EngineResponseContent<List<Network>> existingNetworks = manageNetwork.networks([
+        filters: [
+            label: [("${LabelNamespace}=${namespace}" as String): true]]])
+    Map<String, Network> networksByName = [:]
+    existingNetworks.content.each { Network network ->
+      networksByName[network.name] = network
+    }
+    return networksByName
+  }
+
+  /**
+   * Adds the stack's labels to the network.
+   *
+   * @return the network's spec hash
+   */
+  private String prepareNetwork(String namespace, NetworkCreateRequest network) {
+    String specHash = networkSpecHash(namespace, network)
+    network.labels = stackLabels(namespace, network.labels)
+    network.labels[(LabelSpecHash)] = specHash
+    return specHash
+  }
+
+  /**
+   * @return the spec hash of the network with the stack's labels, without changing the network
+   */
+  private String networkSpecHash(String namespace, NetworkCreateRequest network) {
+    Map<String, Object> labelled = specHasher.copy(network) as Map<String, Object>
+    labelled.labels = stackLabels(namespace, network.labels)
+    return specHasher.hash(labelled)
+  }
+
+  /**
+   * @return a copy of the labels, with the stack's namespace
+   */
+  private static Map<String, String> stackLabels(String namespace, Map<String, String> labels) {
+    Map<String, String> stackLabels = labels ? new HashMap<String, String>(labels) : new HashMap<String, String>()
+    stackLabels[(LabelNamespace)] = namespace
+    return stackLabels
+  }
+
+  private static boolean isUnchanged(Map<String, String> labels, String specHash) {
+    return labels?.get(LabelSpecHash) == specHash
+  }
+
+  private static StackDeployPlan.Action plannedAction(boolean exists, Map<String, String> labels, String specHash) {
+    if (!exists) {
+      return StackDeployPlan.Action.CREATE
+    }
+    return isUnchanged(labels, specHash) ? StackDeployPlan.Action.UNCHANGED : StackDeployPlan.Action.UPDATE
+  }
+
+  /**
+   * Networks which have been created without a spec hash are assumed to match the stack's network.
+   */
+  private static boolean networkConflicts(Network network, String specHash) {
+    return network.labels?.containsKey(LabelSpecHash) && !isUnchanged(network.labels, specHash)
+  }
+
   Map<String, String> createSecrets(String namespace, Map<String, StackSecret> secrets) {
-    return secrets.collectEntries { String name, StackSecret secret ->
-      List knownSecrets = manageSecret.secrets([filters: [name: [secret.name]]]).content
-      log.debug("known: $knownSecrets")
+    if (!secrets) {
+      return [:]
+    }
+    Map<String, StackSecret> secretsByName = secrets.values().collectEntries { StackSecret secret -> [(secret.name): secret] }
+    Map<String, List<Secret>> knownSecretsByName = knownSecretsByName(secretsByName.keySet())
 
-      if (!secret.labels) {
-        secret.labels = new HashMap<String, Object>()
-      }
-      secret.labels[(LabelNamespace)] = namespace
+    BatchReport<String> report = batchExecutor.execute(secretsByName.keySet()) { String name ->
+      StackSecret secret = secretsByName.get(name)
+      SecretSpec spec = prepareSecret(namespace, secret)
 
-      String secretId
-      if (knownSecrets.empty) {
+      List<Secret> known = knownSecretsByName.get(name) ?: []
+      if (known.empty) {
         log.info("create secret ${secret.name}: $secret")
-        secretId = manageSecret.createSecret(secret.name, secret.data, secret.labels).content.id
+        return manageSecret.createSecret(secret.name, secret.data, secret.labels).content.id
       }
-      else {
-        if (knownSecrets.size() != 1) {
-          throw new IllegalStateException("ambiguous secret name '${secret.name}'")
-        }
-        Secret knownSecret = knownSecrets.first()
-        log.info("update secret ${secret.name}: $secret")
-        secretId = knownSecret.ID
-        manageSecret.updateSecret(
-            knownSecret.ID,
-            knownSecret.version.index,
-            new SecretSpec(
-                secret.name,
-                secret.labels,
-                new String(secret.data),
-                secret.driver,
-                secret.templating))
+      if (known.size() != 1) {
+        throw new IllegalStateException("ambiguous secret name '${secret.name}'")
       }
-      return [(secret.name): secretId]
+      Secret knownSecret = known.first()
+      log.info("update secret ${secret.name}: $secret")
+      manageSecret.updateSecret(
+          knownSecret.ID,
+          knownSecret.version.index,
+          spec)
+      return knownSecret.ID
     }
+    throwFailures("secrets", report)
+    return report.results
   }
 
   Map<String, String> createConfigs(String namespace, Map<String, StackConfig> configs) {
-    return configs.collectEntries { String name, StackConfig config ->
-      List knownConfigs = manageConfig.configs([filters: [name: [config.name]]]).content
-      log.debug("known: $knownConfigs")
+    if (!configs) {
+      return [:]
+    }
+    Map<String, StackConfig> configsByName = configs.values().collectEntries { StackConfig config -> [(config.name): config] }
+    Map<String, List<Config>> knownConfigsByName = knownConfigsByName(configsByName.keySet())
 
-      if (!config.labels) {
-        config.labels = new HashMap<String, Object>()
-      }
-      config.labels[(LabelNamespace)] = namespace
+    BatchReport<String> report = batchExecutor.execute(configsByName.keySet()) { String name ->
+      StackConfig config = configsByName.get(name)
+      ConfigSpec spec = prepareConfig(namespace, config)
 
-      String configId
-      if (knownConfigs.empty) {
+      List<Config> known = knownConfigsByName.get(name) ?: []
+      if (known.empty) {
         log.info("create config ${config.name}: $config")
-        configId = manageConfig.createConfig(config.name, config.data, config.labels).content.id
+        return manageConfig.createConfig(config.name, config.data, config.labels).content.id
       }
-      else {
-        if (knownConfigs.size() != 1) {
-          throw new IllegalStateException("ambiguous config name '${config.name}'")
-        }
-        Config knownConfig = knownConfigs.first()
-        log.info("update config ${config.name}: $config")
-        configId = knownConfig.ID
-        manageConfig.updateConfig(
-            knownConfig.ID,
-            knownConfig.version.index,
-            new ConfigSpec(
-                config.name,
-                config.labels,
-                new String(config.data),
-                config.templating))
+      if (known.size() != 1) {
+        throw new IllegalStateException("ambiguous config name '${config.name}'")
       }
-      return [(config.name): configId]
+      Config knownConfig = known.first()
+      if (isUnchanged(knownConfig.spec?.labels, config.labels[LabelSpecHash])) {
+        log.info("config ${config.name} is unchanged")
+        return knownConfig.ID
+      }
+      log.info("update config ${config.name}: $config")
+      manageConfig.updateConfig(
+          knownConfig.ID,
+          knownConfig.version.index,
+          spec)
+      return knownConfig.ID
     }
+    throwFailures("configs", report)
+    return report.results
+  }
+
+  private Map<String, List<Secret>> knownSecretsByName(Collection<String> names) {
+    // the name filter matches name prefixes, so the known secrets are indexed by their exact names
+    List<Secret> knownSecrets = manageSecret.secrets([filters: [name: names.toList()]]).content ?: []
+    log.debug("known: $knownSecrets")
+    return knownSecrets.groupBy { Secret secret -> secret.spec?.name }
+  }
+
+  private Map<String, List<Config>> knownConfigsByName(Collection<String> names) {
+    // the name filter matches name prefixes, so the known configs are indexed by their exact names
+    List<Config> knownConfigs = manageConfig.configs([filters: [name: names.toList()]]).content ?: []
+    log.debug("known: $knownConfigs")
+    return knownConfigs.groupBy { Config config -> config.spec?.name }
+  }
+
+  /**
+   * Adds the stack's labels to the secret.
+   * Secrets don't get a spec hash, because a hash of their data would be readable by everyone who can list the secrets.
+   *
+   * @return the spec to update an existing secret with
+   */
+  private static SecretSpec prepareSecret(String namespace, StackSecret secret) {
+    secret.labels = stackLabels(namespace, secret.labels)
+    secret.labels.remove(LabelSpecHash)
+    return new SecretSpec(
+        secret.name,
+        secret.labels,
+        new String(secret.data),
+        secret.driver,
+        secret.templating)
+  }
+
+  /**
+   * Adds the stack's labels to the config.
+   *
+   * @return the spec to update an existing config with
+   */
+  private ConfigSpec prepareConfig(String namespace, StackConfig config) {
+    String specHash = configSpecHash(namespace, config)
+    config.labels = stackLabels(namespace, config.labels)
+    config.labels[(LabelSpecHash)] = specHash
+    return new ConfigSpec(
+        config.name,
+        config.labels,
+        new String(config.data),
+        config.templating)
+  }
+
+  /**
+   * @return the spec hash of the config with the stack's labels, without changing the config
+   */
+  private String configSpecHash(String namespace, StackConfig config) {
+    return specHasher.hash(new ConfigSpec(
+        config.name,
+        stackLabels(namespace, config.labels),
+        new String(config.data),
+        config.templating))
+  }
+
+  /**
+   * Fails with all failures of the batch, after every item has been tried.
+   */
+  private static void throwFailures(String items, BatchReport<?> report) {
+    if (report.successful) {
+      return
+    }
+    String details = report.failures.collect { String name, Exception failure -> "${name}: ${failure.message}" }.join(", ")
+    IllegalStateException exception = new IllegalStateException("failed to create or update ${report.failures.size()} ${items} (${details})")
+    report.failures.values().each { Exception failure -> exception.addSuppressed(failure) }
+    throw exception
   }
 
   void pruneServices(String namespace, Collection<String> services) {
@@ -239,20 +605,20 @@ class ManageStackClient implements ManageStack {
     }
   }
 
-  void createOrUpdateServices(String namespace, Map<String, ServiceSpec> services, boolean sendRegistryAuth) {
-    Map<String, Service> existingServicesByName = new HashMap<String, Object>()
-    EngineResponseContent<List<Service>> existingServices = stackServices(namespace)
-    existingServices.content.each { Service service ->
-      existingServicesByName[service.spec.name] = service
-    }
+  /**
+   * @return the ids of the updated services
+   */
+  Set<String> createOrUpdateServices(String namespace, Map<String, ServiceSpec> services, boolean sendRegistryAuth) {
+    Map<String, Service> existingServicesByName = existingServicesByName(namespace)
+    Set<String> updatedServiceIds = new HashSet<>()
 
     services.each { String internalName, ServiceSpec serviceSpec ->
-      String name = "${namespace}_${internalName}"
-      serviceSpec.name = serviceSpec.name ?: name
-      if (!serviceSpec.labels) {
-        serviceSpec.labels = new HashMap<String, Object>()
+      String name = prepareService(namespace, internalName, serviceSpec)
+      Service service = existingServicesByName[name]
+      if (service && isUnchanged(service.spec?.labels, serviceSpec.labels[LabelSpecHash])) {
+        log.info("Service ${name} (id ${service.ID}) is unchanged")
+        return
       }
-      serviceSpec.labels[(LabelNamespace)] = namespace
 
       String encodedAuth = ""
       if (sendRegistryAuth) {
@@ -261,7 +627,6 @@ class ManageStackClient implements ManageStack {
         encodedAuth = manageAuthentication.retrieveEncodedAuthTokenForImage(image)
       }
 
-      Service service = existingServicesByName[name]
       if (service) {
         log.info("Updating service ${name} (id ${service.ID}): ${serviceSpec}")
 
@@ -287,6 +652,7 @@ class ManageStackClient implements ManageStack {
         response.content.warnings.each { String warning ->
           log.warn(warning)
         }
+        updatedServiceIds.add(service.ID)
       }
       else {
         log.info("Creating service ${name}: ${serviceSpec}")
@@ -307,6 +673,32 @@ class ManageStackClient implements ManageStack {
         EngineResponseContent<ServiceCreateResponse> response = manageService.createService(createRequest, sendRegistryAuth ? encodedAuth : null)
       }
     }
+    return updatedServiceIds
+  }
+
+  private Map<String, Service> existingServicesByName(String namespace) {
+    Map<String, Service> existingServicesByName = new HashMap<String, Service>()
+    EngineResponseContent<List<Service>> existingServices = stackServices(namespace)
+    existingServices.content.each { Service service ->
+      existingServicesByName[service.spec.name] = service
+    }
+    return existingServicesByName
+  }
+
+  /**
+   * Adds the stack's name and labels to the service.
+   *
+   * @return the service's name within the stack
+   */
+  private String prepareService(String namespace, String internalName, ServiceSpec serviceSpec) {
+    String name = "${namespace}_${internalName}"
+    serviceSpec.name = serviceSpec.name ?: name
+    if (!serviceSpec.labels) {
+      serviceSpec.labels = new HashMap<String, String>()
+    }
+    serviceSpec.labels[(LabelNamespace)] = namespace
+    serviceSpec.labels[(LabelSpecHash)] = specHasher.hash(serviceSpec)
+    return name
   }
 
   // checkDaemonIsSwarmManager does an Info API call to verify that the daemon is
@@ -338,7 +730,20 @@ class ManageStackClient implements ManageStack {
 
   @Override
   void stackRm(String namespace) {
+    removeStack(namespace, new StackRemoveOptions(), true)
+  }
+
+  @Override
+  StackRemoveReport stackRm(String namespace, StackRemoveOptions options) {
+    return removeStack(namespace, options, false)
+  }
+
+  /**
+   * @param failFast <code>true</code> to throw the first failure, without removing the resources of the following steps
+   */
+  private StackRemoveReport removeStack(String namespace, StackRemoveOptions options, boolean failFast) {
     log.info("docker stack rm")
+    long start = System.nanoTime()
 
     String namespaceFilter = "${LabelNamespace}=${namespace}"
 
@@ -346,19 +751,144 @@ class ManageStackClient implements ManageStack {
     EngineResponseContent<List<Network>> networks = manageNetwork.networks([filters: [label: [(namespaceFilter): true]]])
     EngineResponseContent<List<Secret>> secrets = manageSecret.secrets([filters: [label: [(namespaceFilter): true]]])
     EngineResponseContent<List<Config>> configs = manageConfig.configs([filters: [label: [(namespaceFilter): true]]])
+    Set<String> activeTasks = (stackPs(namespace)?.content ?: []).findResults { Task task ->
+      task.desiredState == TaskState.Running ? task.ID : null
+    } as Set<String>
 
-    services.content.each { Service service ->
-      manageService.rmService(service.ID)
+    Map<String, String> serviceNames = namesById(services.content) { Service service -> [service.ID, service.spec?.name] }
+    BatchReport<String> removedServices = reportByName(batchExecutor.execute(serviceNames.keySet(), options.maxParallel) { String id ->
+      manageService.rmService(id)
+      return id
+    }, serviceNames)
+    if (failFast) {
+      throwFirstFailure(removedServices)
+    }
+
+    long waitStart = System.nanoTime()
+    int remainingTasks = !removedServices.succeeded.empty ? awaitTasksShutdown(namespace, activeTasks, options) : 0
+    Duration tasksShutdown = Duration.ofNanos(System.nanoTime() - waitStart)
+
+    // swarm allows several networks with the same name, so the resources are removed by id
+    Map<String, String> networkNames = namesById(networks.content) { Network network -> [network.id, network.name] }
+    Map<String, String> secretNames = namesById(secrets.content) { Secret secret -> [secret.ID, secret.spec?.name] }
+    Map<String, String> configNames = namesById(configs.content) { Config config -> [config.ID, config.spec?.name] }
+    CompletableFuture<BatchReport<String>> removedNetworks = removeWhileInUse(networkNames, options) { String id -> manageNetwork.rmNetwork(id) }
+    CompletableFuture<BatchReport<String>> removedSecrets = removeWhileInUse(secretNames, options) { String id -> manageSecret.rmSecret(id) }
+    CompletableFuture<BatchReport<String>> removedConfigs = removeWhileInUse(configNames, options) { String id -> manageConfig.rmConfig(id) }
+
+    StackRemoveReport report = new StackRemoveReport(namespace,
+        removedServices, removedNetworks.join(), removedSecrets.join(), removedConfigs.join(),
+        tasksShutdown, remainingTasks, Duration.ofNanos(System.nanoTime() - start))
+    log.debug("removed stack ${namespace}: ${report}")
+    if (failFast) {
+      [report.networks, report.secrets, report.configs].each { BatchReport<String> removed -> throwFirstFailure(removed) }
     }
-    networks.content.each { Network network ->
-      manageNetwork.rmNetwork(network.id)
+    return report
+  }
+
+  private static void throwFirstFailure(BatchReport<String> report) {
+    if (!report.successful) {
+      throw report.failures.values().first()
     }
-    secrets.content.each { Secret secret ->
-      manageSecret.rmSecret(secret.ID)
+  }
+
+  /**
+   * Labels the resources by their names, by their ids when they have no name,
+   * or by their names and ids when several resources share a name.
+   */
+  private static <T> Map<String, String> namesById(List<T> resources, Closure<List<String>> idAndName) {
+    Map<String, String> namesById = new LinkedHashMap<>()
+    (resources ?: []).each { T resource ->
+      List<String> entry = idAndName(resource)
+      namesById.put(entry[0], entry[1] ?: entry[0])
     }
-    configs.content.each { Config config ->
-      manageConfig.rmConfig(config.ID)
+    Map<String, Integer> namesCount = namesById.values().countBy { it }
+    namesById.each { Map.Entry<String, String> entry ->
+      if (namesCount.get(entry.value) > 1) {
+        entry.value = "${entry.value} (${entry.key})".toString()
+      }
     }
+    return namesById
+  }
+
+  /**
+   * @return the report of removals by id, keyed by the resources' names
+   */
+  private static BatchReport<String> reportByName(BatchReport<String> removals, Map<String, String> namesById) {
+    return new BatchReport<String>(removals.items.collect { BatchItemResult<String> item ->
+      new BatchItemResult<String>(namesById.get(item.key), item.result, item.failure, item.duration)
+    })
+  }
+
+  /**
+   * Lists the stack's tasks until none of the given tasks is running anymore.
+   * The task listing covers the tasks on every node, other than the container events of the client's node.
+   *
+   * @return the number of tasks which haven't stopped in time
+   */
+  private int awaitTasksShutdown(String namespace, Set<String> taskIds, StackRemoveOptions options) {
+    if (taskIds.empty) {
+      return 0
+    }
+    Instant deadline = Instant.now().plus(options.tasksShutdownTimeout)
+    int running = taskIds.size()
+    while (true) {
+      try {
+        running = (stackPs(namespace).content ?: []).count { Task task ->
+          taskIds.contains(task.ID) && task.status?.state == TaskState.Running
+        } as int
+      } catch (Exception e) {
+        log.warn("failed to list the tasks of stack ${namespace}", e)
+      }
+      if (running == 0 || !Instant.now().isBefore(deadline)) {
+        break
+      }
+      Thread.sleep(Math.max(1L, Math.min(options.tasksShutdownPollInterval.toMillis(), Duration.between(Instant.now(), deadline).toMillis())))
+    }
+    if (running > 0) {
+      log.warn("${running} tasks of stack ${namespace} didn't shut down within ${options.tasksShutdownTimeout}")
+    }
+    return running
+  }
+
+  /**
+   * Removes the resources by id, and retries the removals of resources which are still in use in further rounds.
+   * The rounds are delayed outside the batch, so that waiting removals don't hold permits of the daemon.
+   *
+   * @return the report keyed by the resources' names
+   */
+  private CompletableFuture<BatchReport<String>> removeWhileInUse(Map<String, String> namesById, StackRemoveOptions options, Closure remove) {
+    Map<String, BatchItemResult<String>> removalsById = new ConcurrentHashMap<>()
+    return removeWhileInUse(namesById.keySet(), 1, removalsById, options, remove).thenApply {
+      reportByName(new BatchReport<String>(namesById.keySet().collect { String id -> removalsById.get(id) }), namesById)
+    }
+  }
+
+  private CompletableFuture<Void> removeWhileInUse(Collection<String> ids, int attempt, Map<String, BatchItemResult<String>> removalsById,
+                                                   StackRemoveOptions options, Closure remove) {
+    return batchExecutor.submit(ids, options.maxParallel) { String id ->
+      remove(id)
+      return id
+    }.thenCompose { BatchReport<String> removals ->
+      removals.items.each { BatchItemResult<String> item -> removalsById.put(item.key, item) }
+      List<String> inUse = removals.failed.findAll { BatchItemResult<String> item -> isInUse(item.failure) }*.key
+      if (inUse.empty || attempt >= options.maxAttempts) {
+        return CompletableFuture.completedFuture(null)
+      }
+      log.info("${inUse.size()} resources still in use, retrying (attempt ${attempt}/${options.maxAttempts})")
+      Executor delayed = CompletableFuture.delayedExecutor(options.retryDelay.toMillis() * attempt, TimeUnit.MILLISECONDS, batchExecutor.executor)
+      return CompletableFuture.runAsync({} as Runnable, delayed).thenCompose { removeWhileInUse(inUse, attempt + 1, removalsById, options, remove) }
+    }
+  }
+
+  static boolean isInUse(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.cause == cause ? null : cause.cause) {
+      String message = cause.message ?: ""
+      if (message.contains("in use") || message.contains("active endpoints")) {
+        return true
+      }
+    }
+    return false
   }
 
   @Override
@@ -378,43 +908,111 @@ class ManageStackClient implements ManageStack {
     return services
   }
 
-  Map<String, ServiceInfo> getInfoByServiceId(EngineResponseContent<List<Service>> services) {
-    EngineResponseContent<List<Node>> nodes = manageNode.nodes()
-    List<String> activeNodes = nodes.content.findResults { Node node ->
-      node.status.state != NodeState.Down ? node.ID : null
-    }
+  @Override
+  List<StackServiceStatus> stackServicesStatus(String namespace) {
+    log.info("docker stack services (status)")
+    return statusEngine(namespace).status
+  }
 
-    Map<String, Integer> running = new HashMap<String, Integer>()
-    Map<String, Integer> tasksNoShutdown = new HashMap<String, Integer>()
+  @Override
+  void stackServicesStatus(String namespace, StreamCallback<List<StackServiceStatus>> callback, Duration timeout) {
+    log.info("docker stack services (status, following)")
 
-    Map serviceFilter = [service: [:]]
-    services.content.each { Service service ->
-      serviceFilter.service[(service.ID as String)] = true
+    // the events are replayed since before the listing, so that no change gets lost
+    long since = Instant.now().epochSecond
+    StackStatusEngine engine = statusEngine(namespace)
+    Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet()
+    AtomicBoolean finished = new AtomicBoolean(false)
+    // refreshes publish from another thread, so that the events stream isn't blocked by engine requests
+    Object publishing = new Object()
+    Closure publish = {
+      synchronized (publishing) {
+        if (!finished.get()) {
+          callback.onNext(engine.status)
+        }
+      }
     }
-    EngineResponseContent<List<Task>> tasks = manageTask.tasks([filters: serviceFilter])
-    tasks.content.each { Task task ->
-      if (task.desiredState != TaskState.Shutdown) {
-        if (!tasksNoShutdown[task.serviceID]) {
-          tasksNoShutdown[task.serviceID] = 0
+
+    String filters = new Moshi.Builder().build().adapter(Map).toJson([type: ["service", "container", "node"]])
+    manageSystem.events(new SystemEventsRequest(String.valueOf(since), null, filters), new StreamCallback<EventMessage>() {
+
+      @Override
+      void onStarting(Cancellable cancellable) {
+        callback.onStarting(cancellable)
+        publish()
+      }
+
+      @Override
+      void onNext(EventMessage element) {
+        if (element.type == EventMessage.Type.Service) {
+          String serviceId = element.actor?.ID
+          String name = element.actor?.attributes?.get("name")
+          if (serviceId && (engine.hasService(serviceId) || name?.startsWith("${namespace}_".toString()))) {
+            refreshServiceStatus(namespace, engine, serviceId, pendingRefreshes, publish)
+          }
+        } else if (engine.onEvent(element)) {
+          publish()
         }
-        tasksNoShutdown[task.serviceID] = tasksNoShutdown[task.serviceID] + 1
       }
-      if (activeNodes.contains(task.nodeID) && task.status.state == TaskState.Running) {
-        if (!running[task.serviceID]) {
-          running[task.serviceID] = 0
+
+      @Override
+      void onFailed(Exception e) {
+        finished.set(true)
+        callback.onFailed(e)
+      }
+
+      @Override
+      void onFinished() {
+        finished.set(true)
+        callback.onFinished()
+      }
+    }, timeout)
+  }
+
+  /**
+   * Lists a changed service and its tasks, because the container events of its tasks on other nodes don't reach the client.
+   */
+  private void refreshServiceStatus(String namespace, StackStatusEngine engine, String serviceId, Set<String> pendingRefreshes, Closure publish) {
+    if (!pendingRefreshes.add(serviceId)) {
+      return
+    }
+    batchExecutor.executor.execute {
+      pendingRefreshes.remove(serviceId)
+      try {
+        Service service = (stackServices(namespace, [id: [(serviceId): true]]).content ?: []).find { Service s -> s.ID == serviceId }
+        List<Task> tasks = service ? (stackPs(namespace, [service: [(serviceId): true]]).content ?: []) : []
+        if (engine.replaceService(serviceId, service, tasks)) {
+          publish()
         }
-        running[task.serviceID] = running[task.serviceID] + 1
+      } catch (Exception e) {
+        log.warn("failed to list the tasks of service ${serviceId}", e)
       }
     }
+  }
 
-    Map<String, ServiceInfo> infoByServiceId = [:]
-    services.content.each { Service service ->
-      if (service.spec.mode.replicated && service.spec.mode.replicated.replicas) {
-        infoByServiceId[service.ID] = new ServiceInfo(mode: 'replicated', replicas: "${running[service.ID as String] ?: 0}/${service.spec.mode.replicated.replicas}")
-      }
-      else if (service.spec.mode.global) {
-        infoByServiceId[service.ID] = new ServiceInfo(mode: 'global', replicas: "${running[service.ID as String] ?: 0}}/${tasksNoShutdown[service.ID as String]}")
+  private StackStatusEngine statusEngine(String namespace) {
+    StackStatusEngine engine = new StackStatusEngine(stackServices(namespace).content ?: [], manageNode.nodes().content ?: [])
+    engine.addTasks(stackPs(namespace).content ?: [])
+    return engine
+  }
+
+  Map<String, ServiceInfo> getInfoByServiceId(EngineResponseContent<List<Service>> services) {
+    StackStatusEngine engine = new StackStatusEngine(services.content, manageNode.nodes().content ?: [])
+    Set<String> namespaces = services.content.collect { Service service -> service.spec?.labels?.get(LabelNamespace) } as Set
+    if (namespaces.size() == 1 && namespaces.first() != null) {
+      // the tasks of a stack can be selected by the stack's label, instead of by every service's id
+      engine.addTasks(stackPs(namespaces.first()).content ?: [])
+    } else if (services.content) {
+      Map serviceFilter = [service: [:]]
+      services.content.each { Service service ->
+        serviceFilter.service[(service.ID as String)] = true
       }
+      engine.addTasks(manageTask.tasks([filters: serviceFilter]).content ?: [])
+    }
+
+    Map<String, ServiceInfo> infoByServiceId = [:]
+    engine.status.each { StackServiceStatus status ->
+      infoByServiceId[status.serviceId] = new ServiceInfo(mode: status.mode, replicas: status.replicas)
     }
     return infoByServiceId
   }
@@ -0,0 +1,46 @@
+package de.gesellix.docker.client.stack
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
+import static de.gesellix.docker.client.stack.ManageStack.LabelSpecHash
+
+/**
+ * Computes a canonical hash of a spec, which doesn't depend on the order of map entries.
+ * The {@link ManageStack#LabelSpecHash spec hash label} itself is ignored,
+ * so that a spec has the same hash before and after it has been labelled.
+ */
+class SpecHasher {
+
+  String hash(Object spec) {
+    Object canonical = canonicalize(copy(spec))
+    byte[] digest = MessageDigest.getInstance("SHA-256").digest(JsonOutput.toJson(canonical).getBytes(StandardCharsets.UTF_8))
+    return digest.encodeHex().toString()
+  }
+
+  /**
+   * @return a deep copy of the spec's JSON structure, which can be changed without changing the spec
+   */
+  Object copy(Object spec) {
+    return new JsonSlurper().parseText(JsonOutput.toJson(spec))
+  }
+
+  private static Object canonicalize(Object value) {
+    if (value instanceof Map) {
+      Map<String, Object> sorted = new TreeMap<>()
+      value.each { key, entry ->
+        if (key != LabelSpecHash) {
+          sorted.put(key as String, canonicalize(entry))
+        }
+      }
+      return sorted
+    }
+    if (value instanceof List) {
+      return value.collect { canonicalize(it) }
+    }
+    return value
+  }
+}
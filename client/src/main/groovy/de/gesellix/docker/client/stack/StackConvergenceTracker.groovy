@@ -0,0 +1,279 @@
+package de.gesellix.docker.client.stack
+
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.Service
+import de.gesellix.docker.remote.api.Task
+import de.gesellix.docker.remote.api.TaskSpec
+import de.gesellix.docker.remote.api.TaskState
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import java.time.Instant
+import java.time.format.DateTimeParseException
+import java.util.concurrent.CompletableFuture
+
+/**
+ * Follows the convergence of a stack's services with incremental counters.
+ * <p>
+ * The tracker is seeded with a single listing of the stack's services and tasks.
+ * Afterwards, the service events update the desired task counts,
+ * and the future completes as soon as every service has converged or one of them has failed.
+ * Events which arrive before the tracker has been seeded are replayed after seeding.
+ * <p>
+ * A service fails when its rolling update is paused or rolled back,
+ * or when one of its containers exits with a non-zero code without having been stopped.
+ * <p>
+ * After a deploy, the update states of a service are only taken into account when the update has started after the deploy,
+ * so that the state of a previous update isn't mistaken for the current one.
+ * A service which has been updated by the deploy hasn't converged before its rolling update has been seen,
+ * or before all of its running tasks run the service's current task spec.
+ * <p>
+ * Container events are only emitted by the node running the container, so they are only a fast path
+ * for the tasks of the node the client is connected to. The running counts of all nodes are taken from
+ * task listings, which are passed to {@link #onTasks} after service events and periodically.
+ */
+class StackConvergenceTracker {
+
+  private final Logger log = LoggerFactory.getLogger(StackConvergenceTracker)
+
+  // service update states, normalized to lower case without underscores
+  static final Set<String> FAILED_UPDATE_STATES = ["paused", "rollbackstarted", "rollbackpaused", "rollbackcompleted"] as Set
+  static final Set<String> ACTIVE_UPDATE_STATES = ["updating"] as Set
+
+  static final String LabelServiceId = "com.docker.swarm.service.id"
+  static final String LabelTaskId = "com.docker.swarm.task.id"
+
+  private final String namespace
+  private final Instant deployStarted
+  private final Set<String> updatedServiceIds
+  private final CompletableFuture<StackConvergence> future = new CompletableFuture<>()
+  private final Map<String, TrackedService> servicesById = new HashMap<>()
+  private final List<EventMessage> pendingEvents = []
+  private boolean seeded = false
+
+  StackConvergenceTracker(String namespace) {
+    this(namespace, null, [] as Set)
+  }
+
+  /**
+   * @param deployStarted the start of the deploy, update states of services which started before are ignored
+   * @param updatedServiceIds the services which have been updated by the deploy
+   */
+  StackConvergenceTracker(String namespace, Instant deployStarted, Set<String> updatedServiceIds) {
+    this.namespace = namespace
+    this.deployStarted = deployStarted
+    this.updatedServiceIds = updatedServiceIds
+  }
+
+  CompletableFuture<StackConvergence> getFuture() {
+    return future
+  }
+
+  synchronized void seed(List<Service> services, List<Task> tasks) {
+    services.each { Service service ->
+      TrackedService tracked = new TrackedService(id: service.ID, name: service.spec?.name ?: service.ID)
+      tracked.global = !service.spec?.mode?.replicated
+      if (!tracked.global) {
+        tracked.desired = service.spec.mode.replicated.replicas ?: 0
+      } else {
+        // global services run one task per eligible node, which the engine has already scheduled
+        tracked.desired = countScheduled(tasks.findAll { Task task -> task.serviceID == service.ID })
+      }
+      if (updatedServiceIds.contains(service.ID)) {
+        tracked.rolloutPending = true
+        tracked.taskTemplate = service.spec?.taskTemplate
+      }
+      String updateState = startedAfterDeploy(service.updateStatus?.startedAt) ? normalize(service.updateStatus?.state) : null
+      applyUpdateState(tracked, updateState)
+      servicesById.put(service.ID, tracked)
+    }
+    Map<String, List<Task>> tasksByServiceId = tasks.groupBy { Task task -> task.serviceID }
+    servicesById.values().each { TrackedService service ->
+      replaceTasks(service, tasksByServiceId.get(service.id) ?: [])
+    }
+    seeded = true
+    List<EventMessage> replayed = new ArrayList<>(pendingEvents)
+    pendingEvents.clear()
+    replayed.each { apply(it) }
+    evaluate()
+  }
+
+  synchronized void onEvent(EventMessage event) {
+    if (!seeded) {
+      pendingEvents.add(event)
+      return
+    }
+    apply(event)
+    evaluate()
+  }
+
+  /**
+   * Replaces the running tasks of every service with a listing of the stack's tasks.
+   */
+  synchronized void onTasks(List<Task> tasks) {
+    if (!seeded) {
+      return
+    }
+    Map<String, List<Task>> tasksByServiceId = tasks.groupBy { Task task -> task.serviceID }
+    servicesById.values().each { TrackedService service ->
+      replaceTasks(service, tasksByServiceId.get(service.id) ?: [])
+    }
+    evaluate()
+  }
+
+  /**
+   * Replaces the running tasks of a service with a listing of the service's tasks.
+   */
+  synchronized void onTasks(String serviceId, List<Task> tasks) {
+    TrackedService service = servicesById.get(serviceId)
+    if (!seeded || service == null) {
+      return
+    }
+    replaceTasks(service, tasks.findAll { Task task -> task.serviceID == serviceId })
+    evaluate()
+  }
+
+  /**
+   * @return the id of the stack's service which has been changed by the event, or <code>null</code> for other events
+   */
+  synchronized String changedServiceId(EventMessage event) {
+    if (event.type != EventMessage.Type.Service) {
+      return null
+    }
+    String serviceId = event.actor?.ID
+    return servicesById.containsKey(serviceId) ? serviceId : null
+  }
+
+  synchronized StackConvergence snapshot() {
+    Map<String, StackConvergence.ServiceConvergence> services = new TreeMap<>()
+    servicesById.values().each { TrackedService service ->
+      services.put(service.name, new StackConvergence.ServiceConvergence(
+          service.name, service.id, service.runningTasks.size(), service.desired, service.updating || service.rolloutPending, service.failure))
+    }
+    return new StackConvergence(namespace, services)
+  }
+
+  private void apply(EventMessage event) {
+    Map<String, String> attributes = event.actor?.attributes ?: [:]
+    String action = event.action ?: ""
+    if (event.type == EventMessage.Type.Service) {
+      applyServiceEvent(servicesById.get(event.actor?.ID), action, attributes)
+    } else {
+      applyContainerEvent(servicesById.get(attributes.get(LabelServiceId)), attributes.get(LabelTaskId), action, attributes)
+    }
+  }
+
+  private static void replaceTasks(TrackedService service, List<Task> tasks) {
+    List<Task> runningTasks = tasks.findAll { Task task -> task.desiredState == TaskState.Running && task.status?.state == TaskState.Running }
+    service.runningTasks = runningTasks*.ID as Set<String>
+    if (service.global) {
+      service.desired = countScheduled(tasks)
+    }
+    // updates which don't change the task spec don't replace the tasks
+    if (service.rolloutPending && runningTasks.every { Task task -> task.spec == service.taskTemplate }) {
+      service.rolloutPending = false
+    }
+  }
+
+  private boolean startedAfterDeploy(Object startedAt) {
+    if (deployStarted == null) {
+      return true
+    }
+    if (startedAt == null) {
+      return false
+    }
+    try {
+      return !Instant.parse(startedAt.toString()).isBefore(deployStarted)
+    } catch (DateTimeParseException ignored) {
+      return false
+    }
+  }
+
+  private static void applyUpdateState(TrackedService service, String updateState) {
+    if (!updateState) {
+      return
+    }
+    // every state of an update which started after the deploy means that the deploy's update has been rolled out
+    service.rolloutPending = false
+    service.updating = ACTIVE_UPDATE_STATES.contains(updateState)
+    if (FAILED_UPDATE_STATES.contains(updateState)) {
+      service.failure = "update ${updateState}".toString()
+    }
+  }
+
+  private static int countScheduled(List<Task> tasks) {
+    return tasks.count { Task task -> task.desiredState != TaskState.Shutdown } as int
+  }
+
+  private void applyServiceEvent(TrackedService service, String action, Map<String, String> attributes) {
+    if (service == null) {
+      return
+    }
+    if (action == "remove") {
+      service.failure = "removed"
+      return
+    }
+    String replicas = attributes.get("replicas.new")
+    if (replicas?.isInteger()) {
+      service.desired = replicas as int
+    }
+    // events are only followed since the deploy, so their update states are current
+    applyUpdateState(service, normalize(attributes.get("updatestate.new")))
+  }
+
+  private void applyContainerEvent(TrackedService service, String taskId, String action, Map<String, String> attributes) {
+    if (service == null || !taskId) {
+      return
+    }
+    switch (action) {
+      case "start":
+        service.runningTasks.add(taskId)
+        service.stoppingTasks.remove(taskId)
+        break
+      case "kill":
+      case "stop":
+        service.stoppingTasks.add(taskId)
+        break
+      case "die":
+        service.runningTasks.remove(taskId)
+        String exitCode = attributes.get("exitCode")
+        if (!service.stoppingTasks.remove(taskId) && exitCode && exitCode != "0") {
+          service.failure = "task ${taskId} exited with code ${exitCode}".toString()
+        }
+        break
+      case "destroy":
+        service.runningTasks.remove(taskId)
+        service.stoppingTasks.remove(taskId)
+        break
+    }
+  }
+
+  private void evaluate() {
+    if (future.done) {
+      return
+    }
+    StackConvergence convergence = snapshot()
+    if (convergence.failed || convergence.converged) {
+      log.debug("stack ${namespace} ${convergence.converged ? 'converged' : 'failed'}: ${convergence}")
+      future.complete(convergence)
+    }
+  }
+
+  private static String normalize(Object state) {
+    return state == null ? null : state.toString().toLowerCase().replace("_", "")
+  }
+
+  private static class TrackedService {
+
+    String id
+    String name
+    int desired
+    boolean global
+    boolean updating
+    boolean rolloutPending
+    TaskSpec taskTemplate
+    String failure
+    Set<String> runningTasks = new HashSet<>()
+    Set<String> stoppingTasks = new HashSet<>()
+  }
+}
@@ -0,0 +1,196 @@
+package de.gesellix.docker.client.stack
+
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.Node
+import de.gesellix.docker.remote.api.NodeState
+import de.gesellix.docker.remote.api.Service
+import de.gesellix.docker.remote.api.Task
+import de.gesellix.docker.remote.api.TaskState
+
+/**
+ * Counts the running and desired tasks of services, like <code>docker stack services</code>.
+ * <p>
+ * Nodes are looked up in a hash set, and every service keeps primitive counters,
+ * so that a computation is linear in the number of tasks.
+ * The counters can be kept current with the container and node events, which only update the affected task or node.
+ * Container events are only emitted by the node running the container, so only that node's tasks are updated by events.
+ * The tasks of other nodes are updated by {@link #replaceService}, e.g. after a service event.
+ */
+class StackStatusEngine {
+
+  static final String LabelNodeId = "com.docker.swarm.node.id"
+
+  private static final int RUNNING = 0
+  private static final int NOT_SHUTDOWN = 1
+
+  private final Map<String, Service> servicesById = new LinkedHashMap<>()
+  private final Set<String> activeNodes = new HashSet<>()
+  private final Map<String, int[]> countersByServiceId = new HashMap<>()
+  private final Map<String, TaskEntry> tasksById = new HashMap<>()
+  private final Map<String, Set<String>> taskIdsByNodeId = new HashMap<>()
+
+  StackStatusEngine(Collection<Service> services, Collection<Node> nodes) {
+    services.each { Service service ->
+      servicesById.put(service.ID, service)
+      countersByServiceId.put(service.ID, new int[2])
+    }
+    nodes.each { Node node ->
+      if (node.status?.state != NodeState.Down) {
+        activeNodes.add(node.ID)
+      }
+    }
+  }
+
+  synchronized void addTasks(Collection<Task> tasks) {
+    tasks.each { Task task ->
+      update(task.ID, task.serviceID, task.nodeID,
+          task.status?.state == TaskState.Running,
+          task.desiredState != TaskState.Shutdown)
+    }
+  }
+
+  synchronized boolean hasService(String serviceId) {
+    return servicesById.containsKey(serviceId)
+  }
+
+  /**
+   * Replaces a service and all of its tasks with a listing.
+   *
+   * @param service the current service, or <code>null</code> when it has been removed
+   * @return <code>true</code> when the service has been added, changed or removed
+   */
+  synchronized boolean replaceService(String serviceId, Service service, Collection<Task> tasks) {
+    if (service == null && !servicesById.containsKey(serviceId)) {
+      return false
+    }
+    Set<String> listedTaskIds = service == null ? [] as Set : tasks*.ID as Set
+    List<String> removedTaskIds = tasksById.findResults { String taskId, TaskEntry entry ->
+      entry.serviceId == serviceId && !listedTaskIds.contains(taskId) ? taskId : null
+    }
+    removedTaskIds.each { remove(it) }
+    if (service == null) {
+      servicesById.remove(serviceId)
+      countersByServiceId.remove(serviceId)
+      return true
+    }
+    servicesById.put(serviceId, service)
+    countersByServiceId.putIfAbsent(serviceId, new int[2])
+    addTasks(tasks.findAll { Task task -> task.serviceID == serviceId })
+    return true
+  }
+
+  /**
+   * Applies a container or node event.
+   *
+   * @return <code>true</code> when the event changed a counter
+   */
+  synchronized boolean onEvent(EventMessage event) {
+    Map<String, String> attributes = event.actor?.attributes ?: [:]
+    String taskId = attributes.get(StackConvergenceTracker.LabelTaskId)
+    if (taskId) {
+      String serviceId = attributes.get(StackConvergenceTracker.LabelServiceId)
+      if (!countersByServiceId.containsKey(serviceId)) {
+        return false
+      }
+      TaskEntry known = tasksById.get(taskId)
+      switch (event.action) {
+        case "start":
+          return update(taskId, serviceId, attributes.get(LabelNodeId) ?: known?.nodeId, true, true)
+        case "die":
+          return update(taskId, serviceId, attributes.get(LabelNodeId) ?: known?.nodeId, false, known?.notShutdown ?: false)
+        case "destroy":
+          return remove(taskId)
+        default:
+          return false
+      }
+    }
+    String nodeState = attributes.get("state.new")
+    if (nodeState && event.actor?.ID) {
+      return setNodeActive(event.actor.ID, !"down".equalsIgnoreCase(nodeState))
+    }
+    return false
+  }
+
+  synchronized List<StackServiceStatus> getStatus() {
+    List<StackServiceStatus> status = new ArrayList<>(servicesById.size())
+    servicesById.values().each { Service service ->
+      int[] counters = countersByServiceId.get(service.ID)
+      def mode = service.spec?.mode
+      if (mode?.global != null) {
+        status.add(new StackServiceStatus(service.ID, service.spec?.name, "global", counters[RUNNING], counters[NOT_SHUTDOWN]))
+      } else {
+        status.add(new StackServiceStatus(service.ID, service.spec?.name, "replicated", counters[RUNNING], (mode?.replicated?.replicas ?: 0) as int))
+      }
+    }
+    return status
+  }
+
+  private boolean update(String taskId, String serviceId, String nodeId, boolean running, boolean notShutdown) {
+    int[] counters = countersByServiceId.get(serviceId)
+    if (counters == null || taskId == null) {
+      return false
+    }
+    TaskEntry entry = tasksById.get(taskId)
+    if (entry != null) {
+      if (entry.nodeId == nodeId && entry.running == running && entry.notShutdown == notShutdown) {
+        return false
+      }
+      count(entry, -1)
+      taskIdsByNodeId.get(entry.nodeId)?.remove(taskId)
+    } else {
+      entry = new TaskEntry(serviceId: serviceId)
+      tasksById.put(taskId, entry)
+    }
+    entry.nodeId = nodeId
+    entry.running = running
+    entry.notShutdown = notShutdown
+    if (nodeId != null) {
+      taskIdsByNodeId.computeIfAbsent(nodeId) { new HashSet<String>() }.add(taskId)
+    }
+    count(entry, 1)
+    return true
+  }
+
+  private boolean remove(String taskId) {
+    TaskEntry entry = tasksById.remove(taskId)
+    if (entry == null) {
+      return false
+    }
+    count(entry, -1)
+    taskIdsByNodeId.get(entry.nodeId)?.remove(taskId)
+    return true
+  }
+
+  private boolean setNodeActive(String nodeId, boolean active) {
+    if (activeNodes.contains(nodeId) == active) {
+      return false
+    }
+    Collection<TaskEntry> tasksOfNode = (taskIdsByNodeId.get(nodeId) ?: []).collect { tasksById.get(it) }
+    tasksOfNode.each { count(it, -1) }
+    if (active) {
+      activeNodes.add(nodeId)
+    } else {
+      activeNodes.remove(nodeId)
+    }
+    tasksOfNode.each { count(it, 1) }
+    return true
+  }
+
+  private void count(TaskEntry entry, int delta) {
+    int[] counters = countersByServiceId.get(entry.serviceId)
+    if (entry.running && activeNodes.contains(entry.nodeId)) {
+      counters[RUNNING] += delta
+    }
+    if (entry.notShutdown) {
+      counters[NOT_SHUTDOWN] += delta
+    }
+  }
+
+  private static class TaskEntry {
+
+    String serviceId
+    String nodeId
+    boolean running
+    boolean notShutdown
+  }
+}
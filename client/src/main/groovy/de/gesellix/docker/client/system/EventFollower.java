@@ -0,0 +1,252 @@
+package de.gesellix.docker.client.system;
+
+import com.squareup.moshi.Moshi;
+import de.gesellix.docker.remote.api.EventMessage;
+import de.gesellix.docker.remote.api.core.Cancellable;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps an in-memory view of the engine's objects current by following their events.
+ * <p>
+ * The view is seeded with a full resync, afterwards every event is passed to the view.
+ * A full resync runs whenever the events stream ends, which happens at least once per resync interval.
+ * It guards against missed events, e.g. during reconnects. Events since the last resync or event are replayed.
+ * <p>
+ * The view's state is only published under the follower's lock.
+ * Every stop starts a new generation, and loads which started in an earlier generation aren't published,
+ * so that a stopped view isn't refilled by requests in flight.
+ *
+ * @param <T> the result of a full listing
+ */
+public class EventFollower<T> {
+
+  private final Logger log = LoggerFactory.getLogger(EventFollower.class);
+
+  /**
+   * The view kept current by an {@link EventFollower}.
+   */
+  public interface View<T> {
+
+    /**
+     * Lists the engine's objects. Must not change the view, because the result might be discarded.
+     */
+    T load();
+
+    /**
+     * Replaces the view's state with a listing, called under the follower's lock.
+     *
+     * @param wasSynced <code>true</code> when the view had been synced before, i.e. differences are the effect of missed events
+     */
+    void replace(T listing, boolean wasSynced);
+
+    /**
+     * Applies an event, called under the follower's lock.
+     */
+    void apply(EventMessage event);
+
+    /**
+     * Clears the view when the follower is stopped, called under the follower's lock.
+     */
+    void clear();
+  }
+
+  private final String name;
+  private final ManageSystem manageSystem;
+  private final ExecutorService executor;
+  private final Duration resyncInterval;
+  private final String filters;
+  private final View<T> view;
+
+  // guarded by this
+  private boolean running = false;
+  private boolean synced = false;
+  private long generation = 0;
+  private Cancellable eventsStream;
+
+  private volatile long lastEventEpochSeconds = 0;
+
+  /**
+   * @param name the view's name, used for logging
+   * @param types the event types to follow, e.g. <code>container</code>
+   */
+  public EventFollower(String name, ManageSystem manageSystem, ExecutorService executor, Duration resyncInterval, List<String> types, View<T> view) {
+    this.name = name;
+    this.manageSystem = manageSystem;
+    this.executor = executor;
+    this.resyncInterval = resyncInterval;
+    this.filters = new Moshi.Builder().build().adapter(Map.class).toJson(Collections.singletonMap("type", types));
+    this.view = view;
+  }
+
+  /**
+   * Seeds the view and starts following the events in the background.
+   * When seeding fails, the follower isn't started and the failure is rethrown.
+   */
+  public void start() {
+    final long startedGeneration;
+    synchronized (this) {
+      if (running) {
+        return;
+      }
+      running = true;
+      startedGeneration = generation;
+    }
+    try {
+      resync();
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        if (generation == startedGeneration) {
+          running = false;
+        }
+      }
+      throw e;
+    }
+    if (isCurrent(startedGeneration)) {
+      executor.execute(() -> follow(startedGeneration));
+    }
+  }
+
+  /**
+   * Stops following the events and clears the view.
+   */
+  public void stop() {
+    Cancellable stream;
+    synchronized (this) {
+      running = false;
+      synced = false;
+      generation++;
+      stream = eventsStream;
+      eventsStream = null;
+      view.clear();
+    }
+    if (stream != null) {
+      stream.cancel();
+    }
+  }
+
+  public synchronized boolean isRunning() {
+    return running;
+  }
+
+  public synchronized boolean isSynced() {
+    return synced;
+  }
+
+  /**
+   * @return the current generation, to be passed to {@link #publish(long, Runnable)} after loading something from the engine
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  public Duration getResyncInterval() {
+    return resyncInterval;
+  }
+
+  /**
+   * Lists the engine's objects and replaces the view's state, unless the follower has been stopped in the meantime.
+   *
+   * @return <code>true</code> when the listing has been published
+   */
+  public boolean resync() {
+    long resyncGeneration = getGeneration();
+    long startedAt = Instant.now().getEpochSecond();
+    T listing = view.load();
+    synchronized (this) {
+      if (generation != resyncGeneration) {
+        return false;
+      }
+      view.replace(listing, synced);
+      if (!synced || lastEventEpochSeconds < startedAt) {
+        lastEventEpochSeconds = startedAt;
+      }
+      synced = true;
+    }
+    return true;
+  }
+
+  /**
+   * Runs the action under the follower's lock, unless the follower has been stopped since the given generation.
+   *
+   * @return <code>true</code> when the action has been run
+   */
+  public synchronized boolean publish(long expectedGeneration, Runnable action) {
+    if (generation != expectedGeneration) {
+      return false;
+    }
+    action.run();
+    return true;
+  }
+
+  private synchronized boolean isCurrent(long expectedGeneration) {
+    return running && generation == expectedGeneration;
+  }
+
+  private void follow(long followedGeneration) {
+    StreamCallback<EventMessage> callback = new StreamCallback<EventMessage>() {
+
+      @Override
+      public void onStarting(Cancellable cancellable) {
+        onEventsStarting(followedGeneration, cancellable);
+      }
+
+      @Override
+      public void onNext(EventMessage element) {
+        onEvent(followedGeneration, element);
+      }
+    };
+    while (isCurrent(followedGeneration)) {
+      try {
+        SystemEventsRequest request = new SystemEventsRequest(String.valueOf(lastEventEpochSeconds), null, filters);
+        manageSystem.events(request, callback, resyncInterval);
+      } catch (Exception e) {
+        if (!isCurrent(followedGeneration)) {
+          break;
+        }
+        log.warn(name + " events failed, resyncing", e);
+        try {
+          Thread.sleep(Math.min(1000L, resyncInterval.toMillis()));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      if (isCurrent(followedGeneration)) {
+        try {
+          resync();
+        } catch (Exception e) {
+          log.warn(name + " resync failed", e);
+        }
+      }
+    }
+  }
+
+  private void onEventsStarting(long followedGeneration, Cancellable cancellable) {
+    synchronized (this) {
+      if (isCurrent(followedGeneration)) {
+        eventsStream = cancellable;
+        return;
+      }
+    }
+    cancellable.cancel();
+  }
+
+  private synchronized void onEvent(long followedGeneration, EventMessage event) {
+    if (!isCurrent(followedGeneration)) {
+      return;
+    }
+    if (event.getTime() != null) {
+      lastEventEpochSeconds = Math.max(lastEventEpochSeconds, event.getTime());
+    }
+    view.apply(event);
+  }
+}
@@ -0,0 +1,7 @@
+package de.gesellix.docker.client.batch;
+
+@FunctionalInterface
+public interface BatchAction<T> {
+
+  T apply(String key) throws Exception;
+}
@@ -0,0 +1,55 @@
+package de.gesellix.docker.client.batch;
+
+import java.time.Duration;
+
+public class BatchItemResult<T> {
+
+  private final String key;
+  private final T result;
+  private final Exception failure;
+  private final Duration duration;
+
+  public BatchItemResult(String key, T result, Exception failure, Duration duration) {
+    this.key = key;
+    this.result = result;
+    this.failure = failure;
+    this.duration = duration;
+  }
+
+  public static <T> BatchItemResult<T> success(String key, T result, Duration duration) {
+    return new BatchItemResult<>(key, result, null, duration);
+  }
+
+  public static <T> BatchItemResult<T> failure(String key, Exception failure, Duration duration) {
+    return new BatchItemResult<>(key, null, failure, duration);
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public T getResult() {
+    return result;
+  }
+
+  public Exception getFailure() {
+    return failure;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchItemResult{" +
+           "key='" + key + '\'' +
+           (failure == null ? ", result=" + result : ", failure=" + failure) +
+           ", duration=" + duration +
+           '}';
+  }
+}
@@ -0,0 +1,95 @@
+package de.gesellix.docker.client.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated outcome of a batch operation, with one entry per key in the order of the submitted keys.
+ */
+public class BatchReport<T> {
+
+  private final List<BatchItemResult<T>> items;
+
+  public BatchReport(List<BatchItemResult<T>> items) {
+    this.items = Collections.unmodifiableList(new ArrayList<>(items));
+  }
+
+  public List<BatchItemResult<T>> getItems() {
+    return items;
+  }
+
+  public BatchItemResult<T> getItem(String key) {
+    for (BatchItemResult<T> item : items) {
+      if (item.getKey().equals(key)) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  public List<BatchItemResult<T>> getSucceeded() {
+    List<BatchItemResult<T>> succeeded = new ArrayList<>();
+    for (BatchItemResult<T> item : items) {
+      if (item.isSuccessful()) {
+        succeeded.add(item);
+      }
+    }
+    return succeeded;
+  }
+
+  public List<BatchItemResult<T>> getFailed() {
+    List<BatchItemResult<T>> failed = new ArrayList<>();
+    for (BatchItemResult<T> item : items) {
+      if (!item.isSuccessful()) {
+        failed.add(item);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * @return the results of all successful items by key
+   */
+  public Map<String, T> getResults() {
+    Map<String, T> results = new LinkedHashMap<>();
+    for (BatchItemResult<T> item : items) {
+      if (item.isSuccessful()) {
+        results.put(item.getKey(), item.getResult());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the failures of all failed items by key
+   */
+  public Map<String, Exception> getFailures() {
+    Map<String, Exception> failures = new LinkedHashMap<>();
+    for (BatchItemResult<T> item : items) {
+      if (!item.isSuccessful()) {
+        failures.put(item.getKey(), item.getFailure());
+      }
+    }
+    return failures;
+  }
+
+  public boolean isSuccessful() {
+    for (BatchItemResult<T> item : items) {
+      if (!item.isSuccessful()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchReport{" +
+           "items=" + items.size() +
+           ", failed=" + getFailures().keySet() +
+           '}';
+  }
+}
@@ -0,0 +1,16 @@
+package de.gesellix.docker.client.container;
+
+/**
+ * Values derived from {@link ContainerStatsSample stats samples}, as aggregated by the stats aggregator.
+ * Rates are in bytes per second.
+ */
+public enum ContainerStatsMetric {
+
+  CPU_PERCENT,
+  MEMORY_USAGE,
+  MEMORY_PERCENT,
+  NETWORK_RX_RATE,
+  NETWORK_TX_RATE,
+  BLOCK_READ_RATE,
+  BLOCK_WRITE_RATE
+}
@@ -0,0 +1,160 @@
+package de.gesellix.docker.client.container;
+
+/**
+ * A flat, mutable view on a single <code>docker stats</code> sample.
+ * <p>
+ * Streaming consumers receive the same instance for every sample of a stream,
+ * so that they don't need to keep the engine's decoded stats objects.
+ * Consumers must copy the values they want to keep before returning from the callback.
+ */
+public class ContainerStatsSample {
+
+  long readMillis;
+  long cpuTotalUsage;
+  long preCpuTotalUsage;
+  long systemCpuUsage;
+  long preSystemCpuUsage;
+  int onlineCpus;
+  long memoryUsage;
+  long memoryCache;
+  long memoryLimit;
+  long networkRxBytes;
+  long networkTxBytes;
+  long blockReadBytes;
+  long blockWriteBytes;
+  long pids;
+
+  /**
+   * @return the time the engine read the sample, in milliseconds since the epoch
+   */
+  public long getReadMillis() {
+    return readMillis;
+  }
+
+  public long getCpuTotalUsage() {
+    return cpuTotalUsage;
+  }
+
+  public long getPreCpuTotalUsage() {
+    return preCpuTotalUsage;
+  }
+
+  public long getSystemCpuUsage() {
+    return systemCpuUsage;
+  }
+
+  public long getPreSystemCpuUsage() {
+    return preSystemCpuUsage;
+  }
+
+  public int getOnlineCpus() {
+    return onlineCpus;
+  }
+
+  public long getMemoryUsage() {
+    return memoryUsage;
+  }
+
+  /**
+   * @return the inactive file cache, which <code>docker stats</code> doesn't count as used memory
+   */
+  public long getMemoryCache() {
+    return memoryCache;
+  }
+
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  /**
+   * @return the received bytes, summed up over all networks
+   */
+  public long getNetworkRxBytes() {
+    return networkRxBytes;
+  }
+
+  /**
+   * @return the transmitted bytes, summed up over all networks
+   */
+  public long getNetworkTxBytes() {
+    return networkTxBytes;
+  }
+
+  /**
+   * @return the bytes read, summed up over all block devices
+   */
+  public long getBlockReadBytes() {
+    return blockReadBytes;
+  }
+
+  /**
+   * @return the bytes written, summed up over all block devices
+   */
+  public long getBlockWriteBytes() {
+    return blockWriteBytes;
+  }
+
+  public long getPids() {
+    return pids;
+  }
+
+  /**
+   * Calculates the CPU usage like <code>docker stats</code> does.
+   *
+   * @return the CPU usage in percent, where 100% equals one fully used CPU
+   */
+  public double getCpuPercent() {
+    long cpuDelta = cpuTotalUsage - preCpuTotalUsage;
+    long systemDelta = systemCpuUsage - preSystemCpuUsage;
+    if (cpuDelta <= 0 || systemDelta <= 0) {
+      return 0.0;
+    }
+    return (double) cpuDelta / systemDelta * Math.max(1, onlineCpus) * 100.0;
+  }
+
+  /**
+   * @return the memory usage without the inactive file cache, like <code>docker stats</code> shows it
+   */
+  public long getMemoryUsageWithoutCache() {
+    return Math.max(0, memoryUsage - memoryCache);
+  }
+
+  public double getMemoryPercent() {
+    if (memoryLimit <= 0) {
+      return 0.0;
+    }
+    return (double) getMemoryUsageWithoutCache() / memoryLimit * 100.0;
+  }
+
+  void reset() {
+    readMillis = 0;
+    cpuTotalUsage = 0;
+    preCpuTotalUsage = 0;
+    systemCpuUsage = 0;
+    preSystemCpuUsage = 0;
+    onlineCpus = 0;
+    memoryUsage = 0;
+    memoryCache = 0;
+    memoryLimit = 0;
+    networkRxBytes = 0;
+    networkTxBytes = 0;
+    blockReadBytes = 0;
+    blockWriteBytes = 0;
+    pids = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "ContainerStatsSample{" +
+           "readMillis=" + readMillis +
+           ", cpuPercent=" + getCpuPercent() +
+           ", memoryUsage=" + getMemoryUsageWithoutCache() +
+           ", memoryLimit=" + memoryLimit +
+           ", networkRxBytes=" + networkRxBytes +
+           ", networkTxBytes=" + networkTxBytes +
+           ", blockReadBytes=" + blockReadBytes +
+           ", blockWriteBytes=" + blockWriteBytes +
+           ", pids=" + pids +
+           '}';
+  }
+}
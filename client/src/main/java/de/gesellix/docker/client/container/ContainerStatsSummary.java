@@ -0,0 +1,70 @@
+package de.gesellix.docker.client.container;
+
+/**
+ * Summarizes the stats of a single container over a rolling window.
+ */
+public class ContainerStatsSummary {
+
+  private final String container;
+  private final int sampleCount;
+  private final long lastReadMillis;
+  private final double[] current;
+  private final double[] p50;
+  private final double[] p95;
+  private final double[] max;
+
+  public ContainerStatsSummary(String container, int sampleCount, long lastReadMillis,
+                               double[] current, double[] p50, double[] p95, double[] max) {
+    this.container = container;
+    this.sampleCount = sampleCount;
+    this.lastReadMillis = lastReadMillis;
+    this.current = current;
+    this.p50 = p50;
+    this.p95 = p95;
+    this.max = max;
+  }
+
+  public String getContainer() {
+    return container;
+  }
+
+  /**
+   * @return the number of samples in the window
+   */
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  public long getLastReadMillis() {
+    return lastReadMillis;
+  }
+
+  public double getCurrent(ContainerStatsMetric metric) {
+    return current[metric.ordinal()];
+  }
+
+  public double getP50(ContainerStatsMetric metric) {
+    return p50[metric.ordinal()];
+  }
+
+  public double getP95(ContainerStatsMetric metric) {
+    return p95[metric.ordinal()];
+  }
+
+  public double getMax(ContainerStatsMetric metric) {
+    return max[metric.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("ContainerStatsSummary{container='").append(container).append('\'')
+        .append(", sampleCount=").append(sampleCount);
+    for (ContainerStatsMetric metric : ContainerStatsMetric.values()) {
+      builder.append(", ").append(metric).append("=[current=").append(getCurrent(metric))
+          .append(", p50=").append(getP50(metric))
+          .append(", p95=").append(getP95(metric))
+          .append(", max=").append(getMax(metric)).append(']');
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -0,0 +1,75 @@
+package de.gesellix.docker.client.container;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configures how a command is executed in many containers.
+ */
+public class ExecAllOptions {
+
+  private int maxParallel = Integer.MAX_VALUE;
+  private int maxOutputBytes = 64 * 1024;
+  private Duration timeout = Duration.ofMinutes(1);
+  private List<String> env;
+  private String user;
+  private String workingDir;
+
+  public int getMaxParallel() {
+    return maxParallel;
+  }
+
+  /**
+   * Limits the number of concurrent execs, in addition to the per-daemon limit of the batch executor.
+   */
+  public void setMaxParallel(int maxParallel) {
+    this.maxParallel = maxParallel;
+  }
+
+  public int getMaxOutputBytes() {
+    return maxOutputBytes;
+  }
+
+  /**
+   * The maximum number of bytes collected per container and stream (stdout, stderr).
+   * Additional output is discarded and only counted.
+   */
+  public void setMaxOutputBytes(int maxOutputBytes) {
+    this.maxOutputBytes = maxOutputBytes;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public List<String> getEnv() {
+    return env;
+  }
+
+  /**
+   * Environment variables in the form <code>KEY=value</code>.
+   */
+  public void setEnv(List<String> env) {
+    this.env = env;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public void setUser(String user) {
+    this.user = user;
+  }
+
+  public String getWorkingDir() {
+    return workingDir;
+  }
+
+  public void setWorkingDir(String workingDir) {
+    this.workingDir = workingDir;
+  }
+}
@@ -0,0 +1,111 @@
+package de.gesellix.docker.client.container;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * The result of a command executed via {@link ManageContainer#execAll(java.util.Collection, java.util.List, ExecAllOptions)}.
+ */
+public class ExecOutput {
+
+  public static final String TRUNCATION_MARKER = "\n[output truncated, %d bytes dropped]";
+
+  private final String container;
+  private final String execId;
+  private final Integer exitCode;
+  private final byte[] stdout;
+  private final long stdoutDropped;
+  private final byte[] stderr;
+  private final long stderrDropped;
+  private final Duration duration;
+
+  public ExecOutput(String container, String execId, Integer exitCode,
+                    byte[] stdout, long stdoutDropped,
+                    byte[] stderr, long stderrDropped,
+                    Duration duration) {
+    this.container = container;
+    this.execId = execId;
+    this.exitCode = exitCode;
+    this.stdout = stdout;
+    this.stdoutDropped = stdoutDropped;
+    this.stderr = stderr;
+    this.stderrDropped = stderrDropped;
+    this.duration = duration;
+  }
+
+  public String getContainer() {
+    return container;
+  }
+
+  public String getExecId() {
+    return execId;
+  }
+
+  /**
+   * @return the exit code, or <code>null</code> when the engine didn't report one, e.g. after a timeout
+   */
+  public Integer getExitCode() {
+    return exitCode;
+  }
+
+  /**
+   * @return the collected stdout, followed by a {@link #TRUNCATION_MARKER} if it has been truncated
+   */
+  public String getStdout() {
+    return asString(stdout, stdoutDropped);
+  }
+
+  public byte[] getStdoutBytes() {
+    return stdout;
+  }
+
+  public boolean isStdoutTruncated() {
+    return stdoutDropped > 0;
+  }
+
+  public long getStdoutDropped() {
+    return stdoutDropped;
+  }
+
+  /**
+   * @return the collected stderr, followed by a {@link #TRUNCATION_MARKER} if it has been truncated
+   */
+  public String getStderr() {
+    return asString(stderr, stderrDropped);
+  }
+
+  public byte[] getStderrBytes() {
+    return stderr;
+  }
+
+  public boolean isStderrTruncated() {
+    return stderrDropped > 0;
+  }
+
+  public long getStderrDropped() {
+    return stderrDropped;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  private static String asString(byte[] bytes, long dropped) {
+    String text = new String(bytes, StandardCharsets.UTF_8);
+    return dropped > 0 ? text + String.format(TRUNCATION_MARKER, dropped) : text;
+  }
+
+  @Override
+  public String toString() {
+    return "ExecOutput{" +
+           "container='" + container + '\'' +
+           ", execId='" + execId + '\'' +
+           ", exitCode=" + exitCode +
+           ", stdout=" + stdout.length + " bytes" +
+           ", stdoutDropped=" + stdoutDropped +
+           ", stderr=" + stderr.length + " bytes" +
+           ", stderrDropped=" + stderrDropped +
+           ", duration=" + duration +
+           '}';
+  }
+}
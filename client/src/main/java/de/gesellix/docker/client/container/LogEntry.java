@@ -0,0 +1,60 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.remote.api.core.Frame;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * A single log line of a followed container.
+ */
+public class LogEntry {
+
+  private final String container;
+  private final Instant timestamp;
+  private final Frame.StreamType streamType;
+  private final byte[] payload;
+
+  public LogEntry(String container, Instant timestamp, Frame.StreamType streamType, byte[] payload) {
+    this.container = container;
+    this.timestamp = timestamp;
+    this.streamType = streamType;
+    this.payload = payload;
+  }
+
+  public String getContainer() {
+    return container;
+  }
+
+  /**
+   * @return the time the engine has received the line
+   */
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public Frame.StreamType getStreamType() {
+    return streamType;
+  }
+
+  /**
+   * @return the line without the engine's timestamp
+   */
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  public String getPayloadAsString() {
+    return new String(payload, StandardCharsets.UTF_8).trim();
+  }
+
+  @Override
+  public String toString() {
+    return "LogEntry{" +
+           "container='" + container + '\'' +
+           ", timestamp=" + timestamp +
+           ", streamType=" + streamType +
+           ", payload='" + getPayloadAsString() + '\'' +
+           '}';
+  }
+}
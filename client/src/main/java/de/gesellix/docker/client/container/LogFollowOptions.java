@@ -0,0 +1,121 @@
+package de.gesellix.docker.client.container;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configures which containers are followed and how their log streams are buffered.
+ */
+public class LogFollowOptions {
+
+  private List<String> containers = new ArrayList<>();
+  private Map<String, String> labels = new HashMap<>();
+  private boolean followNewContainers = true;
+  private String tail = "0";
+  private int bufferSize = 1000;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+  private int sampleRate = 10;
+  private Duration reorderWindow = Duration.ofMillis(200);
+  private Duration timeout = Duration.ofHours(24);
+
+  public List<String> getContainers() {
+    return containers;
+  }
+
+  /**
+   * Container ids or names to follow, in addition to the containers matching the {@link #getLabels() labels}.
+   */
+  public void setContainers(List<String> containers) {
+    this.containers = containers;
+  }
+
+  public Map<String, String> getLabels() {
+    return labels;
+  }
+
+  /**
+   * Follows all running containers with these labels. An empty value matches every value of the label.
+   */
+  public void setLabels(Map<String, String> labels) {
+    this.labels = labels;
+  }
+
+  public boolean isFollowNewContainers() {
+    return followNewContainers;
+  }
+
+  /**
+   * Whether containers matching the labels are followed as soon as they start.
+   */
+  public void setFollowNewContainers(boolean followNewContainers) {
+    this.followNewContainers = followNewContainers;
+  }
+
+  public String getTail() {
+    return tail;
+  }
+
+  /**
+   * The number of existing lines per container, or <code>all</code>. Defaults to <code>0</code>.
+   * Containers started while following are always followed from their first line.
+   */
+  public void setTail(String tail) {
+    this.tail = tail;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * The maximum number of buffered entries per container.
+   */
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Keep every n-th entry when a buffer overflows with {@link OverflowPolicy#SAMPLE}.
+   */
+  public void setSampleRate(int sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  public Duration getReorderWindow() {
+    return reorderWindow;
+  }
+
+  /**
+   * How long an entry may be held back to wait for older entries of other containers.
+   * Larger windows improve the ordering of the merged stream, at the cost of latency.
+   */
+  public void setReorderWindow(Duration reorderWindow) {
+    this.reorderWindow = reorderWindow;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * The timeout of every single log stream.
+   */
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+}
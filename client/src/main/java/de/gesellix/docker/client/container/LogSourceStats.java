@@ -0,0 +1,72 @@
+package de.gesellix.docker.client.container;
+
+/**
+ * Counters of a single followed container.
+ */
+public class LogSourceStats {
+
+  private final String container;
+  private final long received;
+  private final long receivedBytes;
+  private final long delivered;
+  private final long dropped;
+  private final int buffered;
+  private final boolean finished;
+
+  public LogSourceStats(String container, long received, long receivedBytes, long delivered, long dropped, int buffered, boolean finished) {
+    this.container = container;
+    this.received = received;
+    this.receivedBytes = receivedBytes;
+    this.delivered = delivered;
+    this.dropped = dropped;
+    this.buffered = buffered;
+    this.finished = finished;
+  }
+
+  public String getContainer() {
+    return container;
+  }
+
+  public long getReceived() {
+    return received;
+  }
+
+  public long getReceivedBytes() {
+    return receivedBytes;
+  }
+
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /**
+   * @return the number of entries discarded by the overflow policy
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  public int getBuffered() {
+    return buffered;
+  }
+
+  /**
+   * @return whether the log stream has ended, e.g. because the container has stopped
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  @Override
+  public String toString() {
+    return "LogSourceStats{" +
+           "container='" + container + '\'' +
+           ", received=" + received +
+           ", receivedBytes=" + receivedBytes +
+           ", delivered=" + delivered +
+           ", dropped=" + dropped +
+           ", buffered=" + buffered +
+           ", finished=" + finished +
+           '}';
+  }
+}
@@ -1,6 +1,7 @@
 package de.gesellix.docker.client.container;
 
 import de.gesellix.docker.client.EngineResponseContent;
+import de.gesellix.docker.client.batch.BatchReport;
 import de.gesellix.docker.remote.api.ContainerCreateRequest;
 import de.gesellix.docker.remote.api.ContainerCreateResponse;
 import de.gesellix.docker.remote.api.ContainerInspectResponse;
@@ -22,9 +23,13 @@ import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 public interface ManageContainer {
@@ -49,10 +54,44 @@ public interface ManageContainer {
 
   byte[] extractFile(String container, String filename);
 
+  /**
+   * Streams the file content into the target without buffering it in memory.
+   * The target will be closed when done.
+   *
+   * @return the number of bytes written
+   */
+  long extractFile(String container, String filename, OutputStream target);
+
+  /**
+   * Transfers the file content into the target file without buffering it in memory.
+   *
+   * @return the number of bytes written
+   */
+  long extractFile(String container, String filename, Path target);
+
+  /**
+   * Extracts all files and directories below the given path into the target directory.
+   *
+   * @return the number of bytes written to regular files
+   */
+  long extractArchive(String container, String path, Path targetDirectory);
+
   EngineResponseContent<InputStream> getArchive(String container, String path);
 
   void putArchive(String container, String path, InputStream archive);
 
+  /**
+   * @see #putDirectory(String, String, Path, PutDirectoryOptions)
+   */
+  void putDirectory(String container, String path, Path directory);
+
+  /**
+   * Uploads the contents of a host directory to the container's path.
+   * The tar archive is written while it is being uploaded, so that neither a temporary file
+   * nor a buffer of the directory's size is necessary.
+   */
+  void putDirectory(String container, String path, Path directory, PutDirectoryOptions options);
+
   EngineResponseContent<ContainerCreateResponse> createContainer(ContainerCreateRequest containerCreateRequest);
 
   EngineResponseContent<ContainerCreateResponse> createContainer(ContainerCreateRequest containerCreateRequest, String name);
@@ -81,8 +120,26 @@ public interface ManageContainer {
 
   void logs(String container, Map<String, Object> query, StreamCallback<Frame> callback, Duration timeout);
 
+  /**
+   * Blocks until a log frame matches, the log stream ends, or the timeout has been reached.
+   * Only the last log line before the call and newer lines are considered.
+   *
+   * @see #watchLogs(String, Map, Predicate, Duration)
+   */
   void waitForLogEvent(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout);
 
+  /**
+   * Completes with the first matching log frame.
+   * The log stream is closed as soon as the future has been completed or cancelled.
+   */
+  CompletableFuture<Frame> watchLogs(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout);
+
+  /**
+   * Follows a single log stream and completes one future per matcher.
+   * The log stream is closed as soon as all futures have been completed or cancelled.
+   */
+  List<CompletableFuture<Frame>> watchLogs(String container, Map<String, Object> query, List<Predicate<Frame>> matchers, Duration timeout);
+
   EngineResponseContent<List<ContainerSummary>> ps(Map<String, Object> query);
 
   EngineResponseContent<List<ContainerSummary>> ps();
@@ -119,6 +176,14 @@ public interface ManageContainer {
 
   void stats(String container, Boolean stream, StreamCallback<Object> callback, Duration timeout);
 
+  /**
+   * Streams the container's stats as {@link ContainerStatsSample}.
+   * The callback receives the same sample instance for every element of the stream.
+   *
+   * @see ContainerStatsAggregator
+   */
+  void stats(String container, StreamCallback<ContainerStatsSample> callback, Duration timeout);
+
   void stop(String containerIdOrName);
 
   void stop(String containerIdOrName, Integer timeoutSeconds);
@@ -136,4 +201,27 @@ public interface ManageContainer {
   EngineResponseContent<ContainerWaitResponse> wait(String containerIdOrName);
 
   EngineResponseContent<ContainerWaitResponse> wait(String containerIdOrName, ContainerApi.ConditionContainerWait condition);
+
+  BatchReport<Void> startAll(Collection<String> containers);
+
+  BatchReport<Void> stopAll(Collection<String> containers, Duration timeout);
+
+  BatchReport<Void> killAll(Collection<String> containers);
+
+  BatchReport<Void> pauseAll(Collection<String> containers);
+
+  BatchReport<Void> rmAll(Collection<String> containers);
+
+  BatchReport<Void> rmAll(Collection<String> containers, Map<String, Object> query);
+
+  /**
+   * @see #execAll(Collection, List, ExecAllOptions)
+   */
+  BatchReport<ExecOutput> execAll(Collection<String> containers, List<String> command);
+
+  /**
+   * Executes the command concurrently in every container and collects the (size-capped) output and exit codes.
+   * A non-zero exit code doesn't count as failure of the batch item, only failing engine requests do.
+   */
+  BatchReport<ExecOutput> execAll(Collection<String> containers, List<String> command, ExecAllOptions options);
 }
@@ -0,0 +1,160 @@
+package de.gesellix.docker.client.container;
+
+import de.gesellix.docker.client.EngineResponseContent;
+import de.gesellix.docker.remote.api.ContainerCreateRequest;
+import de.gesellix.docker.remote.api.ContainerCreateResponse;
+import de.gesellix.docker.remote.api.ContainerInspectResponse;
+import de.gesellix.docker.remote.api.ContainerPruneResponse;
+import de.gesellix.docker.remote.api.ContainerSummary;
+import de.gesellix.docker.remote.api.ContainerTopResponse;
+import de.gesellix.docker.remote.api.ContainerUpdateRequest;
+import de.gesellix.docker.remote.api.ContainerUpdateResponse;
+import de.gesellix.docker.remote.api.ContainerWaitResponse;
+import de.gesellix.docker.remote.api.ExecConfig;
+import de.gesellix.docker.remote.api.ExecInspectResponse;
+import de.gesellix.docker.remote.api.ExecStartConfig;
+import de.gesellix.docker.remote.api.FilesystemChange;
+import de.gesellix.docker.remote.api.IdResponse;
+import de.gesellix.docker.remote.api.client.ContainerApi;
+import de.gesellix.docker.remote.api.core.Frame;
+import de.gesellix.docker.remote.api.core.StreamCallback;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Non-blocking variant of {@link ManageContainer}.
+ * <p>
+ * Every call is dispatched to an executor and returns immediately.
+ * Cancelling a returned future interrupts the worker thread
+ * and cancels a streaming request (attach, logs, stats, exec) if one is in progress.
+ * Streaming calls complete when the stream has finished.
+ */
+public interface ManageContainerAsync {
+
+  CompletableFuture<Void> attach(String containerId,
+                                 String detachKeys,
+                                 Boolean logs, Boolean stream,
+                                 Boolean stdin, Boolean stdout, Boolean stderr,
+                                 StreamCallback<Frame> callback, Duration timeout);
+
+  CompletableFuture<Void> resizeTTY(String container, Integer height, Integer width);
+
+  CompletableFuture<WebSocket> attachWebsocket(String containerId, String detachKeys,
+                                               Boolean logs, Boolean stream, Boolean stdin, Boolean stdout, Boolean stderr,
+                                               WebSocketListener listener);
+
+  CompletableFuture<EngineResponseContent<IdResponse>> commit(String container, Map query);
+
+  CompletableFuture<EngineResponseContent<IdResponse>> commit(String container, Map query, Map config);
+
+  CompletableFuture<EngineResponseContent<Map<String, Object>>> getArchiveStats(String container, String path);
+
+  CompletableFuture<byte[]> extractFile(String container, String filename);
+
+  CompletableFuture<Long> extractFile(String container, String filename, OutputStream target);
+
+  CompletableFuture<Long> extractFile(String container, String filename, Path target);
+
+  CompletableFuture<Long> extractArchive(String container, String path, Path targetDirectory);
+
+  CompletableFuture<EngineResponseContent<InputStream>> getArchive(String container, String path);
+
+  CompletableFuture<Void> putArchive(String container, String path, InputStream archive);
+
+  CompletableFuture<Void> putDirectory(String container, String path, Path directory, PutDirectoryOptions options);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest, String name);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> createContainer(ContainerCreateRequest containerCreateRequest, String name, String authBase64Encoded);
+
+  CompletableFuture<EngineResponseContent<List<FilesystemChange>>> diff(String container);
+
+  CompletableFuture<EngineResponseContent<IdResponse>> createExec(String container, ExecConfig execConfig);
+
+  CompletableFuture<Void> startExec(String execId, ExecStartConfig execStartConfig, StreamCallback<Frame> callback, Duration timeout);
+
+  CompletableFuture<EngineResponseContent<ExecInspectResponse>> inspectExec(String execId);
+
+  CompletableFuture<EngineResponseContent<IdResponse>> exec(String container, List<String> command, StreamCallback<Frame> callback, Duration timeout);
+
+  CompletableFuture<EngineResponseContent<IdResponse>> exec(String container, List<String> command, StreamCallback<Frame> callback, Duration timeout, Map<String, Object> execConfig);
+
+  CompletableFuture<Void> resizeExec(String exec, Integer height, Integer width);
+
+  CompletableFuture<EngineResponseContent<InputStream>> export(String container);
+
+  CompletableFuture<EngineResponseContent<ContainerInspectResponse>> inspectContainer(String container);
+
+  CompletableFuture<Void> kill(String container);
+
+  CompletableFuture<Void> logs(String container, Map<String, Object> query, StreamCallback<Frame> callback, Duration timeout);
+
+  CompletableFuture<Void> waitForLogEvent(String container, Map<String, Object> query, Predicate<Frame> matcher, Duration timeout);
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Map<String, Object> query);
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps();
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all);
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit);
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit, Boolean size);
+
+  CompletableFuture<EngineResponseContent<List<ContainerSummary>>> ps(Boolean all, Integer limit, Boolean size, String filters);
+
+  CompletableFuture<Void> pause(String container);
+
+  CompletableFuture<EngineResponseContent<ContainerPruneResponse>> pruneContainers();
+
+  CompletableFuture<EngineResponseContent<ContainerPruneResponse>> pruneContainers(String filters);
+
+  CompletableFuture<Void> rename(String container, String newName);
+
+  CompletableFuture<Void> restart(String containerIdOrName);
+
+  CompletableFuture<Void> rm(String containerIdOrName);
+
+  CompletableFuture<Void> rm(String containerIdOrName, Map<String, Object> query);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest, String name);
+
+  CompletableFuture<EngineResponseContent<ContainerCreateResponse>> run(ContainerCreateRequest containerCreateRequest, String name, String authBase64Encoded);
+
+  CompletableFuture<Void> startContainer(String container);
+
+  CompletableFuture<Void> stats(String container, Boolean stream, StreamCallback<Object> callback, Duration timeout);
+
+  CompletableFuture<Void> stats(String container, StreamCallback<ContainerStatsSample> callback, Duration timeout);
+
+  CompletableFuture<Void> stop(String containerIdOrName);
+
+  CompletableFuture<Void> stop(String containerIdOrName, Integer timeoutSeconds);
+
+  CompletableFuture<Void> stop(String containerIdOrName, Duration timeout);
+
+  CompletableFuture<EngineResponseContent<ContainerTopResponse>> top(String containerIdOrName);
+
+  CompletableFuture<EngineResponseContent<ContainerTopResponse>> top(String containerIdOrName, String psArgs);
+
+  CompletableFuture<Void> unpause(String container);
+
+  CompletableFuture<EngineResponseContent<ContainerUpdateResponse>> updateContainer(String container, ContainerUpdateRequest containerUpdateRequest);
+
+  CompletableFuture<EngineResponseContent<ContainerWaitResponse>> wait(String containerIdOrName);
+
+  CompletableFuture<EngineResponseContent<ContainerWaitResponse>> wait(String containerIdOrName, ContainerApi.ConditionContainerWait condition);
+}
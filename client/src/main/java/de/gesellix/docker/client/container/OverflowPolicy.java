@@ -0,0 +1,25 @@
+package de.gesellix.docker.client.container;
+
+/**
+ * Decides what happens when a log source produces entries faster than they are consumed.
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Stops reading from the source until the consumer catches up.
+   * The engine's log stream is throttled by TCP flow control, so no entries get lost.
+   */
+  BLOCK,
+
+  /**
+   * Drops the oldest buffered entry of the source for every new entry.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Keeps only every n-th new entry while the buffer is full, replacing the oldest one.
+   *
+   * @see LogFollowOptions#setSampleRate(int)
+   */
+  SAMPLE
+}
@@ -0,0 +1,49 @@
+package de.gesellix.docker.client.container;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configures which files of a host directory are uploaded and how the archive is encoded.
+ */
+public class PutDirectoryOptions {
+
+  private List<String> includes = new ArrayList<>();
+  private List<String> excludes = new ArrayList<>();
+  private boolean gzip = false;
+
+  public List<String> getIncludes() {
+    return includes;
+  }
+
+  /**
+   * Glob patterns, relative to the host directory, like <code>**&#47;*.json</code>.
+   * Only matching files are uploaded. All files are uploaded when no include is configured.
+   */
+  public void setIncludes(List<String> includes) {
+    this.includes = includes;
+  }
+
+  public List<String> getExcludes() {
+    return excludes;
+  }
+
+  /**
+   * Glob patterns, relative to the host directory. Excluded directories are skipped completely.
+   */
+  public void setExcludes(List<String> excludes) {
+    this.excludes = excludes;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * Whether the archive should be compressed while being uploaded.
+   * Worth it for remote engines, but mostly a waste of CPU for a local engine.
+   */
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+}
@@ -1,6 +1,7 @@
 package de.gesellix.docker.client.distribution;
 
 import de.gesellix.docker.client.EngineResponseContent;
+import de.gesellix.docker.client.image.ContentAddressedCache;
 import de.gesellix.docker.remote.api.DistributionInspect;
 import de.gesellix.docker.remote.api.EngineApiClient;
 import org.slf4j.Logger;
@@ -11,15 +12,30 @@ public class ManageDistributionService implements ManageDistribution {
   private static final Logger log = LoggerFactory.getLogger(ManageDistributionService.class);
 
   private final EngineApiClient client;
+  private volatile ContentAddressedCache contentAddressedCache;
 
   public ManageDistributionService(EngineApiClient client) {
     this.client = client;
   }
 
+  /**
+   * Lets {@link #descriptor} answer lookups of references pinned by digest from the cache.
+   */
+  public void setContentAddressedCache(ContentAddressedCache contentAddressedCache) {
+    this.contentAddressedCache = contentAddressedCache;
+  }
+
+  public ContentAddressedCache getContentAddressedCache() {
+    return contentAddressedCache;
+  }
+
   @Override
   public EngineResponseContent<DistributionInspect> descriptor(String image) {
     log.info("docker distribution descriptor");
-    DistributionInspect distributionInspect = client.getDistributionApi().distributionInspect(image);
+    ContentAddressedCache cache = contentAddressedCache;
+    DistributionInspect distributionInspect = cache != null
+        ? cache.get(ContentAddressedCache.DESCRIPTOR, image, () -> client.getDistributionApi().distributionInspect(image))
+        : client.getDistributionApi().distributionInspect(image);
     return new EngineResponseContent<>(distributionInspect);
   }
 }
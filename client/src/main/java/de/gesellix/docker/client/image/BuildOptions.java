@@ -0,0 +1,144 @@
+package de.gesellix.docker.client.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configures an image build from a build context directory.
+ */
+public class BuildOptions {
+
+  private String dockerfile = "Dockerfile";
+  private String tag;
+  private Map<String, String> buildArgs = new LinkedHashMap<>();
+  private Map<String, String> labels = new LinkedHashMap<>();
+  private String target;
+  private String platform;
+  private boolean noCache = false;
+  private boolean pull = false;
+  private boolean rm = true;
+  private boolean quiet = false;
+  private boolean gzip = false;
+  private int compressionBlockSize = 1024 * 1024;
+
+  public String getDockerfile() {
+    return dockerfile;
+  }
+
+  /**
+   * The Dockerfile's path, relative to the build context directory.
+   */
+  public void setDockerfile(String dockerfile) {
+    this.dockerfile = dockerfile;
+  }
+
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * A name and optional tag like <code>name:tag</code>.
+   */
+  public void setTag(String tag) {
+    this.tag = tag;
+  }
+
+  public Map<String, String> getBuildArgs() {
+    return buildArgs;
+  }
+
+  public void setBuildArgs(Map<String, String> buildArgs) {
+    this.buildArgs = buildArgs;
+  }
+
+  public Map<String, String> getLabels() {
+    return labels;
+  }
+
+  public void setLabels(Map<String, String> labels) {
+    this.labels = labels;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  /**
+   * The build stage to build in a multi-stage Dockerfile.
+   */
+  public void setTarget(String target) {
+    this.target = target;
+  }
+
+  public String getPlatform() {
+    return platform;
+  }
+
+  /**
+   * A platform like <code>linux/amd64</code>.
+   */
+  public void setPlatform(String platform) {
+    this.platform = platform;
+  }
+
+  public boolean isNoCache() {
+    return noCache;
+  }
+
+  public void setNoCache(boolean noCache) {
+    this.noCache = noCache;
+  }
+
+  public boolean isPull() {
+    return pull;
+  }
+
+  /**
+   * Whether to pull the base images, even if older versions exist locally.
+   */
+  public void setPull(boolean pull) {
+    this.pull = pull;
+  }
+
+  public boolean isRm() {
+    return rm;
+  }
+
+  /**
+   * Whether to remove intermediate containers after a successful build.
+   */
+  public void setRm(boolean rm) {
+    this.rm = rm;
+  }
+
+  public boolean isQuiet() {
+    return quiet;
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * Whether the build context should be compressed while being uploaded.
+   * Blocks are compressed in parallel. Worth it for remote engines, but mostly a waste of CPU for a local engine.
+   */
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+
+  public int getCompressionBlockSize() {
+    return compressionBlockSize;
+  }
+
+  /**
+   * The size of the blocks which are compressed in parallel.
+   */
+  public void setCompressionBlockSize(int compressionBlockSize) {
+    this.compressionBlockSize = compressionBlockSize;
+  }
+}
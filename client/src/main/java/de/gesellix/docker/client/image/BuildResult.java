@@ -0,0 +1,119 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The outcome of a build, collected from the build's progress stream.
+ */
+public class BuildResult {
+
+  /**
+   * A single Dockerfile instruction, like <code>Step 2/5 : RUN make</code>.
+   */
+  public static class Step {
+
+    private final int number;
+    private final String instruction;
+    private final Duration duration;
+    private final boolean cached;
+
+    public Step(int number, String instruction, Duration duration, boolean cached) {
+      this.number = number;
+      this.instruction = instruction;
+      this.duration = duration;
+      this.cached = cached;
+    }
+
+    public int getNumber() {
+      return number;
+    }
+
+    public String getInstruction() {
+      return instruction;
+    }
+
+    /**
+     * @return the time between the step's first and the next step's first message
+     */
+    public Duration getDuration() {
+      return duration;
+    }
+
+    /**
+     * @return whether the engine used its layer cache for the step
+     */
+    public boolean isCached() {
+      return cached;
+    }
+
+    @Override
+    public String toString() {
+      return "Step " + number + " : " + instruction + " (" + duration.toMillis() + " ms" + (cached ? ", cached" : "") + ")";
+    }
+  }
+
+  private final String imageId;
+  private final List<String> warnings;
+  private final List<Step> steps;
+  private final Duration duration;
+  private final String error;
+
+  public BuildResult(String imageId, List<String> warnings, List<Step> steps, Duration duration, String error) {
+    this.imageId = imageId;
+    this.warnings = Collections.unmodifiableList(warnings);
+    this.steps = Collections.unmodifiableList(steps);
+    this.duration = duration;
+    this.error = error;
+  }
+
+  /**
+   * @return the id of the built image, or <code>null</code> if the build failed
+   */
+  public String getImageId() {
+    return imageId;
+  }
+
+  public List<String> getWarnings() {
+    return warnings;
+  }
+
+  public List<Step> getSteps() {
+    return steps;
+  }
+
+  /**
+   * @return the steps, the slowest first
+   */
+  public List<Step> getSlowestSteps() {
+    List<Step> slowest = new ArrayList<>(steps);
+    slowest.sort(Comparator.comparing(Step::getDuration).reversed());
+    return slowest;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public boolean isSuccessful() {
+    return error == null && imageId != null;
+  }
+
+  @Override
+  public String toString() {
+    return "BuildResult{" +
+           "imageId='" + imageId + '\'' +
+           ", steps=" + steps.size() +
+           ", warnings=" + warnings.size() +
+           ", duration=" + duration +
+           (error != null ? ", error='" + error + '\'' : "") +
+           '}';
+  }
+}
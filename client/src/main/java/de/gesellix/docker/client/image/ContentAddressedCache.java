@@ -0,0 +1,105 @@
+package de.gesellix.docker.client.image;
+
+import de.gesellix.util.LruCache;
+
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches engine responses which never change for a content addressed reference,
+ * like the inspection of an image id or the distribution descriptor of a digest reference.
+ * <p>
+ * Lookups by mutable references like tags always go to the engine.
+ * Inspections and histories contain the tags of an image, so they are only valid until tags change.
+ * The image client invalidates them after its own tag changes, but doesn't notice
+ * tags changed by other clients, e.g. by a <code>docker tag</code> or <code>docker commit</code> on the same engine.
+ * The size of a response is estimated by the length of its string representation.
+ */
+public class ContentAddressedCache {
+
+  public static final String INSPECT = "inspect";
+  public static final String HISTORY = "history";
+  public static final String DESCRIPTOR = "descriptor";
+
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+  // a full image id with or without algorithm, or a reference pinned by digest
+  private static final Pattern CONTENT_ADDRESSED = Pattern.compile("^(sha256:)?[a-f0-9]{64}$|^[^@\\s]+@sha256:[a-f0-9]{64}$");
+
+  private final LruCache<String, Object> cache;
+
+  public ContentAddressedCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SIZE);
+  }
+
+  public ContentAddressedCache(int maxEntries, long maxSize) {
+    this.cache = new LruCache<>(maxEntries, maxSize, value -> 2L * String.valueOf(value).length());
+  }
+
+  /**
+   * Short id prefixes aren't content addressed, because they may match another image after the original image has been removed.
+   */
+  public static boolean isContentAddressed(String reference) {
+    return reference != null && CONTENT_ADDRESSED.matcher(reference).matches();
+  }
+
+  /**
+   * @param kind distinguishes the responses for the same reference, e.g. {@link #INSPECT} and {@link #HISTORY}
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String kind, String reference, Supplier<T> loader) {
+    if (!isContentAddressed(reference)) {
+      return loader.get();
+    }
+    return (T) cache.get(key(kind, reference), key -> loader.get());
+  }
+
+  /**
+   * Removes all responses for the image id, e.g. after the image has been removed.
+   */
+  public void invalidate(String imageId) {
+    String id = imageId.startsWith("sha256:") ? imageId.substring("sha256:".length()) : imageId;
+    for (String kind : new String[]{INSPECT, HISTORY}) {
+      cache.remove(key(kind, id));
+      cache.remove(key(kind, "sha256:" + id));
+    }
+  }
+
+  /**
+   * Removes all inspections and histories, e.g. after a tag has been added or removed.
+   * A tag may move from one image to another, so that more than one image id is affected.
+   */
+  public void invalidateImages() {
+    cache.removeIf(key -> key.startsWith(INSPECT + " ") || key.startsWith(HISTORY + " "));
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  public double getHitRate() {
+    return cache.getHitRate();
+  }
+
+  private static String key(String kind, String reference) {
+    return kind + " " + reference;
+  }
+
+  @Override
+  public String toString() {
+    return "ContentAddressedCache{" + cache + '}';
+  }
+}
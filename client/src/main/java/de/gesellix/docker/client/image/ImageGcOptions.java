@@ -0,0 +1,62 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+
+/**
+ * Configures which unused images an image garbage collection may remove, and how many of them at once.
+ *
+ * @see ManageImage#planImageGc(ImageGcOptions)
+ */
+public class ImageGcOptions {
+
+  private int keepNewestPerRepository = 1;
+  private long targetBytes = 0;
+  private Duration minUnusedFor = Duration.ZERO;
+  private int maxParallel = 4;
+
+  public int getKeepNewestPerRepository() {
+    return keepNewestPerRepository;
+  }
+
+  /**
+   * Keeps the given number of the newest images of every repository, even when they are unused.
+   * Dangling images don't belong to a repository, so they are never kept by this rule.
+   */
+  public void setKeepNewestPerRepository(int keepNewestPerRepository) {
+    this.keepNewestPerRepository = keepNewestPerRepository;
+  }
+
+  public long getTargetBytes() {
+    return targetBytes;
+  }
+
+  /**
+   * Stops planning removals once the given number of bytes would be reclaimed.
+   * Zero or less plans the removal of all eligible images.
+   */
+  public void setTargetBytes(long targetBytes) {
+    this.targetBytes = targetBytes;
+  }
+
+  public Duration getMinUnusedFor() {
+    return minUnusedFor;
+  }
+
+  /**
+   * Only removes images which have been neither created nor used by a container for at least the given duration.
+   */
+  public void setMinUnusedFor(Duration minUnusedFor) {
+    this.minUnusedFor = minUnusedFor;
+  }
+
+  public int getMaxParallel() {
+    return maxParallel;
+  }
+
+  /**
+   * Limits the number of concurrent removals, in addition to the per-daemon limit of the batch executor.
+   */
+  public void setMaxParallel(int maxParallel) {
+    this.maxParallel = maxParallel;
+  }
+}
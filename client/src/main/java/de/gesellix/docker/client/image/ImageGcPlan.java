@@ -0,0 +1,137 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The images an image garbage collection would remove, ranked by the space their removal reclaims.
+ * <p>
+ * A plan can be inspected as a dry run, and be passed to {@link ManageImage#executeImageGc(ImageGcPlan, ImageGcOptions)}.
+ */
+public class ImageGcPlan {
+
+  /**
+   * An unused image, which is eligible for removal.
+   */
+  public static class Candidate {
+
+    private final String id;
+    private final List<String> repoTags;
+    private final Instant created;
+    private final Instant lastUsed;
+    private final long size;
+    private final long sharedSize;
+
+    public Candidate(String id, List<String> repoTags, Instant created, Instant lastUsed, long size, long sharedSize) {
+      this.id = id;
+      this.repoTags = Collections.unmodifiableList(repoTags);
+      this.created = created;
+      this.lastUsed = lastUsed;
+      this.size = size;
+      this.sharedSize = sharedSize;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return the image's tags, empty for dangling images
+     */
+    public List<String> getRepoTags() {
+      return repoTags;
+    }
+
+    public Instant getCreated() {
+      return created;
+    }
+
+    /**
+     * @return the creation time of the image's most recent container, or the image's creation time
+     */
+    public Instant getLastUsed() {
+      return lastUsed;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * @return the size of the layers which other images share, or -1 if the engine didn't compute it
+     */
+    public long getSharedSize() {
+      return sharedSize;
+    }
+
+    /**
+     * @return the size of the layers which only this image uses, i.e. the space its removal reclaims
+     */
+    public long getUniqueSize() {
+      return sharedSize < 0 ? size : size - sharedSize;
+    }
+
+    @Override
+    public String toString() {
+      return "Candidate{" +
+             "id='" + id + '\'' +
+             ", repoTags=" + repoTags +
+             ", uniqueSize=" + getUniqueSize() +
+             ", lastUsed=" + lastUsed +
+             '}';
+    }
+  }
+
+  private final List<Candidate> removals;
+  private final Map<String, String> retained;
+  private final long layersSize;
+
+  public ImageGcPlan(List<Candidate> removals, Map<String, String> retained, long layersSize) {
+    this.removals = Collections.unmodifiableList(removals);
+    this.retained = Collections.unmodifiableMap(retained);
+    this.layersSize = layersSize;
+  }
+
+  /**
+   * @return the images to remove, the most reclaimable ones first
+   */
+  public List<Candidate> getRemovals() {
+    return removals;
+  }
+
+  /**
+   * @return the reasons why the other images are retained, by image id
+   */
+  public Map<String, String> getRetained() {
+    return retained;
+  }
+
+  /**
+   * @return the bytes the removals reclaim, not counting layers which are only shared among the removed images
+   */
+  public long getPlannedBytes() {
+    long planned = 0;
+    for (Candidate candidate : removals) {
+      planned += candidate.getUniqueSize();
+    }
+    return planned;
+  }
+
+  /**
+   * @return the size of all image layers when the plan has been made, or -1 if unknown
+   */
+  public long getLayersSize() {
+    return layersSize;
+  }
+
+  @Override
+  public String toString() {
+    return "ImageGcPlan{" +
+           "removals=" + removals.size() +
+           ", plannedBytes=" + getPlannedBytes() +
+           ", retained=" + retained.size() +
+           '}';
+  }
+}
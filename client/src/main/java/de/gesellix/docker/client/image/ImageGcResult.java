@@ -0,0 +1,49 @@
+package de.gesellix.docker.client.image;
+
+import de.gesellix.docker.client.batch.BatchReport;
+import de.gesellix.docker.remote.api.ImageDeleteResponseItem;
+
+import java.util.List;
+
+/**
+ * The outcome of an image garbage collection.
+ */
+public class ImageGcResult {
+
+  private final ImageGcPlan plan;
+  private final BatchReport<List<ImageDeleteResponseItem>> removals;
+  private final long reclaimedBytes;
+
+  public ImageGcResult(ImageGcPlan plan, BatchReport<List<ImageDeleteResponseItem>> removals, long reclaimedBytes) {
+    this.plan = plan;
+    this.removals = removals;
+    this.reclaimedBytes = reclaimedBytes;
+  }
+
+  public ImageGcPlan getPlan() {
+    return plan;
+  }
+
+  /**
+   * @return the engine's responses by image id, and the failures of images which couldn't be removed
+   */
+  public BatchReport<List<ImageDeleteResponseItem>> getRemovals() {
+    return removals;
+  }
+
+  /**
+   * @return the decrease of the engine's layer size while collecting, or -1 if the engine didn't report it
+   */
+  public long getReclaimedBytes() {
+    return reclaimedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "ImageGcResult{" +
+           "removed=" + removals.getSucceeded().size() +
+           ", failed=" + removals.getFailed().size() +
+           ", reclaimedBytes=" + reclaimedBytes +
+           '}';
+  }
+}
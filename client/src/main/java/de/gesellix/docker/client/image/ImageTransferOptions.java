@@ -0,0 +1,57 @@
+package de.gesellix.docker.client.image;
+
+/**
+ * Configures how image tarballs are written to and read from disk.
+ */
+public class ImageTransferOptions {
+
+  private int bufferSize = 1024 * 1024;
+  private boolean memoryMapped = false;
+  private boolean verifyChecksum = true;
+  private int maxAttempts = 3;
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * The size of the direct buffer used to copy between the engine and the file.
+   */
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  /**
+   * Whether tarballs are read via memory-mapped regions instead of buffered reads.
+   * Avoids copying into the heap, but keeps the mapped regions until they are garbage collected.
+   */
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  public boolean isVerifyChecksum() {
+    return verifyChecksum;
+  }
+
+  /**
+   * Whether a tarball is verified against its checksum manifest before being loaded, if the manifest exists.
+   */
+  public void setVerifyChecksum(boolean verifyChecksum) {
+    this.verifyChecksum = verifyChecksum;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * How often a failed transfer is attempted. Loads are retried from the file, without exporting the images again.
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+}
@@ -0,0 +1,60 @@
+package de.gesellix.docker.client.image;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Describes a completed transfer of an image tarball.
+ */
+public class ImageTransferStats {
+
+  private final Path file;
+  private final long bytes;
+  private final Duration duration;
+  private final String sha256;
+  private final int attempts;
+
+  public ImageTransferStats(Path file, long bytes, Duration duration, String sha256, int attempts) {
+    this.file = file;
+    this.bytes = bytes;
+    this.duration = duration;
+    this.sha256 = sha256;
+    this.attempts = attempts;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the duration of the successful attempt
+   */
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return the tarball's hex encoded sha256 checksum
+   */
+  public String getSha256() {
+    return sha256;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public long getBytesPerSecond() {
+    long nanos = Math.max(1, duration.toNanos());
+    return (long) (bytes * 1_000_000_000.0 / nanos);
+  }
+
+  @Override
+  public String toString() {
+    return file + ": " + bytes + " bytes in " + duration.toMillis() + "ms (" + getBytesPerSecond() + " bytes/s), sha256 " + sha256;
+  }
+}
@@ -1,6 +1,7 @@
 package de.gesellix.docker.client.image;
 
 import de.gesellix.docker.client.EngineResponseContent;
+import de.gesellix.docker.client.batch.BatchReport;
 import de.gesellix.docker.remote.api.BuildInfo;
 import de.gesellix.docker.remote.api.CreateImageInfo;
 import de.gesellix.docker.remote.api.HistoryResponseItem;
@@ -13,7 +14,9 @@ import de.gesellix.docker.remote.api.PushImageInfo;
 import de.gesellix.docker.remote.api.core.StreamCallback;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -44,12 +47,29 @@ public interface ManageImage {
              String buildargs, String labels, String encodedRegistryConfig, String contentType,
              InputStream buildContext);
 
+  /**
+   * Builds an image from a build context directory, applying its <code>.dockerignore</code>.
+   * The context is archived while it is being uploaded, so that the build starts without the whole context in memory.
+   *
+   * @return the id of the built image and the timings of the build's steps, collected from the build's progress stream
+   */
+  BuildResult build(Path contextDirectory, BuildOptions options, StreamCallback<BuildInfo> callback);
+
+  BuildResult build(Path contextDirectory, BuildOptions options, StreamCallback<BuildInfo> callback, Duration timeout);
+
   EngineResponseContent<List<HistoryResponseItem>> history(String image);
 
   EngineResponseContent<ImageInspect> inspectImage(String image);
 
   void load(InputStream imagesTarball);
 
+  /**
+   * Loads a tarball, after verifying it against its checksum manifest, if present.
+   */
+  ImageTransferStats loadFrom(Path tarball);
+
+  ImageTransferStats loadFrom(Path tarball, ImageTransferOptions options);
+
   /**
    * @see #images(Boolean, String, Boolean)
    * @deprecated use {@link #images(Boolean, String, Boolean)}
@@ -72,6 +92,24 @@ public interface ManageImage {
 
   EngineResponseContent<ImagePruneResponse> pruneImages(String filters);
 
+  /**
+   * Plans which unused images to remove, without removing any of them.
+   *
+   * @see ImageGcPlanner
+   */
+  ImageGcPlan planImageGc();
+
+  ImageGcPlan planImageGc(ImageGcOptions options);
+
+  /**
+   * Removes the planned images concurrently, and measures the space actually reclaimed.
+   * Images are never removed by force, so an image which is used by a container created since the plan is kept,
+   * and its removal is reported as failed.
+   */
+  ImageGcResult executeImageGc(ImageGcPlan plan);
+
+  ImageGcResult executeImageGc(ImageGcPlan plan, ImageGcOptions options);
+
   void pull(StreamCallback<CreateImageInfo> callback, Duration timeout,
             String imageName);
 
@@ -81,6 +119,16 @@ public interface ManageImage {
   void pull(StreamCallback<CreateImageInfo> callback, Duration timeout,
             String imageName, String tag, String authBase64Encoded);
 
+  /**
+   * Pulls many images concurrently. References of the same image, like <code>nginx</code> and <code>nginx:latest</code>, are pulled once.
+   * Credentials are resolved once per registry.
+   *
+   * @return the final progress of every image, keyed by the first reference of each image
+   */
+  BatchReport<PullProgress> pullAll(Collection<String> images);
+
+  BatchReport<PullProgress> pullAll(Collection<String> images, PullOptions options);
+
   void importUrl(StreamCallback<CreateImageInfo> callback, Duration timeout,
                  String url);
 
@@ -111,10 +159,39 @@ public interface ManageImage {
 
   void push(StreamCallback<PushImageInfo> callback, Duration timeout, String image, String authBase64Encoded, String registry);
 
+  /**
+   * Tags the image for every registry up front, and pushes the tagged images concurrently.
+   * Credentials are resolved once per registry.
+   *
+   * @param registries registry hostnames like <code>registry.example.com:5000</code>, an empty one pushes the image as it is named
+   * @return the result of every push, keyed by the pushed reference like <code>registry.example.com:5000/app:1.0</code>
+   */
+  BatchReport<PushResult> pushAll(String image, List<String> registries);
+
+  BatchReport<PushResult> pushAll(String image, List<String> registries, PushOptions options);
+
+  /**
+   * Pushes every image to every registry.
+   *
+   * @see #pushAll(String, List)
+   */
+  BatchReport<PushResult> pushAll(Collection<String> images, List<String> registries);
+
+  BatchReport<PushResult> pushAll(Collection<String> images, List<String> registries, PushOptions options);
+
   EngineResponseContent<List<ImageDeleteResponseItem>> rmi(String image);
 
   EngineResponseContent<InputStream> save(List<String> images);
 
+  /**
+   * Saves the images as tarball, with a checksum manifest next to it.
+   *
+   * @see ImageArchiveTransfer
+   */
+  ImageTransferStats saveTo(List<String> images, Path target);
+
+  ImageTransferStats saveTo(List<String> images, Path target, ImageTransferOptions options);
+
   void tag(String image, String repository);
 
   String findImageId(String imageName);
@@ -0,0 +1,10 @@
+package de.gesellix.docker.client.image;
+
+@FunctionalInterface
+public interface ProgressListener {
+
+  /**
+   * @param snapshot reused for every call, so it must not be retained after returning
+   */
+  void onProgress(ProgressSnapshot snapshot);
+}
@@ -0,0 +1,105 @@
+package de.gesellix.docker.client.image;
+
+/**
+ * The aggregated progress of a pull, push or build, backed by the fixed-size layer table of a {@link ProgressAggregator}.
+ * <p>
+ * A single instance is updated and passed to the {@link ProgressListener} again and again.
+ * Copy the values you need to keep.
+ */
+public class ProgressSnapshot {
+
+  final String[] layerIds;
+  final long[] layerCurrent;
+  final long[] layerTotal;
+  final String[] layerStatus;
+  int layerCount;
+  int overflowLayerCount;
+  long currentBytes;
+  long totalBytes;
+  String phase;
+  String error;
+  boolean finished;
+  long events;
+
+  ProgressSnapshot(int maxLayers) {
+    this.layerIds = new String[maxLayers];
+    this.layerCurrent = new long[maxLayers];
+    this.layerTotal = new long[maxLayers];
+    this.layerStatus = new String[maxLayers];
+  }
+
+  public int getLayerCount() {
+    return layerCount;
+  }
+
+  /**
+   * @return the number of layers which didn't fit into the table, their bytes are included in the totals
+   */
+  public int getOverflowLayerCount() {
+    return overflowLayerCount;
+  }
+
+  public String getLayerId(int layer) {
+    return layerIds[layer];
+  }
+
+  public long getLayerCurrent(int layer) {
+    return layerCurrent[layer];
+  }
+
+  public long getLayerTotal(int layer) {
+    return layerTotal[layer];
+  }
+
+  /**
+   * @return the engine's last status of the layer, like <code>Downloading</code> or <code>Pull complete</code>
+   */
+  public String getLayerStatus(int layer) {
+    return layerStatus[layer];
+  }
+
+  public long getCurrentBytes() {
+    return currentBytes;
+  }
+
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * @return the overall progress in percent, based on the layers whose size is known
+   */
+  public int getPercent() {
+    if (totalBytes <= 0) {
+      return finished && error == null ? 100 : 0;
+    }
+    return (int) Math.min(100, currentBytes * 100 / totalBytes);
+  }
+
+  /**
+   * @return the most recent status, e.g. <code>Downloading</code>, <code>Pushing</code> or a build step
+   */
+  public String getPhase() {
+    return phase;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * @return the number of events received from the engine so far
+   */
+  public long getEvents() {
+    return events;
+  }
+
+  @Override
+  public String toString() {
+    return phase + " " + getPercent() + "% (" + (layerCount + overflowLayerCount) + " layers, " + events + " events)" + (error == null ? "" : ": " + error);
+  }
+}
@@ -0,0 +1,70 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+
+/**
+ * Configures how many images are pulled concurrently and how their progress is reported.
+ */
+public class PullOptions {
+
+  private int maxParallel = Integer.MAX_VALUE;
+  private int maxParallelPerRegistry = 3;
+  private String platform;
+  private Duration timeout = Duration.ofMinutes(10);
+  private PullProgressListener progressListener;
+
+  public int getMaxParallel() {
+    return maxParallel;
+  }
+
+  /**
+   * Limits the number of concurrent pulls, in addition to the per-daemon limit of the batch executor.
+   */
+  public void setMaxParallel(int maxParallel) {
+    this.maxParallel = maxParallel;
+  }
+
+  public int getMaxParallelPerRegistry() {
+    return maxParallelPerRegistry;
+  }
+
+  /**
+   * Limits the number of concurrent pulls from the same registry, e.g. to stay below its rate limits.
+   */
+  public void setMaxParallelPerRegistry(int maxParallelPerRegistry) {
+    this.maxParallelPerRegistry = maxParallelPerRegistry;
+  }
+
+  public String getPlatform() {
+    return platform;
+  }
+
+  /**
+   * A platform like <code>linux/amd64</code>, defaults to the engine's platform.
+   */
+  public void setPlatform(String platform) {
+    this.platform = platform;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * The timeout of every single pull.
+   */
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public PullProgressListener getProgressListener() {
+    return progressListener;
+  }
+
+  /**
+   * Gets notified about the progress of every image. Invoked concurrently for different images.
+   */
+  public void setProgressListener(PullProgressListener progressListener) {
+    this.progressListener = progressListener;
+  }
+}
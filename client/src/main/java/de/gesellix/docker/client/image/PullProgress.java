@@ -0,0 +1,106 @@
+package de.gesellix.docker.client.image;
+
+/**
+ * A snapshot of the progress of a single image pull, summarized over all of its layers.
+ */
+public class PullProgress {
+
+  public enum Phase {
+    WAITING,
+    RESOLVING,
+    DOWNLOADING,
+    EXTRACTING,
+    COMPLETE,
+    FAILED
+  }
+
+  private final String image;
+  private final Phase phase;
+  private final int layers;
+  private final int layersDownloaded;
+  private final int layersComplete;
+  private final long downloadedBytes;
+  private final long totalBytes;
+  private final String digest;
+  private final String error;
+
+  public PullProgress(String image, Phase phase, int layers, int layersDownloaded, int layersComplete,
+                      long downloadedBytes, long totalBytes, String digest, String error) {
+    this.image = image;
+    this.phase = phase;
+    this.layers = layers;
+    this.layersDownloaded = layersDownloaded;
+    this.layersComplete = layersComplete;
+    this.downloadedBytes = downloadedBytes;
+    this.totalBytes = totalBytes;
+    this.digest = digest;
+    this.error = error;
+  }
+
+  public String getImage() {
+    return image;
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  /**
+   * @return the number of layers announced by the engine so far
+   */
+  public int getLayers() {
+    return layers;
+  }
+
+  /**
+   * @return the number of layers which have been downloaded, or already existed locally
+   */
+  public int getLayersDownloaded() {
+    return layersDownloaded;
+  }
+
+  public int getLayersComplete() {
+    return layersComplete;
+  }
+
+  public long getDownloadedBytes() {
+    return downloadedBytes;
+  }
+
+  /**
+   * @return the summed up size of all layers whose size is known, i.e. which have started downloading
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * @return the pulled image's digest, once reported by the engine
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * @return the download progress in percent, based on the layers known so far
+   */
+  public int getPercent() {
+    if (phase == Phase.COMPLETE) {
+      return 100;
+    }
+    if (totalBytes <= 0) {
+      return 0;
+    }
+    return (int) Math.min(100, downloadedBytes * 100 / totalBytes);
+  }
+
+  @Override
+  public String toString() {
+    return image + " " + phase + " " + getPercent() + "% (" + layersComplete + "/" + layers + " layers)"
+           + (error == null ? "" : ": " + error);
+  }
+}
@@ -0,0 +1,7 @@
+package de.gesellix.docker.client.image;
+
+@FunctionalInterface
+public interface PullProgressListener {
+
+  void onProgress(PullProgress progress);
+}
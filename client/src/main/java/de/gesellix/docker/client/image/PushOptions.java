@@ -0,0 +1,46 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+
+/**
+ * Configures how many images are pushed concurrently.
+ */
+public class PushOptions {
+
+  private int maxParallel = Integer.MAX_VALUE;
+  private int maxParallelPerRegistry = 3;
+  private Duration timeout = Duration.ofMinutes(10);
+
+  public int getMaxParallel() {
+    return maxParallel;
+  }
+
+  /**
+   * Limits the number of concurrent pushes, in addition to the per-daemon limit of the batch executor.
+   */
+  public void setMaxParallel(int maxParallel) {
+    this.maxParallel = maxParallel;
+  }
+
+  public int getMaxParallelPerRegistry() {
+    return maxParallelPerRegistry;
+  }
+
+  /**
+   * Limits the number of concurrent pushes to the same registry.
+   */
+  public void setMaxParallelPerRegistry(int maxParallelPerRegistry) {
+    this.maxParallelPerRegistry = maxParallelPerRegistry;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * The timeout of every single push.
+   */
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+}
@@ -0,0 +1,83 @@
+package de.gesellix.docker.client.image;
+
+import java.time.Duration;
+
+/**
+ * The outcome of pushing an image to a single target.
+ */
+public class PushResult {
+
+  private final String image;
+  private final String target;
+  private final String digest;
+  private final long bytesPushed;
+  private final int layersPushed;
+  private final int layersExisting;
+  private final Duration duration;
+
+  public PushResult(String image, String target, String digest, long bytesPushed, int layersPushed, int layersExisting, Duration duration) {
+    this.image = image;
+    this.target = target;
+    this.digest = digest;
+    this.bytesPushed = bytesPushed;
+    this.layersPushed = layersPushed;
+    this.layersExisting = layersExisting;
+    this.duration = duration;
+  }
+
+  /**
+   * @return the local image
+   */
+  public String getImage() {
+    return image;
+  }
+
+  /**
+   * @return the reference the image has been pushed as, including the registry
+   */
+  public String getTarget() {
+    return target;
+  }
+
+  /**
+   * @return the manifest digest reported by the registry, or <code>null</code>
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  /**
+   * @return the bytes of the layers which have been uploaded, not counting layers the registry already had,
+   * or <code>0</code> when the engine's events don't identify the layers
+   */
+  public long getBytesPushed() {
+    return bytesPushed;
+  }
+
+  public int getLayersPushed() {
+    return layersPushed;
+  }
+
+  /**
+   * @return the number of layers which the registry already had, or mounted from another repository
+   */
+  public int getLayersExisting() {
+    return layersExisting;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  @Override
+  public String toString() {
+    return "PushResult{" +
+           "target='" + target + '\'' +
+           ", digest='" + digest + '\'' +
+           ", bytesPushed=" + bytesPushed +
+           ", layersPushed=" + layersPushed +
+           ", layersExisting=" + layersExisting +
+           ", duration=" + duration +
+           '}';
+  }
+}
@@ -1,9 +1,13 @@
 package de.gesellix.docker.client.stack;
 
+import java.time.Duration;
+
 public class DeployStackOptions {
 
   private boolean pruneServices = false;
   private boolean sendRegistryAuth = false;
+  private boolean waitForConvergence = false;
+  private Duration convergenceTimeout = Duration.ofMinutes(5);
 
   public boolean getPruneServices() {
     return pruneServices;
@@ -28,4 +32,29 @@ public class DeployStackOptions {
   public void setSendRegistryAuth(boolean sendRegistryAuth) {
     this.sendRegistryAuth = sendRegistryAuth;
   }
+
+  public boolean isWaitForConvergence() {
+    return waitForConvergence;
+  }
+
+  /**
+   * Lets {@link ManageStack#stackDeploy} wait until every service of the stack runs its desired number of tasks.
+   * Services updated by the deploy have to roll out their new task spec, and states of updates which started before the deploy are ignored.
+   *
+   * @see ManageStack#awaitConvergence(String, Duration)
+   */
+  public void setWaitForConvergence(boolean waitForConvergence) {
+    this.waitForConvergence = waitForConvergence;
+  }
+
+  public Duration getConvergenceTimeout() {
+    return convergenceTimeout;
+  }
+
+  /**
+   * How long {@link ManageStack#stackDeploy} waits for the stack to converge, defaults to five minutes.
+   */
+  public void setConvergenceTimeout(Duration convergenceTimeout) {
+    this.convergenceTimeout = convergenceTimeout;
+  }
 }
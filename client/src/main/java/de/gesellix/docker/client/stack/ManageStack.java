@@ -3,27 +3,84 @@ package de.gesellix.docker.client.stack;
 import de.gesellix.docker.client.EngineResponseContent;
 import de.gesellix.docker.remote.api.Service;
 import de.gesellix.docker.remote.api.Task;
+import de.gesellix.docker.remote.api.core.StreamCallback;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface ManageStack {
 
   // see docker/docker/cli/compose/convert/compose.go:14
   String LabelNamespace = "com.docker.stack.namespace";
 
+  // the canonical hash of the deployed spec, which lets a deploy skip unchanged resources.
+  // secrets don't get a spec hash, so that their data can't be guessed from their labels.
+  String LabelSpecHash = "de.gesellix.docker-client.spec-hash";
+
+  /**
+   * Creates the stack's resources, and updates the existing resources whose spec has changed since their last deploy.
+   * Existing secrets are always updated.
+   * With {@link DeployStackOptions#setWaitForConvergence(boolean)}, the deploy only returns after the stack has converged.
+   */
   void stackDeploy(String namespace, DeployStackConfig deployConfig, DeployStackOptions options);
 
+  /**
+   * Computes the changes {@link #stackDeploy} would make, without making them and without changing the deploy config.
+   * Existing secrets are always reported as updated.
+   */
+  StackDeployPlan planStackDeploy(String namespace, DeployStackConfig deployConfig, DeployStackOptions options);
+
+  /**
+   * Waits for every service of the stack to run its desired number of tasks, following the service and container events.
+   * The tasks of a service are listed after its service events, and the stack's tasks are listed periodically,
+   * because container events don't reach the client from other nodes.
+   *
+   * @return a future of the stack's state, which completes as soon as the stack has converged or one of its services has failed,
+   * or fails with a {@link java.util.concurrent.TimeoutException}
+   * @see StackConvergenceTracker
+   */
+  CompletableFuture<StackConvergence> awaitConvergence(String namespace, Duration timeout);
+
   Collection<Stack> lsStacks();
 
   EngineResponseContent<List<Task>> stackPs(String namespace);
 
   EngineResponseContent<List<Task>> stackPs(String namespace, Map filters);
 
+  /**
+   * Removes the stack like {@link #stackRm(String, StackRemoveOptions)} with the default options,
+   * but throws the first failure of a step, without removing the resources of the following steps.
+   * The services are removed first, followed by the networks, secrets and configs.
+   *
+   * @see #stackRm(String, StackRemoveOptions)
+   */
   void stackRm(String namespace);
 
+  /**
+   * Removes the stack's services concurrently, waits for their tasks to shut down,
+   * and then removes the networks, secrets and configs concurrently.
+   * Removals of resources which are still in use are retried.
+   * Every resource is tried, failures are collected in the report instead of being thrown.
+   */
+  StackRemoveReport stackRm(String namespace, StackRemoveOptions options);
+
   EngineResponseContent<List<Service>> stackServices(String namespace);
 
   EngineResponseContent<List<Service>> stackServices(String namespace, Map filters);
+
+  /**
+   * Counts the running and desired tasks of every service of the stack, like <code>docker stack services</code>.
+   */
+  List<StackServiceStatus> stackServicesStatus(String namespace);
+
+  /**
+   * Publishes the current status of the stack's services, and publishes it again whenever a service, container or node event changes it.
+   * The tasks of a service are listed after its service events, because container events don't reach the client from other nodes.
+   *
+   * @see #stackServicesStatus(String)
+   */
+  void stackServicesStatus(String namespace, StreamCallback<List<StackServiceStatus>> callback, Duration timeout);
 }
@@ -0,0 +1,116 @@
+package de.gesellix.docker.client.stack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The state of a stack's services while waiting for them to converge.
+ *
+ * @see ManageStack#awaitConvergence(String, java.time.Duration)
+ */
+public class StackConvergence {
+
+  private final String namespace;
+  private final Map<String, ServiceConvergence> services;
+
+  public StackConvergence(String namespace, Map<String, ServiceConvergence> services) {
+    this.namespace = namespace;
+    this.services = Collections.unmodifiableMap(services);
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  /**
+   * @return the services, keyed by their name
+   */
+  public Map<String, ServiceConvergence> getServices() {
+    return services;
+  }
+
+  /**
+   * @return <code>true</code> when every service runs its desired number of tasks, and none has failed
+   */
+  public boolean isConverged() {
+    return services.values().stream().allMatch(ServiceConvergence::isConverged);
+  }
+
+  public boolean isFailed() {
+    return !getFailures().isEmpty();
+  }
+
+  public List<ServiceConvergence> getFailures() {
+    return services.values().stream()
+        .filter(service -> service.getFailure() != null)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public String toString() {
+    List<String> states = new ArrayList<>(services.size());
+    services.values().forEach(service -> states.add(service.toString()));
+    return namespace + " " + states;
+  }
+
+  public static class ServiceConvergence {
+
+    private final String name;
+    private final String serviceId;
+    private final int running;
+    private final int desired;
+    private final boolean updating;
+    private final String failure;
+
+    public ServiceConvergence(String name, String serviceId, int running, int desired, boolean updating, String failure) {
+      this.name = name;
+      this.serviceId = serviceId;
+      this.running = running;
+      this.desired = desired;
+      this.updating = updating;
+      this.failure = failure;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getServiceId() {
+      return serviceId;
+    }
+
+    public int getRunning() {
+      return running;
+    }
+
+    public int getDesired() {
+      return desired;
+    }
+
+    /**
+     * @return <code>true</code> while a rolling update of the service is in progress
+     */
+    public boolean isUpdating() {
+      return updating;
+    }
+
+    /**
+     * @return why the service failed to converge, or <code>null</code>
+     */
+    public String getFailure() {
+      return failure;
+    }
+
+    public boolean isConverged() {
+      return failure == null && !updating && running >= desired;
+    }
+
+    @Override
+    public String toString() {
+      return name + " " + running + "/" + desired + (updating ? " (updating)" : "") + (failure != null ? " (" + failure + ")" : "");
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package de.gesellix.docker.client.stack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes a stack deploy would make, as computed by {@link ManageStack#planStackDeploy}.
+ */
+public class StackDeployPlan {
+
+  public enum ResourceType {
+    NETWORK, SECRET, CONFIG, SERVICE
+  }
+
+  public enum Action {
+    CREATE,
+    UPDATE,
+    UNCHANGED,
+    REMOVE,
+    /**
+     * The resource exists with a different spec, but can't be updated in place, like networks.
+     */
+    CONFLICT
+  }
+
+  public static class Change {
+
+    private final ResourceType type;
+    private final String name;
+    private final Action action;
+
+    public Change(ResourceType type, String name, Action action) {
+      this.type = type;
+      this.name = name;
+      this.action = action;
+    }
+
+    public ResourceType getType() {
+      return type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Action getAction() {
+      return action;
+    }
+
+    @Override
+    public String toString() {
+      return action + " " + type.name().toLowerCase() + " " + name;
+    }
+  }
+
+  private final List<Change> changes;
+
+  public StackDeployPlan(List<Change> changes) {
+    this.changes = Collections.unmodifiableList(new ArrayList<>(changes));
+  }
+
+  /**
+   * @return all resources of the stack, including the unchanged ones
+   */
+  public List<Change> getChanges() {
+    return changes;
+  }
+
+  public List<Change> getChanges(Action action) {
+    List<Change> filtered = new ArrayList<>();
+    for (Change change : changes) {
+      if (change.getAction() == action) {
+        filtered.add(change);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * @return whether a deploy would create, update or remove anything
+   */
+  public boolean hasChanges() {
+    for (Change change : changes) {
+      if (change.getAction() != Action.UNCHANGED && change.getAction() != Action.CONFLICT) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "StackDeployPlan{" +
+           "changes=" + changes +
+           '}';
+  }
+}
@@ -0,0 +1,72 @@
+package de.gesellix.docker.client.stack;
+
+import java.time.Duration;
+
+/**
+ * Configures how concurrently a stack is removed, and how long the removal waits for resources which are still in use.
+ */
+public class StackRemoveOptions {
+
+  private int maxParallel = Integer.MAX_VALUE;
+  private Duration tasksShutdownTimeout = Duration.ofSeconds(30);
+  private Duration tasksShutdownPollInterval = Duration.ofMillis(500);
+  private int maxAttempts = 5;
+  private Duration retryDelay = Duration.ofSeconds(1);
+
+  public int getMaxParallel() {
+    return maxParallel;
+  }
+
+  /**
+   * Limits the number of concurrent removals per resource type, in addition to the per-daemon limit of the batch executor.
+   */
+  public void setMaxParallel(int maxParallel) {
+    this.maxParallel = maxParallel;
+  }
+
+  public Duration getTasksShutdownTimeout() {
+    return tasksShutdownTimeout;
+  }
+
+  /**
+   * How long to wait for the tasks of the removed services to shut down, before the networks, secrets and configs are removed.
+   */
+  public void setTasksShutdownTimeout(Duration tasksShutdownTimeout) {
+    this.tasksShutdownTimeout = tasksShutdownTimeout;
+  }
+
+  public Duration getTasksShutdownPollInterval() {
+    return tasksShutdownPollInterval;
+  }
+
+  /**
+   * How often the stack's tasks are listed while waiting for them to shut down.
+   */
+  public void setTasksShutdownPollInterval(Duration tasksShutdownPollInterval) {
+    this.tasksShutdownPollInterval = tasksShutdownPollInterval;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * How often the removal of a network, secret or config is attempted while it is still in use.
+   * The removals which failed because of a resource in use are retried in further rounds,
+   * which don't hold permits of the batch executor while they wait.
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  public Duration getRetryDelay() {
+    return retryDelay;
+  }
+
+  /**
+   * The delay before the first retry, which grows linearly with every further attempt.
+   */
+  public void setRetryDelay(Duration retryDelay) {
+    this.retryDelay = retryDelay;
+  }
+}
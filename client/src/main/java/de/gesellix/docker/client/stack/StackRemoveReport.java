@@ -0,0 +1,93 @@
+package de.gesellix.docker.client.stack;
+
+import de.gesellix.docker.client.batch.BatchReport;
+
+import java.time.Duration;
+
+/**
+ * The outcome of every removed resource of a stack, keyed by the resources' names.
+ * Resources which share a name, like networks, are keyed by their name and id.
+ * The results are the ids of the removed resources.
+ *
+ * @see ManageStack#stackRm(String, StackRemoveOptions)
+ */
+public class StackRemoveReport {
+
+  private final String namespace;
+  private final BatchReport<String> services;
+  private final BatchReport<String> networks;
+  private final BatchReport<String> secrets;
+  private final BatchReport<String> configs;
+  private final Duration tasksShutdown;
+  private final int remainingTasks;
+  private final Duration duration;
+
+  public StackRemoveReport(String namespace,
+                           BatchReport<String> services, BatchReport<String> networks, BatchReport<String> secrets, BatchReport<String> configs,
+                           Duration tasksShutdown, int remainingTasks, Duration duration) {
+    this.namespace = namespace;
+    this.services = services;
+    this.networks = networks;
+    this.secrets = secrets;
+    this.configs = configs;
+    this.tasksShutdown = tasksShutdown;
+    this.remainingTasks = remainingTasks;
+    this.duration = duration;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public BatchReport<String> getServices() {
+    return services;
+  }
+
+  public BatchReport<String> getNetworks() {
+    return networks;
+  }
+
+  public BatchReport<String> getSecrets() {
+    return secrets;
+  }
+
+  public BatchReport<String> getConfigs() {
+    return configs;
+  }
+
+  /**
+   * @return how long the removal waited for the tasks of the removed services to shut down
+   */
+  public Duration getTasksShutdown() {
+    return tasksShutdown;
+  }
+
+  /**
+   * @return the number of tasks which were still running when the removal stopped waiting for them
+   */
+  public int getRemainingTasks() {
+    return remainingTasks;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public boolean isSuccessful() {
+    return services.isSuccessful() && networks.isSuccessful() && secrets.isSuccessful() && configs.isSuccessful();
+  }
+
+  @Override
+  public String toString() {
+    return "StackRemoveReport{" +
+           "namespace='" + namespace + '\'' +
+           ", services=" + services +
+           ", networks=" + networks +
+           ", secrets=" + secrets +
+           ", configs=" + configs +
+           ", tasksShutdown=" + tasksShutdown +
+           ", remainingTasks=" + remainingTasks +
+           ", duration=" + duration +
+           '}';
+  }
+}
@@ -0,0 +1,77 @@
+package de.gesellix.docker.client.stack;
+
+import java.util.Objects;
+
+/**
+ * The number of running and desired tasks of a stack's service, like in <code>docker stack services</code>.
+ */
+public class StackServiceStatus {
+
+  private final String serviceId;
+  private final String name;
+  private final String mode;
+  private final int running;
+  private final int desired;
+
+  public StackServiceStatus(String serviceId, String name, String mode, int running, int desired) {
+    this.serviceId = serviceId;
+    this.name = name;
+    this.mode = mode;
+    this.running = running;
+    this.desired = desired;
+  }
+
+  public String getServiceId() {
+    return serviceId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return <code>replicated</code> or <code>global</code>
+   */
+  public String getMode() {
+    return mode;
+  }
+
+  /**
+   * @return the number of running tasks on nodes which aren't down
+   */
+  public int getRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of replicas of a replicated service, or the number of tasks which haven't been shut down of a global service
+   */
+  public int getDesired() {
+    return desired;
+  }
+
+  /**
+   * @return running and desired tasks, like <code>2/3</code>
+   */
+  public String getReplicas() {
+    return running + "/" + desired;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {return true;}
+    if (o == null || getClass() != o.getClass()) {return false;}
+    StackServiceStatus that = (StackServiceStatus) o;
+    return running == that.running && desired == that.desired && Objects.equals(serviceId, that.serviceId) && Objects.equals(name, that.name) && Objects.equals(mode, that.mode);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(serviceId, name, mode, running, desired);
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + mode + ", " + getReplicas();
+  }
+}
@@ -0,0 +1,50 @@
+package de.gesellix.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of equally sized byte arrays, to reuse buffers across many short-lived requests.
+ * Arrays are allocated on demand, at most <code>maxRetained</code> released arrays are kept for reuse.
+ */
+public class ByteArrayPool {
+
+  private final int arraySize;
+  private final BlockingQueue<byte[]> retained;
+  private final AtomicLong allocations = new AtomicLong();
+
+  public ByteArrayPool(int arraySize, int maxRetained) {
+    this.arraySize = arraySize;
+    this.retained = new ArrayBlockingQueue<>(Math.max(1, maxRetained));
+  }
+
+  public int getArraySize() {
+    return arraySize;
+  }
+
+  public byte[] acquire() {
+    byte[] array = retained.poll();
+    if (array == null) {
+      allocations.incrementAndGet();
+      array = new byte[arraySize];
+    }
+    return array;
+  }
+
+  /**
+   * Returns the array to the pool. The caller must not use it afterwards.
+   */
+  public void release(byte[] array) {
+    if (array != null && array.length == arraySize) {
+      retained.offer(array);
+    }
+  }
+
+  /**
+   * @return the number of arrays allocated by this pool
+   */
+  public long getAllocations() {
+    return allocations.get();
+  }
+}
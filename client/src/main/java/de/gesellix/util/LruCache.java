@@ -0,0 +1,152 @@
+package de.gesellix.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe cache, which evicts the least recently used entries when it exceeds
+ * its maximum number of entries or its maximum total weight.
+ * <p>
+ * Values are loaded outside the cache's lock, so that slow loads don't block other keys.
+ * Concurrent misses of the same key may load the value more than once.
+ */
+public class LruCache<K, V> {
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  public LruCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE, value -> 1);
+  }
+
+  /**
+   * @param weigher estimates the weight of a value, e.g. its size in bytes
+   */
+  public LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive, but was " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * @return the cached value, or the loader's value, which is cached unless it is <code>null</code>
+   */
+  public V get(K key, Function<K, V> loader) {
+    synchronized (this) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        hits++;
+        return entry.value;
+      }
+      misses++;
+    }
+    V value = loader.apply(key);
+    if (value != null) {
+      put(key, value);
+    }
+    return value;
+  }
+
+  public synchronized void put(K key, V value) {
+    long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > maxWeight) {
+      return;
+    }
+    Entry<V> previous = entries.put(key, new Entry<>(value, valueWeight));
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+    weight += valueWeight;
+    Iterator<Entry<V>> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries || weight > maxWeight) {
+      Entry<V> evicted = eldest.next();
+      eldest.remove();
+      weight -= evicted.weight;
+      evictions++;
+    }
+  }
+
+  public synchronized void remove(K key) {
+    Entry<V> removed = entries.remove(key);
+    if (removed != null) {
+      weight -= removed.weight;
+    }
+  }
+
+  public synchronized void removeIf(Predicate<K> filter) {
+    entries.entrySet().removeIf(entry -> {
+      if (filter.test(entry.getKey())) {
+        weight -= entry.getValue().weight;
+        return true;
+      }
+      return false;
+    });
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the share of lookups which have been answered from the cache, between 0 and 1
+   */
+  public synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LruCache{" +
+           "entries=" + entries.size() +
+           ", weight=" + weight +
+           ", hits=" + hits +
+           ", misses=" + misses +
+           ", evictions=" + evictions +
+           '}';
+  }
+
+  private static class Entry<V> {
+
+    private final V value;
+    private final long weight;
+
+    private Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package de.gesellix.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses fixed-size blocks in parallel and writes them, in order, as a sequence of gzip members.
+ * <p>
+ * Concatenated gzip members form a valid gzip stream (RFC 1952), which is decompressed as a whole
+ * by the Docker engine and by <code>gunzip</code>. The compression ratio is slightly worse than
+ * with a single member, because every block starts with an empty dictionary.
+ * <p>
+ * At most <code>parallelism</code> blocks are compressed or waiting to be written at any time,
+ * so that the memory usage is bounded by roughly <code>2 * parallelism * blockSize</code>.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private final OutputStream target;
+  private final Executor executor;
+  private final int parallelism;
+  private final ByteArrayPool blocks;
+  private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] block;
+  private int count = 0;
+  private boolean closed = false;
+
+  public ParallelGzipOutputStream(OutputStream target, Executor executor) {
+    this(target, executor, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ParallelGzipOutputStream(OutputStream target, Executor executor, int blockSize, int parallelism) {
+    if (blockSize < 1 || parallelism < 1) {
+      throw new IllegalArgumentException("blockSize and parallelism must be positive");
+    }
+    this.target = target;
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.blocks = new ByteArrayPool(blockSize, parallelism + 1);
+    this.block = blocks.acquire();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    block[count++] = (byte) b;
+    if (count == block.length) {
+      dispatch();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    while (len > 0) {
+      int chunk = Math.min(len, block.length - count);
+      System.arraycopy(b, off, block, count, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+      if (count == block.length) {
+        dispatch();
+      }
+    }
+  }
+
+  /**
+   * Compresses and writes all buffered data, which ends the current gzip member.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      dispatch();
+    }
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+    target.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    target.close();
+  }
+
+  private void dispatch() throws IOException {
+    byte[] data = block;
+    int length = count;
+    pending.addLast(CompletableFuture.supplyAsync(() -> {
+      try {
+        return compress(data, length);
+      } finally {
+        blocks.release(data);
+      }
+    }, executor));
+    block = blocks.acquire();
+    count = 0;
+    while (pending.size() >= parallelism) {
+      writeNext();
+    }
+  }
+
+  private void writeNext() throws IOException {
+    CompletableFuture<byte[]> next = pending.removeFirst();
+    try {
+      target.write(next.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while compressing");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException("compression failed", cause);
+    }
+  }
+
+  private static byte[] compress(byte[] data, int length) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 2));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 64 * 1024)) {
+      gzip.write(data, 0, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return compressed.toByteArray();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("stream closed");
+    }
+  }
+}
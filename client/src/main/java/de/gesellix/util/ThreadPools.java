@@ -0,0 +1,36 @@
+package de.gesellix.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPools {
+
+  private ThreadPools() {
+  }
+
+  /**
+   * Returns an executor which starts a new virtual thread for each task.
+   * The library is compiled for Java 17, so virtual threads are looked up at runtime.
+   * On runtimes without virtual threads, a cached pool of daemon threads is used instead.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return Executors.newCachedThreadPool(daemonThreadFactory(namePrefix));
+    }
+  }
+
+  public static ThreadFactory daemonThreadFactory(String namePrefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -2,6 +2,7 @@ package de.gesellix.docker.client
 
 import de.gesellix.docker.client.container.ManageContainer
 import de.gesellix.docker.client.image.ManageImage
+import de.gesellix.docker.client.network.ManageNetwork
 import de.gesellix.docker.client.node.ManageNode
 import de.gesellix.docker.client.system.ManageSystem
 import de.gesellix.docker.client.volume.ManageVolume
@@ -12,6 +13,8 @@ import de.gesellix.docker.remote.api.SwarmInfo
 import de.gesellix.docker.remote.api.SystemInfo
 import spock.lang.Specification
 
+import java.util.concurrent.Executors
+
 class DockerClientImplSpec extends Specification {
 
   DockerClientImpl dockerClient = new DockerClientImpl()
@@ -57,4 +60,32 @@ class DockerClientImplSpec extends Specification {
     and:
     managerAddress == "192.168.42.2:2377"
   }
+
+  def "replacing the async executor shuts down the own executor and keeps the managers"() {
+    given:
+    def client = new DockerClientImpl()
+    def ownExecutor = client.asyncExecutor
+    def batchExecutor = client.batchExecutor
+    batchExecutor.maxConcurrency = 3
+    def pullRegistry = client.imagePullRegistry
+    def manageNetwork = Mock(ManageNetwork)
+    client.manageNetwork = manageNetwork
+    def executor = Executors.newSingleThreadExecutor()
+
+    when:
+    client.asyncExecutor = executor
+
+    then:
+    ownExecutor.isShutdown()
+    client.asyncExecutor.is(executor)
+    client.batchExecutor.is(batchExecutor)
+    client.batchExecutor.executor.is(executor)
+    client.batchExecutor.maxConcurrency == 3
+    client.manageContainerAsync.executor.is(executor)
+    client.imagePullRegistry.is(pullRegistry)
+    client.manageNetwork.is(manageNetwork)
+
+    cleanup:
+    executor.shutdownNow()
+  }
 }
@@ -0,0 +1,119 @@
+package de.gesellix.docker.client.batch
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class BatchExecutorTest extends Specification {
+
+  ExecutorService executor = Executors.newCachedThreadPool()
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  def "collects results and failures per key"() {
+    given:
+    def batchExecutor = new BatchExecutor(executor, 4)
+
+    when:
+    def report = batchExecutor.execute(["a", "b", "c", "a"]) { String key ->
+      if (key == "b") {
+        throw new IllegalStateException("b failed")
+      }
+      return key.toUpperCase()
+    }
+
+    then:
+    report.items*.key == ["a", "b", "c"]
+    report.results == [a: "A", c: "C"]
+    report.failures.keySet() == ["b"] as Set
+    report.failures.b instanceof IllegalStateException
+    !report.successful
+  }
+
+  def "respects the per-daemon concurrency limit"() {
+    given:
+    def batchExecutor = new BatchExecutor(executor, 2)
+    def running = new AtomicInteger()
+    def maxRunning = new AtomicInteger()
+
+    when:
+    def report = batchExecutor.execute((1..20).collect { "key-$it".toString() }) { String key ->
+      int current = running.incrementAndGet()
+      maxRunning.accumulateAndGet(current, { int a, int b -> Math.max(a, b) })
+      Thread.sleep(10)
+      running.decrementAndGet()
+      return null
+    }
+
+    then:
+    report.successful
+    maxRunning.get() <= 2
+  }
+
+  def "waits for group permits without holding the batch permits"() {
+    given:
+    def batchExecutor = new BatchExecutor(executor, 8)
+    def registryA = new Semaphore(1)
+    def groups = ["a-1": registryA, "a-2": registryA, "a-3": registryA]
+    def otherRegistryDone = new CountDownLatch(1)
+
+    when:
+    def report = batchExecutor.execute(["a-1", "a-2", "a-3", "b-1"], 2, { String key -> groups.get(key) }) { String key ->
+      if (key == "a-1") {
+        // b-1 only gets the second batch permit when a-2 and a-3 don't hold it while waiting for registry a
+        assert otherRegistryDone.await(5, TimeUnit.SECONDS)
+      }
+      if (key == "b-1") {
+        otherRegistryDone.countDown()
+      }
+      return key
+    }
+
+    then:
+    report.successful
+    registryA.availablePermits() == 1
+  }
+
+  def "respects the per-batch limit"() {
+    given:
+    def batchExecutor = new BatchExecutor(executor, 8)
+    def running = new AtomicInteger()
+    def maxRunning = new AtomicInteger()
+
+    when:
+    batchExecutor.execute((1..20).collect { "key-$it".toString() }, 1) { String key ->
+      int current = running.incrementAndGet()
+      maxRunning.accumulateAndGet(current, { int a, int b -> Math.max(a, b) })
+      Thread.sleep(5)
+      running.decrementAndGet()
+      return null
+    }
+
+    then:
+    maxRunning.get() == 1
+  }
+
+  def "submits batches to a bounded executor without blocking its threads"() {
+    given:
+    ExecutorService singleThread = Executors.newSingleThreadExecutor()
+    def batchExecutor = new BatchExecutor(singleThread, 4)
+
+    when:
+    def first = batchExecutor.submit(["a", "b"], 2) { String key -> key.toUpperCase() }
+    def second = batchExecutor.submit(["c"], 2) { String key -> key.toUpperCase() }
+
+    then:
+    first.get(5, TimeUnit.SECONDS).results == [a: "A", b: "B"]
+    second.get(5, TimeUnit.SECONDS).results == [c: "C"]
+
+    cleanup:
+    singleThread.shutdownNow()
+  }
+}
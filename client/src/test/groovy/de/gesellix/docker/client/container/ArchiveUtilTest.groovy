@@ -0,0 +1,136 @@
+package de.gesellix.docker.client.container
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+@IgnoreIf({ os.windows })
+class ArchiveUtilTest extends Specification {
+
+  ArchiveUtil archiveUtil = new ArchiveUtil()
+  Path base
+  Path target
+
+  def setup() {
+    base = Files.createTempDirectory("archive-util")
+    target = Files.createDirectories(base.resolve("a/b/target"))
+  }
+
+  def cleanup() {
+    // links are removed first, so that deleting the directories doesn't follow them
+    Files.walk(base).withCloseable { paths -> paths.filter { Files.isSymbolicLink(it) }.toList() }.each { Files.delete(it) }
+    base.toFile().deleteDir()
+  }
+
+  def "extract files, directories and links below the target directory"() {
+    given:
+    byte[] tar = tar([
+        directory("sub/"),
+        file("sub/file.txt", "content"),
+        symlink("link", "sub")])
+
+    when:
+    def written = archiveUtil.extractTarEntries(new ByteArrayInputStream(tar), target)
+
+    then:
+    written == 7
+    target.resolve("sub/file.txt").text == "content"
+    Files.isSymbolicLink(target.resolve("link"))
+    target.resolve("link/file.txt").text == "content"
+  }
+
+  def "reject symbolic links pointing outside of the target directory"() {
+    given:
+    byte[] tar = tar([
+        symlink("link", "../.."),
+        file("link/x", "evil")])
+
+    when:
+    archiveUtil.extractTarEntries(new ByteArrayInputStream(tar), target)
+
+    then:
+    thrown(IllegalArgumentException)
+    !Files.exists(base.resolve("a/x"))
+    !Files.exists(target.resolve("link"))
+  }
+
+  def "reject absolute symbolic links pointing outside of the target directory"() {
+    given:
+    byte[] tar = tar([symlink("link", base.toString())])
+
+    when:
+    archiveUtil.extractTarEntries(new ByteArrayInputStream(tar), target)
+
+    then:
+    thrown(IllegalArgumentException)
+    !Files.exists(target.resolve("link"))
+  }
+
+  def "don't write through existing symbolic links pointing outside of the target directory"() {
+    given:
+    Files.createSymbolicLink(target.resolve("existing"), base)
+    byte[] tar = tar([file("existing/x", "evil")])
+
+    when:
+    archiveUtil.extractTarEntries(new ByteArrayInputStream(tar), target)
+
+    then:
+    thrown(IllegalArgumentException)
+    !Files.exists(base.resolve("x"))
+  }
+
+  def "replace an existing symbolic link by a regular file instead of writing through it"() {
+    given:
+    Path outside = base.resolve("outside.txt")
+    outside.text = "unchanged"
+    Files.createSymbolicLink(target.resolve("file.txt"), outside)
+    byte[] tar = tar([file("file.txt", "content")])
+
+    when:
+    archiveUtil.extractTarEntries(new ByteArrayInputStream(tar), target)
+
+    then:
+    !Files.isSymbolicLink(target.resolve("file.txt"))
+    target.resolve("file.txt").text == "content"
+    outside.text == "unchanged"
+  }
+
+  byte[] tar(List<Closure> entries) {
+    def output = new ByteArrayOutputStream()
+    new TarArchiveOutputStream(output).withCloseable { TarArchiveOutputStream stream ->
+      entries.each { it(stream) }
+    }
+    return output.toByteArray()
+  }
+
+  Closure directory(String name) {
+    return { TarArchiveOutputStream stream ->
+      stream.putArchiveEntry(new TarArchiveEntry(name))
+      stream.closeArchiveEntry()
+    }
+  }
+
+  Closure file(String name, String content) {
+    return { TarArchiveOutputStream stream ->
+      byte[] bytes = content.bytes
+      def entry = new TarArchiveEntry(name)
+      entry.size = bytes.length
+      stream.putArchiveEntry(entry)
+      stream.write(bytes)
+      stream.closeArchiveEntry()
+    }
+  }
+
+  Closure symlink(String name, String linkName) {
+    return { TarArchiveOutputStream stream ->
+      def entry = new TarArchiveEntry(name, TarArchiveEntry.LF_SYMLINK)
+      entry.linkName = linkName
+      stream.putArchiveEntry(entry)
+      stream.closeArchiveEntry()
+    }
+  }
+}
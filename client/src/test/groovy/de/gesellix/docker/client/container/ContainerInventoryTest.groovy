@@ -0,0 +1,125 @@
+package de.gesellix.docker.client.container
+
+import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.remote.api.ContainerInspectResponse
+import de.gesellix.docker.remote.api.ContainerSummary
+import de.gesellix.docker.remote.api.EngineApiClient
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.client.ContainerApi
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+
+class ContainerInventoryTest extends Specification {
+
+  EngineApiClient client = Mock(EngineApiClient)
+  ContainerApi containerApi = Mock(ContainerApi)
+  ExecutorService sameThreadExecutor = { Runnable runnable -> runnable.run() } as ExecutorService
+  ContainerInventory inventory
+
+  def setup() {
+    client.containerApi >> containerApi
+    inventory = new ContainerInventory(client, Mock(ManageSystem), sameThreadExecutor, Duration.ofMinutes(1))
+  }
+
+  def "list containers from memory after the initial sync"() {
+    when:
+    def beforeSync = inventory.list(true)
+    inventory.resync()
+    def all = inventory.list(true)
+    def running = inventory.list(false)
+
+    then:
+    1 * containerApi.containerList(true, null, false, null) >> [
+        new ContainerSummary(id: "old", state: "exited", created: 1L),
+        new ContainerSummary(id: "new", state: "running", created: 2L)]
+    0 * containerApi._
+    and:
+    beforeSync == null
+    all*.id == ["new", "old"]
+    running*.id == ["new"]
+    inventory.misses == 1
+    inventory.hits == 2
+  }
+
+  def "cache inspect results until the container changes"() {
+    given:
+    containerApi.containerList(true, null, false, null) >> [new ContainerSummary(id: "c1", names: ["/one"], state: "running")]
+    inventory.resync()
+    def first = new ContainerInspectResponse(id: "c1")
+    def second = new ContainerInspectResponse(id: "c1")
+
+    when:
+    def inspected = [inventory.inspect("one"), inventory.inspect("c1")]
+    inventory.onEvent(new EventMessage(action: "die", actor: new EventActor(ID: "c1"), time: 10L))
+    inspected << inventory.inspect("c1")
+
+    then:
+    1 * containerApi.containerInspect("one", null) >> first
+    1 * containerApi.containerList(true, null, false, '{"id":["c1"]}') >> [new ContainerSummary(id: "c1", names: ["/one"], state: "exited")]
+    1 * containerApi.containerInspect("c1", null) >> second
+    and:
+    inspected[0].is(first)
+    inspected[1].is(first)
+    inspected[2].is(second)
+    inventory.list(true)*.state == ["exited"]
+    inventory.events == 1
+  }
+
+  def "drop cached inspect results when a container is connected to a network"() {
+    given:
+    containerApi.containerList(true, null, false, null) >> [new ContainerSummary(id: "c1", names: ["/one"], state: "running")]
+    inventory.resync()
+    def first = new ContainerInspectResponse(id: "c1")
+    def second = new ContainerInspectResponse(id: "c1")
+
+    when:
+    def inspected = [inventory.inspect("c1")]
+    inventory.onEvent(new EventMessage(type: EventMessage.Type.Network, action: "create", actor: new EventActor(ID: "n1", attributes: [name: "net"])))
+    inspected << inventory.inspect("c1")
+    inventory.onEvent(new EventMessage(type: EventMessage.Type.Network, action: "connect", actor: new EventActor(ID: "n1", attributes: [container: "c1"])))
+    inspected << inventory.inspect("c1")
+
+    then:
+    2 * containerApi.containerInspect("c1", null) >>> [first, second]
+    1 * containerApi.containerList(true, null, false, '{"id":["c1"]}') >> [new ContainerSummary(id: "c1", names: ["/one"], state: "running")]
+    and:
+    inspected[0].is(first)
+    inspected[1].is(first)
+    inspected[2].is(second)
+    inventory.events == 1
+  }
+
+  def "ignore exec events and remove destroyed containers"() {
+    given:
+    containerApi.containerList(true, null, false, null) >> [new ContainerSummary(id: "c1", state: "running")]
+    inventory.resync()
+
+    when:
+    inventory.onEvent(new EventMessage(action: "exec_start: sh", actor: new EventActor(ID: "c1")))
+    inventory.onEvent(new EventMessage(action: "destroy", actor: new EventActor(ID: "c1")))
+
+    then:
+    0 * containerApi.containerList(*_)
+    inventory.events == 1
+    inventory.size() == 0
+  }
+
+  def "count entries found outdated by a resync"() {
+    given:
+    containerApi.containerList(true, null, false, null) >>> [
+        [new ContainerSummary(id: "c1", state: "running"), new ContainerSummary(id: "c2", state: "running")],
+        [new ContainerSummary(id: "c1", state: "running"), new ContainerSummary(id: "c3", state: "created")]]
+
+    when:
+    inventory.resync()
+    inventory.resync()
+
+    then:
+    inventory.resyncs == 2
+    inventory.staleEntries == 2
+    inventory.list(true)*.id.toSet() == ["c1", "c3"].toSet()
+  }
+}
@@ -0,0 +1,75 @@
+package de.gesellix.docker.client.container
+
+import spock.lang.Specification
+
+import static de.gesellix.docker.client.container.ContainerStatsMetric.CPU_PERCENT
+import static de.gesellix.docker.client.container.ContainerStatsMetric.MEMORY_USAGE
+import static de.gesellix.docker.client.container.ContainerStatsMetric.NETWORK_RX_RATE
+
+class ContainerStatsAggregatorTest extends Specification {
+
+  def "aggregate the samples of a rolling window"() {
+    given:
+    def aggregator = new ContainerStatsAggregator(10)
+    def sample = new ContainerStatsSample()
+
+    when:
+    (0..20).each { second ->
+      sample.readMillis = second * 1000L
+      sample.cpuTotalUsage = second * 10L
+      sample.preCpuTotalUsage = (second - 1) * 10L
+      sample.systemCpuUsage = second * 100L
+      sample.preSystemCpuUsage = (second - 1) * 100L
+      sample.onlineCpus = second
+      sample.memoryUsage = second * 1000L
+      sample.networkRxBytes = second * second * 100L
+      aggregator.accept("a-container", sample)
+    }
+    def summary = aggregator.getSummary("a-container")
+
+    then:
+    summary.sampleCount == 10
+    summary.lastReadMillis == 20_000
+    summary.getCurrent(CPU_PERCENT) == 200.0d
+    summary.getCurrent(MEMORY_USAGE) == 20_000.0d
+    summary.getP50(MEMORY_USAGE) == 15_000.0d
+    summary.getP95(MEMORY_USAGE) == 20_000.0d
+    summary.getMax(MEMORY_USAGE) == 20_000.0d
+    // (n^2 - (n-1)^2) * 100 bytes per second
+    summary.getCurrent(NETWORK_RX_RATE) == 3_900.0d
+    summary.getMax(NETWORK_RX_RATE) == 3_900.0d
+    summary.getP50(NETWORK_RX_RATE) == 2_900.0d
+  }
+
+  def "use the first sample as baseline"() {
+    given:
+    def aggregator = new ContainerStatsAggregator(5)
+    def sample = new ContainerStatsSample()
+    sample.readMillis = 1000L
+    sample.networkRxBytes = 1000L
+
+    when:
+    aggregator.callback("a-container").onNext(sample)
+
+    then:
+    aggregator.getSummary("a-container").sampleCount == 0
+    aggregator.getSummary("another-container") == null
+  }
+
+  def "treat counter resets as zero rate"() {
+    given:
+    def aggregator = new ContainerStatsAggregator(5)
+    def sample = new ContainerStatsSample()
+
+    when:
+    sample.readMillis = 1000L
+    sample.networkRxBytes = 5000L
+    aggregator.accept("a-container", sample)
+    sample.readMillis = 2000L
+    sample.networkRxBytes = 100L
+    aggregator.accept("a-container", sample)
+
+    then:
+    aggregator.getSummary("a-container").getCurrent(NETWORK_RX_RATE) == 0.0d
+  }
+}
@@ -0,0 +1,87 @@
+package de.gesellix.docker.client.container
+
+import de.gesellix.docker.remote.api.core.StreamCallback
+import spock.lang.Specification
+
+class ContainerStatsDecoderTest extends Specification {
+
+  ContainerStatsDecoder decoder = new ContainerStatsDecoder()
+
+  def "decode cgroup v2 stats"() {
+    given:
+    def sample = new ContainerStatsSample()
+    def stats = [
+        read        : "2024-05-01T12:00:01.5Z",
+        cpu_stats   : [cpu_usage: [total_usage: 3_000_000.0], system_cpu_usage: 20_000_000.0, online_cpus: 4.0],
+        precpu_stats: [cpu_usage: [total_usage: 1_000_000.0], system_cpu_usage: 10_000_000.0],
+        memory_stats: [usage: 1500.0, limit: 4000.0, stats: [inactive_file: 500.0]],
+        networks    : [eth0: [rx_bytes: 100.0, tx_bytes: 10.0], eth1: [rx_bytes: 20.0, tx_bytes: 2.0]],
+        blkio_stats : [io_service_bytes_recursive: [
+            [major: 8.0, minor: 0.0, op: "read", value: 4096.0],
+            [major: 8.0, minor: 0.0, op: "write", value: 1024.0],
+            [major: 8.0, minor: 16.0, op: "read", value: 4096.0]]],
+        pids_stats  : [current: 7.0]
+    ]
+
+    when:
+    def decoded = decoder.decode(stats, sample)
+
+    then:
+    decoded
+    sample.readMillis == 1714564801500
+    sample.cpuPercent == 80.0d
+    sample.memoryUsageWithoutCache == 1000
+    sample.memoryPercent == 25.0d
+    sample.networkRxBytes == 120
+    sample.networkTxBytes == 12
+    sample.blockReadBytes == 8192
+    sample.blockWriteBytes == 1024
+    sample.pids == 7
+  }
+
+  def "decode cgroup v1 stats"() {
+    given:
+    def sample = new ContainerStatsSample()
+    def stats = [
+        read        : "2024-05-01T12:00:01Z",
+        cpu_stats   : [cpu_usage: [total_usage: 2_000.0, percpu_usage: [1_000.0, 1_000.0]], system_cpu_usage: 20_000.0],
+        precpu_stats: [cpu_usage: [total_usage: 1_000.0], system_cpu_usage: 10_000.0],
+        memory_stats: [usage: 1500.0, limit: 4000.0, stats: [total_inactive_file: 300.0]],
+        blkio_stats : [io_service_bytes_recursive: [[op: "Read", value: 10.0], [op: "Write", value: 20.0], [op: "Total", value: 30.0]]]
+    ]
+
+    when:
+    decoder.decode(stats, sample)
+
+    then:
+    sample.onlineCpus == 2
+    sample.cpuPercent == 20.0d
+    sample.memoryUsageWithoutCache == 1200
+    sample.blockReadBytes == 10
+    sample.blockWriteBytes == 20
+    sample.networkRxBytes == 0
+  }
+
+  def "reuse a single sample for every element of a stream"() {
+    given:
+    def received = []
+    def callback = new StreamCallback<ContainerStatsSample>() {
+
+      @Override
+      void onNext(ContainerStatsSample element) {
+        received << [element, element.pids]
+      }
+    }
+    def decoding = decoder.decoding(callback)
+
+    when:
+    decoding.onNext([pids_stats: [current: 1.0]])
+    decoding.onNext("unexpected")
+    decoding.onNext([pids_stats: [current: 2.0]])
+
+    then:
+    received.size() == 2
+    received[0][0].is(received[1][0])
+    received*.get(1) == [1, 2]
+  }
+}
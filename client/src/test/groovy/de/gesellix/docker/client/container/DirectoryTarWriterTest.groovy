@@ -0,0 +1,103 @@
+package de.gesellix.docker.client.container
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.zip.GZIPInputStream
+
+class DirectoryTarWriterTest extends Specification {
+
+  DirectoryTarWriter writer = new DirectoryTarWriter()
+  Path directory
+
+  def setup() {
+    directory = Files.createTempDirectory("tar-writer")
+    directory.resolve("app.json").text = "{}"
+    directory.resolve("README.md").text = "readme"
+    Files.createDirectories(directory.resolve("config"))
+    directory.resolve("config/settings.json").text = "{\"a\":1}"
+    Files.createDirectories(directory.resolve("node_modules/dep"))
+    directory.resolve("node_modules/dep/index.js").text = "module.exports = {}"
+  }
+
+  def cleanup() {
+    directory.toFile().deleteDir()
+  }
+
+  def "archive all files of a directory"() {
+    given:
+    def output = new ByteArrayOutputStream()
+
+    when:
+    def count = writer.write(directory, output, new PutDirectoryOptions())
+
+    then:
+    count == 4
+    entries(new ByteArrayInputStream(output.toByteArray())).keySet() == [
+        "app.json", "README.md",
+        "config/", "config/settings.json",
+        "node_modules/", "node_modules/dep/", "node_modules/dep/index.js"] as Set
+  }
+
+  def "apply includes and excludes"() {
+    given:
+    def output = new ByteArrayOutputStream()
+    def options = new PutDirectoryOptions(includes: ["**.json", "*.json"], excludes: ["node_modules"])
+
+    when:
+    def count = writer.write(directory, output, options)
+
+    then:
+    count == 2
+    entries(new ByteArrayInputStream(output.toByteArray())).keySet() == ["app.json", "config/settings.json"] as Set
+  }
+
+  def "compress the archive"() {
+    given:
+    def output = new ByteArrayOutputStream()
+
+    when:
+    writer.write(directory, output, new PutDirectoryOptions(gzip: true, includes: ["app.json"]))
+
+    then:
+    def archived = entries(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())))
+    archived.keySet() == ["app.json"] as Set
+    archived["app.json"].size == 2
+  }
+
+  @IgnoreIf({ os.windows })
+  def "preserve mode and modification time"() {
+    given:
+    def script = directory.resolve("run.sh")
+    script.text = "#!/bin/sh"
+    Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"))
+    Files.setLastModifiedTime(script, FileTime.fromMillis(1_600_000_000_000))
+    def output = new ByteArrayOutputStream()
+
+    when:
+    writer.write(directory, output, new PutDirectoryOptions(includes: ["run.sh"]))
+
+    then:
+    def entry = entries(new ByteArrayInputStream(output.toByteArray()))["run.sh"]
+    (entry.mode & 07777) == 0750
+    entry.isFile()
+    entry.modTime.time == 1_600_000_000_000
+  }
+
+  Map<String, TarArchiveEntry> entries(InputStream archive) {
+    def entries = [:]
+    new TarArchiveInputStream(archive).withCloseable { TarArchiveInputStream tar ->
+      TarArchiveEntry entry
+      while ((entry = tar.nextEntry) != null) {
+        entries[entry.name] = entry
+      }
+    }
+    return entries
+  }
+}
@@ -0,0 +1,92 @@
+package de.gesellix.docker.client.container
+
+import de.gesellix.docker.remote.api.core.Cancellable
+import de.gesellix.docker.remote.api.core.Frame
+import de.gesellix.docker.remote.api.core.StreamCallback
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.function.Predicate
+
+class LogWatcherTest extends Specification {
+
+  ManageContainer manageContainer = Mock(ManageContainer)
+  ExecutorService executor = Executors.newCachedThreadPool()
+  LogWatcher logWatcher
+
+  def setup() {
+    logWatcher = new LogWatcher(manageContainer, executor)
+  }
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  def "completes every matcher of a single log stream and closes the stream"() {
+    given:
+    def frame1 = Mock(Frame)
+    def frame2 = Mock(Frame)
+    def cancellable = Mock(Cancellable)
+    def closed = new CountDownLatch(1)
+    cancellable.cancel() >> { closed.countDown() }
+    Predicate<Frame> matchesFrame1 = { Frame f -> f.is(frame1) }
+    Predicate<Frame> matchesFrame2 = { Frame f -> f.is(frame2) }
+
+    when:
+    def futures = logWatcher.watch("a-container", [:], [matchesFrame1, matchesFrame2], Duration.ofSeconds(5))
+    def matches = futures.collect { it.get(5, TimeUnit.SECONDS) }
+
+    then:
+    1 * manageContainer.logs("a-container", [follow: true, tail: "all"], _, Duration.ofSeconds(5)) >> { String container, Map query, StreamCallback<Frame> callback, Duration timeout ->
+      callback.onStarting(cancellable)
+      callback.onNext(frame1)
+      callback.onNext(frame2)
+      closed.await(5, TimeUnit.SECONDS)
+    }
+    and:
+    matches[0].is(frame1)
+    matches[1].is(frame2)
+    closed.await(5, TimeUnit.SECONDS)
+  }
+
+  def "fails with a timeout when no frame matches"() {
+    given:
+    def cancellable = Mock(Cancellable)
+    def closed = new CountDownLatch(1)
+    cancellable.cancel() >> { closed.countDown() }
+    manageContainer.logs("a-container", _, _, _) >> { String container, Map query, StreamCallback<Frame> callback, Duration timeout ->
+      callback.onStarting(cancellable)
+      closed.await(5, TimeUnit.SECONDS)
+    }
+
+    when:
+    logWatcher.watch("a-container", [tail: 1], { Frame f -> false } as Predicate<Frame>, Duration.ofMillis(100)).get()
+
+    then:
+    def exception = thrown(ExecutionException)
+    exception.cause instanceof TimeoutException
+    and:
+    closed.await(5, TimeUnit.SECONDS)
+  }
+
+  def "fails when the log stream ends without a matching frame"() {
+    given:
+    def frame = Mock(Frame)
+    manageContainer.logs("a-container", _, _, _) >> { String container, Map query, StreamCallback<Frame> callback, Duration timeout ->
+      callback.onNext(frame)
+    }
+
+    when:
+    logWatcher.watch("a-container", [:], { Frame f -> false } as Predicate<Frame>, Duration.ofSeconds(5)).get()
+
+    then:
+    def exception = thrown(ExecutionException)
+    exception.cause instanceof IllegalStateException
+  }
+}
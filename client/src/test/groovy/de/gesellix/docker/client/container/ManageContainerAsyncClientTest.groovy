@@ -0,0 +1,102 @@
+package de.gesellix.docker.client.container
+
+import de.gesellix.docker.client.EngineResponseContent
+import de.gesellix.docker.remote.api.ContainerInspectResponse
+import de.gesellix.docker.remote.api.core.Cancellable
+import de.gesellix.docker.remote.api.core.Frame
+import de.gesellix.docker.remote.api.core.StreamCallback
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ManageContainerAsyncClientTest extends Specification {
+
+  ManageContainer manageContainer = Mock(ManageContainer)
+  ExecutorService executor = Executors.newCachedThreadPool()
+  ManageContainerAsyncClient service
+
+  def setup() {
+    service = new ManageContainerAsyncClient(manageContainer, executor)
+  }
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  def "inspect container completes with the engine response"() {
+    given:
+    def response = new EngineResponseContent<ContainerInspectResponse>(Mock(ContainerInspectResponse))
+
+    when:
+    def result = service.inspectContainer("a-container").get(5, TimeUnit.SECONDS)
+
+    then:
+    1 * manageContainer.inspectContainer("a-container") >> response
+    and:
+    result == response
+  }
+
+  def "start container completes exceptionally on failure"() {
+    given:
+    manageContainer.startContainer("a-container") >> { throw new IllegalStateException("failed") }
+
+    when:
+    service.startContainer("a-container").get(5, TimeUnit.SECONDS)
+
+    then:
+    def exception = thrown(ExecutionException)
+    exception.cause instanceof IllegalStateException
+  }
+
+  def "cancel interrupts a blocking call"() {
+    given:
+    def started = new CountDownLatch(1)
+    def interrupted = new CountDownLatch(1)
+    manageContainer.wait("a-container") >> {
+      started.countDown()
+      try {
+        Thread.sleep(10000)
+      }
+      catch (InterruptedException ignored) {
+        interrupted.countDown()
+      }
+      return null
+    }
+
+    when:
+    def future = service.wait("a-container")
+    started.await(5, TimeUnit.SECONDS)
+    future.cancel(true)
+    future.get()
+
+    then:
+    thrown(CancellationException)
+    and:
+    interrupted.await(5, TimeUnit.SECONDS)
+  }
+
+  def "cancel cancels a streaming request"() {
+    given:
+    def started = new CountDownLatch(1)
+    def cancellable = Mock(Cancellable)
+    manageContainer.logs("a-container", [:], _, _) >> { String container, Map query, StreamCallback<Frame> callback, Duration timeout ->
+      callback.onStarting(cancellable)
+      started.countDown()
+      Thread.sleep(10000)
+    }
+
+    when:
+    def future = service.logs("a-container", [:], Mock(StreamCallback), Duration.ofSeconds(10))
+    started.await(5, TimeUnit.SECONDS)
+    future.cancel(true)
+
+    then:
+    1 * cancellable.cancel()
+  }
+}
@@ -5,6 +5,7 @@ import de.gesellix.docker.remote.api.ContainerCreateRequest
 import de.gesellix.docker.remote.api.ContainerCreateResponse
 import de.gesellix.docker.remote.api.ContainerInspectResponse
 import de.gesellix.docker.remote.api.ContainerPruneResponse
+import de.gesellix.docker.remote.api.ContainerSummary
 import de.gesellix.docker.remote.api.ContainerTopResponse
 import de.gesellix.docker.remote.api.ContainerUpdateRequest
 import de.gesellix.docker.remote.api.ContainerUpdateResponse
@@ -18,10 +19,15 @@ import de.gesellix.docker.remote.api.IdResponse
 import de.gesellix.docker.remote.api.client.ContainerApi
 import de.gesellix.docker.remote.api.client.ExecApi
 import de.gesellix.docker.remote.api.client.ImageApi
+import de.gesellix.docker.remote.api.core.Frame
 import de.gesellix.docker.remote.api.core.StreamCallback
 import de.gesellix.docker.websocket.DefaultWebSocketListener
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
 import spock.lang.Specification
 
+import java.nio.file.Files
 import java.time.Duration
 import java.time.temporal.ChronoUnit
 
@@ -100,6 +106,38 @@ class ManageContainerClientTest extends Specification {
     result.content == response
   }
 
+  def "stop all containers"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+
+    when:
+    def report = service.stopAll(["container-1", "container-2", "container-3"], Duration.ofSeconds(5))
+
+    then:
+    1 * containerApi.containerStop("container-1", 5)
+    1 * containerApi.containerStop("container-2", 5) >> { throw new IllegalStateException("failed") }
+    1 * containerApi.containerStop("container-3", 5)
+    and:
+    report.items.size() == 3
+    report.failures.keySet() == ["container-2"] as Set
+  }
+
+  def "rm all containers"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+
+    when:
+    def report = service.rmAll(["container-1", "container-2"], [force: true])
+
+    then:
+    1 * containerApi.containerDelete("container-1", null, true, null)
+    1 * containerApi.containerDelete("container-2", null, true, null)
+    and:
+    report.successful
+  }
+
   def "pause container"() {
     given:
     def containerApi = Mock(ContainerApi)
@@ -163,6 +201,28 @@ class ManageContainerClientTest extends Specification {
     responseContent.content == containers
   }
 
+  def "ps containers from the inventory"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def inventory = Mock(ContainerInventory)
+    inventory.running >> true
+    service.inventory = inventory
+    def containers = [new ContainerSummary(id: "a-container")]
+
+    when:
+    def cached = service.ps(false)
+    def filtered = service.ps(true, null, false, '{"status":["exited"]}')
+
+    then:
+    1 * inventory.list(false) >> containers
+    0 * containerApi.containerList(false, _, _, _)
+    1 * containerApi.containerList(true, null, false, '{"status":["exited"]}') >> []
+    and:
+    cached.content == containers
+    filtered.content == []
+  }
+
   def "inspect container"() {
     given:
     def containerApi = Mock(ContainerApi)
@@ -259,6 +319,41 @@ class ManageContainerClientTest extends Specification {
     exec.content == idResponse
   }
 
+  def "exec in all containers"() {
+    given:
+    def execApi = Mock(ExecApi)
+    client.execApi >> execApi
+    def idResponseA = Mock(IdResponse) { it.id >> "exec-a" }
+    def idResponseB = Mock(IdResponse) { it.id >> "exec-b" }
+    def inspectA = Mock(ExecInspectResponse) { it.running >> false; it.exitCode >> 0 }
+    def inspectB = Mock(ExecInspectResponse) { it.running >> false; it.exitCode >> 2 }
+    def stdout = Mock(Frame) { it.streamType >> Frame.StreamType.STDOUT; it.payload >> "0123456789".bytes }
+    def stderr = Mock(Frame) { it.streamType >> Frame.StreamType.STDERR; it.payload >> "failed".bytes }
+    def options = new ExecAllOptions(maxOutputBytes: 8, timeout: Duration.ofSeconds(1))
+
+    when:
+    def report = service.execAll(["a", "b"], ["cat", "/etc/hostname"], options)
+
+    then:
+    1 * execApi.containerExec("a", new ExecConfig(false, true, true, null, null, false, null, ["cat", "/etc/hostname"], null, null, null)) >> idResponseA
+    1 * execApi.containerExec("b", _) >> idResponseB
+    1 * execApi.execStart("exec-a", new ExecStartConfig(false, false, null), _, 1000) >> { args -> args[2].onNext(stdout) }
+    1 * execApi.execStart("exec-b", _, _, _) >> { args -> args[2].onNext(stderr) }
+    1 * execApi.execInspect("exec-a") >> inspectA
+    1 * execApi.execInspect("exec-b") >> inspectB
+    and:
+    report.successful
+    def outputA = report.results["a"]
+    outputA.exitCode == 0
+    outputA.stdout == "01234567" + String.format(ExecOutput.TRUNCATION_MARKER, 2)
+    outputA.stdoutTruncated
+    outputA.stderr == ""
+    def outputB = report.results["b"]
+    outputB.exitCode == 2
+    outputB.stdout == ""
+    outputB.stderr == "failed"
+  }
+
   def "create container with defaults"() {
     given:
     def containerApi = Mock(ContainerApi)
@@ -366,6 +461,88 @@ class ManageContainerClientTest extends Specification {
     result.content == archive
   }
 
+  def "extract file from container into a target file"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def target = Files.createTempFile("extracted", ".txt")
+
+    when:
+    def bytesRead = service.extractFile("a-container", "/path/file.txt", target)
+
+    then:
+    1 * containerApi.containerArchive("a-container", "/path/file.txt") >> tar(["file.txt": "file content"])
+    bytesRead == "file content".length()
+    target.text == "file content"
+
+    cleanup:
+    Files.deleteIfExists(target)
+  }
+
+  def "extract directory from container"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def targetDirectory = Files.createTempDirectory("extracted")
+
+    when:
+    service.extractArchive("a-container", "/path", targetDirectory)
+
+    then:
+    1 * containerApi.containerArchive("a-container", "/path") >> tar([
+        "path/a.txt"    : "a",
+        "path/sub/b.txt": "bb"])
+    targetDirectory.resolve("path/a.txt").text == "a"
+    targetDirectory.resolve("path/sub/b.txt").text == "bb"
+
+    cleanup:
+    targetDirectory.toFile().deleteDir()
+  }
+
+  def "extract archive rejects entries outside of the target directory"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def targetDirectory = Files.createTempDirectory("extracted")
+
+    when:
+    service.extractArchive("a-container", "/path", targetDirectory)
+
+    then:
+    1 * containerApi.containerArchive("a-container", "/path") >> tar(["../evil.txt": "evil"])
+    thrown(IllegalArgumentException)
+
+    cleanup:
+    targetDirectory.toFile().deleteDir()
+  }
+
+  def "put directory into container"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def sourceDirectory = Files.createTempDirectory("upload")
+    sourceDirectory.resolve("a.txt").text = "a"
+    Files.createDirectories(sourceDirectory.resolve("sub"))
+    sourceDirectory.resolve("sub/b.txt").text = "bb"
+    def uploaded = [:]
+
+    when:
+    service.putDirectory("a-container", "/path", sourceDirectory)
+
+    then:
+    1 * containerApi.putContainerArchive("a-container", "/path", _, null, null) >> { String container, String path, InputStream archive, a, b ->
+      def tar = new TarArchiveInputStream(archive)
+      TarArchiveEntry entry
+      while ((entry = tar.nextEntry) != null) {
+        uploaded[entry.name] = entry.directory ? null : new String(tar.readAllBytes())
+      }
+    }
+    uploaded == ["a.txt": "a", "sub/": null, "sub/b.txt": "bb"]
+
+    cleanup:
+    sourceDirectory.toFile().deleteDir()
+  }
+
   def "upload file/folder to container"() {
     given:
     def containerApi = Mock(ContainerApi)
@@ -530,6 +707,23 @@ class ManageContainerClientTest extends Specification {
     1 * containerApi.containerStats("a-container", true, null, callback, timeout.toMillis())
   }
 
+  def "typed stats"() {
+    given:
+    def containerApi = Mock(ContainerApi)
+    client.containerApi >> containerApi
+    def callback = Mock(StreamCallback)
+    def timeout = Duration.of(1, ChronoUnit.SECONDS)
+
+    when:
+    service.stats("a-container", callback, timeout)
+
+    then:
+    1 * containerApi.containerStats("a-container", true, null, _, timeout.toMillis()) >> { args ->
+      args[3].onNext([memory_stats: [usage: 42.0]])
+    }
+    1 * callback.onNext({ ContainerStatsSample sample -> sample.memoryUsage == 42 })
+  }
+
   def "logs"() {
     given:
     def containerApi = Mock(ContainerApi)
@@ -556,4 +750,18 @@ class ManageContainerClientTest extends Specification {
     1 * containerApi.containerPrune('a-filter') >> prunedContainers
     responseContent.content == prunedContainers
   }
+
+  InputStream tar(Map<String, String> files) {
+    def bytes = new ByteArrayOutputStream()
+    new TarArchiveOutputStream(bytes).withCloseable { TarArchiveOutputStream tar ->
+      files.each { String name, String content ->
+        def entry = new TarArchiveEntry(name)
+        entry.size = content.bytes.length
+        tar.putArchiveEntry(entry)
+        tar.write(content.bytes)
+        tar.closeArchiveEntry()
+      }
+    }
+    return new ByteArrayInputStream(bytes.toByteArray())
+  }
 }
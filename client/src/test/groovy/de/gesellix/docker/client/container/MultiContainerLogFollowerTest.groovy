@@ -0,0 +1,245 @@
+package de.gesellix.docker.client.container
+
+import de.gesellix.docker.client.EngineResponseContent
+import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.remote.api.ContainerSummary
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.core.Frame
+import de.gesellix.docker.remote.api.core.StreamCallback
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class MultiContainerLogFollowerTest extends Specification {
+
+  ManageContainer manageContainer = Mock(ManageContainer)
+  ManageSystem manageSystem = Mock(ManageSystem)
+  ExecutorService executor = Executors.newCachedThreadPool()
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  def "merge the log streams of many containers ordered by timestamp"() {
+    given:
+    def framesA = [frame("2024-05-01T12:00:01Z one"), frame("2024-05-01T12:00:03Z three")]
+    def framesB = [frame("2024-05-01T12:00:02Z two"), frame("2024-05-01T12:00:04Z four")]
+    manageContainer.logs("a", [follow: true, timestamps: true, tail: "0"], _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      framesA.each { callback.onNext(it) }
+    }
+    manageContainer.logs("b", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      framesB.each { callback.onNext(it) }
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(
+        containers: ["a", "b"],
+        reorderWindow: Duration.ofSeconds(5)))
+
+    when:
+    follower.start()
+    def entries = pollAll(follower)
+
+    then:
+    entries*.payloadAsString == ["one", "two", "three", "four"]
+    entries*.container == ["a", "b", "a", "b"]
+    and:
+    follower.stats.every { it.finished && it.received == 2 && it.delivered == 2 && it.dropped == 0 }
+  }
+
+  def "apply the overflow policy #policy"() {
+    given:
+    def frames = (1..5).collect { frame("2024-05-01T12:00:0${it}Z line ${it}") }
+    def producerFinished = new CountDownLatch(1)
+    manageContainer.logs("a", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      frames.each { callback.onNext(it) }
+      producerFinished.countDown()
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(
+        containers: ["a"],
+        bufferSize: bufferSize,
+        overflowPolicy: policy,
+        sampleRate: 2))
+
+    when:
+    follower.start()
+    if (policy != OverflowPolicy.BLOCK) {
+      producerFinished.await()
+    }
+    def entries = pollAll(follower)
+
+    then:
+    entries*.payloadAsString == expected
+    follower.stats.first().dropped == dropped
+    follower.stats.first().received == 5
+
+    where:
+    policy                     | bufferSize | expected                      | dropped
+    OverflowPolicy.BLOCK       | 1          | (1..5).collect { "line $it" } | 0
+    OverflowPolicy.DROP_OLDEST | 2          | ["line 4", "line 5"]          | 3
+    OverflowPolicy.SAMPLE      | 1          | ["line 5"]                    | 4
+  }
+
+  def "follow new containers matching the labels"() {
+    given:
+    def eventsFinished = new CountDownLatch(1)
+    manageContainer.ps([all: false, filters: [label: ["app=web"]]]) >> new EngineResponseContent([new ContainerSummary(id: "c1")])
+    manageSystem.events(_, _, _) >> { request, StreamCallback<EventMessage> callback, Duration t ->
+      if (eventsFinished.count > 0) {
+        callback.onNext(new EventMessage(action: "start", actor: new EventActor(ID: "c2"), time: 42L))
+        eventsFinished.countDown()
+      }
+      Thread.sleep(10)
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(
+        labels: ["app": "web"]))
+
+    when:
+    follower.start()
+    eventsFinished.await()
+
+    then:
+    follower.containers == ["c1", "c2"] as Set
+
+    cleanup:
+    follower.close()
+  }
+
+  def "forget destroyed containers after their entries have been consumed"() {
+    given:
+    def eventsFinished = new CountDownLatch(1)
+    manageContainer.ps([all: false, filters: [label: ["app=web"]]]) >> new EngineResponseContent([new ContainerSummary(id: "c1")])
+    def frames = [frame("2024-05-01T12:00:01Z one")]
+    manageContainer.logs("c1", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      frames.each { callback.onNext(it) }
+    }
+    manageSystem.events(_, _, _) >> { request, StreamCallback<EventMessage> callback, Duration t ->
+      if (eventsFinished.count > 0) {
+        callback.onNext(new EventMessage(action: "destroy", actor: new EventActor(ID: "c1"), time: 42L))
+        eventsFinished.countDown()
+      }
+      Thread.sleep(10)
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(
+        labels: ["app": "web"]))
+
+    when:
+    follower.start()
+    eventsFinished.await()
+    while (!follower.stats.every { it.finished }) {
+      Thread.sleep(1)
+    }
+
+    then: "the buffered entry is still delivered"
+    follower.containers == ["c1"] as Set
+    follower.poll(Duration.ofSeconds(5)).payloadAsString == "one"
+    follower.containers.empty
+    follower.stats.empty
+
+    cleanup:
+    follower.close()
+  }
+
+  def "strip the engine's timestamp from log lines"() {
+    given:
+    def frame = frame("2024-05-01T12:00:00.123456789Z hello world\n")
+
+    when:
+    def entry = MultiContainerLogFollower.parse("a", frame)
+
+    then:
+    entry.timestamp.toString() == "2024-05-01T12:00:00.123456789Z"
+    entry.payloadAsString == "hello world"
+    entry.streamType == Frame.StreamType.STDOUT
+  }
+
+  def "split raw frames into lines"() {
+    given:
+    def frames = [
+        frame("2024-05-01T12:00:01Z one\n2024-05-01T12:00:02Z tw", Frame.StreamType.RAW),
+        frame("o\n2024-05-01T12:00:03Z thr", Frame.StreamType.RAW),
+        frame("ee", Frame.StreamType.RAW)]
+    manageContainer.logs("a", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      frames.each { callback.onNext(it) }
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(containers: ["a"]))
+
+    when:
+    follower.start()
+    def entries = pollAll(follower)
+
+    then:
+    entries*.payloadAsString == ["one", "two", "three"]
+    entries*.timestamp*.toString() == ["2024-05-01T12:00:01Z", "2024-05-01T12:00:02Z", "2024-05-01T12:00:03Z"]
+  }
+
+  def "follow a restarted container again after its last line"() {
+    given:
+    def queries = []
+    def frames = [frame("2024-05-01T12:00:01Z before"), frame("2024-05-01T12:00:02Z after")]
+    manageContainer.logs("a", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      queries << new HashMap(q)
+      callback.onNext(frames[queries.size() - 1])
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(containers: ["a"]))
+
+    when:
+    follower.start()
+    def first = follower.poll(Duration.ofSeconds(5))
+    while (!follower.stats.first().finished) {
+      Thread.sleep(10)
+    }
+    follower.follow("a", "all")
+    def second = follower.poll(Duration.ofSeconds(5))
+
+    then:
+    first.payloadAsString == "before"
+    second.payloadAsString == "after"
+    queries[1].since == "1714564801.000000001"
+    follower.stats.first().received == 2
+  }
+
+  def "count blocked entries as dropped when the follower is closed"() {
+    given:
+    def producerFinished = new CountDownLatch(1)
+    def frames = (1..3).collect { frame("2024-05-01T12:00:0${it}Z line ${it}") }
+    manageContainer.logs("a", _, _, _) >> { String c, Map q, StreamCallback<Frame> callback, Duration t ->
+      frames.each { callback.onNext(it) }
+      producerFinished.countDown()
+    }
+    def follower = new MultiContainerLogFollower(manageContainer, manageSystem, executor, new LogFollowOptions(
+        containers: ["a"],
+        bufferSize: 1,
+        overflowPolicy: OverflowPolicy.BLOCK))
+
+    when:
+    follower.start()
+    while (follower.stats.empty || follower.stats.first().received < 2) {
+      Thread.sleep(10)
+    }
+    follower.close()
+    producerFinished.await()
+
+    then:
+    follower.stats.first().received == 3
+    follower.stats.first().dropped == 2
+  }
+
+  Frame frame(String line, Frame.StreamType streamType = Frame.StreamType.STDOUT) {
+    Frame frame = Mock(Frame)
+    frame.payload >> line.bytes
+    frame.streamType >> streamType
+    return frame
+  }
+
+  List<LogEntry> pollAll(MultiContainerLogFollower follower) {
+    def entries = []
+    LogEntry entry
+    while ((entry = follower.poll(Duration.ofSeconds(5))) != null) {
+      entries << entry
+    }
+    return entries
+  }
+}
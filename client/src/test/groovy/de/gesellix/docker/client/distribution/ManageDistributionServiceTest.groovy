@@ -1,5 +1,6 @@
 package de.gesellix.docker.client.distribution
 
+import de.gesellix.docker.client.image.ContentAddressedCache
 import de.gesellix.docker.remote.api.DistributionInspect
 import de.gesellix.docker.remote.api.EngineApiClient
 import de.gesellix.docker.remote.api.client.DistributionApi
@@ -27,4 +28,21 @@ class ManageDistributionServiceTest extends Specification {
     1 * distributionApi.distributionInspect("image-name") >> distributionInspect
     response.content == distributionInspect
   }
+
+  def "distribution descriptor of a digest reference via the content addressed cache"() {
+    given:
+    def distributionApi = Mock(DistributionApi)
+    client.distributionApi >> distributionApi
+    def distributionInspect = Mock(DistributionInspect)
+    def reference = "image-name@sha256:" + "a" * 64
+    service.contentAddressedCache = new ContentAddressedCache()
+
+    when:
+    service.descriptor(reference)
+    def response = service.descriptor(reference)
+
+    then:
+    1 * distributionApi.distributionInspect(reference) >> distributionInspect
+    response.content == distributionInspect
+  }
 }
@@ -0,0 +1,29 @@
+package de.gesellix.docker.client.image
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class BuildCacheTest extends Specification {
+
+  def "persist entries across instances"() {
+    given:
+    def directory = Files.createTempDirectory("build-cache")
+    def indexFile = directory.resolve("nested/index.properties")
+
+    when:
+    def cache = new BuildCache(indexFile)
+    cache.put("hash-1", "sha256:one")
+    cache.put("hash-2", "sha256:two")
+    cache.remove("hash-2")
+    def reloaded = new BuildCache(indexFile)
+
+    then:
+    reloaded.get("hash-1") == "sha256:one"
+    reloaded.get("hash-2") == null
+    reloaded.size() == 1
+
+    cleanup:
+    directory.toFile().deleteDir()
+  }
+}
@@ -0,0 +1,84 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.client.container.DirectoryTarWriter
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class BuildContextHasherTest extends Specification {
+
+  ExecutorService executor = Executors.newFixedThreadPool(2)
+  BuildContextHasher hasher = new BuildContextHasher(executor, 2)
+  Path context
+
+  def setup() {
+    context = Files.createTempDirectory("hash-context")
+    context.resolve("Dockerfile").text = "FROM scratch\n"
+    context.resolve(".dockerignore").text = "*.log\n"
+    Files.createDirectories(context.resolve("src"))
+    context.resolve("src/a.txt").text = "a"
+    context.resolve("src/b.txt").text = "b"
+  }
+
+  def cleanup() {
+    executor.shutdownNow()
+    context.toFile().deleteDir()
+  }
+
+  String hash(BuildOptions options = new BuildOptions()) {
+    return hasher.hash(context, DockerIgnore.read(context, options.dockerfile), options)
+  }
+
+  def "ignore modification times and ignored files"() {
+    given:
+    def before = hash()
+
+    when:
+    Files.setLastModifiedTime(context.resolve("src/a.txt"), FileTime.fromMillis(0))
+    context.resolve("build.log").text = "log"
+
+    then:
+    hash() == before
+    before ==~ /[0-9a-f]{64}/
+  }
+
+  def "change with file contents and paths"() {
+    given:
+    def before = hash()
+
+    when:
+    context.resolve("src/b.txt").text = "changed"
+    def changedContent = hash()
+    Files.move(context.resolve("src/b.txt"), context.resolve("src/c.txt"))
+    def changedPath = hash()
+
+    then:
+    [before, changedContent, changedPath].unique().size() == 3
+  }
+
+  def "change with build args"() {
+    expect:
+    hash(new BuildOptions(buildArgs: [VERSION: "1"])) != hash(new BuildOptions(buildArgs: [VERSION: "2"]))
+    hash(new BuildOptions(buildArgs: [A: "1", B: "2"])) == hash(new BuildOptions(buildArgs: [B: "2", A: "1"]))
+  }
+
+  def "only hash directories which would be archived"() {
+    given:
+    DirectoryTarWriter.EntryFilter filesOnly = [
+        descend: { Path dir -> true },
+        include: { Path path, boolean directory -> !directory }] as DirectoryTarWriter.EntryFilter
+    def before = hasher.hash(context, filesOnly, new BuildOptions())
+    def allBefore = hash()
+
+    when:
+    Files.createDirectories(context.resolve("empty"))
+
+    then:
+    hasher.hash(context, filesOnly, new BuildOptions()) == before
+    hash() != allBefore
+  }
+}
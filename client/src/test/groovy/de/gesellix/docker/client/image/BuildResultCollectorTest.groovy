@@ -0,0 +1,65 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.BuildInfo
+import de.gesellix.docker.remote.api.ImageID
+import de.gesellix.docker.remote.api.core.StreamCallback
+import spock.lang.Specification
+
+class BuildResultCollectorTest extends Specification {
+
+  def "collect image id, steps and warnings"() {
+    given:
+    def delegate = Mock(StreamCallback)
+    def collector = new BuildResultCollector(delegate)
+
+    when:
+    collector.onNext(new BuildInfo(stream: "Step 1/3 : FROM alpine\n"))
+    collector.onNext(new BuildInfo(stream: " ---> 4711\n"))
+    collector.onNext(new BuildInfo(stream: "Step 2/3 : RUN apk add curl\n"))
+    collector.onNext(new BuildInfo(stream: " ---> Using cache\n ---> 4712\n"))
+    collector.onNext(new BuildInfo(stream: "Step 3/3 : ARG VERSION\n"))
+    collector.onNext(new BuildInfo(stream: "[Warning] One or more build-args [UNUSED] were not consumed\n"))
+    collector.onNext(new BuildInfo(aux: new ImageID(id: "sha256:4713")))
+    collector.onNext(new BuildInfo(stream: "Successfully built 4713\n"))
+    collector.onFinished()
+
+    then:
+    9 * delegate.onNext(_)
+    1 * delegate.onFinished()
+    def result = collector.result
+    result.successful
+    result.imageId == "sha256:4713"
+    result.steps*.number == [1, 2, 3]
+    result.steps*.instruction == ["FROM alpine", "RUN apk add curl", "ARG VERSION"]
+    result.steps*.cached == [false, true, false]
+    result.warnings == ["One or more build-args [UNUSED] were not consumed"]
+    result.slowestSteps.size() == 3
+  }
+
+  def "fall back to the short id"() {
+    given:
+    def collector = new BuildResultCollector()
+
+    when:
+    collector.onNext(new BuildInfo(stream: "Successfully built 4711abcdef\n"))
+
+    then:
+    collector.result.imageId == "4711abcdef"
+  }
+
+  def "report errors"() {
+    given:
+    def collector = new BuildResultCollector()
+
+    when:
+    collector.onNext(new BuildInfo(stream: "Step 1/1 : RUN false\n"))
+    collector.onNext(new BuildInfo(error: "The command '/bin/sh -c false' returned a non-zero code: 1"))
+    collector.onFinished()
+
+    then:
+    !collector.result.successful
+    collector.result.imageId == null
+    collector.result.error == "The command '/bin/sh -c false' returned a non-zero code: 1"
+    collector.result.steps.size() == 1
+  }
+}
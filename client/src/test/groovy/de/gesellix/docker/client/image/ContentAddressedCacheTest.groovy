@@ -0,0 +1,117 @@
+package de.gesellix.docker.client.image
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ContentAddressedCacheTest extends Specification {
+
+  static final String ID = "sha256:" + "a" * 64
+
+  @Unroll
+  def "'#reference' is content addressed: #expected"() {
+    expect:
+    ContentAddressedCache.isContentAddressed(reference) == expected
+
+    where:
+    reference                         | expected
+    ID                                | true
+    "a" * 64                          | true
+    "nginx@sha256:" + "b" * 64        | true
+    "nginx:1.25@sha256:" + "b" * 64   | true
+    "nginx"                           | false
+    "nginx:latest"                    | false
+    "sha256:aaaa"                     | false
+    "aaaaaaaaaaaa"                    | false
+    null                              | false
+  }
+
+  def "cache content addressed lookups only"() {
+    given:
+    def cache = new ContentAddressedCache()
+    int loads = 0
+
+    when:
+    3.times { cache.get(ContentAddressedCache.INSPECT, ID) { "inspection ${++loads}".toString() } }
+    2.times { cache.get(ContentAddressedCache.INSPECT, "nginx:latest") { "inspection ${++loads}".toString() } }
+
+    then:
+    loads == 3
+    cache.get(ContentAddressedCache.INSPECT, ID) { "unexpected" } == "inspection 1"
+    cache.hits == 3
+    cache.misses == 1
+    cache.hitRate == 0.75d
+  }
+
+  def "separate the kinds of responses"() {
+    given:
+    def cache = new ContentAddressedCache()
+
+    when:
+    cache.get(ContentAddressedCache.INSPECT, ID) { "inspection" }
+    def history = cache.get(ContentAddressedCache.HISTORY, ID) { "history" }
+
+    then:
+    history == "history"
+    cache.size() == 2
+  }
+
+  def "invalidate removed images"() {
+    given:
+    def cache = new ContentAddressedCache()
+    cache.get(ContentAddressedCache.INSPECT, ID) { "inspection" }
+    cache.get(ContentAddressedCache.HISTORY, "a" * 64) { "history" }
+
+    when:
+    cache.invalidate(ID)
+
+    then:
+    cache.size() == 0
+  }
+
+  def "invalidate all inspections and histories after tag changes"() {
+    given:
+    def cache = new ContentAddressedCache()
+    cache.get(ContentAddressedCache.INSPECT, ID) { "inspection" }
+    cache.get(ContentAddressedCache.HISTORY, "b" * 64) { "history" }
+    cache.get(ContentAddressedCache.DESCRIPTOR, "nginx@sha256:" + "c" * 64) { "descriptor" }
+
+    when:
+    cache.invalidateImages()
+
+    then:
+    cache.size() == 1
+    cache.get(ContentAddressedCache.DESCRIPTOR, "nginx@sha256:" + "c" * 64) { "unexpected" } == "descriptor"
+  }
+
+  def "evict the least recently used responses"() {
+    given:
+    def cache = new ContentAddressedCache(2, Long.MAX_VALUE)
+
+    when:
+    cache.get(ContentAddressedCache.INSPECT, "a" * 64) { "a" }
+    cache.get(ContentAddressedCache.INSPECT, "b" * 64) { "b" }
+    cache.get(ContentAddressedCache.INSPECT, "a" * 64) { "unexpected" }
+    cache.get(ContentAddressedCache.INSPECT, "c" * 64) { "c" }
+
+    then:
+    cache.size() == 2
+    cache.evictions == 1
+    cache.get(ContentAddressedCache.INSPECT, "a" * 64) { "unexpected" } == "a"
+    cache.get(ContentAddressedCache.INSPECT, "b" * 64) { "b again" } == "b again"
+  }
+
+  def "limit the total size"() {
+    given:
+    def cache = new ContentAddressedCache(100, 20)
+
+    when:
+    cache.get(ContentAddressedCache.INSPECT, "a" * 64) { "12345" }
+    cache.get(ContentAddressedCache.INSPECT, "b" * 64) { "12345" }
+    cache.get(ContentAddressedCache.INSPECT, "c" * 64) { "12345" }
+    cache.get(ContentAddressedCache.INSPECT, "d" * 64) { "more than twenty bytes" }
+
+    then:
+    cache.size() == 2
+    cache.evictions == 1
+  }
+}
@@ -0,0 +1,66 @@
+package de.gesellix.docker.client.image
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.nio.file.Paths
+
+class DockerIgnoreTest extends Specification {
+
+  @Unroll
+  def "'#path' is ignored by #patterns: #ignored"() {
+    expect:
+    new DockerIgnore(patterns).isIgnored(path) == ignored
+
+    where:
+    patterns                        | path                     | ignored
+    []                              | "a.txt"                  | false
+    ["# comment", ""]               | "# comment"              | false
+    ["*.md"]                        | "README.md"              | true
+    ["*.md"]                        | "docs/README.md"         | false
+    ["**/*.md"]                     | "docs/README.md"         | true
+    ["**/*.md"]                     | "README.md"              | true
+    ["node_modules"]                | "node_modules/dep/a.js"  | true
+    ["/build/"]                     | "build/out.jar"          | true
+    ["./build"]                     | "sub/build"              | false
+    ["temp?"]                       | "temp1"                  | true
+    ["temp?"]                       | "temp/1"                 | false
+    ["*.md", "!README.md"]          | "README.md"              | false
+    ["*.md", "!README.md"]          | "CHANGES.md"             | true
+    ["*.md", "!README.md", "*.md"]  | "README.md"              | true
+    ["docs", "!docs/keep.txt"]      | "docs/keep.txt"          | false
+    ["docs", "!docs/keep.txt"]      | "docs/other.txt"         | true
+    ["a.b"]                         | "axb"                    | false
+  }
+
+  def "walk ignored directories only for matching exclusions"() {
+    given:
+    def dockerIgnore = new DockerIgnore(["docs", "!docs/keep.txt", "build"])
+
+    expect:
+    dockerIgnore.descend(Paths.get("docs"))
+    !dockerIgnore.include(Paths.get("docs"), true)
+    dockerIgnore.include(Paths.get("docs/keep.txt"), false)
+    !dockerIgnore.descend(Paths.get("build"))
+    dockerIgnore.descend(Paths.get("src"))
+  }
+
+  def "never ignore the Dockerfile and the .dockerignore file"() {
+    given:
+    def contextDirectory = Files.createTempDirectory("context")
+    contextDirectory.resolve(".dockerignore").text = "*\n!app.jar\n"
+
+    when:
+    def dockerIgnore = DockerIgnore.read(contextDirectory, "Dockerfile")
+
+    then:
+    !dockerIgnore.isIgnored("Dockerfile")
+    !dockerIgnore.isIgnored(".dockerignore")
+    !dockerIgnore.isIgnored("app.jar")
+    dockerIgnore.isIgnored("other.jar")
+
+    cleanup:
+    contextDirectory.toFile().deleteDir()
+  }
+}
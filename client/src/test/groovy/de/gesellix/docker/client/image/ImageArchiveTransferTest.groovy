@@ -0,0 +1,89 @@
+package de.gesellix.docker.client.image
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ImageArchiveTransferTest extends Specification {
+
+  ImageArchiveTransfer transfer = new ImageArchiveTransfer()
+  Path directory
+
+  def setup() {
+    directory = Files.createTempDirectory("image-transfer")
+  }
+
+  def cleanup() {
+    directory.toFile().deleteDir()
+  }
+
+  def "write a tarball with its checksum manifest"() {
+    given:
+    def content = ("layer" * 1000).bytes
+    def target = directory.resolve("images.tar")
+
+    when:
+    def stats = transfer.write({ new ByteArrayInputStream(content) } as ImageArchiveTransfer.Source, target, new ImageTransferOptions(bufferSize: 1024))
+
+    then:
+    target.bytes == content
+    stats.bytes == content.length
+    stats.sha256 == content.digest("SHA-256")
+    ImageArchiveTransfer.manifestOf(target).text == "${stats.sha256}  images.tar\n"
+    !Files.exists(directory.resolve("images.tar.part"))
+  }
+
+  def "retry failed writes"() {
+    given:
+    int attempts = 0
+    def source = {
+      if (++attempts == 1) {
+        return new InputStream() {
+          @Override
+          int read() throws IOException {
+            throw new IOException("connection reset")
+          }
+        }
+      }
+      return new ByteArrayInputStream("tar".bytes)
+    } as ImageArchiveTransfer.Source
+
+    when:
+    def stats = transfer.write(source, directory.resolve("images.tar"), new ImageTransferOptions())
+
+    then:
+    stats.attempts == 2
+    directory.resolve("images.tar").text == "tar"
+  }
+
+  def "read a verified tarball via memory mapping"() {
+    given:
+    def content = ("layer" * 1000).bytes
+    def tarball = directory.resolve("images.tar")
+    transfer.write({ new ByteArrayInputStream(content) } as ImageArchiveTransfer.Source, tarball, new ImageTransferOptions())
+    byte[] received = null
+
+    when:
+    def stats = transfer.read(tarball, { InputStream input -> received = input.bytes } as ImageArchiveTransfer.Sink, new ImageTransferOptions(memoryMapped: true))
+
+    then:
+    received == content
+    stats.sha256 == content.digest("SHA-256")
+  }
+
+  def "refuse tarballs which don't match their manifest"() {
+    given:
+    def tarball = directory.resolve("images.tar")
+    transfer.write({ new ByteArrayInputStream("tar".bytes) } as ImageArchiveTransfer.Source, tarball, new ImageTransferOptions())
+    tarball.text = "corrupt"
+    def sink = Mock(ImageArchiveTransfer.Sink)
+
+    when:
+    transfer.read(tarball, sink, new ImageTransferOptions())
+
+    then:
+    thrown(IllegalStateException)
+    0 * sink.accept(_)
+  }
+}
@@ -0,0 +1,55 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.ContainerSummary
+import de.gesellix.docker.remote.api.ImageSummary
+import de.gesellix.docker.remote.api.SystemDataUsageResponse
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.Instant
+
+class ImageGcPlannerTest extends Specification {
+
+  ImageGcPlanner planner = new ImageGcPlanner()
+  Instant now = Instant.ofEpochSecond(10_000)
+
+  SystemDataUsageResponse usage = Stub(SystemDataUsageResponse) {
+    getLayersSize() >> 2000L
+    getImages() >> [
+        new ImageSummary(id: "sha256:used", repoTags: ["app:1"], created: 100, size: 300, sharedSize: 0, containers: 0),
+        new ImageSummary(id: "sha256:app-old", parentId: "sha256:parent", repoTags: ["app:2"], created: 200, size: 500, sharedSize: 100, containers: 0),
+        new ImageSummary(id: "sha256:app-new", repoTags: ["app:3"], created: 300, size: 500, sharedSize: 100, containers: 0),
+        new ImageSummary(id: "sha256:parent", repoTags: ["<none>:<none>"], created: 50, size: 100, sharedSize: 100, containers: 0),
+        new ImageSummary(id: "sha256:dangling", repoTags: ["<none>:<none>"], created: 400, size: 50, sharedSize: -1, containers: 0),
+        new ImageSummary(id: "sha256:recent", repoTags: [], created: 9_990, size: 70, sharedSize: 0, containers: 0)]
+    getContainers() >> [
+        new ContainerSummary(id: "c1", imageID: "sha256:used", created: 9_000L)]
+  }
+
+  def "retain used images and rank the others by reclaimable bytes"() {
+    when:
+    def plan = planner.plan(usage, new ImageGcOptions(keepNewestPerRepository: 1, minUnusedFor: Duration.ofMinutes(1)), now)
+
+    then:
+    plan.removals*.id == ["sha256:app-old", "sha256:dangling"]
+    plan.removals*.uniqueSize == [400L, 50L]
+    plan.plannedBytes == 450
+    plan.layersSize == 2000
+    plan.retained == [
+        "sha256:used"   : "in use by a container",
+        "sha256:app-new": "one of the 1 newest images of its repository",
+        "sha256:parent" : "parent of another image",
+        "sha256:recent" : "used recently"]
+  }
+
+  def "stop planning when the target has been reached"() {
+    when:
+    def plan = planner.plan(usage, new ImageGcOptions(keepNewestPerRepository: 0, targetBytes: 100), now)
+
+    then:
+    plan.removals*.id == ["sha256:app-old"]
+    plan.retained["sha256:app-new"] == "target has been reached"
+    plan.retained["sha256:recent"] == "target has been reached"
+    plan.retained["sha256:dangling"] == "target has been reached"
+  }
+}
@@ -0,0 +1,82 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.remote.api.EngineApiClient
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.ImageInspect
+import de.gesellix.docker.remote.api.ImageSummary
+import de.gesellix.docker.remote.api.client.ImageApi
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+
+class ImageIdIndexTest extends Specification {
+
+  EngineApiClient client = Mock(EngineApiClient)
+  ImageApi imageApi = Mock(ImageApi)
+  ExecutorService sameThreadExecutor = { Runnable runnable -> runnable.run() } as ExecutorService
+  ImageIdIndex index
+
+  def setup() {
+    client.imageApi >> imageApi
+    index = new ImageIdIndex(client, Mock(ManageSystem), sameThreadExecutor, Duration.ofMinutes(1))
+  }
+
+  def "lookup names and digests from memory after the initial sync"() {
+    when:
+    index.resync()
+    def byName = index.lookup("anImage:latest")
+    def byDigest = index.lookup("anImage@sha256:4711")
+
+    then:
+    1 * imageApi.imageList(false, null, true) >> [
+        new ImageSummary(id: "sha256:a", repoTags: ["anImage:latest", "anImage:1.0"], repoDigests: ["anImage@sha256:4711"]),
+        new ImageSummary(id: "sha256:dangling", repoTags: ["<none>:<none>"], repoDigests: ["<none>@<none>"])]
+    0 * imageApi._
+    and:
+    byName == "sha256:a"
+    byDigest == "sha256:a"
+    index.hits == 2
+    index.misses == 0
+  }
+
+  def "inspect unknown references instead of listing all images"() {
+    given:
+    imageApi.imageList(false, null, true) >> []
+    index.resync()
+
+    when:
+    def found = index.lookup("other:latest")
+    def cached = index.lookup("other:latest")
+
+    then:
+    1 * imageApi.imageInspect("other:latest") >> new ImageInspect(id: "sha256:b", repoTags: ["other:latest"])
+    0 * imageApi.imageList(*_)
+    and:
+    found == "sha256:b"
+    cached == "sha256:b"
+    index.misses == 1
+    index.hits == 1
+  }
+
+  def "move tags and drop deleted images on events"() {
+    given:
+    imageApi.imageList(false, null, true) >> [
+        new ImageSummary(id: "sha256:old", repoTags: ["anImage:latest"]),
+        new ImageSummary(id: "sha256:gone", repoTags: ["gone:latest"])]
+    index.resync()
+
+    when:
+    index.onEvent(new EventMessage(action: "pull", actor: new EventActor(ID: "anImage:latest"), time: 10L))
+    index.onEvent(new EventMessage(action: "delete", actor: new EventActor(ID: "sha256:gone"), time: 11L))
+
+    then:
+    1 * imageApi.imageInspect("anImage:latest") >> new ImageInspect(id: "sha256:new", repoTags: ["anImage:latest"])
+    and:
+    index.lookup("anImage:latest") == "sha256:new"
+    index.events == 2
+    index.size() == 2
+  }
+}
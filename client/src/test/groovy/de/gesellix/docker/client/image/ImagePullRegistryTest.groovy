@@ -0,0 +1,108 @@
+package de.gesellix.docker.client.image
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ImagePullRegistryTest extends Specification {
+
+  ImagePullRegistry registry = new ImagePullRegistry()
+
+  def "normalize image references"() {
+    expect:
+    registry.normalize(image) == normalized
+
+    where:
+    image                                 | normalized
+    "nginx"                               | "library/nginx:latest"
+    "nginx:1.25"                          | "library/nginx:1.25"
+    "docker.io/library/nginx"             | "library/nginx:latest"
+    "gesellix/echo-server:2024"           | "gesellix/echo-server:2024"
+    "localhost:5000/gesellix/echo-server" | "localhost:5000/gesellix/echo-server:latest"
+  }
+
+  def "coalesce concurrent pulls of the same image"() {
+    given:
+    def executor = Executors.newFixedThreadPool(10)
+    def pullStarted = new CountDownLatch(1)
+    def releasePull = new CountDownLatch(1)
+    def actualPulls = new AtomicInteger()
+    Callable<String> pull = {
+      actualPulls.incrementAndGet()
+      pullStarted.countDown()
+      releasePull.await(5, TimeUnit.SECONDS)
+      return "pulled"
+    }
+
+    when:
+    def first = executor.submit({ registry.pull("nginx", pull) } as Callable)
+    pullStarted.await(5, TimeUnit.SECONDS)
+    def others = (1..9).collect { i -> executor.submit({ registry.pull(i % 2 ? "nginx:latest" : "docker.io/nginx", pull) } as Callable) }
+    while (registry.coalescedPulls < 9) {
+      Thread.sleep(10)
+    }
+    releasePull.countDown()
+    def results = ([first] + others)*.get(5, TimeUnit.SECONDS)
+
+    then:
+    results.every { it == "pulled" }
+    actualPulls.get() == 1
+    registry.pulls == 1
+    registry.coalescedPulls == 9
+    registry.inFlight.isEmpty()
+
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  def "share the failure of a pull and allow retries"() {
+    given:
+    def failure = new IllegalStateException("pull failed")
+
+    when:
+    registry.pull("nginx") { throw failure }
+
+    then:
+    def exception = thrown(IllegalStateException)
+    exception.is(failure)
+    and:
+    registry.pull("nginx") { "pulled" } == "pulled"
+    registry.pulls == 2
+  }
+
+  def "share errors of a pull with waiting callers"() {
+    given:
+    def executor = Executors.newFixedThreadPool(2)
+    def pullStarted = new CountDownLatch(1)
+    def releasePull = new CountDownLatch(1)
+    Callable<String> pull = {
+      pullStarted.countDown()
+      releasePull.await(5, TimeUnit.SECONDS)
+      throw new StackOverflowError("pull failed")
+    }
+
+    when:
+    def first = executor.submit({ registry.pull("nginx", pull) } as Callable)
+    pullStarted.await(5, TimeUnit.SECONDS)
+    def waiting = executor.submit({ registry.pull("nginx", pull) } as Callable)
+    while (registry.coalescedPulls < 1) {
+      Thread.sleep(10)
+    }
+    releasePull.countDown()
+    waiting.get(5, TimeUnit.SECONDS)
+
+    then:
+    def exception = thrown(ExecutionException)
+    exception.cause instanceof StackOverflowError
+    registry.pulls == 1
+    registry.inFlight.isEmpty()
+
+    cleanup:
+    executor.shutdownNow()
+  }
+}
@@ -2,13 +2,27 @@ package de.gesellix.docker.client.image
 
 import de.gesellix.docker.authentication.AuthConfig
 import de.gesellix.docker.client.authentication.ManageAuthentication
+import de.gesellix.docker.remote.api.BuildInfo
+import de.gesellix.docker.remote.api.CreateImageInfo
 import de.gesellix.docker.remote.api.EngineApiClient
 import de.gesellix.docker.remote.api.ImageInspect
 import de.gesellix.docker.remote.api.ImagePruneResponse
 import de.gesellix.docker.remote.api.ImageSummary
+import de.gesellix.docker.remote.api.PushImageInfo
+import de.gesellix.docker.remote.api.SystemDataUsageResponse
 import de.gesellix.docker.remote.api.client.ImageApi
+import de.gesellix.docker.remote.api.client.SystemApi
+import de.gesellix.docker.remote.api.core.StreamCallback
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
 import spock.lang.Specification
 
+import java.nio.file.Files
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ExecutorService
+import java.util.zip.GZIPInputStream
+
 class ManageImageClientTest extends Specification {
 
   ManageImageClient service
@@ -142,6 +156,69 @@ class ManageImageClientTest extends Specification {
     1 * imageApi.imageCreate("registry:port/an-image", null, null, "", null, "some-base64-encoded-auth", null, null, null, null, null)
   }
 
+  def "pull all images"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def options = new PullOptions(maxParallelPerRegistry: 1, timeout: Duration.ofMinutes(1))
+
+    when:
+    def report = service.pullAll(["nginx", "nginx:latest", "docker.io/library/nginx", "alpine:3", "registry.example.com/app:1.0"], options)
+
+    then:
+    1 * manageAuthentication.retrieveEncodedAuthTokenForImage({ it in ["nginx", "alpine:3"] }) >> "hub-auth"
+    1 * manageAuthentication.retrieveEncodedAuthTokenForImage("registry.example.com/app:1.0") >> "private-auth"
+    1 * imageApi.imageCreate("nginx", null, null, "latest", null, "hub-auth", null, null, null, _ as StreamCallback, 60000L) >> { args ->
+      StreamCallback<CreateImageInfo> callback = args[9]
+      callback.onNext(new CreateImageInfo(id: "layer-1", status: "Pull complete"))
+    }
+    1 * imageApi.imageCreate("alpine", null, null, "3", null, "hub-auth", null, null, null, _ as StreamCallback, 60000L)
+    1 * imageApi.imageCreate("registry.example.com/app", null, null, "1.0", null, "private-auth", null, null, null, _ as StreamCallback, 60000L) >> { args ->
+      StreamCallback<CreateImageInfo> callback = args[9]
+      callback.onNext(new CreateImageInfo(error: "manifest unknown"))
+    }
+    and:
+    report.results.keySet() == ["nginx", "alpine:3"] as Set
+    report.results["nginx"].phase == PullProgress.Phase.COMPLETE
+    report.results["nginx"].layers == 1
+    report.failures.keySet() == ["registry.example.com/app:1.0"] as Set
+  }
+
+  def "push all images to many registries"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def options = new PushOptions(maxParallelPerRegistry: 1, timeout: Duration.ofMinutes(1))
+
+    when:
+    def report = service.pushAll(["app:1.0", "tool:2"], ["registry.example.com", "mirror.example.com:5000"], options)
+
+    then:
+    1 * imageApi.imageTag("app:1.0", "registry.example.com/app", "1.0")
+    1 * imageApi.imageTag("app:1.0", "mirror.example.com:5000/app", "1.0")
+    1 * imageApi.imageTag("tool:2", "registry.example.com/tool", "2")
+    1 * imageApi.imageTag("tool:2", "mirror.example.com:5000/tool", "2") >> { throw new IllegalStateException("no such image") }
+    then:
+    1 * manageAuthentication.retrieveEncodedAuthTokenForImage({ it.startsWith("registry.example.com/") }) >> "registry-auth"
+    1 * manageAuthentication.retrieveEncodedAuthTokenForImage("mirror.example.com:5000/app:1.0") >> "mirror-auth"
+    1 * imageApi.imagePush("registry.example.com/app", "registry-auth", "1.0", _ as StreamCallback, 60000L) >> { args ->
+      StreamCallback<PushImageInfo> callback = args[3]
+      callback.onNext(new PushImageInfo(status: "Pushed"))
+      callback.onNext(new PushImageInfo(status: "1.0: digest: sha256:${"a" * 64} size: 528"))
+    }
+    1 * imageApi.imagePush("registry.example.com/tool", "registry-auth", "2", _ as StreamCallback, 60000L)
+    1 * imageApi.imagePush("mirror.example.com:5000/app", "mirror-auth", "1.0", _ as StreamCallback, 60000L) >> { args ->
+      StreamCallback<PushImageInfo> callback = args[3]
+      callback.onNext(new PushImageInfo(error: "unauthorized"))
+    }
+    and:
+    report.items*.key == ["registry.example.com/app:1.0", "mirror.example.com:5000/app:1.0", "registry.example.com/tool:2", "mirror.example.com:5000/tool:2"]
+    report.results.keySet() == ["registry.example.com/app:1.0", "registry.example.com/tool:2"] as Set
+    report.results["registry.example.com/app:1.0"].digest == "sha256:" + "a" * 64
+    report.results["registry.example.com/app:1.0"].layersPushed == 1
+    report.failures.keySet() == ["mirror.example.com:5000/app:1.0", "mirror.example.com:5000/tool:2"] as Set
+  }
+
   def "import from url"() {
     given:
     def imageApi = Mock(ImageApi)
@@ -221,6 +298,30 @@ class ManageImageClientTest extends Specification {
     1 * imageApi.imageLoad(null, archive)
   }
 
+  def "save to and load from a file"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def directory = Files.createTempDirectory("save")
+    def tarball = directory.resolve("images.tar")
+    byte[] loaded = null
+
+    when:
+    def saved = service.saveTo(["image:tag"], tarball)
+    def load = service.loadFrom(tarball)
+
+    then:
+    1 * imageApi.imageGetAll(["image:tag"]) >> new ByteArrayInputStream("tar".bytes)
+    1 * imageApi.imageLoad(null, _ as InputStream) >> { Boolean quiet, InputStream stream -> loaded = stream.bytes }
+    and:
+    saved.bytes == 3
+    load.sha256 == saved.sha256
+    loaded == "tar".bytes
+
+    cleanup:
+    directory.toFile().deleteDir()
+  }
+
   def "inspect image"() {
     given:
     def imageApi = Mock(ImageApi)
@@ -235,6 +336,154 @@ class ManageImageClientTest extends Specification {
     inspectImage.content == image
   }
 
+  def "inspect image by id via the content addressed cache"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def imageId = "sha256:" + "a" * 64
+    def inspectResponse = Mock(ImageInspect)
+    service.contentAddressedCache = new ContentAddressedCache()
+
+    when:
+    def first = service.inspectImage(imageId)
+    def second = service.inspectImage(imageId)
+    service.inspectImage("an-image:latest")
+
+    then:
+    1 * imageApi.imageInspect(imageId) >> inspectResponse
+    1 * imageApi.imageInspect("an-image:latest") >> inspectResponse
+    first.content == inspectResponse
+    second.content == inspectResponse
+    service.contentAddressedCache.hits == 1
+  }
+
+  def "drop cached inspections after tagging an image"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def imageId = "sha256:" + "a" * 64
+    def untagged = Mock(ImageInspect)
+    def tagged = Mock(ImageInspect)
+    service.contentAddressedCache = new ContentAddressedCache()
+
+    when:
+    service.inspectImage(imageId)
+    service.tag(imageId, "an-image:latest")
+    def inspection = service.inspectImage(imageId)
+
+    then:
+    1 * imageApi.imageInspect(imageId) >> untagged
+    1 * imageApi.imageTag(imageId, "an-image", "latest")
+    1 * imageApi.imageInspect(imageId) >> tagged
+    inspection.content == tagged
+  }
+
+  def "build from a context directory"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def contextDirectory = Files.createTempDirectory("build-context")
+    contextDirectory.resolve("Dockerfile").text = "FROM scratch\nCOPY . /\n"
+    contextDirectory.resolve(".dockerignore").text = "*.log\ntarget\n"
+    contextDirectory.resolve("app.txt").text = "app" * 100
+    contextDirectory.resolve("debug.log").text = "log"
+    Files.createDirectories(contextDirectory.resolve("target"))
+    contextDirectory.resolve("target/out.jar").text = "jar"
+    def options = new BuildOptions(tag: "an-image:latest", buildArgs: [VERSION: "1.0"], gzip: true, compressionBlockSize: 64)
+    def sent = [:]
+
+    when:
+    def result = service.build(contextDirectory, options, null)
+
+    then:
+    1 * manageAuthentication.getAllAuthConfigs() >> [:]
+    1 * manageAuthentication.encodeAuthConfigs([:]) >> "base-64-encoded"
+    1 * imageApi.imageBuild("Dockerfile", "an-image:latest", null, null, false, false, null, null, true, null,
+        null, null, null, null, null, null,
+        '{"VERSION":"1.0"}',
+        null, null,
+        null,
+        null,
+        ImageApi.ContentTypeImageBuild.ApplicationSlashXMinusTar,
+        "base-64-encoded",
+        null, null, null,
+        _ as InputStream,
+        _ as StreamCallback, null) >> { args ->
+      def tar = new TarArchiveInputStream(new GZIPInputStream(args[26] as InputStream))
+      TarArchiveEntry entry
+      while ((entry = tar.nextEntry) != null) {
+        sent[entry.name] = new String(tar.readAllBytes())
+      }
+      def callback = args[27] as StreamCallback<BuildInfo>
+      callback.onNext(new BuildInfo(stream: "Step 1/2 : FROM scratch\n"))
+      callback.onNext(new BuildInfo(stream: "Step 2/2 : COPY . /\n"))
+      callback.onNext(new BuildInfo(stream: "Successfully built 4711abcdef\n"))
+      callback.onFinished()
+    }
+    sent.keySet() == ["Dockerfile", ".dockerignore", "app.txt"] as Set
+    sent["app.txt"] == "app" * 100
+    result.imageId == "4711abcdef"
+    result.steps*.instruction == ["FROM scratch", "COPY . /"]
+
+    cleanup:
+    contextDirectory.toFile().deleteDir()
+  }
+
+  def "skip the build of an unchanged context"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def contextDirectory = Files.createTempDirectory("build-context")
+    contextDirectory.resolve("Dockerfile").text = "FROM scratch\n"
+    def cache = new BuildCache(contextDirectory.resolve("../build-cache-${UUID.randomUUID()}.properties").normalize())
+    service.buildCache = cache
+    def options = new BuildOptions(tag: "an-image:latest")
+    def contextHash = new BuildContextHasher({ Runnable runnable -> runnable.run() } as ExecutorService, 1)
+        .hash(contextDirectory, DockerIgnore.read(contextDirectory, "Dockerfile"), options)
+    cache.put(contextHash, "sha256:cached")
+
+    when:
+    def result = service.build(contextDirectory, options, null)
+
+    then:
+    1 * imageApi.imageInspect("sha256:cached") >> new ImageInspect(id: "sha256:cached")
+    1 * imageApi.imageTag("sha256:cached", "an-image", "latest")
+    0 * imageApi.imageBuild(*_)
+    result.imageId == "sha256:cached"
+
+    cleanup:
+    Files.deleteIfExists(cache.indexFile)
+    contextDirectory.toFile().deleteDir()
+  }
+
+  def "don't skip the build of an unchanged context when pulling base images"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def contextDirectory = Files.createTempDirectory("build-context")
+    contextDirectory.resolve("Dockerfile").text = "FROM scratch\n"
+    def cache = new BuildCache(contextDirectory.resolve("../build-cache-${UUID.randomUUID()}.properties").normalize())
+    service.buildCache = cache
+    def options = new BuildOptions(tag: "an-image:latest", pull: true)
+    def contextHash = new BuildContextHasher({ Runnable runnable -> runnable.run() } as ExecutorService, 1)
+        .hash(contextDirectory, DockerIgnore.read(contextDirectory, "Dockerfile"), options)
+    cache.put(contextHash, "sha256:cached")
+
+    when:
+    service.build(contextDirectory, options, null)
+
+    then:
+    0 * imageApi.imageInspect("sha256:cached")
+    1 * imageApi.imageBuild(*_) >> { args ->
+      (args[26] as InputStream).readAllBytes()
+      (args[27] as StreamCallback<BuildInfo>).onFinished()
+    }
+
+    cleanup:
+    Files.deleteIfExists(cache.indexFile)
+    contextDirectory.toFile().deleteDir()
+  }
+
   def "history"() {
     given:
     def imageApi = Mock(ImageApi)
@@ -312,6 +561,24 @@ class ManageImageClientTest extends Specification {
     service.findImageId('anImage@sha256:4711') == 'the-id'
   }
 
+  def "findImageId via the image id index"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def index = Mock(ImageIdIndex)
+    service.imageIdIndex = index
+
+    when:
+    def imageId = service.findImageId('anImage', '1.0')
+
+    then:
+    1 * index.isRunning() >> true
+    1 * index.lookup('anImage:1.0') >> 'the-id'
+    0 * imageApi.imageList(*_)
+    and:
+    imageId == 'the-id'
+  }
+
   def "rmi image"() {
     given:
     def imageApi = Mock(ImageApi)
@@ -340,4 +607,31 @@ class ManageImageClientTest extends Specification {
     1 * imageApi.imagePrune(filters) >> pruneResponse
     pruneImages.content == pruneResponse
   }
+
+  def "collect image garbage"() {
+    given:
+    def imageApi = Mock(ImageApi)
+    client.imageApi >> imageApi
+    def systemApi = Mock(SystemApi)
+    client.systemApi >> systemApi
+    def plan = new ImageGcPlan([
+        new ImageGcPlan.Candidate("sha256:a", ["a:1", "a:2"], Instant.EPOCH, Instant.EPOCH, 300, 0),
+        new ImageGcPlan.Candidate("sha256:b", [], Instant.EPOCH, Instant.EPOCH, 200, 100)],
+        [:], 1000)
+    def usage = Stub(SystemDataUsageResponse) {
+      getLayersSize() >> 600L
+    }
+
+    when:
+    def result = service.executeImageGc(plan, new ImageGcOptions(maxParallel: 2))
+
+    then:
+    1 * imageApi.imageDelete("a:1", false, null) >> []
+    1 * imageApi.imageDelete("a:2", false, null) >> []
+    1 * imageApi.imageDelete("sha256:b", false, null) >> []
+    0 * imageApi.imageDelete(_, true, _)
+    1 * systemApi.systemDataUsage() >> usage
+    result.removals.successful
+    result.reclaimedBytes == 400
+  }
 }
@@ -0,0 +1,80 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.CreateImageInfo
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ProgressAggregatorTest extends Specification {
+
+  def "throttle notifications, but always publish the end of the stream"() {
+    given:
+    List<Long> published = []
+    def aggregator = new ProgressAggregator({ ProgressSnapshot snapshot -> published << snapshot.currentBytes } as ProgressListener, Duration.ofHours(1))
+
+    when:
+    aggregator.update("layer-1", "Downloading", 10, 100)
+    aggregator.update("layer-1", "Downloading", 20, 100)
+    aggregator.update("layer-1", "Downloading", 30, 100)
+    aggregator.finish()
+
+    then:
+    published == [10L, 30L]
+    aggregator.snapshot.events == 3
+    aggregator.snapshot.finished
+  }
+
+  def "sum up the layers beyond the fixed-size table"() {
+    given:
+    def aggregator = new ProgressAggregator({} as ProgressListener, Duration.ZERO, 2)
+
+    when:
+    aggregator.update("layer-1", "Downloading", 10, 100)
+    aggregator.update("layer-2", "Downloading", 20, 200)
+    aggregator.update("layer-3", "Downloading", 30, 300)
+    aggregator.update("layer-4", "Downloading", 40, 400)
+    aggregator.complete("layer-1", "Download complete")
+    aggregator.complete("layer-3", "Download complete")
+
+    then:
+    def snapshot = aggregator.snapshot
+    snapshot.layerCount == 2
+    snapshot.overflowLayerCount == 2
+    snapshot.getLayerId(0) == "layer-1"
+    snapshot.getLayerId(1) == "layer-2"
+    snapshot.currentBytes == 100 + 20 + 300 + 40
+    snapshot.totalBytes == 100 + 200 + 300 + 400
+    snapshot.phase == "Download complete"
+  }
+
+  def "publish errors immediately"() {
+    given:
+    List<String> errors = []
+    def aggregator = new ProgressAggregator({ ProgressSnapshot snapshot -> errors << snapshot.error } as ProgressListener, Duration.ofHours(1))
+
+    when:
+    aggregator.update("layer-1", "Downloading", 10, 100)
+    aggregator.error("unauthorized")
+
+    then:
+    errors == [null, "unauthorized"]
+  }
+
+  def "decode pull events"() {
+    given:
+    ProgressSnapshot last = null
+    def callback = ProgressCallbacks.pull({ ProgressSnapshot snapshot -> last = snapshot } as ProgressListener, Duration.ZERO)
+
+    when:
+    callback.onNext(new CreateImageInfo(id: "latest", status: "Pulling from library/nginx"))
+    callback.onNext(new CreateImageInfo(id: "layer-1", status: "Already exists"))
+    callback.onNext(new CreateImageInfo(id: "layer-2", status: "Pulling fs layer"))
+    callback.onNext(new CreateImageInfo(id: "layer-2", status: "Pull complete"))
+    callback.onFinished()
+
+    then:
+    last.finished
+    last.error == null
+    last.percent == 100
+  }
+}
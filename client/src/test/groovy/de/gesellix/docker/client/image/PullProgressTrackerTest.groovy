@@ -0,0 +1,52 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.CreateImageInfo
+import spock.lang.Specification
+
+class PullProgressTrackerTest extends Specification {
+
+  def "summarize layer events"() {
+    given:
+    List<PullProgress> notifications = []
+    def tracker = new PullProgressTracker("nginx:latest", { PullProgress progress -> notifications << progress } as PullProgressListener)
+
+    when:
+    tracker.onNext(new CreateImageInfo(id: "latest", status: "Pulling from library/nginx"))
+    tracker.onNext(new CreateImageInfo(id: "layer-1", status: "Already exists"))
+    tracker.onNext(new CreateImageInfo(id: "layer-2", status: "Pulling fs layer"))
+    tracker.onNext(new CreateImageInfo(id: "layer-2", status: "Waiting"))
+    tracker.onNext(new CreateImageInfo(id: "layer-2", status: "Download complete"))
+    tracker.onNext(new CreateImageInfo(id: "layer-2", status: "Pull complete"))
+    tracker.onNext(new CreateImageInfo(status: "Digest: sha256:4711"))
+    tracker.onNext(new CreateImageInfo(status: "Status: Downloaded newer image for nginx:latest"))
+    tracker.onFinished()
+
+    then:
+    tracker.progress.phase == PullProgress.Phase.COMPLETE
+    tracker.progress.layers == 2
+    tracker.progress.layersComplete == 2
+    tracker.progress.digest == "sha256:4711"
+    tracker.progress.percent == 100
+    and: "repeated states aren't reported"
+    notifications*.phase == [
+        PullProgress.Phase.RESOLVING,
+        PullProgress.Phase.EXTRACTING,
+        PullProgress.Phase.EXTRACTING,
+        PullProgress.Phase.EXTRACTING,
+        PullProgress.Phase.EXTRACTING,
+        PullProgress.Phase.COMPLETE]
+  }
+
+  def "report errors"() {
+    given:
+    def tracker = new PullProgressTracker("unknown:latest")
+
+    when:
+    tracker.onNext(new CreateImageInfo(error: "manifest unknown"))
+    tracker.onFinished()
+
+    then:
+    tracker.error == "manifest unknown"
+    tracker.progress.phase == PullProgress.Phase.FAILED
+  }
+}
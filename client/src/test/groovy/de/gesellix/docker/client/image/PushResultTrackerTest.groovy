@@ -0,0 +1,77 @@
+package de.gesellix.docker.client.image
+
+import de.gesellix.docker.remote.api.ProgressDetail
+import de.gesellix.docker.remote.api.PushImageInfo
+import spock.lang.Specification
+
+class PushResultTrackerTest extends Specification {
+
+  def "summarize layer events"() {
+    given:
+    def tracker = new PushResultTracker("app:1.0", "registry.example.com/app:1.0")
+    def digest = "sha256:" + "a" * 64
+
+    when:
+    tracker.onNext(new PushImageInfo(status: "The push refers to repository [registry.example.com/app]"))
+    tracker.onNext(new PushImageInfo(status: "Preparing"))
+    tracker.onNext(new PushImageInfo(status: "Layer already exists"))
+    tracker.onNext(new PushImageInfo(status: "Mounted from library/alpine"))
+    tracker.onNext(new PushImageInfo(status: "Pushed"))
+    tracker.onNext(new PushImageInfo(status: "1.0: digest: ${digest} size: 528".toString()))
+
+    then:
+    tracker.error == null
+    def result = tracker.result
+    result.target == "registry.example.com/app:1.0"
+    result.digest == digest
+    result.layersPushed == 1
+    result.layersExisting == 2
+  }
+
+  def "sum up the sizes of the pushed layers"() {
+    given:
+    def tracker = new PushResultTracker("app:1.0", "registry.example.com/app:1.0")
+
+    when:
+    tracker.onEvent(new ImageProgressEvent("layer-1", "Pushing", null, 512, 1000, null))
+    tracker.onEvent(new ImageProgressEvent("layer-2", "Pushing", null, 512, 1000, null))
+    tracker.onEvent(new ImageProgressEvent("layer-1", "Pushing", null, 1000, 1000, null))
+    tracker.onEvent(new ImageProgressEvent("layer-1", "Pushed", null, -1, -1, null))
+    tracker.onEvent(new ImageProgressEvent("layer-2", "Pushed", null, -1, -1, null))
+    tracker.onEvent(new ImageProgressEvent(null, "Pushing", null, 100, 2000, null))
+    tracker.onEvent(new ImageProgressEvent("layer-3", "Layer already exists", null, -1, -1, null))
+
+    then:
+    tracker.result.bytesPushed == 2000
+    tracker.result.layersPushed == 2
+    tracker.result.layersExisting == 1
+  }
+
+  def "attribute the sizes of pushed layers by the ids of push events"() {
+    given:
+    def tracker = new PushResultTracker("app:1.0", "registry.example.com/app:1.0")
+
+    when:
+    tracker.onNext(new PushImageInfo(id: "layer-1", status: "Preparing"))
+    tracker.onNext(new PushImageInfo(id: "layer-1", status: "Pushing", progressDetail: new ProgressDetail(current: 512, total: 1000)))
+    tracker.onNext(new PushImageInfo(id: "layer-1", status: "Pushing", progressDetail: new ProgressDetail(current: 1000, total: 1000)))
+    tracker.onNext(new PushImageInfo(id: "layer-1", status: "Pushed"))
+    tracker.onNext(new PushImageInfo(id: "layer-2", status: "Layer already exists"))
+
+    then:
+    tracker.result.bytesPushed == 1000
+    tracker.result.layersPushed == 1
+    tracker.result.layersExisting == 1
+  }
+
+  def "report errors"() {
+    given:
+    def tracker = new PushResultTracker("app:1.0", "registry.example.com/app:1.0")
+
+    when:
+    tracker.onNext(new PushImageInfo(error: "denied: requested access to the resource is denied"))
+
+    then:
+    tracker.error == "denied: requested access to the resource is denied"
+  }
+}
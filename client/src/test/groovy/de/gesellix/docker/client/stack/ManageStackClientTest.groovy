@@ -10,21 +10,41 @@ import de.gesellix.docker.client.service.ManageService
 import de.gesellix.docker.client.stack.types.StackConfig
 import de.gesellix.docker.client.stack.types.StackSecret
 import de.gesellix.docker.client.system.ManageSystem
+import de.gesellix.docker.client.system.SystemEventsRequest
 import de.gesellix.docker.client.tasks.ManageTask
 import de.gesellix.docker.remote.api.Config
+import de.gesellix.docker.remote.api.ConfigSpec
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
 import de.gesellix.docker.remote.api.IdResponse
 import de.gesellix.docker.remote.api.Network
+import de.gesellix.docker.remote.api.Node
 import de.gesellix.docker.remote.api.NetworkCreateRequest
+import de.gesellix.docker.remote.api.ObjectVersion
 import de.gesellix.docker.remote.api.Secret
+import de.gesellix.docker.remote.api.SecretSpec
 import de.gesellix.docker.remote.api.Service
 import de.gesellix.docker.remote.api.ServiceCreateRequest
 import de.gesellix.docker.remote.api.ServiceSpec
+import de.gesellix.docker.remote.api.ServiceSpecMode
+import de.gesellix.docker.remote.api.ServiceSpecModeReplicated
 import de.gesellix.docker.remote.api.SwarmInfo
 import de.gesellix.docker.remote.api.SystemInfo
+import de.gesellix.docker.remote.api.Task
 import de.gesellix.docker.remote.api.TaskSpec
+import de.gesellix.docker.remote.api.TaskSpecContainerSpec
+import de.gesellix.docker.remote.api.TaskSpecContainerSpecSecretsInner
+import de.gesellix.docker.remote.api.TaskState
+import de.gesellix.docker.remote.api.TaskStatus
+import de.gesellix.docker.remote.api.core.Cancellable
+import de.gesellix.docker.remote.api.core.StreamCallback
 import spock.lang.Specification
 
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
 import static de.gesellix.docker.client.stack.ManageStackClient.LabelNamespace
+import static de.gesellix.docker.client.stack.ManageStackClient.LabelSpecHash
 
 class ManageStackClientTest extends Specification {
 
@@ -168,10 +188,136 @@ class ManageStackClientTest extends Specification {
     1 * manageService.rmService("service1-id")
     then:
     1 * manageNetwork.rmNetwork("network1-id")
-    then:
     1 * manageSecret.rmSecret("secret1-id")
+    1 * manageConfig.rmConfig("config1-id")
+  }
+
+  def "remove a stack after its tasks have shut down, and retry networks in use"() {
+    given:
+    String namespace = "the-stack"
+    def web = new Service().tap {
+      ID = "service1-id"
+      spec = new ServiceSpec().tap { s -> s.name = "the-stack_web" }
+    }
+    def taskStatus = Mock(TaskStatus) {
+      getState() >> TaskState.Running
+    }
+    def task = Mock(Task) {
+      getID() >> "task1-id"
+      getDesiredState() >> TaskState.Running
+      getStatus() >> taskStatus
+    }
+    def network = new Network().tap {
+      id = "network1-id"
+      name = "the-stack_default"
+    }
+    def options = new StackRemoveOptions(retryDelay: Duration.ofMillis(1), tasksShutdownPollInterval: Duration.ofMillis(1))
+
+    when:
+    def report = service.stackRm(namespace, options)
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent<List<Service>>([web])
+    1 * manageNetwork.networks(_) >> new EngineResponseContent<List<Network>>([network])
+    1 * manageSecret.secrets(_) >> new EngineResponseContent<List<Secret>>([])
+    1 * manageConfig.configs(_) >> new EngineResponseContent<List<Config>>([])
+    1 * manageTask.tasks(_) >> new EngineResponseContent<List<Task>>([task])
+    then:
+    1 * manageService.rmService("service1-id")
+    then: "the task is listed until it has shut down"
+    2 * manageTask.tasks(_) >>> [new EngineResponseContent<List<Task>>([task]), new EngineResponseContent<List<Task>>([])]
+    0 * manageSystem.events(*_)
+    then:
+    2 * manageNetwork.rmNetwork("network1-id") >> { throw new IllegalStateException("network the-stack_default id network1-id has active endpoints") }
+    then:
+    1 * manageNetwork.rmNetwork("network1-id")
+    and:
+    report.successful
+    report.remainingTasks == 0
+    report.services.results == ["the-stack_web": "service1-id"]
+    report.networks.results == ["the-stack_default": "network1-id"]
+  }
+
+  def "remove networks which share a name by id"() {
+    given:
+    def network1 = new Network().tap {
+      id = "network1-id"
+      name = "the-stack_default"
+    }
+    def network2 = new Network().tap {
+      id = "network2-id"
+      name = "the-stack_default"
+    }
+
+    when:
+    def report = service.stackRm("the-stack", new StackRemoveOptions())
+
     then:
+    1 * manageService.services(_) >> new EngineResponseContent<List<Service>>([])
+    1 * manageNetwork.networks(_) >> new EngineResponseContent<List<Network>>([network1, network2])
+    1 * manageSecret.secrets(_) >> new EngineResponseContent<List<Secret>>([])
+    1 * manageConfig.configs(_) >> new EngineResponseContent<List<Config>>([])
+    1 * manageNetwork.rmNetwork("network1-id")
+    1 * manageNetwork.rmNetwork("network2-id")
+    and:
+    report.successful
+    report.networks.results == [
+        "the-stack_default (network1-id)": "network1-id",
+        "the-stack_default (network2-id)": "network2-id"]
+  }
+
+  def "report resources which couldn't be removed"() {
+    given:
+    def secret = new Secret().tap {
+      ID = "secret1-id"
+      spec = new SecretSpec().tap { s -> s.name = "secret-1" }
+    }
+    def config = new Config().tap {
+      ID = "config1-id"
+      spec = new ConfigSpec().tap { s -> s.name = "config-1" }
+    }
+
+    when:
+    def report = service.stackRm("the-stack", new StackRemoveOptions())
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent<List<Service>>([])
+    1 * manageNetwork.networks(_) >> new EngineResponseContent<List<Network>>([])
+    1 * manageSecret.secrets(_) >> new EngineResponseContent<List<Secret>>([secret])
+    1 * manageConfig.configs(_) >> new EngineResponseContent<List<Config>>([config])
+    1 * manageSecret.rmSecret("secret1-id") >> { throw new IllegalStateException("permission denied") }
     1 * manageConfig.rmConfig("config1-id")
+    and:
+    !report.successful
+    report.secrets.failures.collectEntries { name, e -> [(name): e.message] } == ["secret-1": "permission denied"]
+    report.configs.results == ["config-1": "config1-id"]
+  }
+
+  def "throw the first failure when a stack is removed with the default options"() {
+    given:
+    def web = new Service().tap {
+      ID = "service1-id"
+      spec = new ServiceSpec().tap { s -> s.name = "the-stack_web" }
+    }
+    def network = new Network().tap {
+      id = "network1-id"
+      name = "the-stack_default"
+    }
+
+    when:
+    service.stackRm("the-stack")
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent<List<Service>>([web])
+    1 * manageNetwork.networks(_) >> new EngineResponseContent<List<Network>>([network])
+    1 * manageSecret.secrets(_) >> new EngineResponseContent<List<Secret>>([])
+    1 * manageConfig.configs(_) >> new EngineResponseContent<List<Config>>([])
+    1 * manageTask.tasks(_) >> new EngineResponseContent<List<Task>>([])
+    1 * manageService.rmService("service1-id") >> { throw new IllegalStateException("permission denied") }
+    0 * manageNetwork.rmNetwork(*_)
+    and:
+    def e = thrown(IllegalStateException)
+    e.message == "permission denied"
   }
 
   def "deploy an empty stack"() {
@@ -211,11 +357,6 @@ class ManageStackClientTest extends Specification {
     )
     config.secrets["secret1"] = new StackSecret(name: "secret-name-1", data: 'secret'.bytes)
     config.configs["config1"] = new StackConfig(name: "config-name-1", data: 'config'.bytes)
-    def serviceCreateRequest = new ServiceCreateRequest().tap {
-      name = "${namespace}_service1"
-      labels = [(LabelNamespace): namespace]
-      taskTemplate = serviceSpec.taskTemplate
-    }
     def swarmInfo = Mock(SwarmInfo)
     swarmInfo.controlAvailable >> true
     def systemInfo = Mock(SystemInfo)
@@ -234,28 +375,356 @@ class ManageStackClientTest extends Specification {
       r.name == "the-stack_network1"
           && r.getIPAM() == null
           && r.driver == null
-          && r.labels == [
+          && r.labels.subMap(['foo', LabelNamespace]) == [
           'foo'           : 'bar',
           (LabelNamespace): namespace]
+          && r.labels[LabelSpecHash]
           && r.internal == false
           && r.attachable == false
     })
 
     and:
     1 * manageSecret.secrets([filters: [name: ["secret-name-1"]]]) >> new EngineResponseContent([])
-    1 * manageSecret.createSecret("secret-name-1", 'secret'.bytes, [(LabelNamespace): namespace]) >> new EngineResponseContent(
+    1 * manageSecret.createSecret("secret-name-1", 'secret'.bytes, { it[LabelNamespace] == namespace && !it.containsKey(LabelSpecHash) }) >> new EngineResponseContent(
         new IdResponse("secret-id")
     )
 
     and:
     1 * manageConfig.configs([filters: [name: ["config-name-1"]]]) >> new EngineResponseContent([])
-    1 * manageConfig.createConfig("config-name-1", 'config'.bytes, [(LabelNamespace): namespace]) >> new EngineResponseContent(
+    1 * manageConfig.createConfig("config-name-1", 'config'.bytes, { it[LabelNamespace] == namespace && it[LabelSpecHash] }) >> new EngineResponseContent(
         new IdResponse("config-id")
     )
 
     and:
     1 * manageService.services([
         filters: ['label': [(namespaceFilter): true]]]) >> new EngineResponseContent([])
-    1 * manageService.createService(serviceCreateRequest, null)
+    1 * manageService.createService({ ServiceCreateRequest r ->
+      r.name == "${namespace}_service1"
+          && r.labels == [(LabelNamespace): namespace, (LabelSpecHash): new SpecHasher().hash(serviceSpec)]
+          && r.taskTemplate == serviceSpec.taskTemplate
+    }, null)
+  }
+
+  def "reconcile secrets with a single list call"() {
+    given:
+    String namespace = "the-stack"
+    def existing = new Secret().tap {
+      ID = "existing-id"
+      version = new ObjectVersion(42)
+      spec = new SecretSpec().tap { name = "secret-1" }
+    }
+    def prefixed = new Secret().tap {
+      ID = "prefixed-id"
+      spec = new SecretSpec().tap { name = "secret-1-old" }
+    }
+    def secrets = [
+        one  : new StackSecret(name: "secret-1", data: 'one'.bytes),
+        two  : new StackSecret(name: "secret-2", data: 'two'.bytes),
+        three: new StackSecret(name: "secret-3", data: 'three'.bytes)]
+
+    when:
+    service.createSecrets(namespace, secrets)
+
+    then:
+    1 * manageSecret.secrets([filters: [name: ["secret-1", "secret-2", "secret-3"]]]) >> new EngineResponseContent([existing, prefixed])
+    1 * manageSecret.updateSecret("existing-id", 42, { SecretSpec spec -> spec.name == "secret-1" && spec.data == "one" })
+    1 * manageSecret.createSecret("secret-2", 'two'.bytes, { it[LabelNamespace] == namespace }) >> new EngineResponseContent(new IdResponse("id-2"))
+    1 * manageSecret.createSecret("secret-3", 'three'.bytes, { it[LabelNamespace] == namespace }) >> { throw new IllegalStateException("conflict") }
+    def exception = thrown(IllegalStateException)
+    exception.message == "failed to create or update 1 secrets (secret-3: conflict)"
+    exception.suppressed*.message == ["conflict"]
+  }
+
+  def "reconcile configs concurrently"() {
+    given:
+    String namespace = "the-stack"
+    def configs = (1..10).collectEntries { [("config${it}".toString()): new StackConfig(name: "config-${it}", data: "${it}".bytes)] }
+
+    when:
+    def configIds = service.createConfigs(namespace, configs)
+
+    then:
+    1 * manageConfig.configs([filters: [name: (1..10).collect { "config-${it}".toString() }]]) >> new EngineResponseContent([])
+    10 * manageConfig.createConfig({ it.startsWith("config-") }, _, { it[LabelNamespace] == namespace }) >> { args -> new EngineResponseContent(new IdResponse("${args[0]}-id")) }
+    configIds == (1..10).collectEntries { [("config-${it}".toString()): "config-${it}-id".toString()] }
+  }
+
+  def "skip unchanged services"() {
+    given:
+    String namespace = "the-stack"
+    def serviceSpec = new ServiceSpec().tap {
+      taskTemplate = new TaskSpec()
+    }
+    def specHash = new SpecHasher().hash(new ServiceSpec().tap {
+      name = "${namespace}_service1"
+      labels = [(LabelNamespace): namespace]
+      taskTemplate = new TaskSpec()
+    })
+    def existing = new Service().tap {
+      ID = "service-id"
+      spec = new ServiceSpec().tap {
+        name = "${namespace}_service1"
+        labels = [(LabelNamespace): namespace, (LabelSpecHash): specHash]
+      }
+    }
+
+    when:
+    service.createOrUpdateServices(namespace, [service1: serviceSpec], false)
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent([existing])
+    0 * manageService.updateService(*_)
+    0 * manageService.createService(*_)
+  }
+
+  def "plan a stack deploy"() {
+    given:
+    String namespace = "the-stack"
+    DeployStackConfig config = new DeployStackConfig()
+    config.services["service1"] = new ServiceSpec().tap {
+      taskTemplate = new TaskSpec()
+    }
+    def secretReference = new TaskSpecContainerSpecSecretsInner(null, null, "secret-name-2")
+    config.services["service2"] = new ServiceSpec().tap {
+      taskTemplate = new TaskSpec().tap {
+        containerSpec = new TaskSpecContainerSpec().tap {
+          secrets = [secretReference]
+        }
+      }
+    }
+    config.secrets["secret1"] = new StackSecret(name: "secret-name-1", data: 'secret'.bytes)
+    config.secrets["secret2"] = new StackSecret(name: "secret-name-2", data: 'secret'.bytes, labels: [foo: "bar"])
+    def existingSecret = new Secret().tap {
+      ID = "secret-id-2"
+      spec = new SecretSpec().tap { name = "secret-name-2" }
+    }
+    def existingService = new Service().tap {
+      ID = "service-id"
+      spec = new ServiceSpec().tap {
+        name = "${namespace}_service1"
+        labels = [(LabelNamespace): namespace, (LabelSpecHash): "outdated"]
+      }
+    }
+    def obsoleteService = new Service().tap {
+      ID = "obsolete-id"
+      spec = new ServiceSpec().tap {
+        name = "${namespace}_obsolete"
+      }
+    }
+
+    when:
+    def plan = service.planStackDeploy(namespace, config, new DeployStackOptions(pruneServices: true))
+
+    then:
+    1 * manageNetwork.networks(_) >> new EngineResponseContent([])
+    1 * manageSecret.secrets([filters: [name: ["secret-name-1", "secret-name-2"]]]) >> new EngineResponseContent([existingSecret])
+    1 * manageService.services(_) >> new EngineResponseContent([existingService, obsoleteService])
+    0 * manageSecret.createSecret(*_)
+    0 * manageSecret.updateSecret(*_)
+    0 * manageService.createService(*_)
+    0 * manageService.updateService(*_)
+    0 * manageService.rmService(*_)
+    plan.changes*.toString() == [
+        "CREATE secret secret-name-1",
+        "UPDATE secret secret-name-2",
+        "REMOVE service the-stack_obsolete",
+        "UPDATE service the-stack_service1",
+        "CREATE service the-stack_service2"]
+    plan.hasChanges()
+
+    and: "the deploy config isn't changed"
+    config.secrets["secret1"].labels == [:]
+    config.secrets["secret2"].labels == [foo: "bar"]
+    config.services["service1"].name == null
+    config.services["service1"].labels == null
+    config.services["service2"].taskTemplate.containerSpec.secrets == [secretReference]
+  }
+
+  def "await the convergence of a stack"() {
+    given:
+    def web = new Service().tap {
+      ID = "s1"
+      spec = new ServiceSpec().tap { s ->
+        s.name = "the-stack_web"
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(1), null, null, null)
+      }
+    }
+
+    when:
+    def convergence = service.awaitConvergence("the-stack", Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS)
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent([web])
+    1 * manageTask.tasks(_) >> new EngineResponseContent([])
+    1 * manageSystem.events(_, _, _) >> { SystemEventsRequest request, StreamCallback<EventMessage> callback, Duration timeout ->
+      callback.onNext(new EventMessage(action: "start", actor: new EventActor(ID: "c1", attributes: [
+          "com.docker.swarm.service.id": "s1",
+          "com.docker.swarm.task.id"   : "t1"])))
+    }
+    and:
+    convergence.converged
+    convergence.services["the-stack_web"].running == 1
+  }
+
+  def "list the tasks of changed services, which run on other nodes"() {
+    given:
+    def web = new Service().tap {
+      ID = "s1"
+      spec = new ServiceSpec().tap { s ->
+        s.name = "the-stack_web"
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(1), null, null, null)
+      }
+    }
+    def taskStatus = Mock(TaskStatus) {
+      getState() >> TaskState.Running
+    }
+    def remoteTask = Mock(Task) {
+      getID() >> "t1"
+      getServiceID() >> "s1"
+      getDesiredState() >> TaskState.Running
+      getStatus() >> taskStatus
+    }
+
+    when:
+    def convergence = service.awaitConvergence("the-stack", Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS)
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent([web])
+    1 * manageTask.tasks([filters: [label: [("${LabelNamespace}=the-stack".toString()): true]]]) >> new EngineResponseContent([])
+    (1.._) * manageSystem.events(_, _, _) >> { SystemEventsRequest request, StreamCallback<EventMessage> callback, Duration timeout ->
+      callback.onNext(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "completed"])))
+      Thread.sleep(50)
+    }
+    (1.._) * manageTask.tasks([filters: [service: ["s1": true], label: [("${LabelNamespace}=the-stack".toString()): true]]]) >> new EngineResponseContent([remoteTask])
+    and:
+    convergence.converged
+    convergence.services["the-stack_web"].running == 1
+  }
+
+  def "list the tasks of a converging stack periodically"() {
+    given:
+    def web = new Service().tap {
+      ID = "s1"
+      spec = new ServiceSpec().tap { s ->
+        s.name = "the-stack_web"
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(1), null, null, null)
+      }
+    }
+    def taskStatus = Mock(TaskStatus) {
+      getState() >> TaskState.Running
+    }
+    def remoteTask = Mock(Task) {
+      getID() >> "t1"
+      getServiceID() >> "s1"
+      getDesiredState() >> TaskState.Running
+      getStatus() >> taskStatus
+    }
+    service.convergencePollInterval = Duration.ofMillis(10)
+
+    when:
+    def convergence = service.awaitConvergence("the-stack", Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS)
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent([web])
+    _ * manageSystem.events(_, _, _) >> { Thread.sleep(50) }
+    (2.._) * manageTask.tasks(_) >>> [new EngineResponseContent([]), new EngineResponseContent([remoteTask])]
+    and:
+    convergence.converged
+  }
+
+  def "status of services in stack"() {
+    given:
+    def web = new Service().tap {
+      ID = "s1"
+      spec = new ServiceSpec().tap { s ->
+        s.name = "the-stack_web"
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(2), null, null, null)
+      }
+    }
+    def task = Mock(Task) {
+      getID() >> "t1"
+      getServiceID() >> "s1"
+      getDesiredState() >> TaskState.Running
+    }
+
+    when:
+    def status = service.stackServicesStatus("the-stack")
+
+    then:
+    1 * manageService.services(_) >> new EngineResponseContent<List<Service>>([web])
+    1 * manageNode.nodes() >> new EngineResponseContent([])
+    1 * manageTask.tasks(_) >> new EngineResponseContent<List<Task>>([task])
+    and:
+    status == [new StackServiceStatus("s1", "the-stack_web", "replicated", 0, 2)]
+    status.first().replicas == "0/2"
+  }
+
+  def "follow the status of services in stack, listing the tasks of changed services"() {
+    given:
+    def web = new Service().tap {
+      ID = "s1"
+      spec = new ServiceSpec().tap { s ->
+        s.name = "the-stack_web"
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(1), null, null, null)
+      }
+    }
+    def taskStatus = Mock(TaskStatus) {
+      getState() >> TaskState.Running
+    }
+    def remoteTask = Mock(Task) {
+      getID() >> "t1"
+      getServiceID() >> "s1"
+      getNodeID() >> "n2"
+      getDesiredState() >> TaskState.Running
+      getStatus() >> taskStatus
+    }
+    def published = [].asSynchronized()
+    def callback = new StreamCallback<List<StackServiceStatus>>() {
+
+      @Override
+      void onStarting(Cancellable cancellable) {
+        published << "starting"
+      }
+
+      @Override
+      void onNext(List<StackServiceStatus> status) {
+        published << status.first().replicas
+      }
+    }
+
+    when:
+    service.stackServicesStatus("the-stack", callback, Duration.ofSeconds(5))
+
+    then:
+    1 * manageNode.nodes() >> new EngineResponseContent([Mock(Node) { getID() >> "n2" }])
+    2 * manageService.services(_) >> new EngineResponseContent([web])
+    2 * manageTask.tasks(_) >>> [new EngineResponseContent([]), new EngineResponseContent([remoteTask])]
+    1 * manageSystem.events(_, _, _) >> { SystemEventsRequest request, StreamCallback<EventMessage> events, Duration timeout ->
+      events.onStarting(Mock(Cancellable))
+      events.onNext(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: [name: "the-stack_web"])))
+      long deadline = System.currentTimeMillis() + 5000
+      while (published.size() < 3 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10)
+      }
+      events.onFinished()
+    }
+    and:
+    published == ["starting", "0/1", "1/1"]
+  }
+
+  def "ignore service events of other stacks"() {
+    given:
+    def callback = Mock(StreamCallback)
+
+    when:
+    service.stackServicesStatus("the-stack", callback, Duration.ofSeconds(5))
+
+    then:
+    1 * manageNode.nodes() >> new EngineResponseContent([])
+    1 * manageService.services(_) >> new EngineResponseContent([])
+    1 * manageTask.tasks(_) >> new EngineResponseContent([])
+    1 * manageSystem.events(_, _, _) >> { SystemEventsRequest request, StreamCallback<EventMessage> events, Duration timeout ->
+      events.onNext(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s9", attributes: [name: "other-stack_web"])))
+    }
   }
 }
@@ -0,0 +1,39 @@
+package de.gesellix.docker.client.stack
+
+import de.gesellix.docker.remote.api.ServiceSpec
+import de.gesellix.docker.remote.api.TaskSpec
+import spock.lang.Specification
+
+import static de.gesellix.docker.client.stack.ManageStack.LabelSpecHash
+
+class SpecHasherTest extends Specification {
+
+  SpecHasher hasher = new SpecHasher()
+
+  def "hash doesn't depend on the order of map entries"() {
+    expect:
+    hasher.hash([a: 1, b: [c: "x", d: "y"]]) == hasher.hash([b: [d: "y", c: "x"], a: 1])
+  }
+
+  def "hash differs for different specs"() {
+    expect:
+    hasher.hash([a: 1]) != hasher.hash([a: 2])
+  }
+
+  def "hash ignores the spec hash label"() {
+    given:
+    def spec = new ServiceSpec().tap {
+      name = "service"
+      labels = [foo: "bar"]
+      taskTemplate = new TaskSpec()
+    }
+    def hash = hasher.hash(spec)
+
+    when:
+    spec.labels[LabelSpecHash] = hash
+
+    then:
+    hasher.hash(spec) == hash
+    hash ==~ /[0-9a-f]{64}/
+  }
+}
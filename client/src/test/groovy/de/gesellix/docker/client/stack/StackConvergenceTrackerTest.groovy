@@ -0,0 +1,273 @@
+package de.gesellix.docker.client.stack
+
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.Service
+import de.gesellix.docker.remote.api.ServiceSpec
+import de.gesellix.docker.remote.api.ServiceSpecMode
+import de.gesellix.docker.remote.api.ServiceSpecModeReplicated
+import de.gesellix.docker.remote.api.ServiceUpdateStatus
+import de.gesellix.docker.remote.api.Task
+import de.gesellix.docker.remote.api.TaskSpec
+import de.gesellix.docker.remote.api.TaskState
+import de.gesellix.docker.remote.api.TaskStatus
+import spock.lang.Specification
+
+import java.time.Instant
+
+import static de.gesellix.docker.client.stack.StackConvergenceTracker.LabelServiceId
+import static de.gesellix.docker.client.stack.StackConvergenceTracker.LabelTaskId
+
+class StackConvergenceTrackerTest extends Specification {
+
+  StackConvergenceTracker tracker = new StackConvergenceTracker("the-stack")
+
+  def "converges when every service runs its desired tasks"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 2), service("s2", "the-stack_db", 1)], [])
+
+    when:
+    tracker.onEvent(container("s1", "t1", "start"))
+    tracker.onEvent(container("s2", "t2", "start"))
+
+    then:
+    !tracker.future.done
+    tracker.snapshot().services["the-stack_web"].running == 1
+
+    when:
+    tracker.onEvent(container("s1", "t3", "start"))
+
+    then:
+    tracker.future.done
+    tracker.future.get().converged
+    tracker.future.get().services["the-stack_web"].running == 2
+  }
+
+  def "replays events which arrive before seeding"() {
+    when:
+    tracker.onEvent(container("s1", "t1", "start"))
+
+    then:
+    !tracker.future.done
+
+    when:
+    tracker.seed([service("s1", "the-stack_web", 1)], [])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "fails when a task exits with an error"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 1)], [])
+
+    when:
+    tracker.onEvent(container("s1", "t1", "start"))
+    tracker.onEvent(container("s1", "t0", "die", [exitCode: "1"]))
+
+    then:
+    !tracker.future.get().converged
+    tracker.future.get().failures*.name == ["the-stack_web"]
+    tracker.future.get().failures.first().failure == "task t0 exited with code 1"
+  }
+
+  def "ignores stopped tasks and follows rolling updates"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 1)], [])
+
+    when:
+    tracker.onEvent(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "updating"])))
+    tracker.onEvent(container("s1", "t1", "kill"))
+    tracker.onEvent(container("s1", "t1", "die", [exitCode: "143"]))
+    tracker.onEvent(container("s1", "t2", "start"))
+
+    then:
+    !tracker.future.done
+    tracker.snapshot().services["the-stack_web"].updating
+
+    when:
+    tracker.onEvent(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "completed"])))
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "fails when an update is rolled back"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 1)], [])
+
+    when:
+    tracker.onEvent(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "rollback_started"])))
+
+    then:
+    tracker.future.get().failures.first().failure == "update rollbackstarted"
+  }
+
+  def "ignores the states of updates which started before the deploy"() {
+    given:
+    def deployStarted = Instant.parse("2026-10-18T10:00:00Z")
+    tracker = new StackConvergenceTracker("the-stack", deployStarted, [] as Set)
+    def web = service("s1", "the-stack_web", 1).tap {
+      updateStatus = updateStatusOf(ServiceUpdateStatus.State.RollbackCompleted, "2026-10-17T10:00:00Z")
+    }
+
+    when:
+    tracker.seed([web], [task("t1", "s1", TaskState.Running, TaskState.Running)])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "waits for the rollout of services updated by the deploy"() {
+    given:
+    def deployStarted = Instant.parse("2026-10-18T10:00:00Z")
+    tracker = new StackConvergenceTracker("the-stack", deployStarted, ["s1"] as Set)
+    def newSpec = Mock(TaskSpec)
+    def web = service("s1", "the-stack_web", 1).tap {
+      spec.taskTemplate = newSpec
+      updateStatus = updateStatusOf(ServiceUpdateStatus.State.Completed, "2026-10-17T10:00:00Z")
+    }
+
+    when: "the previous update has completed, but the old task still runs"
+    tracker.seed([web], [task("t1", "s1", TaskState.Running, TaskState.Running, Mock(TaskSpec))])
+
+    then:
+    !tracker.future.done
+    tracker.snapshot().services["the-stack_web"].updating
+
+    when: "the task has been replaced by a task with the new spec"
+    tracker.onTasks("s1", [
+        task("t1", "s1", TaskState.Shutdown, TaskState.Shutdown),
+        task("t2", "s1", TaskState.Running, TaskState.Running, newSpec)])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "a rolling update completes the rollout of services updated by the deploy"() {
+    given:
+    tracker = new StackConvergenceTracker("the-stack", Instant.now(), ["s1"] as Set)
+    tracker.seed([service("s1", "the-stack_web", 1)], [task("t1", "s1", TaskState.Running, TaskState.Running, Mock(TaskSpec))])
+
+    when:
+    tracker.onEvent(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "updating"])))
+
+    then:
+    !tracker.future.done
+
+    when:
+    tracker.onEvent(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1", attributes: ["updatestate.new": "completed"])))
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "only reports changes of the stack's services"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 1)], [])
+
+    expect:
+    tracker.changedServiceId(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "s1"))) == "s1"
+    tracker.changedServiceId(new EventMessage(type: EventMessage.Type.Service, action: "update", actor: new EventActor(ID: "other"))) == null
+    tracker.changedServiceId(container("s1", "t1", "start")) == null
+  }
+
+  def "counts the running tasks of every node from task listings"() {
+    given:
+    tracker.seed([service("s1", "the-stack_web", 2), service("s2", "the-stack_db", 1)], [])
+
+    when: "a container event of the local node arrives, but the other nodes' tasks are only listed"
+    tracker.onEvent(container("s1", "t1", "start"))
+    tracker.onTasks("s1", [
+        task("t1", "s1", TaskState.Running, TaskState.Running),
+        task("t2", "s1", TaskState.Running, TaskState.Running),
+        task("t0", "s1", TaskState.Shutdown, TaskState.Failed)])
+
+    then:
+    !tracker.future.done
+    tracker.snapshot().services["the-stack_web"].running == 2
+
+    when:
+    tracker.onTasks([
+        task("t1", "s1", TaskState.Running, TaskState.Running),
+        task("t2", "s1", TaskState.Running, TaskState.Running),
+        task("t3", "s2", TaskState.Running, TaskState.Running)])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "takes the desired tasks of global services from task listings"() {
+    given:
+    tracker.seed([globalService("s1", "the-stack_agent")], [task("t1", "s1", TaskState.Running, TaskState.Running)])
+
+    when:
+    tracker.onTasks("s1", [
+        task("t1", "s1", TaskState.Running, TaskState.Running),
+        task("t2", "s1", TaskState.Running, TaskState.Pending)])
+
+    then:
+    !tracker.future.done
+    tracker.snapshot().services["the-stack_agent"].desired == 2
+
+    when:
+    tracker.onTasks("s1", [
+        task("t1", "s1", TaskState.Running, TaskState.Running),
+        task("t2", "s1", TaskState.Running, TaskState.Running)])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  def "converges an empty stack immediately"() {
+    when:
+    tracker.seed([], [])
+
+    then:
+    tracker.future.get().converged
+  }
+
+  Service service(String id, String name, int replicas) {
+    return new Service().tap {
+      ID = id
+      spec = new ServiceSpec().tap { s ->
+        s.name = name
+        s.mode = new ServiceSpecMode().tap { m ->
+          m.replicated = new ServiceSpecModeReplicated(replicas)
+        }
+      }
+    }
+  }
+
+  Service globalService(String id, String name) {
+    // services without a replicated mode run one task per node
+    return new Service().tap {
+      ID = id
+      spec = new ServiceSpec().tap { s -> s.name = name }
+    }
+  }
+
+  ServiceUpdateStatus updateStatusOf(ServiceUpdateStatus.State updateState, String started) {
+    return Mock(ServiceUpdateStatus) {
+      getState() >> updateState
+      getStartedAt() >> started
+    }
+  }
+
+  Task task(String id, String serviceId, TaskState desiredState, TaskState state, TaskSpec taskSpec = null) {
+    TaskStatus taskStatus = Mock(TaskStatus) {
+      getState() >> state
+    }
+    return Mock(Task) {
+      getID() >> id
+      getServiceID() >> serviceId
+      getDesiredState() >> desiredState
+      getStatus() >> taskStatus
+      getSpec() >> taskSpec
+    }
+  }
+
+  EventMessage container(String serviceId, String taskId, String action, Map<String, String> attributes = [:]) {
+    return new EventMessage(type: EventMessage.Type.Container, action: action, actor: new EventActor(ID: "container-${taskId}", attributes: [(LabelServiceId): serviceId, (LabelTaskId): taskId] + attributes))
+  }
+}
@@ -0,0 +1,143 @@
+package de.gesellix.docker.client.stack
+
+import de.gesellix.docker.remote.api.EventActor
+import de.gesellix.docker.remote.api.EventMessage
+import de.gesellix.docker.remote.api.Node
+import de.gesellix.docker.remote.api.Service
+import de.gesellix.docker.remote.api.ServiceSpec
+import de.gesellix.docker.remote.api.ServiceSpecMode
+import de.gesellix.docker.remote.api.ServiceSpecModeReplicated
+import de.gesellix.docker.remote.api.Task
+import de.gesellix.docker.remote.api.TaskState
+import de.gesellix.docker.remote.api.TaskStatus
+import spock.lang.Specification
+
+class StackStatusEngineTest extends Specification {
+
+  StackStatusEngine engine
+
+  def setup() {
+    engine = new StackStatusEngine([service("s1", "the-stack_web", 3)], [node("n1"), node("n2")])
+  }
+
+  def "counts the tasks which haven't been shut down"() {
+    when:
+    engine.addTasks([
+        task("t1", "s1", "n1", TaskState.Running),
+        task("t2", "s1", "n2", TaskState.Running),
+        task("t3", "s1", "n2", TaskState.Shutdown),
+        task("t4", "other", "n1", TaskState.Running)])
+
+    then:
+    engine.status == [new StackServiceStatus("s1", "the-stack_web", "replicated", 0, 3)]
+  }
+
+  def "updates the running tasks from container events"() {
+    given:
+    engine.addTasks([task("t1", "s1", "n1", TaskState.Running)])
+
+    when:
+    def changed = engine.onEvent(container("start", "t1", "s1", "n1"))
+    engine.onEvent(container("start", "t2", "s1", "n2"))
+
+    then:
+    changed
+    engine.status.first().replicas == "2/3"
+
+    when:
+    engine.onEvent(container("die", "t2", "s1", "n2"))
+
+    then:
+    engine.status.first().running == 1
+
+    when:
+    engine.onEvent(container("destroy", "t1", "s1", "n1"))
+
+    then:
+    engine.status.first().running == 0
+  }
+
+  def "ignores events of other services"() {
+    expect:
+    !engine.onEvent(container("start", "t9", "other", "n1"))
+    engine.status.first().running == 0
+  }
+
+  def "doesn't count running tasks on nodes which are down"() {
+    given:
+    engine.onEvent(container("start", "t1", "s1", "n1"))
+    engine.onEvent(container("start", "t2", "s1", "n2"))
+
+    when:
+    def changed = engine.onEvent(new EventMessage(action: "update", actor: new EventActor(ID: "n2", attributes: ["state.new": "down"])))
+
+    then:
+    changed
+    engine.status.first().running == 1
+
+    when:
+    engine.onEvent(new EventMessage(action: "update", actor: new EventActor(ID: "n2", attributes: ["state.new": "ready"])))
+
+    then:
+    engine.status.first().running == 2
+  }
+
+  def "replaces the tasks of a changed service with a listing"() {
+    given:
+    engine.addTasks([
+        task("t1", "s1", "n1", TaskState.Running, TaskState.Running),
+        task("t2", "s1", "n2", TaskState.Running, TaskState.Running)])
+
+    when:
+    def changed = engine.replaceService("s1", service("s1", "the-stack_web", 2), [
+        task("t2", "s1", "n2", TaskState.Running, TaskState.Running),
+        task("t3", "s1", "n2", TaskState.Running, TaskState.Running)])
+
+    then:
+    changed
+    engine.status == [new StackServiceStatus("s1", "the-stack_web", "replicated", 2, 2)]
+
+    when:
+    engine.replaceService("s1", null, [])
+
+    then:
+    engine.status == []
+    !engine.hasService("s1")
+  }
+
+  Service service(String id, String name, int replicas) {
+    return new Service().tap {
+      ID = id
+      spec = new ServiceSpec().tap { s ->
+        s.name = name
+        s.mode = new ServiceSpecMode(new ServiceSpecModeReplicated(replicas), null, null, null)
+      }
+    }
+  }
+
+  Node node(String id) {
+    return Mock(Node) {
+      getID() >> id
+    }
+  }
+
+  Task task(String id, String serviceId, String nodeId, TaskState desiredState, TaskState state = null) {
+    TaskStatus taskStatus = Mock(TaskStatus) {
+      getState() >> state
+    }
+    return Mock(Task) {
+      getID() >> id
+      getServiceID() >> serviceId
+      getNodeID() >> nodeId
+      getDesiredState() >> desiredState
+      getStatus() >> taskStatus
+    }
+  }
+
+  EventMessage container(String action, String taskId, String serviceId, String nodeId) {
+    return new EventMessage(action: action, actor: new EventActor(ID: "container-${taskId}", attributes: [
+        "com.docker.swarm.task.id"   : taskId,
+        "com.docker.swarm.service.id": serviceId,
+        "com.docker.swarm.node.id"   : nodeId]))
+  }
+}
@@ -0,0 +1,83 @@
+package de.gesellix.docker.client.system
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+
+class EventFollowerTest extends Specification {
+
+  List<Runnable> tasks = []
+  ExecutorService executor = { Runnable runnable -> tasks.add(runnable) } as ExecutorService
+  EventFollower.View<List<String>> view = Mock(EventFollower.View)
+  EventFollower<List<String>> follower
+
+  def setup() {
+    follower = new EventFollower<List<String>>("test view", Mock(ManageSystem), executor, Duration.ofMinutes(1), ["container"], view)
+  }
+
+  def "don't start when seeding fails"() {
+    when:
+    follower.start()
+
+    then:
+    1 * view.load() >> { throw new IllegalStateException("engine unavailable") }
+    thrown(IllegalStateException)
+    !follower.running
+    !follower.synced
+    tasks.empty
+
+    when:
+    follower.start()
+
+    then:
+    1 * view.load() >> ["a"]
+    1 * view.replace(["a"], false)
+    follower.running
+    follower.synced
+    tasks.size() == 1
+  }
+
+  def "don't publish a resync which finished after a stop"() {
+    when:
+    def published = follower.resync()
+
+    then:
+    1 * view.load() >> {
+      follower.stop()
+      return ["a"]
+    }
+    0 * view.replace(*_)
+    !published
+    !follower.synced
+  }
+
+  def "don't publish refreshes which started before a stop"() {
+    given:
+    def generation = follower.generation
+    def applied = []
+
+    when:
+    follower.stop()
+    def published = follower.publish(generation) { applied << "refresh" }
+
+    then:
+    1 * view.clear()
+    !published
+    applied.empty
+  }
+
+  def "don't follow when stopped while seeding"() {
+    when:
+    follower.start()
+
+    then:
+    1 * view.load() >> {
+      follower.stop()
+      return ["a"]
+    }
+    0 * view.replace(*_)
+    !follower.running
+    tasks.empty
+  }
+}